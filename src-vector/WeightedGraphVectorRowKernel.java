@@ -0,0 +1,77 @@
+/**
+ * The vector row kernel of the streaming triangle engine (see WeightedGraphRowKernel): the nodes of a row are computed
+ * a whole vector at a time with the Java Vector API - one vector of the totals of the left parents (p-1), one of the
+ * right parents (p), their lane-wise maximum is the distance, and the lanes where the right parent is strictly greater
+ * are the choice bits, that are shifted into the packed bitmap as one int per vector.  The nodes after the last full
+ * vector are computed by the scalar loop.
+ *
+ * The bits of the mask are collected as the OR of the lane bit values (1 << lane) of the selected lanes, and not with
+ * VectorMask.toLong(), which the JDK 17 compiler does not intrinsify (it allocates, and is 2-3 times slower).
+ *
+ * The vector size is the preferred size of the CPU (IntVector.SPECIES_PREFERRED: 8 ints with AVX2, 16 with AVX-512),
+ * at most 16 ints.
+ *
+ * This class needs JDK 16 or later, and the incubator module - it is kept out of src, so that the rest of the classes
+ * still build without them:
+ *
+ *   javac --add-modules jdk.incubator.vector -cp <classpath with the classes of src> -d <classes> src-vector/*.java
+ *   java --add-modules jdk.incubator.vector -cp <classpath> WeightedGraphMaxSearch ... -engine stream
+ *
+ * WeightedGraphRowKernel loads it by name, so without it the scalar kernel is used.
+ */
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+
+public class WeightedGraphVectorRowKernel extends WeightedGraphRowKernel {
+
+	private static final VectorSpecies<Integer> SPECIES =
+			(IntVector.SPECIES_PREFERRED.length() <= 16) ? IntVector.SPECIES_PREFERRED : IntVector.SPECIES_512;
+
+	// 1 << lane, in every lane
+	private static final IntVector LANE_BITS = IntVector.broadcast(SPECIES, 1).lanewise(VectorOperators.LSHL,
+			IntVector.zero(SPECIES).addIndex(1));
+	private static final IntVector ZERO = IntVector.zero(SPECIES);
+
+	@Override
+	public String getName() {
+		return KERNEL_VECTOR + " (" + SPECIES.length() + " x 32 bit)";
+	}
+
+	@Override
+	public int getLanes() {
+		return SPECIES.length();
+	}
+
+	@Override
+	public void solveRow(int[] total, int[] distance, byte[] bits, int width) {
+
+		clearBits(bits, width);
+
+		// The first node only has a right parent, the last node only has a left parent
+		distance[0] = total[0];
+		bits[0] |= 1;
+
+		int lanes = SPECIES.length();
+		int p = 1;
+		for (; p + lanes <= width - 1; p += lanes) {
+			IntVector left = IntVector.fromArray(SPECIES, total, p - 1);
+			IntVector right = IntVector.fromArray(SPECIES, total, p);
+			VectorMask<Integer> fromRight = right.compare(VectorOperators.GT, left);
+			left.max(right).intoArray(distance, p);
+
+			// Lane i is node p + i: at most 16 lanes, so the mask (shifted to the bit of node p) spans at most 3 bytes
+			long mask = (long) ZERO.blend(LANE_BITS, fromRight).reduceLanes(VectorOperators.OR) << (p & 7);
+			for (int b = p >> 3; mask != 0; b++) {
+				bits[b] |= (byte) mask;
+				mask >>>= 8;
+			}
+		}
+		solveRange(total, distance, bits, p, width - 1);
+
+		distance[width - 1] = total[width - 2];
+	}
+}
@@ -3,8 +3,16 @@
  * 
  * When the NUMBER_OF_GRAY_NODES_PROCESSED == NUMBER_OF_GRAY_NODES_TOBE_PROCESSED, then we are completed
  * 
+ * The other counters are only reported (WeightedGraphRunReport): they do not steer the iterations.
+ * 
  */
 public enum MRStats {
 	NUMBER_OF_GRAY_NODES_TOBE_PROCESSED,  // used to keep track of how many Gray nodes that we have to process
-	NUMBER_OF_GRAY_NODES_PROCESSED // Number of Gray nodes that have been processed
+	NUMBER_OF_GRAY_NODES_PROCESSED, // Number of Gray nodes that have been processed
+	NUMBER_OF_GRAY_NODES_PRUNED,  // Number of Gray nodes that were not expanded, because they can not be on a maximum path (-prune bound)
+	RECORDS_PARSED,  // Number of text lines parsed into nodes by the mappers (first iteration)
+	CANDIDATES_DISCARDED,  // Number of new Gray nodes merged away by a better candidate of the same node (mapper and reducer - the combiner has no counters)
+	FRONTIER_WIDTH,  // Number of distinct Gray nodes written by the reducers: the nodes that the next iteration expands
+	MAP_MILLIS,  // Time of the map phase, summed over the map tasks (first map call to close)
+	REDUCE_MILLIS  // Time of the reduce phase, summed over the reduce tasks (first reduce call to close)
 }
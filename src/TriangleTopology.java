@@ -0,0 +1,154 @@
+/**
+ * The edges of a 'triangle' graph, computed from the node IDs instead of being read from the EDGES column.
+ *
+ * The nodes are numbered row by row, starting from 1 at the top:
+ *
+ *          1                row 1
+ *        2   3              row 2
+ *      4   5   6            row 3
+ *    7   8   9  10          row 4 (the bottom row, for a triangle of 4 rows)
+ *         11                the 'aggregation node'
+ *
+ * Node p (counting from 0) of row r has the ID r*(r-1)/2 + 1 + p, and points to the nodes p and p+1 of row r+1.
+ * Every node of the bottom row points to the aggregation node (the first ID after the bottom row), which has no edges.
+ *
+ * With -topology triangle the records do not carry their edges at all - the mapper computes the children of a
+ * GRAY node from its ID, and the edges are only filled in again for the text output of the last iteration.
+ */
+
+import org.apache.hadoop.conf.Configuration;
+
+
+public class TriangleTopology {
+
+	/*
+	 * Job configuration properties (and values) that select the topology of the graph
+	 */
+	public static final String TOPOLOGY_PROPERTY = "graphTopology";
+	public static final String TOPOLOGY_EXPLICIT = "explicit";   // the edges are read from the EDGES column (the default)
+	public static final String TOPOLOGY_TRIANGLE = "triangle";   // the edges are computed from the node IDs
+	public static final String ROWS_PROPERTY = "triangleRows";   // the number of rows of the triangle (not counting the aggregation node)
+
+	private final int rows;
+	private final int bottomRowFirstId;
+	private final int aggregationNodeId;
+
+	public TriangleTopology(int rows) {
+		if (rows < 1) {
+			throw new IllegalArgumentException("A triangle must have at least one row: " + rows);
+		}
+		this.rows = rows;
+		this.bottomRowFirstId = nodeId(rows, 0);
+		this.aggregationNodeId = nodeId(rows + 1, 0);
+	}
+
+	/**
+	 * Returns the topology selected in the job configuration, or null if the edges are explicit
+	 */
+	public static TriangleTopology get(Configuration conf) {
+		if (!TOPOLOGY_TRIANGLE.equals(conf.get(TOPOLOGY_PROPERTY, TOPOLOGY_EXPLICIT))) {
+			return null;
+		}
+		int rows = conf.getInt(ROWS_PROPERTY, 0);
+		if (rows < 1) {
+			throw new IllegalArgumentException("The number of rows of the triangle (" + ROWS_PROPERTY + ") is not set");
+		}
+		return new TriangleTopology(rows);
+	}
+
+	/**
+	 * The ID of node p (counting from 0) of row r (counting from 1)
+	 */
+	public static int nodeId(int r, int p) {
+		return (int) ((long) r * (r - 1) / 2) + 1 + p;
+	}
+
+	/**
+	 * The row (counting from 1) of a node - the aggregation node is in row (rows + 1)
+	 */
+	public static int rowOf(int id) {
+		// r is the smallest row with r*(r+1)/2 >= id
+		int r = (int) Math.ceil((Math.sqrt(8.0 * id + 1) - 1) / 2);
+		while ((long) r * (r + 1) / 2 < id) {
+			r++;
+		}
+		while ((r > 1) && ((long) (r - 1) * r / 2 >= id)) {
+			r--;
+		}
+		return r;
+	}
+
+	/**
+	 * The position (counting from 0) of a node in its row
+	 */
+	public static int positionOf(int id) {
+		return id - nodeId(rowOf(id), 0);
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public int getAggregationNodeId() {
+		return aggregationNodeId;
+	}
+
+	/**
+	 * The number of edges of a node: 2 for the nodes above the bottom row, 1 for the bottom row, 0 for the aggregation node
+	 */
+	public int childCount(int id) {
+		if (id < bottomRowFirstId) {
+			return 2;
+		}
+		return (id < aggregationNodeId) ? 1 : 0;
+	}
+
+	/**
+	 * The first child of a node (the second child, if any, is firstChild + 1)
+	 */
+	public int firstChild(int id) {
+		if (id < bottomRowFirstId) {
+			return id + rowOf(id);
+		}
+		return aggregationNodeId;
+	}
+
+	/**
+	 * The number of parents of a node: 1 or 2 below the top row, all of the bottom row for the aggregation node
+	 */
+	public int parentCount(int id) {
+		if (id == aggregationNodeId) {
+			return rows;
+		}
+		int r = rowOf(id);
+		if (r < 2) {
+			return 0;
+		}
+		int p = positionOf(id);
+		return Math.min(r - 2, p) - Math.max(0, p - 1) + 1;
+	}
+
+	/**
+	 * The first parent of a node (the other parents, if any, are firstParent + 1, ...): the left parent (p - 1) and
+	 * the right parent (p) of node p, if they are in the row above
+	 */
+	public int firstParent(int id) {
+		if (id == aggregationNodeId) {
+			return bottomRowFirstId;
+		}
+		int r = rowOf(id);
+		return nodeId(r - 1, Math.max(0, positionOf(id) - 1));
+	}
+
+	/**
+	 * Fill in the (computed) edges of a node, for the text output
+	 */
+	public void setEdges(WeightedNodeWritable node) {
+		node.clearEdges();
+		int count = childCount(node.getId());
+		int first = (count > 0) ? firstChild(node.getId()) : 0;
+		for (int i = 0; i < count; i++) {
+			node.addEdge(first + i);
+		}
+	}
+}
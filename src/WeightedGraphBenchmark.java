@@ -0,0 +1,640 @@
+/**
+ * Micro benchmarks of the hot paths of an iteration: the node codec (WeightedNode and WeightedNodeWritable), the
+ * mapper (WeightedGraphMaxSearchMapper.map) and the reducers (WeightedGraphMaxSearchReducer.reduce, and the
+ * WeightedGraphSortedReducer of -sort value) - driven directly, with stub OutputCollectors and Reporter.NULL, so no
+ * MR job runs.
+ *
+ * The records are the node lines of the data sets (by default the bundled small and large data sets), with a path of
+ * the given lengths (-paths) made of the nodes above them, and the reducers get a node record plus as many candidates
+ * as the given in-degrees (-indegrees).  Every benchmark runs -warmup timed iterations that are not measured, then
+ * -iterations measured ones of about -time milliseconds each, and reports for each benchmark:
+ *
+ *   records/s, ns/record (mean and standard deviation of the iterations), B/record (bytes allocated by the benchmark
+ *   thread, per record - if the JVM can tell) and the number and time of the garbage collections
+ *
+ * The ns/record of every benchmark can be saved (-save <file>) and compared with a saved baseline (-baseline <file>):
+ * a benchmark that is slower than its baseline by more than -tolerance percent is reported as a REGRESSION, and the exit
+ * code is 1 - so a change to one of these hot paths can be checked against the numbers from before the change.
+ *
+ * The row kernels of the streaming triangle engine (WeightedGraphRowKernel) are measured on rows of random totals of the
+ * given widths (-widths): the scalar kernel, and the vector kernel if it can be loaded (see WeightedGraphVectorRowKernel
+ * - the JVM needs --add-modules jdk.incubator.vector).  Before they are measured, the output of the vector kernel is
+ * checked against the scalar kernel.
+ *
+ * (The candidates that the sorted reducer does not read cost nothing here - in a job the framework still moves their
+ * bytes, so reducer.sorted only measures what the reducer itself saves.)
+ *
+ * The sampled per-record log messages of the mapper and the reducers (see WeightedGraphTaskMetrics) are not written (log4j
+ * level WARN), the writing would be measured instead of the code.
+ *
+ * To run:  WeightedGraphBenchmark [-data <Input graph file>]... [-paths 0,16,64] [-indegrees 2,16,128] [-widths 1000,100000]
+ *                                 [-filter <Name part>] [-warmup 3] [-iterations 5] [-time 1000] [-save <File>]
+ *                                 [-baseline <File> [-tolerance 10]]
+ */
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+
+@SuppressWarnings("deprecation")
+public class WeightedGraphBenchmark {
+
+	private static final String[] DEFAULT_DATA = {
+		"data/input-graph (Graph Max Small Data Set)",
+		"data/input-graph (Graph Max Large Data Set)"
+	};
+
+	/*
+	 * A benchmark: one operation processes all of its records, and returns a value that depends on them (so that the
+	 * work can not be optimized away)
+	 */
+	private static abstract class Benchmark {
+
+		final String name;
+		final int recordCount;
+
+		Benchmark(String name, int recordCount) {
+			this.name = name;
+			this.recordCount = recordCount;
+		}
+
+		abstract long operation() throws IOException;
+	}
+
+	/*
+	 * An OutputCollector that only counts (and checksums) what it is given
+	 */
+	private static class CountingCollector<K, V> implements OutputCollector<K, V> {
+
+		long count;
+
+		public void collect(K key, V value) {
+			count += 1 + (value.hashCode() & 1);
+		}
+	}
+
+	/*
+	 * The values of one reduce call, reused for every call
+	 */
+	private static class Values implements Iterator<WeightedNodeWritable> {
+
+		private final WeightedNodeWritable[] values;
+		private int next;
+
+		Values(WeightedNodeWritable[] values) {
+			this.values = values;
+		}
+
+		Values reset() {
+			next = 0;
+			return this;
+		}
+
+		public boolean hasNext() {
+			return next < values.length;
+		}
+
+		public WeightedNodeWritable next() {
+			return values[next++];
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+
+	private final List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+	private final List<WeightedNodeWritable> graph = new ArrayList<WeightedNodeWritable>();
+
+	private int warmupIterations = 3;
+	private int measuredIterations = 5;
+	private long iterationMillis = 1000;
+
+
+	/**
+	 * Read the node lines of a data set
+	 */
+	void load(String file) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			String line;
+			Text text = new Text();
+			while ((line = reader.readLine()) != null) {
+				if (line.trim().length() == 0) {
+					continue;
+				}
+				text.set(line);
+				WeightedNodeWritable node = new WeightedNodeWritable();
+				node.parse(text);
+				graph.add(node);
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	/*
+	 * The records of the data sets, as GRAY nodes with a path of pathLength nodes (the nodes with the IDs below them)
+	 */
+	private WeightedNodeWritable[] records(int pathLength) {
+		WeightedNodeWritable[] records = new WeightedNodeWritable[graph.size()];
+		for (int i = 0; i < records.length; i++) {
+			WeightedNodeWritable node = new WeightedNodeWritable();
+			node.set(graph.get(i));
+			node.setColor(WeightedNode.Color.GRAY);
+			for (int p = 0; p < pathLength; p++) {
+				node.addPathTakenEdge(1 + p * Math.max(1, node.getId() / Math.max(1, pathLength)));
+			}
+			node.setDistance(node.getId() * 7);
+			records[i] = node;
+		}
+		return records;
+	}
+
+	private static Text[] lines(WeightedNodeWritable[] records) {
+		Text[] lines = new Text[records.length];
+		for (int i = 0; i < records.length; i++) {
+			lines[i] = new Text();
+			records[i].writeLine(lines[i]);
+		}
+		return lines;
+	}
+
+
+	/*
+	 * The codec benchmarks: the String based WeightedNode and the byte based WeightedNodeWritable, text and binary
+	 */
+	void addCodecBenchmarks(int pathLength) {
+		final WeightedNodeWritable[] records = records(pathLength);
+		final Text[] lines = lines(records);
+		final String[] strings = new String[lines.length];
+		final WeightedNode[] nodes = new WeightedNode[lines.length];
+		for (int i = 0; i < lines.length; i++) {
+			strings[i] = lines[i].toString();
+			nodes[i] = new WeightedNode(strings[i]);
+		}
+		String suffix = " path=" + pathLength;
+
+		benchmarks.add(new Benchmark("codec.WeightedNode.parse" + suffix, records.length) {
+			long operation() {
+				long sum = 0;
+				for (String s : strings) {
+					sum += new WeightedNode(s).getDistance();
+				}
+				return sum;
+			}
+		});
+		benchmarks.add(new Benchmark("codec.WeightedNode.getLine" + suffix, records.length) {
+			long operation() {
+				long sum = 0;
+				for (WeightedNode n : nodes) {
+					sum += n.getLine().getLength();
+				}
+				return sum;
+			}
+		});
+		benchmarks.add(new Benchmark("codec.WeightedNodeWritable.parse" + suffix, records.length) {
+			final WeightedNodeWritable node = new WeightedNodeWritable();
+			long operation() {
+				long sum = 0;
+				for (Text line : lines) {
+					node.parse(line);
+					sum += node.getDistance();
+				}
+				return sum;
+			}
+		});
+		benchmarks.add(new Benchmark("codec.WeightedNodeWritable.writeLine" + suffix, records.length) {
+			final Text line = new Text();
+			long operation() {
+				long sum = 0;
+				for (WeightedNodeWritable n : records) {
+					n.writeLine(line);
+					sum += line.getLength();
+				}
+				return sum;
+			}
+		});
+		benchmarks.add(new Benchmark("codec.WeightedNodeWritable.binary" + suffix, records.length) {
+			final DataOutputBuffer out = new DataOutputBuffer();
+			final DataInputBuffer in = new DataInputBuffer();
+			final WeightedNodeWritable node = new WeightedNodeWritable();
+			long operation() throws IOException {
+				long sum = 0;
+				for (WeightedNodeWritable n : records) {
+					out.reset();
+					n.write(out);
+					in.reset(out.getData(), out.getLength());
+					node.readFields(in);
+					sum += node.getPathLength();
+				}
+				return sum;
+			}
+		});
+	}
+
+	/*
+	 * The mapper benchmark: every record is a GRAY node that is expanded (binary input, explicit edges)
+	 */
+	void addMapperBenchmark(int pathLength, JobConf job) {
+		final WeightedNodeWritable[] records = records(pathLength);
+		final WeightedGraphMaxSearchMapper mapper = new WeightedGraphMaxSearchMapper();
+		mapper.configure(job);
+		final CountingCollector<IntWritable, WeightedNodeWritable> output = new CountingCollector<IntWritable, WeightedNodeWritable>();
+		final IntWritable key = new IntWritable();
+
+		benchmarks.add(new Benchmark("mapper.map path=" + pathLength, records.length) {
+			long operation() throws IOException {
+				for (WeightedNodeWritable n : records) {
+					// (the mapper colors the node BLACK)
+					n.setColor(WeightedNode.Color.GRAY);
+					key.set(n.getId());
+					mapper.map(key, n, output, Reporter.NULL);
+				}
+				return output.count;
+			}
+		});
+	}
+
+	/*
+	 * The reducer benchmarks: a node record (WHITE, with its edges) and inDegree GRAY candidates per reduce call
+	 */
+	void addReducerBenchmarks(int pathLength, int inDegree, JobConf job) {
+		WeightedNodeWritable[] records = records(pathLength);
+		int calls = Math.max(1, Math.min(records.length, 100000 / (inDegree + 1)));
+		final Values[] unsorted = new Values[calls];
+		final Values[] sorted = new Values[calls];
+		final WeightedNodeKey[] keys = new WeightedNodeKey[calls];
+		for (int c = 0; c < calls; c++) {
+			WeightedNodeWritable[] values = new WeightedNodeWritable[inDegree + 1];
+			values[0] = new WeightedNodeWritable();
+			values[0].set(records[c]);
+			values[0].setColor(WeightedNode.Color.WHITE);
+			values[0].setDistance(0);
+			for (int d = 1; d <= inDegree; d++) {
+				WeightedNodeWritable parent = records[(c * 31 + d * 17) % records.length];
+				values[d] = new WeightedNodeWritable(records[c].getId());
+				values[d].setDistance(parent.getDistance() + parent.getWeight());
+				values[d].setColor(WeightedNode.Color.GRAY);
+				values[d].setPathTakenEdges(parent);
+				values[d].addPathTakenEdge(parent.getId());
+			}
+			unsorted[c] = new Values(values);
+			keys[c] = new WeightedNodeKey();
+			keys[c].set(values[0]);
+
+			// The order of the secondary sort: the node record, then the candidates by descending distance
+			WeightedNodeWritable[] ordered = Arrays.copyOf(values, values.length);
+			Arrays.sort(ordered, 1, ordered.length, new java.util.Comparator<WeightedNodeWritable>() {
+				public int compare(WeightedNodeWritable a, WeightedNodeWritable b) {
+					return (a.getDistance() > b.getDistance()) ? -1 : ((a.getDistance() == b.getDistance()) ? 0 : 1);
+				}
+			});
+			sorted[c] = new Values(ordered);
+		}
+		final IntWritable[] ids = new IntWritable[calls];
+		for (int c = 0; c < calls; c++) {
+			ids[c] = new IntWritable(records[c].getId());
+		}
+		String suffix = " path=" + pathLength + " indegree=" + inDegree;
+
+		final WeightedGraphMaxSearchReducer reducer = new WeightedGraphMaxSearchReducer();
+		reducer.configure(job);
+		final CountingCollector<Writable, Writable> output = new CountingCollector<Writable, Writable>();
+		benchmarks.add(new Benchmark("reducer.reduce" + suffix, calls * (inDegree + 1)) {
+			long operation() throws IOException {
+				for (int c = 0; c < ids.length; c++) {
+					reducer.reduce(ids[c], unsorted[c].reset(), output, Reporter.NULL);
+				}
+				return output.count;
+			}
+		});
+
+		final WeightedGraphSortedReducer sortedReducer = new WeightedGraphSortedReducer();
+		sortedReducer.configure(job);
+		benchmarks.add(new Benchmark("reducer.sorted" + suffix, calls * (inDegree + 1)) {
+			long operation() throws IOException {
+				for (int c = 0; c < keys.length; c++) {
+					sortedReducer.reduce(keys[c], sorted[c].reset(), output, Reporter.NULL);
+				}
+				return output.count;
+			}
+		});
+	}
+
+
+	/*
+	 * The row kernel benchmarks: one operation solves rows of 'width' nodes, about a million nodes in all
+	 */
+	void addRowKernelBenchmarks(int width) {
+		width = Math.max(2, width);
+		final int rows = Math.max(1, 1000000 / width);
+		final int[] total = new int[width];
+		final int[] distance = new int[width];
+		final byte[] bits = new byte[(width + 7) / 8];
+		Random random = new Random(width);
+		for (int p = 0; p < width; p++) {
+			total[p] = random.nextInt(1000000);
+		}
+
+		List<WeightedGraphRowKernel> kernels = new ArrayList<WeightedGraphRowKernel>();
+		kernels.add(new WeightedGraphRowKernel());
+		WeightedGraphRowKernel vector = WeightedGraphRowKernel.loadVectorKernel();
+		if (vector != null) {
+			checkRowKernel(vector);
+			kernels.add(vector);
+		}
+
+		for (final WeightedGraphRowKernel kernel : kernels) {
+			String name = kernel.getName();
+			if (name.indexOf(' ') > 0) {
+				name = name.substring(0, name.indexOf(' '));
+			}
+			benchmarks.add(new Benchmark("kernel.row." + name + " width=" + width, rows * width) {
+				long operation() {
+					long sum = 0;
+					for (int r = 0; r < rows; r++) {
+						kernel.solveRow(total, distance, bits, total.length);
+						sum += distance[r % total.length] + bits[0];
+					}
+					return sum;
+				}
+			});
+		}
+	}
+
+	/*
+	 * Check that a row kernel writes the same distances and bits as the scalar kernel (on rows with many ties, and of
+	 * every width up to a few vectors, so that every alignment of the last vector is checked)
+	 */
+	private static void checkRowKernel(WeightedGraphRowKernel kernel) {
+		WeightedGraphRowKernel scalar = new WeightedGraphRowKernel();
+		Random random = new Random(42);
+		for (int width = 2; width <= 200; width++) {
+			int[] total = new int[width];
+			for (int p = 0; p < width; p++) {
+				total[p] = random.nextInt(4);
+			}
+			int[] expectedDistance = new int[width];
+			byte[] expectedBits = new byte[(width + 7) / 8];
+			int[] distance = new int[width];
+			byte[] bits = new byte[expectedBits.length];
+			Arrays.fill(bits, (byte) -1);
+			scalar.solveRow(total, expectedDistance, expectedBits, width);
+			kernel.solveRow(total, distance, bits, width);
+			if (!Arrays.equals(distance, expectedDistance) || !Arrays.equals(bits, expectedBits)) {
+				throw new IllegalStateException("The " + kernel.getName() + " row kernel differs from the scalar kernel for width " + width);
+			}
+		}
+	}
+
+
+	/*
+	 * The bytes allocated by this thread so far, or -1 if the JVM does not tell
+	 */
+	private static long allocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+			if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+				return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+
+	private static long[] gcTotals() {
+		long[] totals = new long[2];
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			totals[0] += Math.max(0, gc.getCollectionCount());
+			totals[1] += Math.max(0, gc.getCollectionTime());
+		}
+		return totals;
+	}
+
+	// (so that the results of the operations are used)
+	private static long sink;
+
+	/*
+	 * Run the operation of the benchmark for about iterationMillis, returns {records, nanoseconds, allocated bytes}
+	 */
+	private long[] iteration(Benchmark b) throws IOException {
+		long allocated = allocatedBytes();
+		long start = System.nanoTime();
+		long deadline = start + iterationMillis * 1000000L;
+		long records = 0;
+		long now;
+		do {
+			sink += b.operation();
+			records += b.recordCount;
+			now = System.nanoTime();
+		} while (now < deadline);
+		long allocatedAfter = allocatedBytes();
+		return new long[] { records, now - start, ((allocated < 0) || (allocatedAfter < 0)) ? -1 : allocatedAfter - allocated };
+	}
+
+	/**
+	 * Run all of the benchmarks whose name contains the filter, returns the ns/record of each
+	 */
+	Properties run(String filter) throws IOException {
+
+		Properties results = new Properties();
+		System.out.println(String.format("%-60s %14s %12s %10s %12s %8s %8s",
+				"Benchmark", "records/s", "ns/record", "+-", "B/record", "gc.count", "gc.ms"));
+		for (Benchmark b : benchmarks) {
+			if ((filter != null) && !b.name.contains(filter)) {
+				continue;
+			}
+			for (int i = 0; i < warmupIterations; i++) {
+				iteration(b);
+			}
+			long[] gcBefore = gcTotals();
+			double[] nsPerRecord = new double[measuredIterations];
+			long records = 0;
+			long nanos = 0;
+			long allocated = 0;
+			for (int i = 0; i < measuredIterations; i++) {
+				long[] r = iteration(b);
+				nsPerRecord[i] = (double) r[1] / r[0];
+				records += r[0];
+				nanos += r[1];
+				allocated = ((allocated < 0) || (r[2] < 0)) ? -1 : allocated + r[2];
+			}
+			long[] gcAfter = gcTotals();
+
+			double mean = (double) nanos / records;
+			double variance = 0;
+			for (double v : nsPerRecord) {
+				variance += (v - mean) * (v - mean);
+			}
+			double deviation = Math.sqrt(variance / Math.max(1, measuredIterations - 1));
+			System.out.println(String.format("%-60s %14.0f %12.1f %10.1f %12s %8d %8d",
+					b.name, records * 1e9 / nanos, mean, deviation,
+					(allocated < 0) ? "n/a" : String.format("%.1f", (double) allocated / records),
+					gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1]));
+			results.setProperty(b.name.replace(' ', '_'), String.format("%.3f", mean));
+		}
+		return results;
+	}
+
+	/**
+	 * Compare the results with a baseline: returns the number of benchmarks that are slower by more than tolerance percent
+	 */
+	static int compare(Properties results, Properties baseline, double tolerance) {
+		int regressions = 0;
+		for (String name : new TreeSet<String>(results.stringPropertyNames())) {
+			String before = baseline.getProperty(name);
+			if (before == null) {
+				continue;
+			}
+			double was = Double.parseDouble(before);
+			double now = Double.parseDouble(results.getProperty(name));
+			double change = (was > 0) ? (now - was) * 100 / was : 0;
+			boolean regression = change > tolerance;
+			if (regression) {
+				regressions++;
+			}
+			System.out.println(String.format("%-60s %12.1f -> %12.1f ns/record %+7.1f%% %s",
+					name.replace('_', ' '), was, now, change, regression ? "REGRESSION" : ""));
+		}
+		return regressions;
+	}
+
+
+	public static void main(String[] args) throws Exception {
+
+		List<String> data = new ArrayList<String>();
+		int[] paths = { 0, 16, 64 };
+		int[] inDegrees = { 2, 16, 128 };
+		int[] widths = { 1000, 100000 };
+		String filter = null;
+		String saveFile = null;
+		String baselineFile = null;
+		double tolerance = 10;
+		WeightedGraphBenchmark harness = new WeightedGraphBenchmark();
+
+		for (int i = 0; i < args.length; ++i) {
+			if ("-data".equals(args[i])) {
+				data.add(args[++i]);
+			} else if ("-paths".equals(args[i])) {
+				paths = parseList(args[++i]);
+			} else if ("-indegrees".equals(args[i])) {
+				inDegrees = parseList(args[++i]);
+			} else if ("-widths".equals(args[i])) {
+				widths = parseList(args[++i]);
+			} else if ("-filter".equals(args[i])) {
+				filter = args[++i];
+			} else if ("-warmup".equals(args[i])) {
+				harness.warmupIterations = Integer.parseInt(args[++i]);
+			} else if ("-iterations".equals(args[i])) {
+				harness.measuredIterations = Math.max(1, Integer.parseInt(args[++i]));
+			} else if ("-time".equals(args[i])) {
+				harness.iterationMillis = Long.parseLong(args[++i]);
+			} else if ("-save".equals(args[i])) {
+				saveFile = args[++i];
+			} else if ("-baseline".equals(args[i])) {
+				baselineFile = args[++i];
+			} else if ("-tolerance".equals(args[i])) {
+				tolerance = Double.parseDouble(args[++i]);
+			} else {
+				System.out.println("Usage: WeightedGraphBenchmark [-data <Input graph file>]... [-paths 0,16,64] [-indegrees 2,16,128] [-widths 1000,100000]");
+				System.out.println("         [-filter <Name part>] [-warmup 3] [-iterations 5] [-time <Milliseconds per iteration>]");
+				System.out.println("         [-save <File>] [-baseline <File> [-tolerance <Percent>]]");
+				return;
+			}
+		}
+		if (data.isEmpty()) {
+			data.addAll(Arrays.asList(DEFAULT_DATA));
+		}
+
+		// Writing the per-record log messages would be measured instead of the code...
+		Logger.getRootLogger().setLevel(Level.WARN);
+
+		for (String file : data) {
+			harness.load(file);
+		}
+		System.out.println(harness.graph.size() + " records from " + data);
+
+		JobConf job = new JobConf();
+		// The same records are mapped again and again, so every node would soon look like a high fan-in node
+		job.setInt(WeightedGraphMaxSearchMapper.SKEW_FAN_IN_THRESHOLD_PROPERTY, 0);
+		for (int pathLength : paths) {
+			harness.addCodecBenchmarks(pathLength);
+		}
+		for (int pathLength : paths) {
+			harness.addMapperBenchmark(pathLength, job);
+		}
+		for (int pathLength : paths) {
+			for (int inDegree : inDegrees) {
+				harness.addReducerBenchmarks(pathLength, inDegree, job);
+			}
+		}
+		for (int width : widths) {
+			harness.addRowKernelBenchmarks(width);
+		}
+
+		Properties results = harness.run(filter);
+		if (sink == 42) {
+			System.out.println();
+		}
+
+		if (saveFile != null) {
+			OutputStream out = new FileOutputStream(saveFile);
+			try {
+				results.store(out, "WeightedGraphBenchmark ns/record");
+			} finally {
+				out.close();
+			}
+		}
+		if (baselineFile != null) {
+			Properties baseline = new Properties();
+			InputStream in = new FileInputStream(baselineFile);
+			try {
+				baseline.load(in);
+			} finally {
+				in.close();
+			}
+			int regressions = compare(results, baseline, tolerance);
+			if (regressions > 0) {
+				System.out.println(regressions + " benchmarks are slower than the baseline by more than " + tolerance + "%");
+				System.exit(1);
+			}
+		}
+	}
+
+	private static int[] parseList(String list) {
+		String[] tokens = list.split(",");
+		int[] values = new int[tokens.length];
+		for (int i = 0; i < tokens.length; i++) {
+			values[i] = Integer.parseInt(tokens[i].trim());
+		}
+		return values;
+	}
+}
@@ -0,0 +1,61 @@
+import java.io.IOException;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.Mapper;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reporter;
+
+
+
+  /**
+   * The Mapper of the (map only) job that exports the SequenceFile output of an iteration as text.
+   *
+   * The nodes are emitted as text lines (WeightedNodeWritable.writeLine, with a NullWritable key) - with the triangle
+   * topology the nodes do not carry their edges, so the edges are computed again for the text output.
+   * Each mapper also writes its maximum distance node to a side file (WeightedGraphMaxResult).
+   *
+   * Key: Node ID
+   * Value: a binary WeightedNodeWritable node
+   */
+  @SuppressWarnings("deprecation")
+public class WeightedGraphExportMapper extends MapReduceBase implements
+                    Mapper<IntWritable, WeightedNodeWritable, NullWritable, Text> {
+
+    // The triangle topology, or null if the nodes carry their edges
+    private TriangleTopology topology = null;
+
+    // Output value object - reused for every line that we emit
+    private final Text line = new Text();
+
+    // The maximum distance node that this mapper wrote
+    private final WeightedGraphMaxResult result = new WeightedGraphMaxResult();
+    private JobConf job;
+
+    @Override
+    public void configure(JobConf job) {
+      this.job = job;
+      topology = TriangleTopology.get(job);
+    }
+
+    @Override
+    public void close() throws IOException {
+      result.write(job);
+    }
+
+    public void map(IntWritable key,
+                    WeightedNodeWritable node,
+                    OutputCollector<NullWritable, Text> output,
+                    Reporter reporter) throws IOException {
+
+      if (topology != null) {
+        topology.setEdges(node);
+      }
+      node.writeLine(line);
+      output.collect(NullWritable.get(), line);
+      result.offer(node);
+    }
+  }
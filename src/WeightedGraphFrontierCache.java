@@ -0,0 +1,319 @@
+/**
+ * The solved-frontier cache of the append-rows mode (-append, triangle topology only).
+ *
+ * A triangle that grows by appending rows at the bottom does not change above the new rows, so the distances and
+ * paths that reach its old bottom row do not change either.  After a run has solved a triangle, the GRAY nodes of its
+ * bottom row (the 'boundary row' B - with the maximum distance that reaches each of them, and its path), and the solved
+ * (BLACK) nodes of the rows above it, are stored in the cache directory (frontierCacheDir), keyed by the row and a
+ * content hash of the rows 1..B of the graph:
+ *
+ *   <frontierCacheDir>/frontier-<B>-<hash of the rows 1..B>/frontier   (a SequenceFile of the GRAY nodes of row B)
+ *   <frontierCacheDir>/frontier-<B>-<hash of the rows 1..B>/solved     (a SequenceFile of the nodes of the rows 1..B-1)
+ *
+ * Before the first iteration the input triangle is read once (open) for the hash of every prefix of rows (the hash of a
+ * row is the sum of a 64 bit mix of the ID, WEIGHT, DISTANCE, COLOR and path of its nodes, so the order of the lines
+ * does not matter - but a different start node, or a start node with another distance, is another prefix).  The frontier
+ * of the deepest entry whose hash matches the prefix of the same rows is the first input of the frontier iterations, so
+ * only the rows below it are processed (lookup).  An entry whose row is in the triangle but whose hash does not match is
+ * stale - the rows above it changed - and is deleted.  The entries are evicted least recently used (the modification
+ * time of an entry is set when it is used) when there are more than frontierCacheMaxEntries of them.
+ *
+ * The rows above the boundary row are not read by the iterations of a resumed run: the solved nodes of the entry are
+ * merged into its complete graph instead (see WeightedGraphMaxSearch), so the text output is the same as the one of a
+ * full run.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.util.LineReader;
+import org.apache.log4j.Logger;
+
+
+public class WeightedGraphFrontierCache {
+
+	// Log4j...
+	private static final Logger LOG = Logger.getLogger(WeightedGraphFrontierCache.class);
+
+	/*
+	 * Configuration properties (set in the IOFiles-*-Config.xml file) of the cache
+	 */
+	public static final String CACHE_DIR_PROPERTY = "frontierCacheDir";
+	public static final String MAX_ENTRIES_PROPERTY = "frontierCacheMaxEntries";
+	public static final int DEFAULT_MAX_ENTRIES = 8;
+
+	private static final String ENTRY_PREFIX = "frontier-";
+	private static final String FRONTIER_FILE = "frontier";
+	private static final String SOLVED_FILE = "solved";
+
+	private final Path cacheDir;
+	private final int maxEntries;
+	private final int rows;
+	// prefixHash[r] - the hash of the rows 1..r of the input triangle
+	private final long[] prefixHash;
+
+	private WeightedGraphFrontierCache(Path cacheDir, int maxEntries, int rows, long[] prefixHash) {
+		this.cacheDir = cacheDir;
+		this.maxEntries = maxEntries;
+		this.rows = rows;
+		this.prefixHash = prefixHash;
+	}
+
+
+	/**
+	 * Read the input triangle once for the hash of every prefix of rows, returns null if the cache is not configured
+	 */
+	public static WeightedGraphFrontierCache open(Configuration conf, Path input, TriangleTopology topology) throws IOException {
+
+		String dir = conf.get(CACHE_DIR_PROPERTY, "");
+		if (dir.length() == 0) {
+			LOG.warn("-append: no " + CACHE_DIR_PROPERTY + " is set, the frontier is not cached");
+			return null;
+		}
+
+		int rows = topology.getRows();
+		long[] rowHash = new long[rows + 1];
+		int[] rowCount = new int[rows + 1];
+
+		FileSystem fs = input.getFileSystem(conf);
+		FileStatus[] files = fs.getFileStatus(input).isDir() ? fs.listStatus(input) : new FileStatus[] { fs.getFileStatus(input) };
+		Text line = new Text();
+		WeightedNodeWritable node = new WeightedNodeWritable();
+		for (FileStatus status : files) {
+			String name = status.getPath().getName();
+			if (status.isDir() || name.startsWith("_") || name.startsWith(".")) {
+				continue;
+			}
+			LineReader reader = new LineReader(fs.open(status.getPath()), 1 << 16);
+			try {
+				while (reader.readLine(line) > 0) {
+					if (line.getLength() == 0) {
+						continue;
+					}
+					node.parse(line);
+					int r = TriangleTopology.rowOf(node.getId());
+					if (r > rows) {
+						continue;
+					}
+					rowHash[r] += hash(node);
+					rowCount[r]++;
+				}
+			} finally {
+				reader.close();
+			}
+		}
+
+		long[] prefixHash = new long[rows + 1];
+		for (int r = 1; r <= rows; r++) {
+			prefixHash[r] = mix(prefixHash[r - 1] * 31 + rowHash[r] + rowCount[r]);
+		}
+		return new WeightedGraphFrontierCache(new Path(dir), conf.getInt(MAX_ENTRIES_PROPERTY, DEFAULT_MAX_ENTRIES), rows, prefixHash);
+	}
+
+	/*
+	 * The hash of a node of the input: everything that the iterations start from, except the edges (the topology)
+	 */
+	private static long hash(WeightedNodeWritable node) {
+		long h = mix(((long) node.getId() << 32) ^ (node.getWeight() & 0xffffffffL));
+		h = mix(h + (((long) node.getDistance() << 8) ^ node.getColor().ordinal()));
+		for (int i = 0; i < node.getPathLength(); i++) {
+			h = mix(h + node.getPathTakenEdge(i));
+		}
+		return h;
+	}
+
+	/*
+	 * A 64 bit mix (the finalizer of SplitMix64)
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	private Path entryPath(int row) {
+		return new Path(cacheDir, ENTRY_PREFIX + row + "-" + String.format("%016x", prefixHash[row]));
+	}
+
+	/*
+	 * The boundary row of a cache entry, or 0 if the file is not an entry
+	 */
+	private static int rowOfEntry(String name) {
+		if (!name.startsWith(ENTRY_PREFIX)) {
+			return 0;
+		}
+		int end = name.indexOf('-', ENTRY_PREFIX.length());
+		if (end < 0) {
+			return 0;
+		}
+		try {
+			return Integer.parseInt(name.substring(ENTRY_PREFIX.length(), end));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+
+	/**
+	 * The deepest cache entry that matches a prefix of the input triangle (or null): the stale entries - a row of the
+	 * triangle, but another hash - are deleted on the way
+	 */
+	public Path lookup(Configuration conf) throws IOException {
+
+		FileSystem fs = cacheDir.getFileSystem(conf);
+		if (!fs.exists(cacheDir)) {
+			return null;
+		}
+		Path best = null;
+		int bestRow = 0;
+		for (FileStatus status : fs.listStatus(cacheDir)) {
+			int row = rowOfEntry(status.getPath().getName());
+			if ((row < 1) || (row > rows)) {
+				continue;
+			}
+			if (!status.getPath().getName().equals(entryPath(row).getName()) ||
+					!fs.exists(new Path(status.getPath(), SOLVED_FILE))) {
+				LOG.info("Deleting the stale frontier cache entry " + status.getPath());
+				fs.delete(status.getPath(), true);
+				continue;
+			}
+			if (row > bestRow) {
+				best = status.getPath();
+				bestRow = row;
+			}
+		}
+		if (best != null) {
+			// Used now - the least recently used entries are evicted first (the local file system of Hadoop 0.20 does not
+			// set the times, so there they are evicted oldest written first)
+			fs.setTimes(best, System.currentTimeMillis(), -1);
+			LOG.info("Resuming from the frontier cache entry " + best + " (row " + bestRow + ")");
+		}
+		return best;
+	}
+
+	/**
+	 * The boundary row of a cache entry (0 if it is not an entry)
+	 */
+	public static int rowOf(Path entry) {
+		return (entry == null) ? 0 : rowOfEntry(entry.getName());
+	}
+
+	/**
+	 * The GRAY nodes of the boundary row of a cache entry - the first input of a resumed run
+	 */
+	public static Path frontierOf(Path entry) {
+		return new Path(entry, FRONTIER_FILE);
+	}
+
+	/**
+	 * The solved nodes of the rows above the boundary row of a cache entry - merged into the output of a resumed run
+	 */
+	public static Path solvedOf(Path entry) {
+		return new Path(entry, SOLVED_FILE);
+	}
+
+
+	/**
+	 * Store the GRAY nodes of the boundary row and the BLACK nodes of the rows above it, from the (SequenceFile) outputs
+	 * of the frontier iterations - and, if the run was resumed, the solved nodes of the entry it was resumed from - and
+	 * evict the least recently used entries
+	 */
+	@SuppressWarnings("deprecation")
+	public void store(Configuration conf, Path[] iterationOutputs, Path resumedFrom, int row) throws IOException {
+
+		FileSystem fs = cacheDir.getFileSystem(conf);
+		Path entry = entryPath(row);
+		Path tmp = new Path(cacheDir, "_" + entry.getName());
+		IntWritable key = new IntWritable();
+		WeightedNodeWritable node = new WeightedNodeWritable();
+		long frontierCount = 0;
+		long solvedCount = 0;
+
+		fs.delete(tmp, true);
+		SequenceFile.Writer frontier = SequenceFile.createWriter(fs, conf, frontierOf(tmp), IntWritable.class, WeightedNodeWritable.class);
+		SequenceFile.Writer solved = SequenceFile.createWriter(fs, conf, solvedOf(tmp), IntWritable.class, WeightedNodeWritable.class);
+		try {
+			List<Path> files = new ArrayList<Path>();
+			if (resumedFrom != null) {
+				files.add(solvedOf(resumedFrom));
+			}
+			for (Path output : iterationOutputs) {
+				for (FileStatus status : fs.listStatus(output)) {
+					if (status.getPath().getName().startsWith("part-")) {
+						files.add(status.getPath());
+					}
+				}
+				// (and the interior nodes that the -k bands did not shuffle)
+				files.addAll(Arrays.asList(WeightedGraphMaxSearchBandMapper.interiorFiles(conf, output)));
+			}
+			for (Path file : files) {
+				SequenceFile.Reader reader = new SequenceFile.Reader(fs, file, conf);
+				try {
+					while (reader.next(key, node)) {
+						int r = TriangleTopology.rowOf(node.getId());
+						if ((node.getColor() == WeightedNode.Color.GRAY) && (r == row)) {
+							frontier.append(key, node);
+							frontierCount++;
+						} else if ((node.getColor() == WeightedNode.Color.BLACK) && (r < row)) {
+							solved.append(key, node);
+							solvedCount++;
+						}
+					}
+				} finally {
+					reader.close();
+				}
+			}
+		} finally {
+			frontier.close();
+			solved.close();
+		}
+		fs.delete(entry, true);
+		fs.rename(tmp, entry);
+		LOG.info(frontierCount + " nodes of row " + row + " and " + solvedCount + " solved nodes above it written to the " +
+				"frontier cache entry " + entry);
+
+		evict(fs, resumedFrom);
+	}
+
+	/*
+	 * Delete the least recently used entries, until there are at most maxEntries - but not the entry that this run was
+	 * resumed from (or null), its solved nodes are still to be merged
+	 */
+	private void evict(FileSystem fs, Path resumedFrom) throws IOException {
+
+		FileStatus[] entries = fs.listStatus(cacheDir);
+		int count = 0;
+		for (FileStatus status : entries) {
+			String name = status.getPath().getName();
+			if ((rowOfEntry(name) > 0) && ((resumedFrom == null) || !name.equals(resumedFrom.getName()))) {
+				entries[count++] = status;
+			}
+		}
+		// (with a single entry, the resumed entry and the new one are both kept until the next run)
+		int keep = (resumedFrom == null) ? maxEntries : Math.max(1, maxEntries - 1);
+		if (count <= keep) {
+			return;
+		}
+		entries = Arrays.copyOf(entries, count);
+		Arrays.sort(entries, new Comparator<FileStatus>() {
+			public int compare(FileStatus a, FileStatus b) {
+				return (a.getModificationTime() < b.getModificationTime()) ? -1 :
+					((a.getModificationTime() == b.getModificationTime()) ? 0 : 1);
+			}
+		});
+		for (int i = 0; i < count - keep; i++) {
+			LOG.info("Evicting the frontier cache entry " + entries[i].getPath());
+			fs.delete(entries[i].getPath(), true);
+		}
+	}
+}
@@ -0,0 +1,257 @@
+/**
+ * Generates synthetic input graphs, in the format of the bundled data sets (ID<tab>WEIGHT|EDGES|DISTANCE|COLOR|):
+ *
+ *   -type triangle   a triangle of -rows rows, like the data sets: node p of row r has the edges to the nodes p and p+1
+ *                    of row r+1, and the nodes of the last row have the edge to the sink
+ *   -type layered    a layered DAG: the source (node 1), then -depth layers of -width nodes each, every node with
+ *                    -fanin distinct parents picked at random in the layer above it (all of the layer, if it is smaller
+ *                    - so the first layer only has the source as parent), and the nodes of the last layer have the
+ *                    edge to the sink
+ *
+ * The IDs increase row by row (layer by layer) from 1, the source, and the sink is the last ID, with weight 0 - the node
+ * where the maximum distance ends up, as in the data sets.  The source is GRAY, all the other nodes are WHITE, every
+ * distance is 0.  The weights of the other nodes are drawn from -weights:
+ *
+ *   uniform:MIN:MAX       uniform integers from MIN to MAX (the default is uniform:1:9999)
+ *   normal:MEAN:SD        normal, rounded, and negative values cut to 0
+ *   exponential:MEAN      exponential, rounded
+ *
+ * The graph only depends on the options and on -seed (java.util.Random), so the same command writes the same graph.
+ * The output path can be on any Hadoop file system (the default is the local one).
+ *
+ * To run:  WeightedGraphGenerator -type triangle -rows <Rows> | -type layered -depth <Layers> -width <Nodes> [-fanin 2]
+ *                                 [-weights uniform:1:9999] [-seed 1] -o <Output graph file>
+ */
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+
+public class WeightedGraphGenerator {
+
+	public static final String TYPE_TRIANGLE = "triangle";
+	public static final String TYPE_LAYERED = "layered";
+
+	public static final String DEFAULT_WEIGHTS = "uniform:1:9999";
+
+	private final Random random;
+
+	// The weight distribution
+	private final String distribution;
+	private final double parameter1;
+	private final double parameter2;
+
+	public WeightedGraphGenerator(String weights, long seed) {
+		String[] tokens = weights.split(":");
+		this.distribution = tokens[0];
+		if ("uniform".equals(distribution) && (tokens.length == 3)) {
+			this.parameter1 = Integer.parseInt(tokens[1]);
+			this.parameter2 = Integer.parseInt(tokens[2]);
+			if ((parameter1 < 0) || (parameter2 < parameter1)) {
+				throw new IllegalArgumentException("Invalid uniform weights " + weights + " (0 <= MIN <= MAX)");
+			}
+		} else if ("normal".equals(distribution) && (tokens.length == 3)) {
+			this.parameter1 = Double.parseDouble(tokens[1]);
+			this.parameter2 = Double.parseDouble(tokens[2]);
+		} else if ("exponential".equals(distribution) && (tokens.length == 2)) {
+			this.parameter1 = Double.parseDouble(tokens[1]);
+			this.parameter2 = 0;
+		} else {
+			throw new IllegalArgumentException("Invalid weights " + weights +
+					" (uniform:MIN:MAX, normal:MEAN:SD or exponential:MEAN)");
+		}
+		this.random = new Random(seed);
+	}
+
+	/*
+	 * The next weight (never negative, and small enough that a path of a few thousand nodes does not overflow an int)
+	 */
+	private int nextWeight() {
+		double weight;
+		if ("uniform".equals(distribution)) {
+			weight = parameter1 + random.nextInt((int) (parameter2 - parameter1) + 1);
+		} else if ("normal".equals(distribution)) {
+			weight = Math.round(parameter1 + parameter2 * random.nextGaussian());
+		} else {
+			weight = Math.round(-parameter1 * Math.log(1.0 - random.nextDouble()));
+		}
+		return (int) Math.max(0, Math.min(weight, 1000000));
+	}
+
+	/**
+	 * Writes a triangle of the given number of rows (and the sink) - returns the number of nodes
+	 */
+	public int writeTriangle(Writer out, int rows) throws IOException {
+		int sink = rows * (rows + 1) / 2 + 1;
+		StringBuilder line = new StringBuilder();
+		int id = 1;
+		for (int row = 1; row <= rows; row++) {
+			for (int p = 0; p < row; p++, id++) {
+				line.setLength(0);
+				if (row < rows) {
+					// (node p of the next row has the ID id + row)
+					line.append(id + row).append(',').append(id + row + 1).append(',');
+				} else {
+					line.append(sink).append(',');
+				}
+				writeNode(out, id, nextWeight(), line);
+			}
+		}
+		line.setLength(0);
+		writeNode(out, sink, 0, line);
+		return sink;
+	}
+
+	/**
+	 * Writes a layered DAG of the given depth, width and fan-in (and the source and the sink) - returns the number of nodes
+	 *
+	 * The parents of a layer are picked before the layer above it is written, so only two layers are in memory.
+	 */
+	public int writeLayered(Writer out, int depth, int width, int fanIn) throws IOException {
+		int sink = 2 + depth * width;
+		StringBuilder line = new StringBuilder();
+
+		// The children of the nodes of the current layer (the source first)
+		List<List<Integer>> children = pickParents(1, 2, width, fanIn);
+		int first = 1;
+		int size = 1;
+		for (int layer = 0; layer <= depth; layer++) {
+			int nextFirst = (layer == 0) ? 2 : first + size;
+			List<List<Integer>> nextChildren = (layer < depth - 1) ? pickParents(width, nextFirst + width, width, fanIn) : null;
+			for (int k = 0; k < size; k++) {
+				line.setLength(0);
+				if (layer < depth) {
+					for (Integer child : children.get(k)) {
+						line.append(child.intValue()).append(',');
+					}
+				} else {
+					line.append(sink).append(',');
+				}
+				writeNode(out, first + k, nextWeight(), line);
+			}
+			children = nextChildren;
+			first = nextFirst;
+			size = width;
+		}
+		line.setLength(0);
+		writeNode(out, sink, 0, line);
+		return sink;
+	}
+
+	/*
+	 * Picks the parents of the layer of childCount nodes starting at childFirst, among the parentCount nodes of the layer
+	 * above it, and returns the children of every parent (by index in the parent layer) - in ascending ID order
+	 */
+	private List<List<Integer>> pickParents(int parentCount, int childFirst, int childCount, int fanIn) {
+		List<List<Integer>> children = new ArrayList<List<Integer>>(parentCount);
+		int[] picked = new int[parentCount];
+		for (int k = 0; k < parentCount; k++) {
+			children.add(new ArrayList<Integer>(fanIn + 1));
+			picked[k] = k;
+		}
+		int parents = Math.min(fanIn, parentCount);
+		int[] swapped = new int[parents];
+		for (int c = 0; c < childCount; c++) {
+			// A partial Fisher-Yates shuffle of the parent layer picks the distinct parents...
+			for (int k = 0; k < parents; k++) {
+				int j = k + random.nextInt(parentCount - k);
+				int parent = picked[j];
+				picked[j] = picked[k];
+				picked[k] = parent;
+				swapped[k] = j;
+				children.get(parent).add(Integer.valueOf(childFirst + c));
+			}
+			// ...and is undone, so that a child costs fan-in steps, not the width of the layer
+			for (int k = parents - 1; k >= 0; k--) {
+				int j = swapped[k];
+				int parent = picked[j];
+				picked[j] = picked[k];
+				picked[k] = parent;
+			}
+		}
+		return children;
+	}
+
+	private static void writeNode(Writer out, int id, int weight, CharSequence edges) throws IOException {
+		out.write(Integer.toString(id));
+		out.write('\t');
+		out.write(Integer.toString(weight));
+		out.write('|');
+		out.append(edges);
+		out.write("|0|");
+		out.write((id == 1) ? "GRAY" : "WHITE");
+		out.write("|\n");
+	}
+
+	/**
+	 * Writes the graph to the path (on its file system) - returns the number of nodes
+	 */
+	public static int generate(Configuration conf, Path output, String type, int rows, int width, int fanIn,
+			String weights, long seed) throws IOException {
+
+		WeightedGraphGenerator generator = new WeightedGraphGenerator(weights, seed);
+		FileSystem fs = output.getFileSystem(conf);
+		Writer out = new BufferedWriter(new OutputStreamWriter(fs.create(output, true), "UTF-8"), 1 << 16);
+		try {
+			if (TYPE_TRIANGLE.equals(type)) {
+				return generator.writeTriangle(out, rows);
+			} else {
+				return generator.writeLayered(out, rows, width, fanIn);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		String type = TYPE_TRIANGLE;
+		int rows = 0;
+		int width = 0;
+		int fanIn = 2;
+		String weights = DEFAULT_WEIGHTS;
+		long seed = 1;
+		String output = null;
+
+		for (int i = 0; i < args.length; ++i) {
+			if ("-type".equals(args[i])) {
+				type = args[++i];
+			} else if ("-rows".equals(args[i]) || "-depth".equals(args[i])) {
+				rows = Integer.parseInt(args[++i]);
+			} else if ("-width".equals(args[i])) {
+				width = Integer.parseInt(args[++i]);
+			} else if ("-fanin".equals(args[i])) {
+				fanIn = Integer.parseInt(args[++i]);
+			} else if ("-weights".equals(args[i])) {
+				weights = args[++i];
+			} else if ("-seed".equals(args[i])) {
+				seed = Long.parseLong(args[++i]);
+			} else if ("-o".equals(args[i])) {
+				output = args[++i];
+			} else {
+				output = null;
+				break;
+			}
+		}
+		boolean valid = (output != null) && (rows > 0) &&
+				(TYPE_TRIANGLE.equals(type) || (TYPE_LAYERED.equals(type) && (width > 0) && (fanIn > 0)));
+		if (!valid) {
+			System.out.println("Usage: WeightedGraphGenerator -type triangle -rows <Rows> | -type layered -depth <Layers> -width <Nodes> [-fanin 2]");
+			System.out.println("         [-weights uniform:MIN:MAX | normal:MEAN:SD | exponential:MEAN] [-seed 1] -o <Output graph file>");
+			return;
+		}
+
+		long start = System.currentTimeMillis();
+		int nodes = generate(new Configuration(), new Path(output), type, rows, width, fanIn, weights, seed);
+		System.out.println(nodes + " nodes written to " + output + " in " + (System.currentTimeMillis() - start) + " ms");
+	}
+}
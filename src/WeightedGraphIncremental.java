@@ -0,0 +1,319 @@
+/**
+ * The incremental re-solve (-incremental <previous output> -delta <delta file>): after the weights of some nodes have
+ * changed, only the nodes whose distance or path can change - the 'cone' below the changed nodes - are solved again,
+ * instead of the whole graph.
+ *
+ * The delta file has one line per changed node: ID <tab or space> NEW_WEIGHT.  The previous output must be the complete
+ * text output of an earlier run (every reachable node BLACK), solved with the same -topology and -path options.
+ *
+ * 1. The state job (StateMapper) writes the previous output, with the new weights, as MapFiles (keyed by node ID), and
+ *    for an explicit graph the parents job (ParentsMapper / ParentsReducer) writes the parents of every node as MapFiles.
+ *    Then the reached nodes of the delta are the 'seeds': the first frontier (GRAY).
+ * 2. The incremental iterations (WeightedGraphIncrementalMapper / WeightedGraphIncrementalReducer) go down the graph one
+ *    level (row) per iteration, starting at the highest seed.  The frontier nodes of the current level push their
+ *    distance + weight to their children, and every child is solved again from all of its parents: the frontier parents
+ *    give their new values, the other parents have not changed, so their values are looked up in the state.  Only a
+ *    child whose distance or path (predecessor, with -path pred) changed joins the frontier - so the cone stops where
+ *    the change no longer makes a difference.  The graph must be levelled (every path to a node has the same number of
+ *    nodes, as in the triangle): the level is the row with -topology triangle, and the length of the path otherwise.
+ * 3. The merge job (MergeMapper / MergeReducer) writes the complete graph in the text output format: the nodes that were
+ *    solved again (BLACK, in the output of the iterations) replace their previous state.
+ *
+ * Unaffected nodes are only read and written by the state and merge jobs, the iterations only touch the cone.
+ */
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.BufferedReader;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.MapFile;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapFileOutputFormat;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.Mapper;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reducer;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.lib.HashPartitioner;
+
+
+@SuppressWarnings("deprecation")
+public class WeightedGraphIncremental {
+
+	/*
+	 * Job configuration properties for the incremental re-solve
+	 */
+	public static final String DELTA_PATH_PROPERTY = "incrementalDeltaPath";
+	public static final String STATE_PATH_PROPERTY = "incrementalStatePath";
+	public static final String PARENTS_PATH_PROPERTY = "incrementalParentsPath";
+	public static final String LEVEL_PROPERTY = "incrementalLevel";
+
+
+	/**
+	 * Read the delta file: node ID -> new weight
+	 */
+	public static Map<Integer, Integer> readDelta(Configuration conf, Path deltaFile) throws IOException {
+
+		Map<Integer, Integer> delta = new HashMap<Integer, Integer>();
+		FileSystem fs = deltaFile.getFileSystem(conf);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(fs.open(deltaFile), "UTF-8"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.length() == 0) {
+					continue;
+				}
+				String[] tokens = line.split("\\s+");
+				if (tokens.length != 2) {
+					throw new IllegalArgumentException("Malformed delta line (ID <tab> WEIGHT): " + line);
+				}
+				delta.put(Integer.parseInt(tokens[0]), Integer.parseInt(tokens[1]));
+			}
+		} finally {
+			reader.close();
+		}
+		return delta;
+	}
+
+	/**
+	 * The level of a node: its row with the triangle topology, otherwise the number of nodes on its (full) path
+	 */
+	public static int levelOf(WeightedNodeWritable node, TriangleTopology topology) {
+		if (topology != null) {
+			return TriangleTopology.rowOf(node.getId());
+		}
+		return node.getPathLength() + 1;
+	}
+
+	/**
+	 * Open the MapFiles of the given job configuration property
+	 */
+	static MapFile.Reader[] openReaders(JobConf job, String property) {
+		try {
+			Path path = new Path(job.get(property));
+			FileSystem fs = path.getFileSystem(job);
+			return MapFileOutputFormat.getReaders(fs, path, job);
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to open " + job.get(property), e);
+		}
+	}
+
+	static void closeReaders(MapFile.Reader[] readers) throws IOException {
+		if (readers != null) {
+			for (MapFile.Reader reader : readers) {
+				reader.close();
+			}
+		}
+	}
+
+
+	/**
+	 * The Mapper of the state job: the previous output (text), with the new weights of the delta
+	 */
+	public static class StateMapper extends MapReduceBase implements
+	    Mapper<LongWritable, Text, IntWritable, WeightedNodeWritable> {
+
+		private Map<Integer, Integer> delta;
+		private TriangleTopology topology;
+
+		private final IntWritable outputKey = new IntWritable();
+		private final WeightedNodeWritable node = new WeightedNodeWritable();
+
+		@Override
+		public void configure(JobConf job) {
+			topology = TriangleTopology.get(job);
+			try {
+				delta = readDelta(job, new Path(job.get(DELTA_PATH_PROPERTY)));
+			} catch (IOException e) {
+				throw new RuntimeException("Unable to read the delta file", e);
+			}
+		}
+
+		public void map(LongWritable key, Text value,
+		                OutputCollector<IntWritable, WeightedNodeWritable> output,
+		                Reporter reporter) throws IOException {
+
+			node.parse(value);
+			if (node.getColor() == WeightedNode.Color.GRAY) {
+				throw new IllegalArgumentException("The previous output is not complete (GRAY node " + node.getId() + ")");
+			}
+			Integer weight = delta.get(node.getId());
+			if (weight != null) {
+				node.setWeight(weight.intValue());
+			}
+			if (topology != null) {
+				node.clearEdges();
+			}
+			outputKey.set(node.getId());
+			output.collect(outputKey, node);
+		}
+	}
+
+
+	/**
+	 * The Mapper of the parents job (explicit graphs): each edge, reversed
+	 */
+	public static class ParentsMapper extends MapReduceBase implements
+	    Mapper<LongWritable, Text, IntWritable, WeightedNodeWritable> {
+
+		private final IntWritable outputKey = new IntWritable();
+		private final WeightedNodeWritable node = new WeightedNodeWritable();
+		private final WeightedNodeWritable parent = new WeightedNodeWritable();
+
+		public void map(LongWritable key, Text value,
+		                OutputCollector<IntWritable, WeightedNodeWritable> output,
+		                Reporter reporter) throws IOException {
+
+			node.parse(value);
+			for (int e = 0; e < node.getEdgeCount(); e++) {
+				parent.clear(node.getEdge(e));
+				parent.addEdge(node.getId());
+				outputKey.set(parent.getId());
+				output.collect(outputKey, parent);
+			}
+		}
+	}
+
+	/**
+	 * The reducer (and combiner) of the parents job: the parents of a node, as the edges of a node record
+	 */
+	public static class ParentsReducer extends MapReduceBase implements
+	    Reducer<IntWritable, WeightedNodeWritable, IntWritable, WeightedNodeWritable> {
+
+		private final WeightedNodeWritable parents = new WeightedNodeWritable();
+
+		public void reduce(IntWritable key, Iterator<WeightedNodeWritable> values,
+		                   OutputCollector<IntWritable, WeightedNodeWritable> output,
+		                   Reporter reporter) throws IOException {
+
+			parents.clear(key.get());
+			while (values.hasNext()) {
+				WeightedNodeWritable u = values.next();
+				for (int e = 0; e < u.getEdgeCount(); e++) {
+					parents.addEdge(u.getEdge(e));
+				}
+			}
+			output.collect(key, parents);
+		}
+	}
+
+
+	/**
+	 * The Mapper of the merge job: the state (MapFiles, read as SequenceFiles) and the output of the iterations.
+	 * The previous state of a node is shuffled GRAY, a node that was solved again is shuffled BLACK (the GRAY frontier
+	 * nodes in the output of the iterations are not final, they are dropped).
+	 */
+	public static class MergeMapper extends MapReduceBase implements
+	    Mapper<IntWritable, WeightedNodeWritable, IntWritable, WeightedNodeWritable> {
+
+		private String statePath;
+		// Is the split of this task a part of the state (null until the first record)
+		private Boolean stateInput = null;
+
+		@Override
+		public void configure(JobConf job) {
+			try {
+				Path path = new Path(job.get(STATE_PATH_PROPERTY));
+				statePath = path.getFileSystem(job).makeQualified(path).toUri().getPath() + "/";
+			} catch (IOException e) {
+				throw new RuntimeException("Unable to qualify " + job.get(STATE_PATH_PROPERTY), e);
+			}
+		}
+
+		public void map(IntWritable key, WeightedNodeWritable node,
+		                OutputCollector<IntWritable, WeightedNodeWritable> output,
+		                Reporter reporter) throws IOException {
+
+			if (stateInput == null) {
+				Path file = ((FileSplit) reporter.getInputSplit()).getPath();
+				stateInput = Boolean.valueOf(file.toUri().getPath().startsWith(statePath));
+			}
+			if (stateInput.booleanValue()) {
+				if (node.getColor() == WeightedNode.Color.BLACK) {
+					node.setColor(WeightedNode.Color.GRAY);
+				}
+				output.collect(key, node);
+			} else if (node.getColor() == WeightedNode.Color.BLACK) {
+				output.collect(key, node);
+			}
+		}
+	}
+
+	/**
+	 * The reducer of the merge job: the node that was solved again, or else the previous state - as text lines
+	 */
+	public static class MergeReducer extends MapReduceBase implements
+	    Reducer<IntWritable, WeightedNodeWritable, NullWritable, Writable> {
+
+		private TriangleTopology topology;
+		private final WeightedNodeWritable result = new WeightedNodeWritable();
+		private final Text line = new Text();
+
+		// The maximum distance node that this reducer wrote
+		private final WeightedGraphMaxResult best = new WeightedGraphMaxResult();
+		private JobConf job;
+
+		@Override
+		public void configure(JobConf job) {
+			this.job = job;
+			topology = TriangleTopology.get(job);
+		}
+
+		@Override
+		public void close() throws IOException {
+			best.write(job);
+		}
+
+		public void reduce(IntWritable key, Iterator<WeightedNodeWritable> values,
+		                   OutputCollector<NullWritable, Writable> output,
+		                   Reporter reporter) throws IOException {
+
+			boolean solved = false;
+			boolean found = false;
+			while (values.hasNext()) {
+				WeightedNodeWritable u = values.next();
+				if (u.getColor() == WeightedNode.Color.BLACK) {
+					result.set(u);
+					solved = true;
+				} else if (!solved) {
+					result.set(u);
+				}
+				found = true;
+			}
+			if (!found) {
+				return;
+			}
+			if (!solved && (result.getColor() == WeightedNode.Color.GRAY)) {
+				result.setColor(WeightedNode.Color.BLACK);
+			}
+			if (topology != null) {
+				topology.setEdges(result);
+			}
+			result.writeLine(line);
+			output.collect(NullWritable.get(), line);
+			best.offer(result);
+		}
+	}
+
+
+	/**
+	 * Look up a node in MapFiles written with the HashPartitioner, returns false if it is not there
+	 */
+	static boolean lookup(MapFile.Reader[] readers, HashPartitioner<IntWritable, WeightedNodeWritable> partitioner,
+	                      IntWritable key, WeightedNodeWritable node) throws IOException {
+		return MapFileOutputFormat.getEntry(readers, partitioner, key, node) != null;
+	}
+}
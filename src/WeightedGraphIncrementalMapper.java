@@ -0,0 +1,88 @@
+import java.io.IOException;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.Mapper;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reporter;
+
+
+/**
+ * The Mapper of the incremental iterations (-incremental, see WeightedGraphIncremental).
+ *
+ * The input is the frontier of the cone: GRAY nodes whose weight, distance or path changed, with their new values.
+ * The iterations go down the graph one level per iteration (the level of the iteration is in the job configuration):
+ * - a GRAY node of the current level is final - it is emitted BLACK (for the merge job), and a candidate is emitted
+ *   to each of its children: the distance + weight of the node, and the path (or predecessor) through it.  The
+ *   candidates are shuffled WHITE, to tell them apart from the nodes themselves, and always carry the parent as
+ *   their predecessor,
+ * - a GRAY node of a lower level (a changed node that the iterations have not reached yet) is passed on as is,
+ * - a BLACK node was final in an earlier iteration (it is in the output of that iteration) and is dropped.
+ *
+ * Key: Node ID
+ * Value: a binary WeightedNodeWritable node
+ */
+@SuppressWarnings("deprecation")
+public class WeightedGraphIncrementalMapper extends MapReduceBase implements
+    Mapper<IntWritable, WeightedNodeWritable, IntWritable, WeightedNodeWritable> {
+
+  private TriangleTopology topology;
+  private boolean trackPredecessorOnly;
+  private int level;
+
+  // Output key and value objects - reused for every record that we emit
+  private final IntWritable outputKey = new IntWritable();
+  private final WeightedNodeWritable vnode = new WeightedNodeWritable();
+
+  @Override
+  public void configure(JobConf job) {
+    topology = TriangleTopology.get(job);
+    trackPredecessorOnly = WeightedGraphPathBuilder.PATH_TRACKING_PREDECESSOR.equals(
+        job.get(WeightedGraphPathBuilder.PATH_TRACKING_PROPERTY, WeightedGraphPathBuilder.PATH_TRACKING_FULL));
+    level = job.getInt(WeightedGraphIncremental.LEVEL_PROPERTY, 0);
+  }
+
+  public void map(IntWritable key,
+                  WeightedNodeWritable node,
+                  OutputCollector<IntWritable, WeightedNodeWritable> output,
+                  Reporter reporter) throws IOException {
+
+    if (node.getColor() != WeightedNode.Color.GRAY) {
+      return;
+    }
+    if (WeightedGraphIncremental.levelOf(node, topology) != level) {
+      output.collect(key, node);
+      return;
+    }
+
+    // The children of the node, computed (triangle) or read from the EDGES column
+    int childCount;
+    int firstChild = 0;
+    if (topology != null) {
+      childCount = topology.childCount(node.getId());
+      if (childCount > 0) {
+        firstChild = topology.firstChild(node.getId());
+      }
+    } else {
+      childCount = node.getEdgeCount();
+    }
+
+    for (int e = 0; e < childCount; e++) {
+      int child = (topology != null) ? firstChild + e : node.getEdge(e);
+      vnode.clear(child);
+      vnode.setDistance(node.getDistance() + node.getWeight());
+      vnode.setPredecessor(node.getId());
+      if (!trackPredecessorOnly) {
+        vnode.setPathTakenEdges(node);
+        vnode.addPathTakenEdge(node.getId());
+      }
+      outputKey.set(child);
+      output.collect(outputKey, vnode);
+    }
+
+    node.setColor(WeightedNode.Color.BLACK);
+    output.collect(key, node);
+    reporter.incrCounter(MRStats.NUMBER_OF_GRAY_NODES_PROCESSED, 1);
+  }
+}
@@ -0,0 +1,206 @@
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.MapFile;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reducer;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.lib.HashPartitioner;
+
+
+/**
+ * The reducer of the incremental iterations (-incremental, see WeightedGraphIncremental).
+ *
+ * For each key (Node ID) the values are:
+ * - a BLACK node - final in this iteration - emitted as is,
+ * - a GRAY node - a changed node of a lower level, passed on - emitted as is, unless the node also has candidates,
+ * - WHITE candidates from the parents of the node that are in the frontier (see WeightedGraphIncrementalMapper).
+ *
+ * A node with candidates is solved again from all of its parents: the candidates give the new values of the frontier
+ * parents, and the values of the other parents (which did not change) are looked up in the state MapFiles.  The parents
+ * are computed with the triangle topology, and looked up in the parents MapFiles otherwise.  The maximum distance wins -
+ * on a tie, the parent with the lower ID, the same as the full solve.
+ *
+ * The node is emitted GRAY (it joins the frontier of the next level) only if its distance or its path (its predecessor,
+ * with -path pred) changed - or its own weight changed - otherwise its previous state is still right, and the cone
+ * stops there.
+ */
+@SuppressWarnings("deprecation")
+public class WeightedGraphIncrementalReducer extends MapReduceBase implements
+    Reducer<IntWritable, WeightedNodeWritable, IntWritable, WeightedNodeWritable> {
+
+  private TriangleTopology topology;
+  private boolean trackPredecessorOnly;
+
+  // The state and parents MapFiles (the parents are only written for an explicit graph), and the partitioner that wrote them
+  private MapFile.Reader[] state;
+  private MapFile.Reader[] parents = null;
+  private final HashPartitioner<IntWritable, WeightedNodeWritable> partitioner = new HashPartitioner<IntWritable, WeightedNodeWritable>();
+
+  // The best candidate of the current key, the previous state of the key, and scratch objects for the lookups
+  private final WeightedNodeWritable best = new WeightedNodeWritable();
+  private final WeightedNodeWritable previous = new WeightedNodeWritable();
+  private final WeightedNodeWritable carried = new WeightedNodeWritable();
+  private final WeightedNodeWritable parentList = new WeightedNodeWritable();
+  private final WeightedNodeWritable parent = new WeightedNodeWritable();
+  private final IntWritable lookupKey = new IntWritable();
+
+  // The parents that sent a candidate for the current key
+  private int[] candidateParents = new int[8];
+  private int candidateCount;
+
+  @Override
+  public void configure(JobConf job) {
+    topology = TriangleTopology.get(job);
+    trackPredecessorOnly = WeightedGraphPathBuilder.PATH_TRACKING_PREDECESSOR.equals(
+        job.get(WeightedGraphPathBuilder.PATH_TRACKING_PROPERTY, WeightedGraphPathBuilder.PATH_TRACKING_FULL));
+    state = WeightedGraphIncremental.openReaders(job, WeightedGraphIncremental.STATE_PATH_PROPERTY);
+    if (topology == null) {
+      parents = WeightedGraphIncremental.openReaders(job, WeightedGraphIncremental.PARENTS_PATH_PROPERTY);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    WeightedGraphIncremental.closeReaders(state);
+    WeightedGraphIncremental.closeReaders(parents);
+  }
+
+  public void reduce(IntWritable key,
+                     Iterator<WeightedNodeWritable> values,
+                     OutputCollector<IntWritable, WeightedNodeWritable> output,
+                     Reporter reporter) throws IOException {
+
+    boolean hasCarried = false;
+    boolean found = false;
+    candidateCount = 0;
+    while (values.hasNext()) {
+      WeightedNodeWritable u = values.next();
+      if (u.getColor() == WeightedNode.Color.BLACK) {
+        output.collect(key, u);
+        return;
+      }
+      if (u.getColor() == WeightedNode.Color.GRAY) {
+        carried.set(u);
+        hasCarried = true;
+        continue;
+      }
+      addCandidateParent(u.getPredecessor());
+      if (!found || isBetter(u.getDistance(), u.getPredecessor())) {
+        best.set(u);
+        found = true;
+      }
+    }
+
+    if (!found) {
+      if (hasCarried) {
+        output.collect(key, carried);
+        reporter.incrCounter(MRStats.NUMBER_OF_GRAY_NODES_TOBE_PROCESSED, 1);
+      }
+      return;
+    }
+
+    // The parents that did not change: their previous state is still right
+    int firstParent = 0;
+    int parentCount;
+    if (topology != null) {
+      parentCount = topology.parentCount(key.get());
+      if (parentCount > 0) {
+        firstParent = topology.firstParent(key.get());
+      }
+    } else if (WeightedGraphIncremental.lookup(parents, partitioner, key, parentList)) {
+      parentCount = parentList.getEdgeCount();
+    } else {
+      parentCount = 0;
+    }
+    for (int i = 0; i < parentCount; i++) {
+      int p = (topology != null) ? firstParent + i : parentList.getEdge(i);
+      if (isCandidateParent(p)) {
+        continue;
+      }
+      lookupKey.set(p);
+      if (!WeightedGraphIncremental.lookup(state, partitioner, lookupKey, parent) ||
+          (parent.getColor() == WeightedNode.Color.WHITE)) {
+        continue;
+      }
+      int distance = parent.getDistance() + parent.getWeight();
+      if (isBetter(distance, p)) {
+        best.clear(key.get());
+        best.setDistance(distance);
+        best.setPredecessor(p);
+        if (!trackPredecessorOnly) {
+          best.setPathTakenEdges(parent);
+          best.addPathTakenEdge(p);
+        }
+      }
+    }
+
+    // The node with its new distance and path (its weight and edges come from the state)
+    boolean changed = hasCarried;
+    if (WeightedGraphIncremental.lookup(state, partitioner, key, previous)) {
+      changed |= (previous.getDistance() != best.getDistance()) || (previous.getColor() == WeightedNode.Color.WHITE);
+      if (trackPredecessorOnly) {
+        changed |= (previous.getPredecessor() != best.getPredecessor());
+      } else {
+        changed |= !samePath(previous, best);
+      }
+    } else {
+      previous.clear(key.get());
+      changed = true;
+    }
+    if (!changed) {
+      return;
+    }
+
+    previous.setDistance(best.getDistance());
+    previous.setColor(WeightedNode.Color.GRAY);
+    if (trackPredecessorOnly) {
+      previous.setPredecessor(best.getPredecessor());
+    } else {
+      previous.setPathTakenEdges(best);
+    }
+    output.collect(key, previous);
+    reporter.incrCounter(MRStats.NUMBER_OF_GRAY_NODES_TOBE_PROCESSED, 1);
+  }
+
+  /*
+   * Is (distance, parent) better than the best candidate so far: the maximum distance - on a tie, the lower parent ID
+   */
+  private boolean isBetter(int distance, int predecessor) {
+    return (distance > best.getDistance()) ||
+        ((distance == best.getDistance()) && (predecessor < best.getPredecessor()));
+  }
+
+  private void addCandidateParent(int p) {
+    if (candidateCount == candidateParents.length) {
+      int[] grown = new int[candidateCount * 2];
+      System.arraycopy(candidateParents, 0, grown, 0, candidateCount);
+      candidateParents = grown;
+    }
+    candidateParents[candidateCount++] = p;
+  }
+
+  private boolean isCandidateParent(int p) {
+    for (int i = 0; i < candidateCount; i++) {
+      if (candidateParents[i] == p) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean samePath(WeightedNodeWritable a, WeightedNodeWritable b) {
+    if (a.getPathLength() != b.getPathLength()) {
+      return false;
+    }
+    for (int i = 0; i < a.getPathLength(); i++) {
+      if (a.getPathTakenEdge(i) != b.getPathTakenEdge(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,149 @@
+/**
+ * Runs the MR jobs of the driver, and - when the jobStatsFile property is set (IOFiles-*-Config.xml) - appends a CSV row
+ * per job to that (local) file:
+ *
+ *   label, job, output, wall_ms, map_input_records, map_output_records, map_output_bytes, shuffle_bytes,
+ *   reduce_input_records, reduce_output_records, fs_bytes_read, fs_bytes_written, gray_tobe, gray_processed, peak_heap_mb
+ *
+ * label is the jobStatsLabel property (the scale of a WeightedGraphScalingBenchmark run), output is the name of the
+ * output directory of the job (output-graph-<N> for iteration N), the byte and record columns are the counters of the
+ * job (fs_bytes_* are the sum over all of the file systems, map_output_bytes is before the map output compression;
+ * the local runner does not shuffle, so its shuffle_bytes are 0),
+ * and peak_heap_mb is the peak heap use of this JVM while the job ran - the whole job with the local runner, only the
+ * driver with a cluster (the jobs of the bidirectional engine run at the same time, so they share their peaks).
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.mapred.Counters;
+import org.apache.hadoop.mapred.JobClient;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.RunningJob;
+
+
+@SuppressWarnings("deprecation")
+public class WeightedGraphJobStats {
+
+	/*
+	 * Configuration properties (set in the IOFiles-*-Config.xml file, or by WeightedGraphScalingBenchmark)
+	 */
+	public static final String STATS_FILE_PROPERTY = "jobStatsFile";
+	public static final String LABEL_PROPERTY = "jobStatsLabel";
+
+	public static final String HEADER = "label,job,output,wall_ms,map_input_records,map_output_records,map_output_bytes,shuffle_bytes," +
+			"reduce_input_records,reduce_output_records,fs_bytes_read,fs_bytes_written,gray_tobe,gray_processed,peak_heap_mb";
+
+	private static final String FILE_SYSTEM_COUNTERS = "FileSystemCounters";
+
+
+	/**
+	 * Run the job (JobClient.runJob), add it to the run report (WeightedGraphRunReport), and append its row to the stats file
+	 */
+	public static RunningJob runJob(JobConf conf) throws IOException {
+
+		// The local runner reports the file system statistics of the whole JVM (since it started) as the counters of the
+		// job - so with it the bytes are the difference of the statistics, before and after the job
+		boolean local = "local".equals(conf.get("mapred.job.tracker", "local"));
+		long bytesRead = local ? -fileSystemBytes(true) : 0;
+		long bytesWritten = local ? -fileSystemBytes(false) : 0;
+
+		resetPeakHeap();
+		long start = System.currentTimeMillis();
+		RunningJob job = JobClient.runJob(conf);
+		long wall = System.currentTimeMillis() - start;
+
+		if (local) {
+			bytesRead += fileSystemBytes(true);
+			bytesWritten += fileSystemBytes(false);
+		} else {
+			for (Counters.Counter counter : job.getCounters().getGroup(FILE_SYSTEM_COUNTERS)) {
+				if (counter.getName().endsWith("_BYTES_READ")) {
+					bytesRead += counter.getCounter();
+				} else if (counter.getName().endsWith("_BYTES_WRITTEN")) {
+					bytesWritten += counter.getCounter();
+				}
+			}
+		}
+		WeightedGraphRunReport.JobEntry entry = WeightedGraphRunReport.add(conf, job, start, wall, bytesRead, bytesWritten, peakHeap() >> 20);
+
+		String statsFile = conf.get(STATS_FILE_PROPERTY, "");
+		if (statsFile.length() > 0) {
+			// (the columns after label, job, output and wall_ms are metrics of the run report, by the same name)
+			String[] columns = HEADER.split(",");
+			String[] values = new String[columns.length];
+			values[0] = conf.get(LABEL_PROPERTY, "");
+			values[1] = entry.getName();
+			values[2] = entry.getOutput();
+			values[3] = Long.toString(entry.getWallMillis());
+			for (int i = 4; i < columns.length; i++) {
+				values[i] = Long.toString(entry.get(columns[i]));
+			}
+			append(new File(statsFile), values);
+		}
+		return job;
+	}
+
+	/**
+	 * Append a row to the CSV file (the header first, if the file is new)
+	 */
+	public static synchronized void append(File file, String[] values) throws IOException {
+		boolean isNew = !file.exists() || (file.length() == 0);
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+		try {
+			if (isNew) {
+				writer.write(HEADER);
+				writer.write('\n');
+			}
+			for (int i = 0; i < values.length; i++) {
+				if (i > 0) {
+					writer.write(',');
+				}
+				// (the values are names, paths and numbers - only a comma would break the row)
+				writer.write(values[i].replace(',', ';'));
+			}
+			writer.write('\n');
+		} finally {
+			writer.close();
+		}
+	}
+
+	/*
+	 * The bytes read (or written) by all of the file systems of this JVM so far
+	 */
+	private static long fileSystemBytes(boolean read) {
+		long bytes = 0;
+		for (FileSystem.Statistics statistics : FileSystem.getAllStatistics()) {
+			bytes += read ? statistics.getBytesRead() : statistics.getBytesWritten();
+		}
+		return bytes;
+	}
+
+	private static void resetPeakHeap() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+
+	/*
+	 * The sum of the peak use of the heap pools since the last reset
+	 */
+	private static long peakHeap() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if ((pool.getType() == MemoryType.HEAP) && (pool.getPeakUsage() != null)) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peak;
+	}
+}
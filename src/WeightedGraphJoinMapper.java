@@ -0,0 +1,45 @@
+import java.io.IOException;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.Mapper;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reporter;
+
+
+/**
+ * The Mapper of the job that joins the two passes of the bidirectional engine (-engine bidirectional) at the middle row.
+ *
+ * It reads the output of the last top-down iteration (the BLACK nodes of the row above the middle row, and the GRAY
+ * nodes of the middle row - with the maximum distance that reaches them, and their path_taken_edges) and the output of
+ * the last bottom-up iteration (the BLACK nodes of the middle row, with their best suffix - see WeightedGraphSuffixMapper),
+ * and only emits the nodes of the middle row, for WeightedGraphJoinReducer.
+ *
+ * Key: Node ID
+ * Value: a binary WeightedNodeWritable node
+ */
+@SuppressWarnings("deprecation")
+public class WeightedGraphJoinMapper extends MapReduceBase implements
+    Mapper<IntWritable, WeightedNodeWritable, IntWritable, WeightedNodeWritable> {
+
+  // Job configuration property: the row (counting from 1) where the two passes meet
+  public static final String JOIN_ROW_PROPERTY = "joinRow";
+
+  private int joinRow;
+
+  @Override
+  public void configure(JobConf job) {
+    joinRow = job.getInt(JOIN_ROW_PROPERTY, 0);
+  }
+
+  public void map(IntWritable key,
+                  WeightedNodeWritable node,
+                  OutputCollector<IntWritable, WeightedNodeWritable> output,
+                  Reporter reporter) throws IOException {
+
+    if (TriangleTopology.rowOf(node.getId()) == joinRow) {
+      output.collect(key, node);
+    }
+  }
+}
@@ -0,0 +1,136 @@
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.MapFile;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapFileOutputFormat;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reducer;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.lib.HashPartitioner;
+import org.apache.log4j.Logger;
+
+
+/**
+ * The reducer of the job that joins the two passes of the bidirectional engine (-engine bidirectional) at the middle row.
+ *
+ * For each node of the middle row there is a GRAY value (from the top-down pass: the maximum distance that reaches
+ * the node, and the path that got there) and a BLACK value (from the bottom-up pass: the best suffix from the node down
+ * to the aggregation node, the node's weight included, and the nodes of that suffix).  The maximum distance of a path
+ * through the node is the sum of the two, and the maximum path is:
+ *
+ *   path_taken_edges (top-down) + the node + the suffix nodes (bottom-up)
+ *
+ * The job has only one reducer (it only reads the middle row): it keeps the best node of the middle row - on a tie, the
+ * leftmost (lowest ID) - and when it closes it writes the aggregation node line, in the text output format of the
+ * last MR iteration (ID <tab> WEIGHT|EDGES|DISTANCE|COLOR|path_taken_edges|), and the side file of WeightedGraphMaxResult.
+ */
+@SuppressWarnings("deprecation")
+public class WeightedGraphJoinReducer extends MapReduceBase implements
+    Reducer<IntWritable, WeightedNodeWritable, NullWritable, Text> {
+
+  // Log4j initialzation...
+  private static final Logger LOG = Logger.getLogger(WeightedGraphJoinReducer.class);
+
+  private TriangleTopology topology;
+  private JobConf job;
+
+  // The structure MapFiles (for the weight of the aggregation node), and the partitioner that wrote them
+  private MapFile.Reader[] structure;
+  private final HashPartitioner<IntWritable, WeightedNodeWritable> partitioner = new HashPartitioner<IntWritable, WeightedNodeWritable>();
+
+  // The two halves of the current key (copies - the framework reuses the values)
+  private final WeightedNodeWritable prefix = new WeightedNodeWritable();
+  private final WeightedNodeWritable suffix = new WeightedNodeWritable();
+
+  // The aggregation node, with the best path so far
+  private final WeightedNodeWritable sink = new WeightedNodeWritable();
+  private boolean found = false;
+
+  // The output collector - saved so that the aggregation node can be emitted when the task closes
+  private OutputCollector<NullWritable, Text> output = null;
+
+  @Override
+  public void configure(JobConf job) {
+    this.job = job;
+    topology = TriangleTopology.get(job);
+    try {
+      Path structurePath = new Path(job.get(WeightedGraphMaxSearchFrontierReducer.STRUCTURE_PATH_PROPERTY));
+      FileSystem fs = structurePath.getFileSystem(job);
+      structure = MapFileOutputFormat.getReaders(fs, structurePath, job);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to open the structure of the graph", e);
+    }
+  }
+
+  public void reduce(IntWritable key,
+                     Iterator<WeightedNodeWritable> values,
+                     OutputCollector<NullWritable, Text> output,
+                     Reporter reporter) throws IOException {
+
+    this.output = output;
+    boolean hasPrefix = false;
+    boolean hasSuffix = false;
+    while (values.hasNext()) {
+      WeightedNodeWritable u = values.next();
+      if (u.getColor() == WeightedNode.Color.GRAY) {
+        prefix.set(u);
+        hasPrefix = true;
+      } else if (u.getColor() == WeightedNode.Color.BLACK) {
+        suffix.set(u);
+        hasSuffix = true;
+      }
+    }
+    // A node that the top-down pass did not reach (or pruned) is not on a path
+    if (!hasPrefix || !hasSuffix) {
+      return;
+    }
+
+    int distance = prefix.getDistance() + suffix.getDistance();
+    if (found && (distance <= sink.getDistance())) {
+      return;
+    }
+    sink.clear(topology.getAggregationNodeId());
+    sink.setDistance(distance);
+    sink.setColor(WeightedNode.Color.BLACK);
+    sink.setPathTakenEdges(prefix);
+    sink.addPathTakenEdge(key.get());
+    for (int i = 0; i < suffix.getPathLength(); i++) {
+      sink.addPathTakenEdge(suffix.getPathTakenEdge(i));
+    }
+    found = true;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      if (!found || (output == null)) {
+        LOG.warn("The top-down and bottom-up passes do not meet");
+        return;
+      }
+      WeightedNodeWritable structureNode = new WeightedNodeWritable();
+      IntWritable sinkKey = new IntWritable(sink.getId());
+      if (MapFileOutputFormat.getEntry(structure, partitioner, sinkKey, structureNode) != null) {
+        sink.setWeight(structureNode.getWeight());
+      }
+
+      Text line = new Text();
+      sink.writeLine(line);
+      output.collect(NullWritable.get(), line);
+
+      WeightedGraphMaxResult result = new WeightedGraphMaxResult();
+      result.offer(sink);
+      result.write(job);
+    } finally {
+      for (MapFile.Reader reader : structure) {
+        reader.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,428 @@
+/**
+ * An in-memory (single JVM) engine that computes the same result as the MR iterations of WeightedGraphMaxSearch.
+ *
+ * For graphs that fit in the heap, running one MR job per row of the triangle spends almost all of its time
+ * on job startup.  This engine instead:
+ * 1. loads the input graph (the same ID <tab> WEIGHT|EDGES|DISTANCE|COLOR| adjacency list format that WeightedNode parses)
+ *    into primitive arrays, indexed by node ID, with the edges of all of the nodes in one array,
+ * 2. computes the maximum distance of every node from the GRAY source node(s) by dynamic programming in
+ *    topological order, recording the predecessor of every node on its maximum path,
+ * 3. writes the same output as the last MR iteration (ID <tab> WEIGHT|EDGES|DISTANCE|COLOR|Path_taken_edges|) to
+ *    <outputPathIteration><N>/part-00000, where N is the number of iterations that the MR engine would have run - and,
+ *    like the reducers of the last iteration, the side file of the maximum distance node (see WeightedGraphMaxResult).
+ *
+ * With the triangle topology (-topology triangle) the EDGES column of the input is ignored, and the edges are
+ * computed from the node IDs.
+ *
+ * When the path is tracked by predecessor (-path pred), the Path_taken_edges column is left empty and the
+ * PREDECESSOR column is written instead - just like the MR iterations.
+ *
+ * Like the MR iterations, a node that is reached with an equal distance from two parents keeps the path through
+ * the first parent (the parent with the lower ID for the triangle graphs).
+ * The MR iterations never revisit a BLACK node, so for graphs where paths of different lengths (number of edges)
+ * meet, this engine can find a larger distance than the MR engine.  For the triangle graphs the output is identical.
+ */
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.util.LineReader;
+import org.apache.log4j.Logger;
+
+
+public class WeightedGraphLocalSolver {
+
+	/*
+	 * Job configuration properties (set in the IOFiles-*-Config.xml files) that control when the
+	 * driver selects this engine automatically (-engine auto)
+	 */
+	public static final String MAX_INPUT_BYTES_PROPERTY = "localEngineMaxInputBytes";
+	public static final String MAX_NODES_PROPERTY = "localEngineMaxNodes";
+	public static final long DEFAULT_MAX_INPUT_BYTES = 64L * 1024 * 1024;
+	public static final int DEFAULT_MAX_NODES = 2000000;
+
+	// Node 'colors' - a node that is not in the input (and is not pointed to by an edge) is NO_NODE
+	protected static final byte NO_NODE = -1;
+	protected static final byte WHITE = (byte) WeightedNode.Color.WHITE.ordinal();
+	protected static final byte GRAY = (byte) WeightedNode.Color.GRAY.ordinal();
+	protected static final byte BLACK = (byte) WeightedNode.Color.BLACK.ordinal();
+
+	// Log4j...
+	private static final Logger LOG = Logger.getLogger(WeightedGraphLocalSolver.class);
+
+	/*
+	 * The graph - all arrays are indexed by node ID (protected: WeightedGraphParallelSolver solves the same arrays)
+	 */
+	protected int maxId = -1;
+	protected int nodeCount = 0;
+	protected int[] weight = new int[1024];
+	protected int[] distance = new int[1024];
+	protected byte[] color = new byte[1024];
+	// The edges of node i are edges[edgeStart[i]] ... edges[edgeStart[i] + edgeCount[i] - 1]
+	protected int[] edgeStart = new int[1024];
+	protected int[] edgeCount = new int[1024];
+	protected int[] edges = new int[4096];
+	protected int totalEdges = 0;
+
+	// The triangle topology, or null if the edges are read from the EDGES column
+	protected final TriangleTopology topology;
+
+	/*
+	 * The result of solve()
+	 */
+	protected int[] predecessor;
+	// The MR iteration in which the node is first reached (the source nodes are level 0)
+	protected int[] level;
+	protected int maxLevel = 0;
+
+	{
+		Arrays.fill(color, NO_NODE);
+	}
+
+	public WeightedGraphLocalSolver(TriangleTopology topology) {
+		this.topology = topology;
+	}
+
+
+	/**
+	 * Load the input graph - a single file or all of the (non hidden) files in a directory.
+	 * Returns false, without loading the rest of the graph, if it has more than maxNodes nodes.
+	 */
+	public boolean load(Configuration conf, Path input, int maxNodes) throws IOException {
+
+		FileSystem fs = input.getFileSystem(conf);
+		FileStatus[] files = fs.getFileStatus(input).isDir() ? fs.listStatus(input) : new FileStatus[] { fs.getFileStatus(input) };
+
+		for (FileStatus status : files) {
+			String name = status.getPath().getName();
+			if (status.isDir() || name.startsWith("_") || name.startsWith(".")) {
+				continue;
+			}
+			LineReader reader = new LineReader(fs.open(status.getPath()), 1 << 16);
+			try {
+				Text line = new Text();
+				WeightedNodeWritable node = new WeightedNodeWritable();
+				while (reader.readLine(line) > 0) {
+					if (line.getLength() > 0) {
+						node.parse(line);
+						add(node);
+						if (nodeCount > maxNodes) {
+							return false;
+						}
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		}
+		return true;
+	}
+
+	private void add(WeightedNodeWritable node) {
+
+		int id = node.getId();
+		ensureCapacity(id);
+		if (color[id] == NO_NODE) {
+			nodeCount++;
+		}
+		maxId = Math.max(maxId, id);
+
+		weight[id] = node.getWeight();
+		distance[id] = node.getDistance();
+		color[id] = (byte) node.getColor().ordinal();
+
+		edgeStart[id] = totalEdges;
+		edgeCount[id] = 0;
+		if (topology != null) {
+			int count = topology.childCount(id);
+			for (int i = 0; i < count; i++) {
+				addEdge(id, topology.firstChild(id) + i);
+			}
+		} else {
+			for (int i = 0; i < node.getEdgeCount(); i++) {
+				addEdge(id, node.getEdge(i));
+			}
+		}
+	}
+
+	private void addEdge(int id, int v) {
+		if (totalEdges == edges.length) {
+			edges = Arrays.copyOf(edges, totalEdges * 2);
+		}
+		edges[totalEdges++] = v;
+		edgeCount[id]++;
+	}
+
+	private void ensureCapacity(int id) {
+		if (id < 0) {
+			throw new IllegalArgumentException("Node IDs must not be negative: " + id);
+		}
+		if (id >= color.length) {
+			int length = color.length;
+			while (id >= length) {
+				length *= 2;
+			}
+			weight = Arrays.copyOf(weight, length);
+			distance = Arrays.copyOf(distance, length);
+			edgeStart = Arrays.copyOf(edgeStart, length);
+			edgeCount = Arrays.copyOf(edgeCount, length);
+			int oldLength = color.length;
+			color = Arrays.copyOf(color, length);
+			Arrays.fill(color, oldLength, length, NO_NODE);
+		}
+	}
+
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * The number of MR iterations that would have been run to solve this graph
+	 */
+	public int getIterationCount() {
+		return maxLevel + 1;
+	}
+
+
+	/**
+	 * Compute the maximum distance (and predecessor) of every node reachable from the GRAY source nodes,
+	 * visiting the nodes in topological order.
+	 */
+	public void solve() {
+
+		addMissingNodes();
+
+		int n = maxId + 1;
+		predecessor = new int[n];
+		Arrays.fill(predecessor, -1);
+		level = new int[n];
+		boolean[] reached = new boolean[n];
+
+		// In degree of every node...
+		int[] inDegree = new int[n];
+		for (int i = 0; i < totalEdges; i++) {
+			inDegree[edges[i]]++;
+		}
+
+		// Kahn's algorithm - the queue holds the nodes whose parents have all been visited.
+		// The nodes are queued in ID order, so the parents of a triangle node are visited lowest ID first.
+		int[] queue = new int[nodeCount];
+		int head = 0;
+		int tail = 0;
+		for (int id = 0; id < n; id++) {
+			if (color[id] != NO_NODE) {
+				if (inDegree[id] == 0) {
+					queue[tail++] = id;
+				}
+				if (color[id] == GRAY) {
+					reached[id] = true;
+				}
+			}
+		}
+
+		while (head < tail) {
+			int u = queue[head++];
+
+			for (int e = edgeStart[u]; e < edgeStart[u] + edgeCount[u]; e++) {
+				int v = edges[e];
+
+				if (reached[u]) {
+					int candidate = distance[u] + weight[u];
+					// The first parent that reaches a node always sets its path, after that only a larger distance does
+					if (!reached[v]) {
+						reached[v] = true;
+						level[v] = level[u] + 1;
+						predecessor[v] = u;
+						distance[v] = Math.max(distance[v], candidate);
+					} else {
+						if (candidate > distance[v]) {
+							distance[v] = candidate;
+							predecessor[v] = u;
+						}
+						level[v] = Math.min(level[v], level[u] + 1);
+					}
+				}
+
+				if (--inDegree[v] == 0) {
+					queue[tail++] = v;
+				}
+			}
+		}
+
+		if (tail < nodeCount) {
+			throw new IllegalArgumentException("The input graph has a cycle - use the MR engine (-engine mr)");
+		}
+
+		finish(reached);
+	}
+
+	/*
+	 * Nodes that are only pointed to by an edge (not in the input) are created with weight zero and no edges,
+	 * just like the reducer does
+	 */
+	protected void addMissingNodes() {
+		for (int i = 0; i < totalEdges; i++) {
+			int v = edges[i];
+			ensureCapacity(v);
+			if (color[v] == NO_NODE) {
+				color[v] = WHITE;
+				edgeStart[v] = totalEdges;
+				edgeCount[v] = 0;
+				nodeCount++;
+				maxId = Math.max(maxId, v);
+			}
+		}
+	}
+
+	/*
+	 * Every node that was reached is done (BLACK) - and the number of MR iterations is one more than the deepest level
+	 */
+	protected void finish(boolean[] reached) {
+		int n = maxId + 1;
+		maxLevel = 0;
+		for (int id = 0; id < n; id++) {
+			if (reached[id]) {
+				color[id] = BLACK;
+				maxLevel = Math.max(maxLevel, level[id]);
+			}
+		}
+	}
+
+
+	/**
+	 * Write every node, in ID order, in the output format of the last MR iteration
+	 */
+	public void write(Configuration conf, Path outputDir, boolean trackPredecessorOnly) throws IOException {
+
+		FileSystem fs = outputDir.getFileSystem(conf);
+		if (fs.exists(outputDir)) {
+			throw new IOException("Output directory " + outputDir + " already exists");
+		}
+
+		Writer writer = new OutputStreamWriter(fs.create(new Path(outputDir, "part-00000")), "UTF-8");
+		try {
+			int[] path = new int[16];
+			StringBuilder s = new StringBuilder();
+
+			for (int id = 0; id <= maxId; id++) {
+				if (color[id] == NO_NODE) {
+					continue;
+				}
+				s.setLength(0);
+				path = appendNode(s, id, trackPredecessorOnly, path);
+				writer.write(s.toString());
+			}
+		} finally {
+			writer.close();
+		}
+		writeBest(conf, outputDir, trackPredecessorOnly);
+	}
+
+	/*
+	 * Write the side file of the maximum distance node (on a tie, the larger ID - the same node as the reducers keep)
+	 */
+	protected void writeBest(Configuration conf, Path outputDir, boolean trackPredecessorOnly) throws IOException {
+		int best = -1;
+		for (int id = 0; id <= maxId; id++) {
+			if ((color[id] != NO_NODE) && ((best < 0) || (distance[id] >= distance[best]))) {
+				best = id;
+			}
+		}
+		if (best < 0) {
+			return;
+		}
+		StringBuilder s = new StringBuilder();
+		appendNode(s, best, trackPredecessorOnly, new int[16]);
+		s.setLength(s.length() - 1);
+		WeightedNodeWritable node = new WeightedNodeWritable();
+		node.parse(new Text(s.toString()));
+
+		WeightedGraphMaxResult result = new WeightedGraphMaxResult();
+		result.offer(node);
+		result.write(conf, outputDir);
+	}
+
+	/*
+	 * Append the output line of a node (with its newline) - path is the buffer of the predecessors, the (possibly
+	 * grown) buffer is returned
+	 */
+	protected int[] appendNode(StringBuilder s, int id, boolean trackPredecessorOnly, int[] path) {
+		s.append(id).append("\t");
+		s.append(weight[id]).append("|");
+		for (int e = edgeStart[id]; e < edgeStart[id] + edgeCount[id]; e++) {
+			s.append(edges[e]).append(",");
+		}
+		s.append("|");
+		if (distance[id] < Integer.MAX_VALUE) {
+			s.append(distance[id]).append("|");
+		} else {
+			s.append("Integer.MAX_VALUE").append("|");
+		}
+		s.append(WeightedNode.Color.values()[color[id]].toString()).append("|");
+
+		if (trackPredecessorOnly) {
+			s.append("|");
+			if (predecessor[id] >= 0) {
+				s.append(predecessor[id]).append("|");
+			}
+		} else {
+			// Follow the predecessors back to the source node, then write the path from the source node...
+			int length = 0;
+			for (int p = predecessor[id]; p >= 0; p = predecessor[p]) {
+				if (length == path.length) {
+					path = Arrays.copyOf(path, length * 2);
+				}
+				path[length++] = p;
+			}
+			for (int i = length - 1; i >= 0; i--) {
+				s.append(path[i]).append(",");
+			}
+			s.append("|");
+		}
+		s.append("\n");
+		return path;
+	}
+
+
+	/**
+	 * Returns true if the input graph is small enough (localEngineMaxInputBytes) for the in-memory engine
+	 */
+	public static boolean isSmallInput(Configuration conf, Path input) throws IOException {
+		long maxBytes = conf.getLong(MAX_INPUT_BYTES_PROPERTY, DEFAULT_MAX_INPUT_BYTES);
+		long bytes = input.getFileSystem(conf).getContentSummary(input).getLength();
+		LOG.info("Input size: " + bytes + " bytes, in-memory engine limit: " + maxBytes + " bytes");
+		return bytes <= maxBytes;
+	}
+
+	/**
+	 * Solve the input graph in memory and write the result to <outputPathIteration><N>.
+	 * Returns the output directory, or null if the graph has more than maxNodes nodes (nothing is written).
+	 */
+	public static Path run(Configuration conf, Path input, String outputPathIteration, boolean trackPredecessorOnly, int maxNodes,
+			TriangleTopology topology) throws IOException {
+
+		long start = System.currentTimeMillis();
+
+		WeightedGraphLocalSolver solver = new WeightedGraphLocalSolver(topology);
+		if (!solver.load(conf, input, maxNodes)) {
+			LOG.info("Input graph has more than " + maxNodes + " nodes - not using the in-memory engine");
+			return null;
+		}
+		solver.solve();
+
+		Path outputDir = new Path(outputPathIteration + solver.getIterationCount());
+		solver.write(conf, outputDir, trackPredecessorOnly);
+
+		WeightedGraphRunReport.solved(solver.getNodeCount(), solver.getIterationCount());
+		LOG.info("In-memory engine solved " + solver.getNodeCount() + " nodes (" + solver.getIterationCount() +
+				" iterations) in " + (System.currentTimeMillis() - start) + " ms, output= " + outputDir);
+		return outputDir;
+	}
+}
@@ -0,0 +1,209 @@
+/**
+ * The maximum distance node of the graph - found without funneling the whole graph through one reducer.
+ *
+ * Every task that writes the text output (the reducers of the last iteration, the export mapper, the reducers of the
+ * frontier merge) keeps its local best node (the maximum distance node that it wrote - on a tie, the larger node ID,
+ * which is the sink of the triangle) and, when it closes, writes its line to a small side file: _best-<task number>
+ * in the task's work output directory.  The framework moves the side file into the output directory together with the
+ * task's part file (the '_' keeps it out of the input of any job that reads the output directory).
+ *
+ * After the last iteration the driver merges the side files (merge) into the result file: the line of the maximum
+ * distance node, with its path_taken_edges (or only its predecessor, with -path pred - see WeightedGraphPathBuilder).
+ * The text output of every node stays sharded over the part files of the reducers.
+ *
+ * The reducers of every iteration also keep the length of the longest path taken edges list that they wrote
+ * (pathLength - 0 with -path pred, the nodes only carry their predecessor), and write it to the side file as well,
+ * so every reducer writes one - the first line is the longest path length, the second line (only in the text output)
+ * is the line of the best node:
+ *
+ *   <longest path length>
+ *   ID   WEIGHT|EDGES|DISTANCE|COLOR|Path_taken_edges|
+ *
+ * The driver reads the longest path of a job from the side files in its output directory (maxPathLength) - a counter
+ * could not hold it, the counters of the tasks are summed.
+ *
+ * The in-memory engines (WeightedGraphLocalSolver, WeightedGraphParallelSolver) write the side file of their best node
+ * into their output directory themselves, so the driver merges their result the same way.
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.FileOutputFormat;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.util.LineReader;
+import org.apache.log4j.Logger;
+
+
+@SuppressWarnings("deprecation")
+public class WeightedGraphMaxResult {
+
+	// Log4j...
+	private static final Logger LOG = Logger.getLogger(WeightedGraphMaxResult.class);
+
+	// The prefix of the side files
+	public static final String BEST_FILE_PREFIX = "_best-";
+
+	private final WeightedNodeWritable best = new WeightedNodeWritable();
+	private boolean found = false;
+	private int maxPathLength = 0;
+
+	/*
+	 * Keep the node if it is the best node so far (a copy - the node objects are reused)
+	 */
+	public void offer(WeightedNodeWritable node) {
+		if (!found || isBetter(node.getDistance(), node.getId(), best.getDistance(), best.getId())) {
+			best.set(node);
+			found = true;
+		}
+	}
+
+	/*
+	 * Keep the length of the path taken edges of a node that the task wrote, if it is the longest so far
+	 */
+	public void pathLength(int length) {
+		if (length > maxPathLength) {
+			maxPathLength = length;
+		}
+	}
+
+	private static boolean isBetter(int distance, int id, int bestDistance, int bestId) {
+		return (distance > bestDistance) || ((distance == bestDistance) && (id > bestId));
+	}
+
+	/*
+	 * Write the longest path length, and the line of the best node (if there is one), to _best-<task number> in the work
+	 * output directory of the task
+	 */
+	public void write(JobConf job) throws IOException {
+		if (!found && (maxPathLength == 0)) {
+			return;
+		}
+		Path workOutput = FileOutputFormat.getWorkOutputPath(job);
+		if (workOutput == null) {
+			return;
+		}
+		Path file = new Path(workOutput, BEST_FILE_PREFIX + String.format("%05d", job.getInt("mapred.task.partition", 0)));
+		write(file.getFileSystem(job), file);
+	}
+
+	/*
+	 * Write the side file to an output directory that no task writes (the output of the in-memory engines)
+	 */
+	public void write(Configuration conf, Path outputDir) throws IOException {
+		if (!found && (maxPathLength == 0)) {
+			return;
+		}
+		Path file = new Path(outputDir, BEST_FILE_PREFIX + String.format("%05d", 0));
+		write(file.getFileSystem(conf), file);
+	}
+
+	private void write(FileSystem fs, Path file) throws IOException {
+		OutputStream out = fs.create(file, true);
+		try {
+			out.write(Integer.toString(maxPathLength).getBytes("UTF-8"));
+			out.write('\n');
+			if (found) {
+				Text line = new Text();
+				best.writeLine(line);
+				out.write(line.getBytes(), 0, line.getLength());
+				out.write('\n');
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Write the line of the best node to the result file (for the engines that find it without writing the graph)
+	 */
+	public static void writeResult(Configuration conf, Path resultFile, WeightedNodeWritable node) throws IOException {
+		writeLine(resultFile.getFileSystem(conf), resultFile, node);
+		LOG.info("Maximum distance node: " + node.getId() + "\t" + node.toString() + " written to " + resultFile);
+	}
+
+	private static void writeLine(FileSystem fs, Path file, WeightedNodeWritable node) throws IOException {
+		Text line = new Text();
+		node.writeLine(line);
+		OutputStream out = fs.create(file, true);
+		try {
+			out.write(line.getBytes(), 0, line.getLength());
+			out.write('\n');
+		} finally {
+			out.close();
+		}
+	}
+
+
+	/**
+	 * Merge the side files of an output directory into the result file.  Returns the best node, or null if there is none.
+	 */
+	public static WeightedNodeWritable merge(Configuration conf, Path outputDir, Path resultFile) throws IOException {
+
+		FileSystem fs = outputDir.getFileSystem(conf);
+		WeightedNodeWritable best = null;
+		WeightedNodeWritable node = new WeightedNodeWritable();
+		Text line = new Text();
+
+		for (FileStatus status : fs.listStatus(outputDir)) {
+			if (!status.getPath().getName().startsWith(BEST_FILE_PREFIX)) {
+				continue;
+			}
+			LineReader reader = new LineReader(fs.open(status.getPath()));
+			try {
+				// (the first line is the longest path length)
+				if ((reader.readLine(line) > 0) && (reader.readLine(line) > 0) && (line.getLength() > 0)) {
+					node.parse(line);
+					if ((best == null) || isBetter(node.getDistance(), node.getId(), best.getDistance(), best.getId())) {
+						if (best == null) {
+							best = new WeightedNodeWritable();
+						}
+						best.set(node);
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		}
+
+		if (best == null) {
+			LOG.warn("No result found in " + outputDir);
+			return null;
+		}
+		writeLine(fs, resultFile, best);
+		LOG.info("Maximum distance node: " + best.getId() + "\t" + best.toString() + " written to " + resultFile);
+		return best;
+	}
+
+	/**
+	 * The longest path length in the side files of an output directory (0 if there are none)
+	 */
+	public static int maxPathLength(Configuration conf, Path outputDir) throws IOException {
+
+		FileSystem fs = outputDir.getFileSystem(conf);
+		if (!fs.exists(outputDir)) {
+			return 0;
+		}
+		int maxPathLength = 0;
+		Text line = new Text();
+		for (FileStatus status : fs.listStatus(outputDir)) {
+			if (!status.getPath().getName().startsWith(BEST_FILE_PREFIX)) {
+				continue;
+			}
+			LineReader reader = new LineReader(fs.open(status.getPath()));
+			try {
+				if ((reader.readLine(line) > 0) && (line.getLength() > 0)) {
+					maxPathLength = Math.max(maxPathLength, Integer.parseInt(line.toString().trim()));
+				}
+			} finally {
+				reader.close();
+			}
+		}
+		return maxPathLength;
+	}
+}
@@ -63,6 +63,25 @@
  * 
  * To run:   hadoop jar <Path to Jar file>/WeightedGraphMax_SavedPath.jar -c IOFiles-HDFS-Config.xml
  * 
+ * Between iterations the nodes are stored as binary WeightedNodeWritable records in SequenceFiles,
+ * only the output of the last iteration is written in the text output format below.
+ * If the -i limit stops the iterations early, the last SequenceFile output is exported to text in
+ * <outputPathIteration><N>-text
+ * 
+ * With -iteration frontier the static part of the graph (the weight and edges of every node) is written once, as
+ * MapFiles in <outputPathIteration>structure, and every iteration only reads, shuffles and writes the frontier:
+ * the GRAY nodes that are processed (now BLACK) and the new GRAY nodes.  After the last iteration the structure and
+ * the output of every iteration are merged into the complete graph, in the text output format, in
+ * <outputPathIteration><N>-text
+ * 
+ * The SequenceFiles are block compressed (intermediateCompressionCodec), and so is the map output (mapOutputCompression).
+ * Only the output of the last keepIterations iterations is kept, the older iteration outputs are deleted as the
+ * iterations go on (the frontier iterations, and the structure of the graph, are deleted after they have been merged).
+ * 
+ * The counters and timings of every MR job of the run (records, bytes, frontier width, phase times, longest path, and
+ * the ETA after every iteration) are written to <outputPathIteration>report.json (WeightedGraphRunReport).  The per-record
+ * log messages of the mapper, the combiner and the reducers are sampled (traceSampleInterval), at DEBUG level.
+ * 
  * The output format is
  * ID   WEIGHT|EDGES|DISTANCE|COLOR|Path_taken_edges|
  * where
@@ -101,13 +120,26 @@
 
 
 import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.MapFile;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.DefaultCodec;
 import org.apache.hadoop.mapred.*;
+import org.apache.hadoop.mapred.lib.HashPartitioner;
+import org.apache.hadoop.mapred.lib.IdentityMapper;
+import org.apache.hadoop.mapred.lib.IdentityReducer;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 
@@ -124,13 +156,133 @@ public class WeightedGraphMaxSearch extends Configured implements Tool {
 	static int NumberOfRowsToProcess = 0;
 
 	/*
-	 *  Indicates when we want only one reducer (when set to true) for
-         *  a MR iteration.  We set the number of reducers to one so that all
-         *  results are aggregated into one 'part00000' file.
-	 *  The number of reducers is always set to one for the last iteration
-         *  of this MR job.
+	 *  Indicates the last iteration of this MR job (when set to true).
+	 *  The last iteration is the only iteration that writes the text output format,
+	 *  all other iterations write binary (WeightedNodeWritable) SequenceFiles.
+	 *  The last iteration keeps all of the (-r) reducers: the text output is sharded over their part files,
+	 *  and the maximum distance node is merged from their side files into the result file (WeightedGraphMaxResult).
+	 */
+	static boolean lastIteration = false;
+
+	/*
+	 * How the path taken to each node is tracked ("-path" parameter):
+	 * full - every node carries its whole path_taken_edges list (the default)
+	 * pred - every node carries only the ID of its predecessor, the maximum path is
+	 *        rebuilt after the last iteration by WeightedGraphPathBuilder
+	 */
+	static String pathTracking = WeightedGraphPathBuilder.PATH_TRACKING_FULL;
+
+	/*
+	 * The engine that solves the graph ("-engine" parameter):
+	 * mr    - one MR job per iteration (row of the triangle)
+	 * local - the in-memory engine (WeightedGraphLocalSolver), in this JVM
+	 * parallel - the in-memory engine on all of the cores (WeightedGraphParallelSolver): the nodes of every wavefront
+	 *         (the tiles of every anti-diagonal, for -topology triangle) are solved in parallel
+	 * stream - the streaming triangle engine (WeightedGraphTriangleSolver), in this JVM with memory for
+	 *         only one row of the triangle.  Only the maximum path (the sink node line) is written.
+	 * bidirectional - for triangles: the upper half is solved top-down and the lower half bottom-up, by two concurrent
+	 *         series of MR jobs, which are joined at the middle row.  Only the maximum path is written.
+	 * auto  - (the default) the in-memory engine if the input graph is smaller than the
+	 *         localEngineMaxInputBytes and localEngineMaxNodes limits (and no -i limit is given), otherwise mr
+	 */
+	static String engine = "auto";
+
+	/*
+	 * The topology of the graph ("-topology" parameter):
+	 * explicit - (the default) the edges of every node are read from the EDGES column
+	 * triangle - the graph is a triangle of "-rows" rows (plus the aggregation node), the edges are
+	 *            computed from the node IDs (TriangleTopology) and the records do not carry them
 	 */
-	static boolean setOneReducer = false;
+	static String topology = TriangleTopology.TOPOLOGY_EXPLICIT;
+	static int triangleRows = 0;
+
+	/*
+	 * What each MR iteration reads and writes ("-iteration" parameter):
+	 * full     - (the default) the whole graph, in every iteration
+	 * frontier - only the frontier (the GRAY nodes and the nodes that they expand to), the weight and edges
+	 *            of the nodes are looked up in the structure of the graph (WeightedGraphMaxSearchFrontierReducer)
+	 */
+	static String iterationMode = WeightedGraphMaxSearchFrontierReducer.ITERATION_MODE_FULL;
+
+	/*
+	 * Where the new GRAY nodes of a node ID are merged on the map side ("-combine" parameter):
+	 * combiner - (the default) by the WeightedGraphMaxSearchCombiner, after the map output has been sorted
+	 * inmapper - in the mapper, as they are produced (WeightedNodeCandidateMap) - the combiner is not used
+	 */
+	static String combine = "combiner";
+
+	/*
+	 * The number of rows that each MR job advances the frontier ("-k" parameter, the default is one row per job).
+	 * More than one row needs the triangle topology, and the frontier iterations: the mapper advances the GRAY
+	 * nodes of its split k rows in memory (WeightedGraphMaxSearchBandMapper).
+	 */
+	static int bandRows = 1;
+
+	/*
+	 * How the graph is split for the mappers, and partitioned for the reducers ("-partition" parameter):
+	 * hash  - (the default) the FileInputFormat splits (-m is only a hint) and the HashPartitioner
+	 * range - exactly -m splits of contiguous node ID ranges (WeightedGraphRangeInputFormat), and a reducer per
+	 *         contiguous range of node IDs - whole rows, with the triangle topology (WeightedGraphRangePartitioner)
+	 */
+	static String partition = WeightedGraphRangePartitioner.PARTITION_HASH;
+
+	/*
+	 * The order of the values of a node in the reduce calls of the iterations ("-sort" parameter, mr engine):
+	 * key   - (the default) any order, every value is read and reduced (WeightedNodeAccumulator)
+	 * value - a secondary sort on the composite WeightedNodeKey: the node record and the best candidate arrive first, and
+	 *         the reducer does not read the other candidates (WeightedGraphSortedMapper / WeightedGraphSortedReducer)
+	 */
+	static String sort = WeightedGraphSortedReducer.SORT_KEY;
+	// The ID of the last node of the input graph, for the range partitioner (0 if not known)
+	static int maxNodeId = 0;
+
+	/*
+	 * The branch-and-bound pruning of the GRAY nodes ("-prune" parameter, triangle topology only):
+	 * none  - (the default) every GRAY node is expanded
+	 * bound - a GRAY node that can no longer beat the greedy path, even with the heaviest node of every row below it,
+	 *         is not expanded (WeightedGraphPruningBounds)
+	 */
+	static String prune = WeightedGraphPruningBounds.PRUNE_NONE;
+
+	/*
+	 * The number of best paths to the sink node that are found ("-topk" parameter, the default is only the maximum path).
+	 * With more than one, every node carries the TOP list of its K best (distance, predecessor, rank) entries - the
+	 * path is tracked by predecessor - and the K best paths are rebuilt by WeightedGraphTopKPathBuilder.
+	 */
+	static int topK = 1;
+
+	/*
+	 * The incremental re-solve ("-incremental <Previous output directory> -delta <Delta file>"): the complete text output
+	 * of an earlier run is solved again after the weights of the nodes in the delta file (ID <tab> NEW_WEIGHT) changed,
+	 * but only below the changed nodes - and only as far down as the distances or paths change (WeightedGraphIncremental).
+	 */
+	static String incrementalPrevious = null;
+	static String incrementalDelta = null;
+
+	/*
+	 * The append-rows mode ("-append" parameter, triangle topology only): the GRAY nodes of the bottom row of the triangle
+	 * are stored in the frontier cache (frontierCacheDir), keyed by a content hash of the rows above - and the next run of
+	 * a triangle with the same rows on top (and more rows appended) resumes from them (WeightedGraphFrontierCache).
+	 */
+	static boolean appendRows = false;
+
+	/*
+	 * The batch of start nodes ("-sources <Sources file>", node IDs separated by white space or commas): the maximum path
+	 * from every one of them is found in a single series of iterations - every node carries the SOURCES vector of the
+	 * per-source distances and predecessors - and rebuilt by WeightedGraphMultiSourcePathBuilder.
+	 * sourceList is the content of the file (comma separated), read once.
+	 */
+	static String sourcesFile = null;
+	static String sourceList = null;
+
+	/*
+	 * Set from the Input / Output Configuration.xml file:
+	 * compressIntermediate - the SequenceFiles that are passed between the iterations are block compressed
+	 *                        with the intermediateCompressionCodec (unless it is "none")
+	 * keepIterations       - the number of iteration outputs that are kept, the older ones are deleted (0 keeps them all)
+	 */
+	static boolean compressIntermediate = true;
+	static int keepIterations = 0;
 
 
 	/*
@@ -167,14 +319,14 @@ public class WeightedGraphMaxSearch extends Configured implements Tool {
 		 */
 		// The keys are the unique identifiers for a Node (integers in this case).
 		conf.setOutputKeyClass(IntWritable.class);
-		// the values are the string representation of a Node
-		conf.setOutputValueClass(Text.class);
+		conf.setMapOutputKeyClass(IntWritable.class);
+		// the values are the binary representation of a Node (the text representation is only written for the last iteration)
+		conf.setOutputValueClass(WeightedNodeWritable.class);
+		conf.setMapOutputValueClass(WeightedNodeWritable.class);
 
 		// Set the Mapper and Reducer classes...
 		conf.setMapperClass(WeightedGraphMaxSearchMapper.class);
 		conf.setReducerClass(WeightedGraphMaxSearchReducer.class);
-		// Set combiner class, if we had defined one!
-		conf.setCombinerClass(WeightedGraphMaxSearchCombiner.class);
 		/*
 		 * From the command line parameters, retrieve the configuration file name (not optional) 
 		 * and the (optional) 'asked for' number of iterations, mappers, and reducers
@@ -207,15 +359,7 @@ public class WeightedGraphMaxSearch extends Configured implements Tool {
 
 			// Set number of reducers...
 			if ("-r".equals(args[i])) {
-				if (setOneReducer)
-				{
-					// For the last iteration, Always consolidate the results by setting the number of reducers to one...
-					conf.setNumReduceTasks(1);	
-				}
-				else
-				{
-					conf.setNumReduceTasks(Integer.parseInt(args[++i]));
-				}
+				conf.setNumReduceTasks(Integer.parseInt(args[++i]));
 				LOG.info("Number of Reducers: " + conf.getNumReduceTasks());
 
 			}
@@ -230,6 +374,276 @@ public class WeightedGraphMaxSearch extends Configured implements Tool {
 				LOG.info("Total number of Iterations: " + NumberOfRowsToProcess);
 			}
 
+			// Set how the path taken to each node is tracked...
+			if ("-path".equals(args[i])) {
+				pathTracking = args[++i];
+				if (!WeightedGraphPathBuilder.PATH_TRACKING_FULL.equals(pathTracking) &&
+						!WeightedGraphPathBuilder.PATH_TRACKING_PREDECESSOR.equals(pathTracking)) {
+					throw new IllegalArgumentException("Unknown -path value: " + pathTracking);
+				}
+				LOG.info("Path tracking: " + pathTracking);
+			}
+
+			// Set the topology of the graph...
+			if ("-topology".equals(args[i])) {
+				topology = args[++i];
+				if (!TriangleTopology.TOPOLOGY_EXPLICIT.equals(topology) && !TriangleTopology.TOPOLOGY_TRIANGLE.equals(topology)) {
+					throw new IllegalArgumentException("Unknown -topology value: " + topology);
+				}
+				LOG.info("Topology: " + topology);
+			}
+
+			// Set the number of rows of the triangle...
+			if ("-rows".equals(args[i])) {
+				triangleRows = Integer.parseInt(args[++i]);
+				LOG.info("Number of rows of the triangle: " + triangleRows);
+			}
+
+			// Set what each MR iteration reads and writes...
+			if ("-iteration".equals(args[i])) {
+				iterationMode = args[++i];
+				if (!WeightedGraphMaxSearchFrontierReducer.ITERATION_MODE_FULL.equals(iterationMode) &&
+						!WeightedGraphMaxSearchFrontierReducer.ITERATION_MODE_FRONTIER.equals(iterationMode)) {
+					throw new IllegalArgumentException("Unknown -iteration value: " + iterationMode);
+				}
+				LOG.info("Iteration mode: " + iterationMode);
+			}
+
+			// Set where the new GRAY nodes are merged on the map side...
+			if ("-combine".equals(args[i])) {
+				combine = args[++i];
+				if (!"combiner".equals(combine) && !"inmapper".equals(combine)) {
+					throw new IllegalArgumentException("Unknown -combine value: " + combine);
+				}
+				LOG.info("Combine: " + combine);
+			}
+
+			// Set how the graph is split and partitioned...
+			if ("-partition".equals(args[i])) {
+				partition = args[++i];
+				if (!WeightedGraphRangePartitioner.PARTITION_HASH.equals(partition) &&
+						!WeightedGraphRangePartitioner.PARTITION_RANGE.equals(partition)) {
+					throw new IllegalArgumentException("Unknown -partition value: " + partition);
+				}
+				LOG.info("Partition: " + partition);
+			}
+
+			// Set the number of rows per MR job...
+			if ("-k".equals(args[i])) {
+				bandRows = Integer.parseInt(args[++i]);
+				if (bandRows < 1) {
+					throw new IllegalArgumentException("-k must be at least one row: " + bandRows);
+				}
+				LOG.info("Rows per MR job: " + bandRows);
+			}
+
+			// Set the order of the values in the reduce calls...
+			if ("-sort".equals(args[i])) {
+				sort = args[++i];
+				if (!WeightedGraphSortedReducer.SORT_KEY.equals(sort) && !WeightedGraphSortedReducer.SORT_VALUE.equals(sort)) {
+					throw new IllegalArgumentException("Unknown -sort value: " + sort);
+				}
+				LOG.info("Sort: " + sort);
+			}
+
+			// Set the pruning...
+			if ("-prune".equals(args[i])) {
+				prune = args[++i];
+				if (!WeightedGraphPruningBounds.PRUNE_NONE.equals(prune) &&
+						!WeightedGraphPruningBounds.PRUNE_BOUND.equals(prune)) {
+					throw new IllegalArgumentException("Unknown -prune value: " + prune);
+				}
+				LOG.info("Prune: " + prune);
+			}
+
+			// Set the number of best paths...
+			if ("-topk".equals(args[i])) {
+				topK = Integer.parseInt(args[++i]);
+				if (topK < 1) {
+					throw new IllegalArgumentException("-topk must be at least one path: " + topK);
+				}
+				LOG.info("Top K paths: " + topK);
+			}
+
+			// Set the previous output and the delta file of the incremental re-solve...
+			if ("-incremental".equals(args[i])) {
+				incrementalPrevious = args[++i];
+				LOG.info("Incremental re-solve of: " + incrementalPrevious);
+			}
+			if ("-delta".equals(args[i])) {
+				incrementalDelta = args[++i];
+				LOG.info("Incremental delta file: " + incrementalDelta);
+			}
+
+			// Resume from (and store) the solved frontier of the rows that did not change...
+			if ("-append".equals(args[i])) {
+				appendRows = true;
+				LOG.info("Append-rows mode");
+			}
+
+			// Set the batch of start nodes...
+			if ("-sources".equals(args[i])) {
+				sourcesFile = args[++i];
+				LOG.info("Sources file: " + sourcesFile);
+			}
+
+			// Set the engine...
+			if ("-engine".equals(args[i])) {
+				engine = args[++i];
+				if (!"mr".equals(engine) && !"local".equals(engine) && !"stream".equals(engine) && !"auto".equals(engine) &&
+						!"bidirectional".equals(engine) && !"parallel".equals(engine)) {
+					throw new IllegalArgumentException("Unknown -engine value: " + engine);
+				}
+				LOG.info("Engine: " + engine);
+			}
+
+		}
+		if (topK > 1)
+		{
+			if ((bandRows > 1) || "bidirectional".equals(engine) || WeightedGraphPruningBounds.PRUNE_BOUND.equals(prune))
+			{
+				throw new IllegalArgumentException("-topk can not be combined with -k, -engine bidirectional or -prune bound");
+			}
+			// The TOP lists only hold the predecessors, the paths are rebuilt at the end
+			pathTracking = WeightedGraphPathBuilder.PATH_TRACKING_PREDECESSOR;
+			conf.setInt(WeightedGraphTopKPathBuilder.TOP_K_PROPERTY, topK);
+		}
+		if (sourcesFile != null)
+		{
+			if ((bandRows > 1) || "bidirectional".equals(engine) || (topK > 1) || WeightedGraphPruningBounds.PRUNE_BOUND.equals(prune) ||
+					(incrementalPrevious != null) || appendRows)
+			{
+				throw new IllegalArgumentException("-sources can not be combined with -k, -engine bidirectional, -topk, -prune bound, -incremental or -append");
+			}
+			if (sourceList == null)
+			{
+				try {
+					sourceList = WeightedGraphMultiSourcePathBuilder.readSources(conf, new Path(sourcesFile));
+				} catch (IOException e) {
+					throw new RuntimeException("Unable to read the sources file " + sourcesFile, e);
+				}
+			}
+			// The SOURCES vectors only hold the predecessors, the paths are rebuilt at the end
+			pathTracking = WeightedGraphPathBuilder.PATH_TRACKING_PREDECESSOR;
+			conf.set(WeightedGraphMultiSourcePathBuilder.SOURCES_PROPERTY, sourceList);
+		}
+		conf.set(WeightedGraphPathBuilder.PATH_TRACKING_PROPERTY, pathTracking);
+
+		// Compress the map output, and the SequenceFiles that are passed between the iterations...
+		String codecName = conf.get("intermediateCompressionCodec", DefaultCodec.class.getName());
+		compressIntermediate = !"none".equals(codecName);
+		if (compressIntermediate)
+		{
+			Class<? extends CompressionCodec> codec;
+			try {
+				codec = conf.getClassByName(codecName).asSubclass(CompressionCodec.class);
+			} catch (ClassNotFoundException e) {
+				throw new IllegalArgumentException("Unknown intermediateCompressionCodec: " + codecName, e);
+			}
+			SequenceFileOutputFormat.setOutputCompressorClass(conf, codec);
+			SequenceFileOutputFormat.setOutputCompressionType(conf, SequenceFile.CompressionType.BLOCK);
+			conf.setMapOutputCompressorClass(codec);
+		}
+		// (setting the compressor class also turns the output compression on) - the text output is never compressed
+		FileOutputFormat.setCompressOutput(conf, false);
+		conf.setCompressMapOutput(compressIntermediate && conf.getBoolean("mapOutputCompression", true));
+		keepIterations = conf.getInt("keepIterations", 0);
+		if (WeightedGraphRangePartitioner.PARTITION_RANGE.equals(partition))
+		{
+			conf.setPartitionerClass(WeightedGraphRangePartitioner.class);
+			conf.setInt(WeightedGraphRangePartitioner.MAX_NODE_ID_PROPERTY, maxNodeId);
+		}
+		if ("inmapper".equals(combine))
+		{
+			conf.setBoolean(WeightedGraphMaxSearchMapper.IN_MAPPER_COMBINING_PROPERTY, true);
+		}
+		else if (!WeightedGraphSortedReducer.SORT_VALUE.equals(sort))
+		{
+			// Set combiner class, if we had defined one!  (the combiner input is grouped by the whole composite key of -sort value)
+			conf.setCombinerClass(WeightedGraphMaxSearchCombiner.class);
+		}
+		if (WeightedGraphSortedReducer.SORT_VALUE.equals(sort))
+		{
+			if ((bandRows > 1) || "bidirectional".equals(engine) || (topK > 1) || (sourcesFile != null) || (incrementalPrevious != null) ||
+					appendRows || WeightedGraphRangePartitioner.PARTITION_RANGE.equals(partition))
+			{
+				throw new IllegalArgumentException("-sort value can not be combined with -k, -engine bidirectional, -topk, -sources, -incremental, -append or -partition range");
+			}
+		}
+		conf.set(TriangleTopology.TOPOLOGY_PROPERTY, topology);
+		if ("bidirectional".equals(engine))
+		{
+			if (!TriangleTopology.TOPOLOGY_TRIANGLE.equals(topology))
+			{
+				throw new IllegalArgumentException("-engine bidirectional needs the triangle topology (-topology triangle -rows <Number of rows of the triangle>)");
+			}
+			if (!WeightedGraphPathBuilder.PATH_TRACKING_FULL.equals(pathTracking))
+			{
+				throw new IllegalArgumentException("-engine bidirectional joins the paths of the two passes, it needs -path full");
+			}
+			// Both passes look up the weights of the new nodes in the structure of the graph
+			iterationMode = WeightedGraphMaxSearchFrontierReducer.ITERATION_MODE_FRONTIER;
+		}
+		if (appendRows)
+		{
+			if (!TriangleTopology.TOPOLOGY_TRIANGLE.equals(topology) || !WeightedGraphPathBuilder.PATH_TRACKING_FULL.equals(pathTracking))
+			{
+				throw new IllegalArgumentException("-append needs the triangle topology (-topology triangle -rows <Number of rows of the triangle>) and -path full");
+			}
+			if ((topK > 1) || "bidirectional".equals(engine) || WeightedGraphPruningBounds.PRUNE_BOUND.equals(prune) || (incrementalPrevious != null))
+			{
+				throw new IllegalArgumentException("-append can not be combined with -topk, -engine bidirectional, -prune bound or -incremental");
+			}
+			// The iterations start from the cached row, the weights of the rows below it are looked up in the structure
+			iterationMode = WeightedGraphMaxSearchFrontierReducer.ITERATION_MODE_FRONTIER;
+		}
+		if (bandRows > 1)
+		{
+			if (!TriangleTopology.TOPOLOGY_TRIANGLE.equals(topology))
+			{
+				throw new IllegalArgumentException("-k needs the triangle topology (-topology triangle -rows <Number of rows of the triangle>)");
+			}
+			// The band mapper reads the weights of the rows below the frontier from the structure of the graph
+			iterationMode = WeightedGraphMaxSearchFrontierReducer.ITERATION_MODE_FRONTIER;
+			conf.setMapperClass(WeightedGraphMaxSearchBandMapper.class);
+			conf.setInt(WeightedGraphMaxSearchBandMapper.BAND_ROWS_PROPERTY, bandRows);
+		}
+		conf.set(WeightedGraphMaxSearchFrontierReducer.ITERATION_MODE_PROPERTY, iterationMode);
+		conf.set(WeightedGraphMaxSearchFrontierReducer.STRUCTURE_PATH_PROPERTY, outputPathIteration + "structure");
+		if (TriangleTopology.TOPOLOGY_TRIANGLE.equals(topology))
+		{
+			if (triangleRows < 1)
+			{
+				throw new IllegalArgumentException("-topology triangle needs the number of rows of the triangle (-rows)");
+			}
+			conf.setInt(TriangleTopology.ROWS_PROPERTY, triangleRows);
+		}
+		if (WeightedGraphPruningBounds.PRUNE_BOUND.equals(prune))
+		{
+			if (!TriangleTopology.TOPOLOGY_TRIANGLE.equals(topology))
+			{
+				throw new IllegalArgumentException("-prune bound needs the triangle topology (-topology triangle -rows <Number of rows of the triangle>)");
+			}
+			conf.set(WeightedGraphPruningBounds.BOUNDS_PATH_PROPERTY, outputPathIteration + "bounds");
+		}
+		if ((incrementalPrevious != null) || (incrementalDelta != null))
+		{
+			if ((incrementalPrevious == null) || (incrementalDelta == null))
+			{
+				throw new IllegalArgumentException("-incremental <Previous output directory> needs -delta <Delta file>, and the other way around");
+			}
+			if ((topK > 1) || "bidirectional".equals(engine))
+			{
+				throw new IllegalArgumentException("-incremental can not be combined with -topk or -engine bidirectional");
+			}
+			// The level of a node is its row, or else the length of its path
+			if (!TriangleTopology.TOPOLOGY_TRIANGLE.equals(topology) && !WeightedGraphPathBuilder.PATH_TRACKING_FULL.equals(pathTracking))
+			{
+				throw new IllegalArgumentException("-incremental needs -topology triangle, or -path full");
+			}
+			conf.set(WeightedGraphIncremental.DELTA_PATH_PROPERTY, incrementalDelta);
+			conf.set(WeightedGraphIncremental.STATE_PATH_PROPERTY, outputPathIteration + "incremental-state");
+			conf.set(WeightedGraphIncremental.PARENTS_PATH_PROPERTY, outputPathIteration + "incremental-parents");
 		}
 
 		return conf;
@@ -251,6 +665,13 @@ public class WeightedGraphMaxSearch extends Configured implements Tool {
 	public int run(String[] args) throws Exception {
 
 		int iterationCount = 0;
+		// The number of rows that the iterations have processed (one per iteration, unless -k)
+		int rowsProcessed = 0;
+
+		// The input of the first iteration is the text input graph, after that it is the output of the prior iteration
+		boolean inputIsText = true;
+		// The last text output written (the output of the last iteration)
+		String finalTextOutput = null;
 		
 		// Assume that we have at least one Gray node to process...
 		long numGrayNodesToBeProcessed = 1;
@@ -258,18 +679,91 @@ public class WeightedGraphMaxSearch extends Configured implements Tool {
 
 		// retrieve start Time... Get current time
 		long start = System.currentTimeMillis();
+		WeightedGraphRunReport.start();
+
+		// Only the nodes below the changed weights are solved again...
+		JobConf first = getJobConf(args);
+		if (incrementalPrevious != null)
+		{
+			runIncremental(first);
+			writeReport();
+			long elapsedTimeMillis = System.currentTimeMillis()-start;
+			System.out.println("Incremental Total Elapsed Time (sec): "+ elapsedTimeMillis/1000F);
+			return 0;
+		}
+
+		// Small graphs are solved in memory, without any MR jobs...
+		if (runLocalEngine(first))
+		{
+			writeReport();
+			long elapsedTimeMillis = System.currentTimeMillis()-start;
+			System.out.println("Local Engine Total Elapsed Time (sec): "+ elapsedTimeMillis/1000F);
+			return 0;
+		}
+
+		// The range partitioner needs to know the last node ID of the graph (unless it is a triangle of -rows rows)...
+		if (WeightedGraphRangePartitioner.PARTITION_RANGE.equals(partition) &&
+				TriangleTopology.TOPOLOGY_EXPLICIT.equals(topology))
+		{
+			maxNodeId = WeightedGraphRangePartitioner.findMaxNodeId(getConf(), new Path(inputPathFirstIteration));
+			LOG.info("Last node ID of the input graph: " + maxNodeId);
+		}
+
+		// The bounds of the pruning are computed from the input graph, before the first iteration...
+		if (WeightedGraphPruningBounds.PRUNE_BOUND.equals(prune))
+		{
+			JobConf conf = getJobConf(args);
+			WeightedGraphPruningBounds.compute(conf, new Path(inputPathFirstIteration), TriangleTopology.get(conf),
+					new Path(conf.get(WeightedGraphPruningBounds.BOUNDS_PATH_PROPERTY)));
+		}
+
+		// Only the frontier is passed between the iterations, so write the static part of the graph first...
+		boolean frontierOnly = WeightedGraphMaxSearchFrontierReducer.ITERATION_MODE_FRONTIER.equals(iterationMode);
+		if (frontierOnly)
+		{
+			writeStructure(args);
+		}
+
+		// Resume from the deepest cached frontier whose rows (and everything above them) did not change...
+		WeightedGraphFrontierCache frontierCache = null;
+		String firstInput = inputPathFirstIteration;
+		Path resumedEntry = null;
+		int resumeRow = 0;
+		if (appendRows)
+		{
+			frontierCache = WeightedGraphFrontierCache.open(first, new Path(inputPathFirstIteration), TriangleTopology.get(first));
+			resumedEntry = (frontierCache != null) ? frontierCache.lookup(first) : null;
+			if (resumedEntry != null)
+			{
+				firstInput = WeightedGraphFrontierCache.frontierOf(resumedEntry).toString();
+				resumeRow = WeightedGraphFrontierCache.rowOf(resumedEntry);
+				rowsProcessed = resumeRow - 1;
+				inputIsText = false;
+			}
+		}
+
+		// The two halves of the triangle are solved at the same time...
+		if ("bidirectional".equals(engine))
+		{
+			runBidirectional(args);
+			writeReport();
+			long elapsedTimeMillis = System.currentTimeMillis()-start;
+			System.out.println("Bidirectional Total Elapsed Time (sec): "+ elapsedTimeMillis/1000F);
+			return 0;
+		}
 
 		/*
 		 * Continue looping if either of these conditions are true...
 		 * 1. The total number of iterations was not specified via the -i command line parameter:
 		 *    then loop until we have no more Gray nodes to process.
-		 * 2. The number of iterations was specified via the -i command line parameter, so iterate only those number of times.
+		 * 2. The number of iterations was specified via the -i command line parameter, so iterate only those number of times
+		 *    (process only that number of rows, with -k).
 		 */
 		while (
 				(numGrayNodesToBeProcessed != 0) &&  // (1.)
 				(
 					(NumberOfRowsToProcess == 0) ||   // (1.)
-					((NumberOfRowsToProcess > 0)  && (iterationCount < NumberOfRowsToProcess))  // (2.)
+					((NumberOfRowsToProcess > 0)  && (rowsProcessed < NumberOfRowsToProcess))  // (2.)
 				)
 		)
 		{
@@ -278,9 +772,17 @@ public class WeightedGraphMaxSearch extends Configured implements Tool {
 			// Retrieve the Job configuration...
 			JobConf conf = getJobConf(args);
 
+			// The last MR job of a -i limit may advance the frontier fewer than -k rows
+			int jobRows = bandRows;
+			if (NumberOfRowsToProcess > 0)
+			{
+				jobRows = Math.min(jobRows, NumberOfRowsToProcess - rowsProcessed);
+			}
+			conf.setInt(WeightedGraphMaxSearchBandMapper.BAND_ROWS_PROPERTY, jobRows);
+
 			if (iterationCount == 0)
 			{
-				input_filepath = inputPathFirstIteration;
+				input_filepath = firstInput;
 			}
 			else
 			{
@@ -294,7 +796,54 @@ public class WeightedGraphMaxSearch extends Configured implements Tool {
 			FileInputFormat.setInputPaths(conf, new Path(input_filepath));
 			FileOutputFormat.setOutputPath(conf, new Path(output_filepath));
 
-			RunningJob job = JobClient.runJob(conf);
+			/*
+			 * The nodes are passed between iterations as binary SequenceFiles.
+			 * Only the last iteration writes the text output format.
+			 */
+			if (WeightedGraphRangePartitioner.PARTITION_RANGE.equals(partition))
+			{
+				conf.setInputFormat(inputIsText ? WeightedGraphRangeInputFormat.class : WeightedGraphRangeInputFormat.Sequence.class);
+			}
+			else
+			{
+				conf.setInputFormat(inputIsText ? TextInputFormat.class : SequenceFileInputFormat.class);
+			}
+			if (frontierOnly)
+			{
+				// The output of every iteration is only a part of the graph, it is merged after the last iteration
+				conf.setReducerClass(WeightedGraphMaxSearchFrontierReducer.class);
+				setIntermediateOutput(conf, SequenceFileOutputFormat.class);
+				inputIsText = false;
+			}
+			else
+			{
+				if (lastIteration)
+				{
+					conf.setOutputFormat(TextOutputFormat.class);
+				}
+				else
+				{
+					setIntermediateOutput(conf, SequenceFileOutputFormat.class);
+				}
+				conf.setBoolean(WeightedGraphMaxSearchReducer.TEXT_OUTPUT_PROPERTY, lastIteration);
+				if (lastIteration)
+				{
+					setTextOutputClasses(conf);
+				}
+				inputIsText = lastIteration;
+				if (inputIsText)
+				{
+					finalTextOutput = output_filepath;
+				}
+			}
+
+			// Only the node record and the best candidate of each node are read by the reducer...
+			if (WeightedGraphSortedReducer.SORT_VALUE.equals(sort))
+			{
+				setValueSort(conf);
+			}
+
+			RunningJob job = WeightedGraphJobStats.runJob(conf);
 
 			Counters counters = job.getCounters();
 
@@ -319,25 +868,726 @@ public class WeightedGraphMaxSearch extends Configured implements Tool {
 			}
 
 			iterationCount++;
+			rowsProcessed += jobRows;
+
+			// Log the ETA: the iterations left are known if the rows are (-i, or the rows of the triangle)
+			int remainingIterations = -1;
+			if (numGrayNodesToBeProcessed == 0)
+			{
+				remainingIterations = 0;
+			}
+			else if (NumberOfRowsToProcess > 0)
+			{
+				remainingIterations = (NumberOfRowsToProcess - rowsProcessed + bandRows - 1) / bandRows;
+			}
+			else if (triangleRows > 0)
+			{
+				// (one more iteration for the aggregation node below the last row)
+				remainingIterations = (triangleRows + 1 - rowsProcessed + bandRows - 1) / bandRows;
+			}
+			WeightedGraphRunReport.iteration(job, iterationCount, remainingIterations);
+
+			// The GRAY nodes of the output are the row below the rows processed: store them if it is the bottom row (or the
+			// last row before it that a -k job stops at), with the nodes that the frontier iterations solved above them
+			int boundaryRow = rowsProcessed + 1;
+			if ((frontierCache != null) && (boundaryRow > resumeRow) && (boundaryRow <= triangleRows) && (boundaryRow + bandRows > triangleRows))
+			{
+				Path[] iterationOutputs = new Path[iterationCount];
+				for (int i = 1; i <= iterationCount; i++)
+				{
+					iterationOutputs[i - 1] = new Path(inputPathOtherIterations + i);
+				}
+				frontierCache.store(conf, iterationOutputs, resumedEntry, boundaryRow);
+			}
+
+			/*
+			 * If we stopped without having written the text output (because the -i limit was reached, or the
+			 * last iteration was not detected in advance) then export the last SequenceFile output as text.
+			 */
+			if (!inputIsText && !frontierOnly &&
+					((numGrayNodesToBeProcessed == 0) || ((NumberOfRowsToProcess > 0) && (iterationCount >= NumberOfRowsToProcess))))
+			{
+				exportText(args, output_filepath, output_filepath + "-text");
+				finalTextOutput = output_filepath + "-text";
+			}
+
+			// The next iteration only reads this iteration's output, so the older outputs can go (the frontiers are merged at the end)...
+			if (!frontierOnly)
+			{
+				deleteIterationOutputs(conf, iterationCount - keepIterations, iterationCount - keepIterations);
+			}
 			
 			/*
 			 * Check if we are at the last iteration, if so - then 
-			 * set the flag so that we only have one reducer for this iteration.
-			 * With one reducer, all results are aggregated into part00000 and we will get one answer for the maximum path
+			 * set the flag so that this iteration writes the text output (with all of the reducers).
 			 */
 			if (
 					((NumberOfRowsToProcess == 0) && (numGrayNodesProcessed == numGrayNodesToBeProcessed)) ||
 					((NumberOfRowsToProcess > 0)  && (iterationCount == (NumberOfRowsToProcess-1))) 
 			)
 			{
-				LOG.info("Last Interation!  Set reducer flag to one!");
-				setOneReducer = true;
+				LOG.info("Last Interation!  Set the text output flag!");
+				lastIteration = true;
 			}
 		}
+
+		// Put the complete graph together again, from the structure and the frontier written by every iteration...
+		if (frontierOnly)
+		{
+			finalTextOutput = outputPathIteration + iterationCount + "-text";
+			mergeFrontiers(args, iterationCount, (resumedEntry != null) ? WeightedGraphFrontierCache.solvedOf(resumedEntry) : null,
+					finalTextOutput);
+
+			if (keepIterations > 0)
+			{
+				JobConf conf = getJobConf(args);
+				deleteIterationOutputs(conf, 1, iterationCount - keepIterations);
+				deletePath(conf, conf.get(WeightedGraphMaxSearchFrontierReducer.STRUCTURE_PATH_PROPERTY));
+			}
+		}
+
+		// Merge the maximum distance node of each task of the text output into the result file...
+		if (finalTextOutput != null)
+		{
+			WeightedGraphMaxResult.merge(getConf(), new Path(finalTextOutput), new Path(outputPathIteration + "result"));
+		}
+
+		// Only the predecessors were tracked, so rebuild the maximum path from the output of the last iteration...
+		if (WeightedGraphPathBuilder.PATH_TRACKING_PREDECESSOR.equals(pathTracking) && (finalTextOutput != null))
+		{
+			WeightedGraphPathBuilder.run(getConf(), new Path(finalTextOutput), new Path(outputPathIteration + "maxpath"));
+		}
+
+		// Rebuild the K best paths from the TOP lists...
+		if ((topK > 1) && (finalTextOutput != null))
+		{
+			WeightedGraphTopKPathBuilder.run(getConf(), new Path(finalTextOutput), new Path(outputPathIteration + "topk"), topK);
+		}
+
+		// Rebuild the maximum path of every source from the SOURCES vectors...
+		if ((sourcesFile != null) && (finalTextOutput != null))
+		{
+			WeightedGraphMultiSourcePathBuilder.run(getConf(), new Path(finalTextOutput), new Path(outputPathIteration + "sources"),
+					WeightedGraphMultiSourcePathBuilder.getSources(first));
+		}
+
+		writeReport();
 		return 0;
 	}
 
 
+	/**
+	 * Write the counters and timings of the MR jobs of this run to <outputPathIteration>report.json (WeightedGraphRunReport)
+	 */
+	private void writeReport() throws IOException {
+		WeightedGraphRunReport.write(getConf(), new Path(outputPathIteration + "report.json"), engine, iterationMode);
+	}
+
+
+
+	/**
+	 * Solve the graph with the in-memory engine (WeightedGraphLocalSolver) if it was selected
+	 * with -engine local, or if -engine auto and the input graph is small enough - or with its multi-threaded version
+	 * (WeightedGraphParallelSolver) if it was selected with -engine parallel.
+	 * Solve the triangle with the streaming engine (WeightedGraphTriangleSolver) if it was selected with -engine stream.
+	 * Returns false if the MR engine should be used.
+	 */
+	@SuppressWarnings("deprecation")
+	private boolean runLocalEngine(JobConf conf) throws IOException {
+
+		if ("mr".equals(engine) || "bidirectional".equals(engine))
+		{
+			return false;
+		}
+		if (appendRows)
+		{
+			LOG.info("Only the MR engine resumes from the frontier cache - using the MR engine");
+			return false;
+		}
+		if (topK > 1)
+		{
+			LOG.info("Only the MR engine keeps the " + topK + " best paths - using the MR engine");
+			return false;
+		}
+		if (sourcesFile != null)
+		{
+			LOG.info("Only the MR engine solves a batch of sources - using the MR engine");
+			return false;
+		}
+
+		Path input = new Path(inputPathFirstIteration);
+
+		if ("stream".equals(engine))
+		{
+			// The streaming engine only keeps the choice bits of the path, so the maximum path is the only output
+			// (and the result, the same line)...
+			WeightedNode sink = WeightedGraphTriangleSolver.run(conf, input, new Path(outputPathIteration + "maxpath"),
+					TriangleTopology.get(conf));
+			WeightedNodeWritable result = new WeightedNodeWritable();
+			result.set(sink);
+			WeightedGraphMaxResult.writeResult(conf, new Path(outputPathIteration + "result"), result);
+			return true;
+		}
+
+		int maxNodes = Integer.MAX_VALUE;
+		if ("auto".equals(engine))
+		{
+			// The in-memory engine always solves the whole graph...
+			if (NumberOfRowsToProcess > 0)
+			{
+				LOG.info("Number of iterations is limited (-i) - using the MR engine");
+				return false;
+			}
+			if (!WeightedGraphLocalSolver.isSmallInput(conf, input))
+			{
+				return false;
+			}
+			maxNodes = conf.getInt(WeightedGraphLocalSolver.MAX_NODES_PROPERTY, WeightedGraphLocalSolver.DEFAULT_MAX_NODES);
+		}
+		else if (NumberOfRowsToProcess > 0)
+		{
+			LOG.info("The in-memory engine solves the whole graph - ignoring -i " + NumberOfRowsToProcess);
+		}
+
+		boolean trackPredecessorOnly = WeightedGraphPathBuilder.PATH_TRACKING_PREDECESSOR.equals(pathTracking);
+		Path outputDir;
+		if ("parallel".equals(engine))
+		{
+			outputDir = WeightedGraphParallelSolver.run(conf, input, outputPathIteration, trackPredecessorOnly, TriangleTopology.get(conf));
+		}
+		else
+		{
+			outputDir = WeightedGraphLocalSolver.run(conf, input, outputPathIteration, trackPredecessorOnly, maxNodes,
+					TriangleTopology.get(conf));
+		}
+		if (outputDir == null)
+		{
+			return false;
+		}
+		WeightedGraphMaxResult.merge(conf, outputDir, new Path(outputPathIteration + "result"));
+
+		if (trackPredecessorOnly)
+		{
+			WeightedGraphPathBuilder.run(conf, outputDir, new Path(outputPathIteration + "maxpath"));
+		}
+		return true;
+	}
+
+
+
+	/**
+	 * The bidirectional engine: the rows 1..R/2 of the triangle are solved top-down (the frontier iterations, -k rows
+	 * per job), and - at the same time, in another thread - the rows R..R/2+1 are solved bottom-up: every bottom-up
+	 * iteration computes the best suffix (the maximum weight path down to the aggregation node) of the nodes of the row
+	 * above (WeightedGraphSuffixMapper / WeightedGraphSuffixReducer).  When both are done they are joined at the middle
+	 * row R/2+1 (WeightedGraphJoinMapper / WeightedGraphJoinReducer): the maximum of distance + best suffix, and the
+	 * stitched path, are written as the aggregation node line to <outputPathIteration>join and <outputPathIteration>result.
+	 *
+	 * So the longest series of jobs is about R/2 (top-down, R/2k with -k) instead of R.
+	 */
+	@SuppressWarnings("deprecation")
+	private void runBidirectional(final String[] args) throws Exception {
+
+		final JobConf base = getJobConf(args);
+		int rows = TriangleTopology.get(base).getRows();
+		if (rows < 2)
+		{
+			throw new IllegalArgumentException("-engine bidirectional needs a triangle of at least two rows");
+		}
+		if (NumberOfRowsToProcess > 0)
+		{
+			LOG.info("The bidirectional engine solves the whole triangle - ignoring -i " + NumberOfRowsToProcess);
+		}
+		final int topRows = rows / 2;
+		final int bottomRows = rows - topRows;
+		LOG.info("** Bidirectional: rows 1.." + topRows + " top-down, rows " + rows + ".." + (topRows + 1) + " bottom-up");
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		final int[] topDownJobs = new int[1];
+		// The jobs left in the top-down and in the bottom-up pass, and the iterations done so far (of both passes)
+		final int[] passJobs = { (topRows + bandRows - 1) / bandRows, bottomRows, 0 };
+		try
+		{
+			Future<Void> topDown = executor.submit(new Callable<Void>() {
+				public Void call() throws Exception {
+					topDownJobs[0] = runTopDown(base, topRows, passJobs);
+					return null;
+				}
+			});
+			Future<Void> bottomUp = executor.submit(new Callable<Void>() {
+				public Void call() throws Exception {
+					runBottomUp(base, bottomRows, passJobs);
+					return null;
+				}
+			});
+			topDown.get();
+			bottomUp.get();
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+
+		RunningJob join = joinPasses(base, topRows + 1, inputPathOtherIterations + topDownJobs[0], outputPathIteration + "suffix-" + bottomRows);
+		WeightedGraphRunReport.iteration(join, passJobs[2] + 1, 0);
+		WeightedGraphMaxResult.merge(base, new Path(outputPathIteration + "join"), new Path(outputPathIteration + "result"));
+
+		if (keepIterations > 0)
+		{
+			deleteIterationOutputs(base, 1, topDownJobs[0]);
+			deletePath(base, outputPathIteration + "suffix-" + bottomRows);
+			deletePath(base, base.get(WeightedGraphMaxSearchFrontierReducer.STRUCTURE_PATH_PROPERTY));
+		}
+	}
+
+	/*
+	 * Mark a job of one of the two passes (0: top-down, 1: bottom-up) as the next iteration of the run.  The passes run at
+	 * the same time, so the iterations left are the jobs left in the longer pass, and the join.
+	 */
+	private static void passIteration(RunningJob job, int[] passJobs, int pass) {
+		synchronized (passJobs)
+		{
+			passJobs[pass]--;
+			passJobs[2]++;
+			WeightedGraphRunReport.iteration(job, passJobs[2], Math.max(passJobs[0], passJobs[1]) + 1);
+		}
+	}
+
+	/*
+	 * The top-down pass: the frontier iterations over the rows 1..topRows, returns the number of jobs
+	 */
+	@SuppressWarnings("deprecation")
+	private int runTopDown(JobConf base, int topRows, int[] passJobs) throws IOException {
+
+		int iterationCount = 0;
+		for (int rowsProcessed = 0; rowsProcessed < topRows; iterationCount++)
+		{
+			JobConf conf = new JobConf(base);
+			conf.setJobName("WeightedGraphMaxSearch-TopDown");
+			int jobRows = Math.min(bandRows, topRows - rowsProcessed);
+			conf.setInt(WeightedGraphMaxSearchBandMapper.BAND_ROWS_PROPERTY, jobRows);
+
+			String input_filepath = (iterationCount == 0) ? inputPathFirstIteration : inputPathOtherIterations + iterationCount;
+			String output_filepath = outputPathIteration + (iterationCount + 1);
+			LOG.info("** Top-down Interation Count= " + iterationCount + " Input= " + input_filepath + " Output= " + output_filepath);
+			FileInputFormat.setInputPaths(conf, new Path(input_filepath));
+			FileOutputFormat.setOutputPath(conf, new Path(output_filepath));
+
+			boolean inputIsText = (iterationCount == 0);
+			if (WeightedGraphRangePartitioner.PARTITION_RANGE.equals(partition))
+			{
+				conf.setInputFormat(inputIsText ? WeightedGraphRangeInputFormat.class : WeightedGraphRangeInputFormat.Sequence.class);
+			}
+			else
+			{
+				conf.setInputFormat(inputIsText ? TextInputFormat.class : SequenceFileInputFormat.class);
+			}
+			conf.setReducerClass(WeightedGraphMaxSearchFrontierReducer.class);
+			setIntermediateOutput(conf, SequenceFileOutputFormat.class);
+
+			passIteration(WeightedGraphJobStats.runJob(conf), passJobs, 0);
+			rowsProcessed += jobRows;
+
+			// Only the frontier of the last job is joined, so the older outputs can go...
+			deleteIterationOutputs(conf, iterationCount + 1 - keepIterations, iterationCount + 1 - keepIterations);
+		}
+		return iterationCount;
+	}
+
+	/*
+	 * The bottom-up pass: one job per row, from the aggregation node up to row (R - bottomRows + 1)
+	 */
+	@SuppressWarnings("deprecation")
+	private void runBottomUp(JobConf base, int bottomRows, int[] passJobs) throws IOException {
+
+		// The first input is the aggregation node - its best suffix is empty
+		TriangleTopology triangle = TriangleTopology.get(base);
+		Path seed = new Path(outputPathIteration + "suffix-0", "part-00000");
+		FileSystem fs = seed.getFileSystem(base);
+		SequenceFile.Writer writer = SequenceFile.createWriter(fs, base, seed, IntWritable.class, WeightedNodeWritable.class);
+		try
+		{
+			WeightedNodeWritable sink = new WeightedNodeWritable(triangle.getAggregationNodeId());
+			sink.setColor(WeightedNode.Color.BLACK);
+			writer.append(new IntWritable(sink.getId()), sink);
+		}
+		finally
+		{
+			writer.close();
+		}
+
+		for (int j = 1; j <= bottomRows; j++)
+		{
+			JobConf conf = new JobConf(base);
+			conf.setJobName("WeightedGraphMaxSearch-BottomUp");
+			conf.setMapperClass(WeightedGraphSuffixMapper.class);
+			conf.setCombinerClass(WeightedGraphSuffixReducer.Combiner.class);
+			conf.setReducerClass(WeightedGraphSuffixReducer.class);
+
+			String input_filepath = outputPathIteration + "suffix-" + (j - 1);
+			String output_filepath = outputPathIteration + "suffix-" + j;
+			LOG.info("** Bottom-up Interation Count= " + j + " Input= " + input_filepath + " Output= " + output_filepath);
+			FileInputFormat.setInputPaths(conf, new Path(input_filepath));
+			FileOutputFormat.setOutputPath(conf, new Path(output_filepath));
+			conf.setInputFormat(SequenceFileInputFormat.class);
+			setIntermediateOutput(conf, SequenceFileOutputFormat.class);
+
+			passIteration(WeightedGraphJobStats.runJob(conf), passJobs, 1);
+
+			if (keepIterations > 0)
+			{
+				deletePath(conf, input_filepath);
+			}
+		}
+	}
+
+	/*
+	 * Join the top-down frontier and the bottom-up suffixes at the middle row
+	 */
+	@SuppressWarnings("deprecation")
+	private RunningJob joinPasses(JobConf base, int joinRow, String topDown_filepath, String bottomUp_filepath) throws IOException {
+
+		JobConf conf = new JobConf(base);
+		conf.setJobName("WeightedGraphMaxSearch-Join");
+		conf.setMapperClass(WeightedGraphJoinMapper.class);
+		// (the combiner of the iterations would merge the two halves of a node - the identity reducer keeps them apart)
+		conf.setCombinerClass(IdentityReducer.class);
+		conf.setReducerClass(WeightedGraphJoinReducer.class);
+		// Only the middle row is read, so one reducer finds the maximum
+		conf.setNumReduceTasks(1);
+		conf.setInt(WeightedGraphJoinMapper.JOIN_ROW_PROPERTY, joinRow);
+
+		conf.setInputFormat(SequenceFileInputFormat.class);
+		conf.setOutputFormat(TextOutputFormat.class);
+		setTextOutputClasses(conf);
+
+		String output_filepath = outputPathIteration + "join";
+		LOG.info("** Join at row " + joinRow + " Input= " + topDown_filepath + ", " + bottomUp_filepath + " Output= " + output_filepath);
+		FileInputFormat.setInputPaths(conf, new Path(topDown_filepath));
+		FileInputFormat.addInputPath(conf, new Path(bottomUp_filepath));
+		FileOutputFormat.setOutputPath(conf, new Path(output_filepath));
+
+		return WeightedGraphJobStats.runJob(conf);
+	}
+
+
+
+	/**
+	 * The incremental re-solve (see WeightedGraphIncremental):
+	 * 1. the previous output, with the new weights, is written as the state MapFiles (and the parents of every node,
+	 *    for an explicit graph), and the reached nodes of the delta file are written as the first frontier,
+	 * 2. the incremental iterations solve the cone below the changed nodes again, one level per iteration, starting at
+	 *    the highest changed node, until no node of the frontier changed any more,
+	 * 3. the state and the nodes that were solved again are merged into <outputPathIteration>incremental-text, and the
+	 *    maximum distance node is written to <outputPathIteration>result (and the maximum path to maxpath, with -path pred).
+	 */
+	@SuppressWarnings("deprecation")
+	private void runIncremental(JobConf base) throws IOException {
+
+		TriangleTopology triangle = TriangleTopology.get(base);
+		String state_filepath = base.get(WeightedGraphIncremental.STATE_PATH_PROPERTY);
+		String parents_filepath = base.get(WeightedGraphIncremental.PARENTS_PATH_PROPERTY);
+
+		// The previous output with the new weights, as MapFiles (looked up with the HashPartitioner)...
+		JobConf conf = new JobConf(base);
+		conf.setJobName("WeightedGraphMaxSearch-IncrementalState");
+		conf.setMapperClass(WeightedGraphIncremental.StateMapper.class);
+		conf.setCombinerClass(IdentityReducer.class);
+		conf.setReducerClass(IdentityReducer.class);
+		conf.setPartitionerClass(HashPartitioner.class);
+		conf.setInputFormat(TextInputFormat.class);
+		setIntermediateOutput(conf, MapFileOutputFormat.class);
+		LOG.info("** Incremental state Input= " + incrementalPrevious + ", " + incrementalDelta + " Output= " + state_filepath);
+		FileInputFormat.setInputPaths(conf, new Path(incrementalPrevious));
+		FileOutputFormat.setOutputPath(conf, new Path(state_filepath));
+		WeightedGraphJobStats.runJob(conf);
+
+		// The edges only lead to the children, so the parents of every node are written as well (explicit graphs)...
+		if (triangle == null)
+		{
+			conf = new JobConf(base);
+			conf.setJobName("WeightedGraphMaxSearch-IncrementalParents");
+			conf.setMapperClass(WeightedGraphIncremental.ParentsMapper.class);
+			conf.setCombinerClass(WeightedGraphIncremental.ParentsReducer.class);
+			conf.setReducerClass(WeightedGraphIncremental.ParentsReducer.class);
+			conf.setPartitionerClass(HashPartitioner.class);
+			conf.setInputFormat(TextInputFormat.class);
+			setIntermediateOutput(conf, MapFileOutputFormat.class);
+			LOG.info("** Incremental parents Input= " + incrementalPrevious + " Output= " + parents_filepath);
+			FileInputFormat.setInputPaths(conf, new Path(incrementalPrevious));
+			FileOutputFormat.setOutputPath(conf, new Path(parents_filepath));
+			WeightedGraphJobStats.runJob(conf);
+		}
+
+		// The first frontier: the reached nodes of the delta file, with their new weights
+		int level = Integer.MAX_VALUE;
+		long numGrayNodesToBeProcessed = 0;
+		Path seed = new Path(outputPathIteration + "incremental-0", "part-00000");
+		FileSystem fs = seed.getFileSystem(base);
+		MapFile.Reader[] readers = MapFileOutputFormat.getReaders(fs, new Path(state_filepath), base);
+		SequenceFile.Writer writer = SequenceFile.createWriter(fs, base, seed, IntWritable.class, WeightedNodeWritable.class);
+		try
+		{
+			HashPartitioner<IntWritable, WeightedNodeWritable> partitioner = new HashPartitioner<IntWritable, WeightedNodeWritable>();
+			IntWritable key = new IntWritable();
+			WeightedNodeWritable node = new WeightedNodeWritable();
+			for (Integer id : WeightedGraphIncremental.readDelta(base, new Path(incrementalDelta)).keySet())
+			{
+				key.set(id.intValue());
+				if (!WeightedGraphIncremental.lookup(readers, partitioner, key, node) ||
+						(node.getColor() == WeightedNode.Color.WHITE))
+				{
+					LOG.info("Node " + id + " of the delta file was not reached - nothing below it changes");
+					continue;
+				}
+				node.setColor(WeightedNode.Color.GRAY);
+				writer.append(key, node);
+				level = Math.min(level, WeightedGraphIncremental.levelOf(node, triangle));
+				numGrayNodesToBeProcessed++;
+			}
+		}
+		finally
+		{
+			writer.close();
+			WeightedGraphIncremental.closeReaders(readers);
+		}
+		LOG.info("** Incremental: " + numGrayNodesToBeProcessed + " changed nodes, the highest at level " + level);
+
+		// Go down the cone, one level per iteration...
+		int iterationCount = 0;
+		while (numGrayNodesToBeProcessed != 0)
+		{
+			conf = new JobConf(base);
+			conf.setJobName("WeightedGraphMaxSearch-Incremental");
+			conf.setMapperClass(WeightedGraphIncrementalMapper.class);
+			// (the combiner of the iterations would merge the candidates into the node - the identity reducer keeps them apart)
+			conf.setCombinerClass(IdentityReducer.class);
+			conf.setReducerClass(WeightedGraphIncrementalReducer.class);
+			conf.setInt(WeightedGraphIncremental.LEVEL_PROPERTY, level);
+			conf.setInputFormat(SequenceFileInputFormat.class);
+			setIntermediateOutput(conf, SequenceFileOutputFormat.class);
+
+			String input_filepath = outputPathIteration + "incremental-" + iterationCount;
+			String output_filepath = outputPathIteration + "incremental-" + (iterationCount + 1);
+			LOG.info("** Incremental Interation Count= " + iterationCount + " Level= " + level + " Input= " + input_filepath + " Output= " + output_filepath);
+			FileInputFormat.setInputPaths(conf, new Path(input_filepath));
+			FileOutputFormat.setOutputPath(conf, new Path(output_filepath));
+
+			RunningJob job = WeightedGraphJobStats.runJob(conf);
+			numGrayNodesToBeProcessed = job.getCounters().getCounter(MRStats.NUMBER_OF_GRAY_NODES_TOBE_PROCESSED);
+			LOG.info("numGrayNodesToBeProcessed Count= " + numGrayNodesToBeProcessed);
+			iterationCount++;
+			level++;
+		}
+
+		// Put the complete graph together again: the nodes that were solved again replace their previous state...
+		conf = new JobConf(base);
+		conf.setJobName("WeightedGraphMaxSearch-IncrementalMerge");
+		conf.setMapperClass(WeightedGraphIncremental.MergeMapper.class);
+		conf.setCombinerClass(IdentityReducer.class);
+		conf.setReducerClass(WeightedGraphIncremental.MergeReducer.class);
+		conf.setInputFormat(SequenceFileInputFormat.class);
+		conf.setOutputFormat(TextOutputFormat.class);
+		setTextOutputClasses(conf);
+
+		String finalTextOutput = outputPathIteration + "incremental-text";
+		FileInputFormat.setInputPaths(conf, new Path(state_filepath));
+		for (int i = 1; i <= iterationCount; i++)
+		{
+			FileInputFormat.addInputPath(conf, new Path(outputPathIteration + "incremental-" + i));
+		}
+		LOG.info("** Incremental merge of " + iterationCount + " iterations, Output= " + finalTextOutput);
+		FileOutputFormat.setOutputPath(conf, new Path(finalTextOutput));
+		WeightedGraphJobStats.runJob(conf);
+
+		WeightedGraphMaxResult.merge(base, new Path(finalTextOutput), new Path(outputPathIteration + "result"));
+		if (WeightedGraphPathBuilder.PATH_TRACKING_PREDECESSOR.equals(pathTracking))
+		{
+			WeightedGraphPathBuilder.run(base, new Path(finalTextOutput), new Path(outputPathIteration + "maxpath"));
+		}
+
+		if (keepIterations > 0)
+		{
+			for (int i = 0; i <= iterationCount; i++)
+			{
+				deletePath(base, outputPathIteration + "incremental-" + i);
+			}
+			deletePath(base, state_filepath);
+			deletePath(base, parents_filepath);
+		}
+	}
+
+
+
+	/**
+	 * The secondary sort of -sort value: the map output is keyed by the composite WeightedNodeKey - sorted by node ID, the
+	 * node record first, then the candidates by descending distance - partitioned and grouped by node ID only
+	 */
+	@SuppressWarnings("deprecation")
+	private static void setValueSort(JobConf conf) {
+		conf.setMapperClass(WeightedGraphSortedMapper.class);
+		conf.setReducerClass(WeightedGraphSortedReducer.class);
+		conf.setMapOutputKeyClass(WeightedNodeKey.class);
+		conf.setOutputKeyComparatorClass(WeightedNodeKey.Comparator.class);
+		conf.setOutputValueGroupingComparator(WeightedNodeKey.GroupComparator.class);
+		conf.setPartitionerClass(WeightedNodeKey.Partitioner.class);
+	}
+
+
+
+	/**
+	 * The output of an iteration that is read by the next iteration: (block compressed) SequenceFiles or MapFiles
+	 */
+	@SuppressWarnings("deprecation")
+	private static <F extends OutputFormat<?, ?>> void setIntermediateOutput(JobConf conf, Class<F> format) {
+		conf.setOutputFormat(format);
+		FileOutputFormat.setCompressOutput(conf, compressIntermediate);
+	}
+
+
+
+	/**
+	 * Delete the output of the iterations first..last (keepIterations of 0 keeps them all)
+	 */
+	@SuppressWarnings("deprecation")
+	private void deleteIterationOutputs(JobConf conf, int first, int last) throws IOException {
+		if (keepIterations <= 0)
+		{
+			return;
+		}
+		for (int i = Math.max(1, first); i <= last; i++)
+		{
+			deletePath(conf, inputPathOtherIterations + i);
+		}
+	}
+
+	@SuppressWarnings("deprecation")
+	private void deletePath(JobConf conf, String path_name) throws IOException {
+		Path path = new Path(path_name);
+		FileSystem fs = path.getFileSystem(conf);
+		if (fs.exists(path))
+		{
+			LOG.info("Deleting " + path);
+			fs.delete(path, true);
+		}
+	}
+
+
+
+	/**
+	 * The text output is written as whole lines (ID <tab> WEIGHT|EDGES|...) in a Text value, with a NullWritable key
+	 */
+	@SuppressWarnings("deprecation")
+	private static void setTextOutputClasses(JobConf conf) {
+		conf.setOutputKeyClass(NullWritable.class);
+		conf.setOutputValueClass(Text.class);
+	}
+
+
+
+	/**
+	 * Convert the (SequenceFile) output of an iteration into the text output format:
+	 * ID   WEIGHT|EDGES|DISTANCE|COLOR|Path_taken_edges|
+	 * This is a map only job, so each SequenceFile part is written as one text part file (still sorted by ID).
+	 */
+	@SuppressWarnings("deprecation")
+	private void exportText(String[] args, String input_filepath, String output_filepath) throws IOException {
+
+		JobConf conf = getJobConf(args);
+		conf.setJobName("WeightedGraphMaxSearch-ExportText");
+
+		conf.setMapperClass(WeightedGraphExportMapper.class);
+		conf.setNumReduceTasks(0);
+
+		conf.setInputFormat(SequenceFileInputFormat.class);
+		conf.setOutputFormat(TextOutputFormat.class);
+		setTextOutputClasses(conf);
+
+		LOG.info("** Export Input= " + input_filepath + " Output= " + output_filepath);
+		FileInputFormat.setInputPaths(conf, new Path(input_filepath));
+		FileOutputFormat.setOutputPath(conf, new Path(output_filepath));
+
+		WeightedGraphJobStats.runJob(conf);
+	}
+
+
+
+	/**
+	 * Write the static part of the graph (every node of the input graph, with its weight and edges) as MapFiles,
+	 * for the frontier iterations.  The frontier reducer looks up the weight and edges of the new GRAY nodes in
+	 * these MapFiles, with the same (hash) partitioner that wrote them.
+	 */
+	@SuppressWarnings("deprecation")
+	private void writeStructure(String[] args) throws IOException {
+
+		JobConf conf = getJobConf(args);
+		conf.setJobName("WeightedGraphMaxSearch-Structure");
+
+		conf.setMapperClass(WeightedGraphMaxSearchStructureMapper.class);
+		conf.setReducerClass(IdentityReducer.class);
+		// The frontier reducer looks up the nodes with the HashPartitioner, whatever the iterations are partitioned by
+		conf.setPartitionerClass(HashPartitioner.class);
+
+		conf.setInputFormat(TextInputFormat.class);
+		setIntermediateOutput(conf, MapFileOutputFormat.class);
+
+		String output_filepath = conf.get(WeightedGraphMaxSearchFrontierReducer.STRUCTURE_PATH_PROPERTY);
+		LOG.info("** Structure Input= " + inputPathFirstIteration + " Output= " + output_filepath);
+		FileInputFormat.setInputPaths(conf, new Path(inputPathFirstIteration));
+		FileOutputFormat.setOutputPath(conf, new Path(output_filepath));
+
+		WeightedGraphJobStats.runJob(conf);
+	}
+
+
+
+	/**
+	 * Merge the structure of the graph and the frontier written by each of the (iterationCount) frontier iterations
+	 * into the complete graph, in the text output format.
+	 * Every node is reduced just like in the full iterations: the maximum distance (and its path) wins, and the darkest
+	 * color wins - a node that was processed in any iteration is BLACK, a node of the last frontier is still GRAY,
+	 * and a node that was never reached is still WHITE.
+	 * The interior nodes of the -k bands, which the band mappers write to side files instead of the shuffle, are merged
+	 * as well (see WeightedGraphMaxSearchBandMapper).
+	 * A run resumed from the frontier cache (-append) also merges the solved nodes of the cache entry (solved, or null),
+	 * the rows above the cached row that its iterations did not process.
+	 */
+	@SuppressWarnings("deprecation")
+	private void mergeFrontiers(String[] args, int iterationCount, Path solved, String output_filepath) throws IOException {
+
+		JobConf conf = getJobConf(args);
+		conf.setJobName("WeightedGraphMaxSearch-MergeFrontiers");
+
+		// The reducers (-r) each write a part of the complete graph, and their maximum distance node to a side file
+		conf.setMapperClass(IdentityMapper.class);
+
+		// The MapFiles of the structure are read as SequenceFiles (their data files)
+		conf.setInputFormat(SequenceFileInputFormat.class);
+		conf.setOutputFormat(TextOutputFormat.class);
+		conf.setBoolean(WeightedGraphMaxSearchReducer.TEXT_OUTPUT_PROPERTY, true);
+		setTextOutputClasses(conf);
+
+		FileInputFormat.setInputPaths(conf, new Path(conf.get(WeightedGraphMaxSearchFrontierReducer.STRUCTURE_PATH_PROPERTY)));
+		for (int i = 1; i <= iterationCount; i++)
+		{
+			FileInputFormat.addInputPath(conf, new Path(inputPathOtherIterations + i));
+			// (and the interior nodes that the -k bands did not shuffle)
+			for (Path interior : WeightedGraphMaxSearchBandMapper.interiorFiles(conf, new Path(inputPathOtherIterations + i)))
+			{
+				FileInputFormat.addInputPath(conf, interior);
+			}
+		}
+		if (solved != null)
+		{
+			FileInputFormat.addInputPath(conf, solved);
+		}
+		LOG.info("** Merge " + iterationCount + " frontiers, Output= " + output_filepath);
+		FileOutputFormat.setOutputPath(conf, new Path(output_filepath));
+
+		WeightedGraphJobStats.runJob(conf);
+	}
+
+
 
 	public static void main(String[] args) throws Exception {
 
@@ -360,7 +1610,37 @@ public class WeightedGraphMaxSearch extends Configured implements Tool {
 			System.out.println(" -i <Number of Iterations>");
 			System.out.println(" -m <Number of Map Tasks>");
 			System.out.println(" -r <Number of Reduce Tasks>");
+			System.out.println(" -path <full | pred>");
+			System.out.println(" -engine <auto | local | parallel | stream | mr | bidirectional>");
+			System.out.println(" -iteration <full | frontier>");
+			System.out.println(" -combine <combiner | inmapper>");
+			System.out.println(" -partition <hash | range>");
+			System.out.println(" -k <Number of rows per MR job>");
+			System.out.println(" -sort <key | value>");
+			System.out.println(" -prune <none | bound>");
+			System.out.println(" -topk <Number of best paths>");
+			System.out.println(" -incremental <Previous output directory> -delta <Delta file>");
+			System.out.println(" -append");
+			System.out.println(" -sources <Sources file>");
+			System.out.println(" -topology <explicit | triangle> -rows <Number of rows of the triangle>");
 			System.out.println("where <Number of Iterations> is equal to the number of rows to be processed in the triangle");
+			System.out.println("-engine local solves the graph in memory (auto: when it is smaller than localEngineMaxInputBytes / localEngineMaxNodes)");
+			System.out.println("-engine parallel solves the graph in memory on all of the cores (parallelEngineThreads), one wavefront of nodes at a time");
+			System.out.println("-engine stream solves a triangle one row at a time, and writes only the maximum path to <outputPathIteration>maxpath");
+			System.out.println("-engine bidirectional solves the upper half of a triangle top-down and the lower half bottom-up, at the same time");
+			System.out.println("-iteration frontier (mr engine) shuffles only the GRAY nodes in each iteration, the result is merged into <outputPathIteration><N>-text");
+			System.out.println("-combine inmapper merges the new GRAY nodes in the mapper (up to inMapperCombiningMaxBytes), instead of in the combiner");
+			System.out.println("-partition range splits the graph into exactly -m contiguous node ranges, and gives each reducer a contiguous node range");
+			System.out.println("-k solves k rows of the triangle per MR job (needs -topology triangle, and uses -iteration frontier)");
+			System.out.println("-r reducers also write the text output of the last iteration (mr engine), the maximum distance node is written to <outputPathIteration>result");
+			System.out.println("-sort value (mr engine) sorts the values of each node, so that the reducers only read the node record and the best candidate");
+			System.out.println("-prune bound (mr engine, needs -topology triangle) does not expand the GRAY nodes that can not beat the greedy path");
+			System.out.println("-topk K (mr engine) writes the K best paths to the sink node to <outputPathIteration>topk");
+			System.out.println("-incremental re-solves the complete text output of an earlier run after the weights in the delta file (ID <tab> WEIGHT) changed, into <outputPathIteration>incremental-text");
+			System.out.println("-append (mr engine, needs -topology triangle) resumes from the cached frontier of the unchanged rows on top, and caches the bottom row (frontierCacheDir)");
+			System.out.println("-sources (mr engine) solves for every start node of the sources file in one series of iterations, the maximum path of each is written to <outputPathIteration>sources");
+			System.out.println("-topology triangle computes the edges from the node IDs, instead of reading (and carrying) the EDGES column");
+			System.out.println("and -path pred tracks only the predecessor of each node, the maximum path is written to <outputPathIteration>maxpath");
 			return;
 		}
 
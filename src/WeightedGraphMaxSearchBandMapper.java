@@ -0,0 +1,451 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.MapFile;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapred.FileOutputFormat;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapFileOutputFormat;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.Mapper;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.log4j.Logger;
+
+
+
+  /**
+   * The Mapper of the multi-row 'supersteps' (-k rows), for the triangle topology and the frontier iterations.
+   *
+   * Instead of expanding each GRAY node by one row, the mapper collects the GRAY nodes of its split (a range of the
+   * frontier row) and, when the task closes, advances them k rows in memory: the nodes of the next k-1 rows that
+   * can be reached from its range (the range widens by one node per row - the 'halo' that it shares with the mapper
+   * of the next range) are processed just like the MR iterations would process them, and the nodes of the k-th row are
+   * emitted as the new GRAY nodes.  The weights of those rows are read from the structure of the graph (the MapFiles
+   * written before the first iteration) - every reader is read sequentially over the ID range of a row.
+   *
+   * The mapper emits:
+   * - the nodes of the k-th row as new GRAY nodes (weight zero, looked up by the WeightedGraphMaxSearchFrontierReducer)
+   * - the nodes of the halo - the nodes of the k rows from the GRAY nodes of its split down that can also be reached
+   *   from a node of the frontier row that is not in its split - as BLACK nodes (processed)
+   * Only these go through the shuffle.  A halo node is emitted by two (or more) mappers, each with the maximum distance
+   * over the paths from its own range - the reducer keeps the maximum, which is the maximum distance over the paths
+   * from the whole frontier (on a tie, the path from the lower predecessor - see WeightedNodeAccumulator - the same
+   * node that the mapper keeps on a tie, so the output does not depend on the order of the values).
+   *
+   * The interior nodes - every other node of the k rows, which can only be reached from the GRAY nodes of the split,
+   * so their distances and paths are final - are not shuffled: they are written BLACK, with their weights, to a side
+   * file (_band/part-<task number>, a SequenceFile in the task's work output directory, that the framework moves into
+   * the output directory of the job).  The '_' keeps them out of the input of the next job, which only needs the new
+   * GRAY nodes, and the driver merges them into the complete graph after the last iteration (see interiorFiles).
+   *
+   * A triangle of N rows is then solved with about N/k MR jobs instead of N.
+   *
+   * Key: File Offset (first iteration) or Node ID
+   * Value: a text line (first iteration) or a binary WeightedNodeWritable node
+   */
+  @SuppressWarnings("deprecation")
+public class WeightedGraphMaxSearchBandMapper extends MapReduceBase implements
+                    Mapper<Writable, Writable, IntWritable, WeightedNodeWritable> {
+
+	// Log4j Initalization...
+	private static final Logger LOG = Logger.getLogger(WeightedGraphMaxSearchBandMapper.class);
+
+    // Job configuration property: the number of rows that each MR job advances the frontier (-k)
+    public static final String BAND_ROWS_PROPERTY = "bandRows";
+
+    // The directory of the side files of the interior nodes, in the output directory of the job
+    public static final String INTERIOR_DIR = "_band";
+
+    // Marks a node of a row that can not be reached from the GRAY nodes of this split
+    private static final int UNREACHED = Integer.MIN_VALUE;
+
+    // Output key and value objects - reused for every record that we emit
+    private final IntWritable outputKey = new IntWritable();
+    private final WeightedNodeWritable vnode = new WeightedNodeWritable();
+
+    private JobConf job;
+    private boolean trackPredecessorOnly = false;
+    private TriangleTopology topology;
+    private int bandRows;
+    private MapFile.Reader[] structure;
+
+    // The GRAY nodes of this split (copies - the framework reuses the value objects)
+    private final List<WeightedNodeWritable> frontier = new ArrayList<WeightedNodeWritable>();
+    // The output collector and reporter - saved so that the band can be solved when the task closes
+    private OutputCollector<IntWritable, WeightedNodeWritable> output = null;
+    private Reporter reporter = null;
+    // The side file of the interior nodes (opened with the first interior node)
+    private SequenceFile.Writer interior = null;
+
+    @Override
+    public void configure(JobConf job) {
+      this.job = job;
+      trackPredecessorOnly = WeightedGraphPathBuilder.PATH_TRACKING_PREDECESSOR.equals(
+          job.get(WeightedGraphPathBuilder.PATH_TRACKING_PROPERTY, WeightedGraphPathBuilder.PATH_TRACKING_FULL));
+      topology = TriangleTopology.get(job);
+      if (topology == null) {
+        throw new IllegalArgumentException("The multi-row supersteps need the triangle topology");
+      }
+      bandRows = Math.max(1, job.getInt(BAND_ROWS_PROPERTY, 1));
+      try {
+        Path structurePath = new Path(job.get(WeightedGraphMaxSearchFrontierReducer.STRUCTURE_PATH_PROPERTY));
+        FileSystem fs = structurePath.getFileSystem(job);
+        structure = MapFileOutputFormat.getReaders(fs, structurePath, job);
+      } catch (IOException e) {
+        throw new RuntimeException("Unable to open the structure of the graph", e);
+      }
+    }
+
+
+    public void map(Writable key,
+                    Writable value,
+                    OutputCollector<IntWritable, WeightedNodeWritable> output,
+                    Reporter reporter) throws IOException {
+
+      this.output = output;
+      this.reporter = reporter;
+
+      WeightedNodeWritable node = new WeightedNodeWritable();
+      if (value instanceof WeightedNodeWritable) {
+        node.set((WeightedNodeWritable) value);
+      } else {
+        // Text input (first iteration) - parse the bytes of the line...
+        node.parse((Text) value);
+      }
+
+      // Only the frontier is processed, the WHITE and BLACK nodes are not emitted again
+      if (node.getColor() == WeightedNode.Color.GRAY) {
+        node.clearEdges();
+        frontier.add(node);
+      }
+    }
+
+
+    @Override
+    public void close() throws IOException {
+      try {
+        if (!frontier.isEmpty()) {
+          solveBand();
+        }
+      } finally {
+        if (interior != null) {
+          interior.close();
+        }
+        for (MapFile.Reader reader : structure) {
+          reader.close();
+        }
+      }
+    }
+
+
+    /**
+     * The side files of the interior nodes in the output directory of a band job (none if the job had no interior nodes)
+     */
+    public static Path[] interiorFiles(Configuration conf, Path jobOutput) throws IOException {
+      Path dir = new Path(jobOutput, INTERIOR_DIR);
+      FileSystem fs = dir.getFileSystem(conf);
+      FileStatus[] files = fs.exists(dir) ? fs.listStatus(dir) : null;
+      if (files == null) {
+        return new Path[0];
+      }
+      List<Path> paths = new ArrayList<Path>();
+      for (FileStatus status : files) {
+        if (status.getPath().getName().startsWith("part-")) {
+          paths.add(status.getPath());
+        }
+      }
+      return paths.toArray(new Path[paths.size()]);
+    }
+
+
+    /*
+     * Advance the GRAY nodes of this split bandRows rows
+     */
+    private void solveBand() throws IOException {
+
+      int firstRow = Integer.MAX_VALUE;
+      for (WeightedNodeWritable node : frontier) {
+        firstRow = Math.min(firstRow, TriangleTopology.rowOf(node.getId()));
+      }
+      LOG.info("Band of " + bandRows + " rows from row " + firstRow + ", " + frontier.size() + " GRAY nodes");
+
+      Row current = new Row();
+      Row next = new Row();
+      current.reset(firstRow, rowWidth(firstRow));
+      addFrontier(current, false);
+
+      for (int step = 0; step < bandRows; step++) {
+
+        // Every reached node of this row is processed: it is BLACK now...
+        emitRow(current, WeightedNode.Color.BLACK);
+
+        // ...and it expands to its children in the next row (the aggregation node has no children)
+        int firstReached = current.firstReached();
+        int lastReached = current.lastReached();
+        if ((firstReached < 0) || (topology.childCount(current.firstId + firstReached) == 0)) {
+          current.reset(current.row + 1, 0);
+          break;
+        }
+        next.reset(current.row + 1, rowWidth(current.row + 1));
+
+        for (int p = firstReached; p <= lastReached; p++) {
+          if (current.distance[p] == UNREACHED) {
+            continue;
+          }
+          int parentId = current.firstId + p;
+          int candidate = current.distance[p] + current.weight[p];
+          int count = topology.childCount(parentId);
+          int child = topology.firstChild(parentId) - next.firstId;
+          for (int e = 0; e < count; e++) {
+            // Keep the maximum distance - on a tie, the first (left) parent, which is the lower predecessor
+            if ((next.distance[child + e] == UNREACHED) || (candidate > next.distance[child + e])) {
+              next.setParent(child + e, candidate, current, p, parentId, trackPredecessorOnly);
+            }
+            if (!current.halo[p]) {
+              next.interiorParents[child + e]++;
+            }
+          }
+        }
+        // A node is in the halo unless all of its parents are interior nodes of this split
+        for (int c = 0; c < next.width; c++) {
+          next.halo[c] = (next.distance[c] != UNREACHED) && (next.interiorParents[c] < parentCount(next, c, current.width));
+        }
+        addFrontier(next, true);
+
+        if (step < bandRows - 1) {
+          // This row is processed in the next step of the band - it needs its weights
+          readWeights(next);
+        }
+
+        Row swap = current;
+        current = next;
+        next = swap;
+      }
+
+      // The row below the band is the new frontier: the new GRAY nodes...
+      emitRow(current, WeightedNode.Color.GRAY);
+
+      // GRAY nodes below the band (not in a triangle that started from a single source node) are left as they are
+      for (WeightedNodeWritable node : frontier) {
+        if (TriangleTopology.rowOf(node.getId()) > current.row) {
+          outputKey.set(node.getId());
+          output.collect(outputKey, node);
+          reporter.incrCounter(MRStats.NUMBER_OF_GRAY_NODES_TOBE_PROCESSED, 1);
+        }
+      }
+    }
+
+    /*
+     * Merge the GRAY nodes of this split that are in the row into the row (the maximum distance wins) - below the first
+     * row of the band they are halo nodes, the other mappers can reach them as well
+     */
+    private void addFrontier(Row r, boolean halo) {
+      for (WeightedNodeWritable node : frontier) {
+        int p = node.getId() - r.firstId;
+        if ((p < 0) || (p >= r.width)) {
+          continue;
+        }
+        if ((r.distance[p] == UNREACHED) || (node.getDistance() > r.distance[p])) {
+          r.setNode(p, node);
+        }
+        r.weight[p] = Math.max(r.weight[p], node.getWeight());
+        r.halo[p] |= halo;
+      }
+    }
+
+    /*
+     * The number of parents of node c of row r, whose parent row has parentWidth nodes (the aggregation node below the
+     * last row has all of the nodes of the last row as parents)
+     */
+    private int parentCount(Row r, int c, int parentWidth) {
+      if (r.row > topology.getRows()) {
+        return parentWidth;
+      }
+      return ((c > 0) ? 1 : 0) + ((c < parentWidth) ? 1 : 0);
+    }
+
+    /*
+     * Emit every reached node of the row, as BLACK (processed) or GRAY (the new frontier) nodes - the interior BLACK
+     * nodes are written to the side file instead of the shuffle
+     */
+    private void emitRow(Row r, WeightedNode.Color color) throws IOException {
+      for (int p = 0; p < r.width; p++) {
+        if (r.distance[p] == UNREACHED) {
+          continue;
+        }
+        vnode.clear(r.firstId + p);
+        // The new GRAY nodes have weight zero - it is set during the reduce phase
+        vnode.setWeight((color == WeightedNode.Color.BLACK) ? r.weight[p] : 0);
+        vnode.setDistance(r.distance[p]);
+        vnode.setColor(color);
+        vnode.setPredecessor(r.predecessor[p]);
+        for (int i = 0; i < r.pathLength[p]; i++) {
+          vnode.addPathTakenEdge(r.path[p][i]);
+        }
+        outputKey.set(vnode.getId());
+        if ((color == WeightedNode.Color.BLACK) && !r.halo[p]) {
+          writeInterior(outputKey, vnode);
+        } else {
+          output.collect(outputKey, vnode);
+        }
+
+        reporter.incrCounter((color == WeightedNode.Color.BLACK) ?
+            MRStats.NUMBER_OF_GRAY_NODES_PROCESSED : MRStats.NUMBER_OF_GRAY_NODES_TOBE_PROCESSED, 1);
+      }
+    }
+
+    /*
+     * Write an interior node to the side file of this task
+     */
+    private void writeInterior(IntWritable key, WeightedNodeWritable node) throws IOException {
+      if (interior == null) {
+        Path file = new Path(new Path(FileOutputFormat.getWorkOutputPath(job), INTERIOR_DIR),
+            "part-" + String.format("%05d", job.getInt("mapred.task.partition", 0)));
+        interior = SequenceFile.createWriter(file.getFileSystem(job), job, file, IntWritable.class, WeightedNodeWritable.class);
+      }
+      interior.append(key, node);
+    }
+
+    /*
+     * Read the weights of the nodes of a row from the structure of the graph (a node that is not in the graph has weight zero)
+     */
+    private void readWeights(Row r) throws IOException {
+      if (r.firstReached() < 0) {
+        return;
+      }
+      // Only the reached nodes of the row are read
+      IntWritable first = new IntWritable(r.firstId + r.firstReached());
+      IntWritable id = new IntWritable();
+      WeightedNodeWritable node = new WeightedNodeWritable();
+      int lastId = r.firstId + r.lastReached();
+      for (MapFile.Reader reader : structure) {
+        if (reader.getClosest(first, node) == null) {
+          continue;
+        }
+        while (node.getId() <= lastId) {
+          r.weight[node.getId() - r.firstId] = node.getWeight();
+          if (!reader.next(id, node)) {
+            break;
+          }
+        }
+      }
+    }
+
+    private int rowWidth(int row) {
+      return (row > topology.getRows()) ? 1 : row;
+    }
+
+
+    /*
+     * The distances, weights and paths of the nodes of one row (reused from row to row)
+     */
+    private static class Row {
+
+      int row;
+      int firstId;
+      int width;
+      int[] distance = new int[0];
+      int[] weight = new int[0];
+      int[] predecessor = new int[0];
+      int[][] path = new int[0][];
+      int[] pathLength = new int[0];
+      // halo[p] - node p can also be reached from outside the split; interiorParents[p] - its parents that can not
+      boolean[] halo = new boolean[0];
+      int[] interiorParents = new int[0];
+
+      void reset(int row, int newWidth) {
+        this.row = row;
+        this.firstId = TriangleTopology.nodeId(row, 0);
+        this.width = 0;
+        grow(newWidth);
+      }
+
+      private void grow(int newWidth) {
+        if (distance.length < newWidth) {
+          int length = Math.max(newWidth, distance.length * 2);
+          distance = Arrays.copyOf(distance, length);
+          weight = Arrays.copyOf(weight, length);
+          predecessor = Arrays.copyOf(predecessor, length);
+          path = Arrays.copyOf(path, length);
+          pathLength = Arrays.copyOf(pathLength, length);
+          halo = Arrays.copyOf(halo, length);
+          interiorParents = Arrays.copyOf(interiorParents, length);
+        }
+        for (int p = width; p < newWidth; p++) {
+          distance[p] = UNREACHED;
+          weight[p] = 0;
+          predecessor[p] = -1;
+          pathLength[p] = 0;
+          halo[p] = false;
+          interiorParents[p] = 0;
+        }
+        width = newWidth;
+      }
+
+      int firstReached() {
+        for (int p = 0; p < width; p++) {
+          if (distance[p] != UNREACHED) {
+            return p;
+          }
+        }
+        return -1;
+      }
+
+      int lastReached() {
+        for (int p = width - 1; p >= 0; p--) {
+          if (distance[p] != UNREACHED) {
+            return p;
+          }
+        }
+        return -1;
+      }
+
+      /*
+       * Node p is reached from node q of the parent row
+       */
+      void setParent(int p, int d, Row parent, int q, int parentId, boolean trackPredecessorOnly) {
+        distance[p] = d;
+        if (trackPredecessorOnly) {
+          predecessor[p] = parentId;
+          pathLength[p] = 0;
+        } else {
+          predecessor[p] = -1;
+          int length = parent.pathLength[q] + 1;
+          if ((path[p] == null) || (path[p].length < length)) {
+            path[p] = new int[Math.max(length, 8)];
+          }
+          if (length > 1) {
+            System.arraycopy(parent.path[q], 0, path[p], 0, length - 1);
+          }
+          path[p][length - 1] = parentId;
+          pathLength[p] = length;
+        }
+      }
+
+      /*
+       * Node p is a GRAY node of the split
+       */
+      void setNode(int p, WeightedNodeWritable node) {
+        distance[p] = node.getDistance();
+        predecessor[p] = node.getPredecessor();
+        int length = node.getPathLength();
+        if ((path[p] == null) || (path[p].length < length)) {
+          path[p] = new int[Math.max(length, 8)];
+        }
+        for (int i = 0; i < length; i++) {
+          path[p][i] = node.getPathTakenEdge(i);
+        }
+        pathLength[p] = length;
+      }
+    }
+  }
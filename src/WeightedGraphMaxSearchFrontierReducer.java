@@ -0,0 +1,147 @@
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.MapFile;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapFileOutputFormat;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reducer;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.lib.HashPartitioner;
+import org.apache.log4j.Logger;
+
+
+/**
+ * The reducer of the frontier iterations (-iteration frontier).
+ *
+ * In the frontier iterations the mapper only emits the GRAY nodes (now BLACK) and the new GRAY nodes that they expand to -
+ * the WHITE and BLACK nodes are not read, shuffled and written again in every iteration.
+ * The weight and edges of a node (the 'structure' of the graph, which never changes) are written once, before
+ * the first iteration, as MapFiles (see WeightedGraphMaxSearchStructureMapper).
+ *
+ * For each key (Node ID) the values are reduced just like the WeightedGraphMaxSearchReducer does. Then:
+ * - a BLACK node (a node that was processed in this iteration) is emitted as is,
+ * - a new GRAY node does not know its weight and edges yet, so they are looked up in the structure MapFiles,
+ *   and the node is emitted with them - ready to be expanded by the mapper of the next iteration.
+ *
+ * The output of each iteration is therefore only the frontier: the nodes that were finished in this iteration, and
+ * the nodes to be processed in the next iteration (or, with -prune bound, the new GRAY nodes that can no longer be on
+ * a maximum path - emitted unreached, WHITE with distance 0, so that they are not expanded).  The complete graph is put
+ * together again after the last iteration, by merging the structure with the output of every iteration (see
+ * WeightedGraphMaxSearch).
+ */
+@SuppressWarnings("deprecation")
+public class WeightedGraphMaxSearchFrontierReducer extends MapReduceBase implements
+    Reducer<IntWritable, WeightedNodeWritable, IntWritable, WeightedNodeWritable> {
+
+  /*
+   * Job configuration properties (and values) for the frontier iterations
+   */
+  public static final String ITERATION_MODE_PROPERTY = "iterationMode";
+  public static final String ITERATION_MODE_FULL = "full";           // every iteration reads and writes the whole graph (the default)
+  public static final String ITERATION_MODE_FRONTIER = "frontier";   // every iteration reads and writes only the frontier
+  public static final String STRUCTURE_PATH_PROPERTY = "structurePath";
+
+  // Log4j initialzation...
+  private static final Logger LOG = Logger.getLogger(WeightedGraphMaxSearchFrontierReducer.class);
+
+  // Reduces all of the values for one key
+  private final WeightedNodeAccumulator accumulator = new WeightedNodeAccumulator();
+
+  // The structure MapFiles, and the partitioner that the structure job used to write them
+  private MapFile.Reader[] structure;
+  private final HashPartitioner<IntWritable, WeightedNodeWritable> partitioner = new HashPartitioner<IntWritable, WeightedNodeWritable>();
+  private final WeightedNodeWritable structureNode = new WeightedNodeWritable();
+
+  // The bounds of the pruning, or null if the pruning is off
+  private WeightedGraphPruningBounds bounds = null;
+
+  // The phase timer and the sampled tracing (see WeightedGraphTaskMetrics)
+  private final WeightedGraphTaskMetrics metrics = new WeightedGraphTaskMetrics(MRStats.REDUCE_MILLIS, LOG);
+
+  // The longest path that this reducer wrote (WeightedGraphMaxResult writes it to a side file)
+  private final WeightedGraphMaxResult result = new WeightedGraphMaxResult();
+  private JobConf job;
+
+  @Override
+  public void configure(JobConf job) {
+    this.job = job;
+    metrics.configure(job);
+    bounds = WeightedGraphPruningBounds.load(job);
+    accumulator.setTopK(job.getInt(WeightedGraphTopKPathBuilder.TOP_K_PROPERTY, 1));
+    accumulator.setMultiSource(WeightedGraphMultiSourcePathBuilder.getSources(job) != null);
+    try {
+      Path structurePath = new Path(job.get(STRUCTURE_PATH_PROPERTY));
+      FileSystem fs = structurePath.getFileSystem(job);
+      structure = MapFileOutputFormat.getReaders(fs, structurePath, job);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to open the structure of the graph", e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    for (MapFile.Reader reader : structure) {
+      reader.close();
+    }
+    result.write(job);
+    metrics.close();
+  }
+
+  public void reduce(IntWritable key,
+                     Iterator<WeightedNodeWritable> values,
+                     OutputCollector<IntWritable, WeightedNodeWritable> output,
+                     Reporter reporter) throws IOException {
+
+    boolean traced = metrics.record(reporter);
+    if (traced) {
+      metrics.trace("Frontier reduce executing for input key= " + key.toString());
+    }
+
+    accumulator.reset(key.get());
+
+    // Loop through all of the values for this key (node ID)
+    while (values.hasNext()) {
+
+      WeightedNodeWritable u = values.next();
+      if (traced) {
+        metrics.trace("Processing Value: " + u.toString());
+      }
+
+      accumulator.add(u);
+    }
+
+    WeightedNodeWritable n = accumulator.getResult();
+    if (accumulator.getDiscardedCount() > 0) {
+      reporter.incrCounter(MRStats.CANDIDATES_DISCARDED, accumulator.getDiscardedCount());
+    }
+
+    // A new GRAY node - look up its weight and edges (a node that is not in the graph has weight zero and no edges)
+    if (n.getColor() == WeightedNode.Color.GRAY) {
+      if (MapFileOutputFormat.getEntry(structure, partitioner, key, structureNode) != null) {
+        n.setWeight(structureNode.getWeight());
+        n.setEdges(structureNode);
+      }
+      if ((bounds != null) && bounds.canPrune(n)) {
+        n.unreach();
+        reporter.incrCounter(MRStats.NUMBER_OF_GRAY_NODES_PRUNED, 1);
+      }
+    }
+
+    // The nodes that the next iteration expands, and the longest path written
+    if (n.getColor() == WeightedNode.Color.GRAY) {
+      reporter.incrCounter(MRStats.FRONTIER_WIDTH, 1);
+    }
+    result.pathLength(n.getPathLength());
+
+    // Emit the reduced node...
+    output.collect(key, n);
+    if (traced) {
+      metrics.trace("Frontier reduce output key= " + key + " and value: " + n.toString());
+    }
+  }
+}
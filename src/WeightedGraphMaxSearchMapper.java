@@ -1,8 +1,10 @@
 import java.io.IOException;
+import java.util.Arrays;
 
 import org.apache.hadoop.io.IntWritable;
-import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.MapReduceBase;
 import org.apache.hadoop.mapred.Mapper;
 import org.apache.hadoop.mapred.OutputCollector;
@@ -13,76 +15,356 @@ import org.apache.log4j.Logger;
 
   /**
    * This is the Mapper Class
-   * 
+   *
    * Nodes that are Color.WHITE or Color.BLACK are emitted, as is. For every
    * edge of a Color.GRAY node, we emit a new Node with distance incremented by
    * the weight of that node (representing the weight of the edge coming into that node).
    * The Color.GRAY node is then colored black and is also emitted.
-   * 
-   * Key: File Offset   
+   *
+   * When the path is tracked by predecessor (pathTracking = pred) the new GRAY nodes only record the
+   * parent node ID as their predecessor, instead of a copy of the parent's whole path_taken_edges list.
+   *
+   * With the triangle topology (graphTopology = triangle) the records do not carry their edges: the edges
+   * read from the input graph are dropped, and the children of a GRAY node are computed from its ID.
+   *
+   * In the frontier iterations (iterationMode = frontier) only the GRAY nodes are emitted (now BLACK, with their new GRAY
+   * children) - the WHITE and BLACK nodes are dropped, their weight and edges are kept in the structure of the graph
+   * (see WeightedGraphMaxSearchFrontierReducer).
+   *
+   * With in-mapper combining (inMapperCombining = true) the new GRAY nodes are not emitted one by one: only the
+   * maximum distance one of each node ID is kept (WeightedNodeCandidateMap), and they are emitted when the map task
+   * closes - or earlier, whenever the map grows beyond inMapperCombiningMaxBytes.
+   *
+   * Without in-mapper combining, the high fan-in nodes are still merged in the mapper, so that no reduce (or combine) call
+   * gets one value per parent (as wide as the triangle, for the aggregation node): the aggregation node of the triangle,
+   * and - for an explicit graph - any node ID that this map task has already emitted more than skewFanInThreshold new
+   * GRAY nodes for (counted per hash bucket, so a busy bucket can only make a node 'hot' too early, which does not change
+   * the result).  A hot node's new GRAY nodes only keep the maximum distance one, emitted when the map task closes.
+   * A skewFanInThreshold of 0 turns this off.
+   *
+   * With -topk K every new GRAY node carries the TOP list of its parent (the K best distances that reach the parent),
+   * extended by the parent's weight, with the parent as the predecessor of every entry (see WeightedGraphTopKPathBuilder).
+   * The TOP lists are merged by the combiner and the reducer, so the in-mapper combining and the skew handling are not used.
+   *
+   * With -sources every node carries the SOURCES vector (see WeightedGraphMultiSourcePathBuilder): the first iteration
+   * puts the entry of each source on its node (and colors the node GRAY - the other nodes of the input are WHITE, whatever
+   * their color was), and every new GRAY node carries the fresh entries of its parent, extended by the parent's weight,
+   * with the parent as their predecessor.  The expanded node keeps its entries, no longer fresh.  The vectors are merged
+   * by the combiner and the reducer, so the in-mapper combining and the skew handling are not used either.
+   *
+   * With the pruning (-prune bound) a GRAY node that can no longer be on a maximum path (WeightedGraphPruningBounds)
+   * is not expanded: it is emitted unreached (WHITE, distance 0, no path - as in the input graph), and counted in NUMBER_OF_GRAY_NODES_PRUNED.
+   *
+   * The per-record log messages are sampled, and only written at DEBUG level (see WeightedGraphTaskMetrics).
+   *
+   * For the first iteration:
+   * Key: File Offset
    * Value: a string that has the following format: ID <tab> WEIGHT|EDGES|DISTANCE|COLOR|path_taken_edges|
+   * For all other iterations (SequenceFile input):
+   * Key: Node ID
+   * Value: a binary WeightedNodeWritable node
    */
   @SuppressWarnings("deprecation")
 public class WeightedGraphMaxSearchMapper extends MapReduceBase implements
-                    Mapper<LongWritable, Text, IntWritable, Text> {
+                    Mapper<Writable, Writable, IntWritable, WeightedNodeWritable> {
 
 	// Log4j Initalization...
 	private static final Logger LOG = Logger.getLogger(WeightedGraphMaxSearchMapper.class);
 
-    
-    public void map(LongWritable key, 
-                    Text value,
-                    OutputCollector<IntWritable, Text> output,
+    /*
+     * Job configuration properties for in-mapper combining
+     */
+    public static final String IN_MAPPER_COMBINING_PROPERTY = "inMapperCombining";
+    public static final String IN_MAPPER_COMBINING_MAX_BYTES_PROPERTY = "inMapperCombiningMaxBytes";
+    public static final long DEFAULT_IN_MAPPER_COMBINING_MAX_BYTES = 32L * 1024 * 1024;
+
+    /*
+     * Job configuration property for the high fan-in (skewed) nodes
+     */
+    public static final String SKEW_FAN_IN_THRESHOLD_PROPERTY = "skewFanInThreshold";
+    public static final int DEFAULT_SKEW_FAN_IN_THRESHOLD = 64;
+    // The number of fan-in counters (a power of two)
+    private static final int FAN_IN_BUCKETS = 1 << 16;
+
+    // Output key and value objects - reused for every record that we emit
+    private final IntWritable outputKey = new IntWritable();
+    private final WeightedNodeWritable textNode = new WeightedNodeWritable();
+    private final WeightedNodeWritable vnode = new WeightedNodeWritable();
+
+    // true if only the predecessor of each node is tracked (instead of the full path taken edges)
+    private boolean trackPredecessorOnly = false;
+    // The triangle topology, or null if the edges are read from the records
+    private TriangleTopology topology = null;
+    // true if only the frontier (the GRAY nodes) is emitted
+    private boolean frontierOnly = false;
+
+    // The new GRAY nodes, merged by node ID (null if in-mapper combining is off)
+    private WeightedNodeCandidateMap candidates = null;
+    private long maxCandidateBytes;
+
+    // The new GRAY nodes of the high fan-in nodes, merged by node ID (null if the skew handling is off)
+    private WeightedNodeCandidateMap hotCandidates = null;
+    // The number of new GRAY nodes emitted per hash bucket of node IDs (null with the triangle topology)
+    private int[] fanIn = null;
+    private int fanInThreshold;
+    // The aggregation node of the triangle (always hot), or -1
+    private int aggregationNodeId = -1;
+
+    // The bounds of the pruning, or null if the pruning is off
+    private WeightedGraphPruningBounds bounds = null;
+
+    // The number of best distances that are kept per node (-topk)
+    private int topK = 1;
+    // The node IDs of the sources (-sources) in ascending order, and the index of each of them - null with a single start node
+    private int[] sourceIds = null;
+    private int[] sourceIndexes = null;
+    // The output collector - saved so that the candidates can be emitted when the task closes
+    private OutputCollector<IntWritable, WeightedNodeWritable> output = null;
+
+    // The phase timer and the sampled tracing (see WeightedGraphTaskMetrics)
+    private final WeightedGraphTaskMetrics metrics = new WeightedGraphTaskMetrics(MRStats.MAP_MILLIS, LOG);
+    // The number of candidates added to the candidate maps, and emitted from them - the others were merged away
+    private long candidatesAdded = 0;
+    private long candidatesEmitted = 0;
+
+    @Override
+    public void configure(JobConf job) {
+      metrics.configure(job);
+      trackPredecessorOnly = WeightedGraphPathBuilder.PATH_TRACKING_PREDECESSOR.equals(
+          job.get(WeightedGraphPathBuilder.PATH_TRACKING_PROPERTY, WeightedGraphPathBuilder.PATH_TRACKING_FULL));
+      topology = TriangleTopology.get(job);
+      frontierOnly = WeightedGraphMaxSearchFrontierReducer.ITERATION_MODE_FRONTIER.equals(
+          job.get(WeightedGraphMaxSearchFrontierReducer.ITERATION_MODE_PROPERTY, WeightedGraphMaxSearchFrontierReducer.ITERATION_MODE_FULL));
+      topK = job.getInt(WeightedGraphTopKPathBuilder.TOP_K_PROPERTY, 1);
+      int[] sources = WeightedGraphMultiSourcePathBuilder.getSources(job);
+      if (sources != null) {
+        // Sorted by node ID, for the binary search of the first iteration
+        long[] sorted = new long[sources.length];
+        for (int j = 0; j < sources.length; j++) {
+          sorted[j] = ((long) sources[j] << 32) | j;
+        }
+        Arrays.sort(sorted);
+        sourceIds = new int[sources.length];
+        sourceIndexes = new int[sources.length];
+        for (int j = 0; j < sources.length; j++) {
+          sourceIds[j] = (int) (sorted[j] >> 32);
+          sourceIndexes[j] = (int) sorted[j];
+        }
+      }
+      // The TOP lists and the SOURCES vectors are only merged by the combiner and the reducer
+      boolean mergeInMapper = (topK <= 1) && (sourceIds == null);
+      if (job.getBoolean(IN_MAPPER_COMBINING_PROPERTY, false) && mergeInMapper) {
+        candidates = new WeightedNodeCandidateMap(1024);
+        maxCandidateBytes = job.getLong(IN_MAPPER_COMBINING_MAX_BYTES_PROPERTY, DEFAULT_IN_MAPPER_COMBINING_MAX_BYTES);
+      }
+      bounds = WeightedGraphPruningBounds.load(job);
+      fanInThreshold = job.getInt(SKEW_FAN_IN_THRESHOLD_PROPERTY, DEFAULT_SKEW_FAN_IN_THRESHOLD);
+      if ((candidates == null) && (fanInThreshold > 0) && mergeInMapper) {
+        hotCandidates = new WeightedNodeCandidateMap(16);
+        maxCandidateBytes = job.getLong(IN_MAPPER_COMBINING_MAX_BYTES_PROPERTY, DEFAULT_IN_MAPPER_COMBINING_MAX_BYTES);
+        if (topology != null) {
+          // Every other node of the triangle has at most two parents
+          aggregationNodeId = topology.getAggregationNodeId();
+        } else {
+          fanIn = new int[FAN_IN_BUCKETS];
+        }
+      }
+    }
+
+    /*
+     * true if the new GRAY nodes of this node ID are merged in the mapper (skew handling)
+     */
+    private boolean isHighFanIn(int id) {
+      if (id == aggregationNodeId) {
+        return true;
+      }
+      if (fanIn == null) {
+        return false;
+      }
+      int h = id * 0x9E3779B9;
+      int bucket = (h ^ (h >>> 16)) & (FAN_IN_BUCKETS - 1);
+      if (fanIn[bucket] >= fanInThreshold) {
+        return true;
+      }
+      fanIn[bucket]++;
+      return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+      // Emit the candidates that are left...
+      if ((candidates != null) && (output != null)) {
+        flush(candidates);
+      }
+      if ((hotCandidates != null) && (output != null)) {
+        flush(hotCandidates);
+      }
+      if ((metrics.getReporter() != null) && (candidatesAdded > candidatesEmitted)) {
+        metrics.getReporter().incrCounter(MRStats.CANDIDATES_DISCARDED, candidatesAdded - candidatesEmitted);
+      }
+      metrics.close();
+    }
+
+    private void flush(WeightedNodeCandidateMap map) throws IOException {
+      candidatesEmitted += map.size();
+      map.flush(output, outputKey, vnode);
+    }
+
+
+    public void map(Writable key,
+                    Writable value,
+                    OutputCollector<IntWritable, WeightedNodeWritable> output,
                     Reporter reporter) throws IOException {
 
-      LOG.info("Map executing for input key file offset = " + key.toString() + " and value:  " + value.toString());
+      boolean traced = metrics.record(reporter);
+      if (traced) {
+        metrics.trace("Map executing for input key = " + key.toString() + " and value:  " + value.toString());
+      }
+      this.output = output;
 
-      WeightedNode node = new WeightedNode(value.toString());
+      WeightedNodeWritable node;
+      if (value instanceof WeightedNodeWritable) {
+        node = (WeightedNodeWritable) value;
+      } else {
+        // Text input (first iteration) - parse the bytes of the line...
+        textNode.parse((Text) value);
+        node = textNode;
+        reporter.incrCounter(MRStats.RECORDS_PARSED, 1);
+        if ((sourceIds != null) && (node.getSourceCount() == 0)) {
+          startSources(node);
+        }
+      }
+
+      // The edges of a triangle are computed from the node ID, so do not carry them...
+      if (topology != null) {
+        node.clearEdges();
+      }
+
+      // A GRAY node that can not be on a maximum path is not expanded...
+      boolean pruned = false;
+      if ((bounds != null) && (node.getColor() == WeightedNode.Color.GRAY) && bounds.canPrune(node)) {
+        node.unreach();
+        reporter.incrCounter(MRStats.NUMBER_OF_GRAY_NODES_PRUNED, 1);
+        pruned = true;
+      }
 
       // For each GRAY node, emit each of the edges as a new node (also GRAY)
       if (node.getColor() == WeightedNode.Color.GRAY) {
-        for (int v : node.getEdges()) {
-          WeightedNode vnode = new WeightedNode(v);
+        int childCount = (topology != null) ? topology.childCount(node.getId()) : node.getEdgeCount();
+        int firstChild = ((topology != null) && (childCount > 0)) ? topology.firstChild(node.getId()) : 0;
+        if ((topK > 1) && (node.getTopCount() == 0)) {
+          // The start node: its only path is the empty path
+          node.addTop(node.getDistance(), node.getPredecessor(), -1);
+        }
+        for (int e = 0; e < childCount; e++) {
+          int child = (topology != null) ? firstChild + e : node.getEdge(e);
+          if (candidates != null) {
+            // Only keep the maximum distance candidate for each node ID, it is emitted later
+            candidates.add(child, node.getDistance() + node.getWeight(), node, trackPredecessorOnly);
+            candidatesAdded++;
+            reporter.incrCounter(MRStats.NUMBER_OF_GRAY_NODES_TOBE_PROCESSED, 1);
+            continue;
+          }
+          if ((hotCandidates != null) && isHighFanIn(child)) {
+            // A high fan-in node - only keep its maximum distance candidate, it is emitted later
+            hotCandidates.add(child, node.getDistance() + node.getWeight(), node, trackPredecessorOnly);
+            candidatesAdded++;
+            reporter.incrCounter(MRStats.NUMBER_OF_GRAY_NODES_TOBE_PROCESSED, 1);
+            continue;
+          }
+          vnode.clear(child);
           // set weight to zero - indicating that we do not know the weight of the node yet
           // The weight will be set during the reduce phase.
           vnode.setWeight(0);
           // distance to new grey node = distance to parent node + parent node's weight
           vnode.setDistance(node.getDistance() + node.getWeight());
-          // Set the color to Gray so that we will operate on this node during the next iteration of MapReduce 
+          // Set the color to Gray so that we will operate on this node during the next iteration of MapReduce
           vnode.setColor(WeightedNode.Color.GRAY);
           // Increment the number of Gray nodes that we have to process...
           reporter.incrCounter(MRStats.NUMBER_OF_GRAY_NODES_TOBE_PROCESSED, 1);
-          /*
-           *  Add the Node ID in the path_taken_edges that so that we keep track of how we got to this node (who changed it to Gray)
-           */
-          // First save how we got to the parent node (deep copy)...
-          for (int pathTakenEdge : node.getPathTakenEdges())
-          {
-              vnode.addPathTakenEdge(pathTakenEdge);
+          if (trackPredecessorOnly) {
+            // Only remember who changed this node to Gray, the path is rebuilt at the end (WeightedGraphPathBuilder)
+            vnode.setPredecessor(node.getId());
+            // Extend each of the parent's best paths by the parent (entry j extends the parent's entry j)
+            for (int j = 0; (topK > 1) && (j < node.getTopCount()); j++) {
+              vnode.addTop(node.getTopDistance(j) + node.getWeight(), node.getId(), j);
+            }
+            // Extend the paths of the sources that the parent has not been expanded for yet
+            if (sourceIds != null) {
+              int maxDistance = 0;
+              for (int j = 0; j < node.getSourceCount(); j++) {
+                if (node.isSourceFresh(j)) {
+                  int d = node.getSourceDistance(j) + node.getWeight();
+                  vnode.addSource(node.getSourceIndex(j), d, node.getId(), true);
+                  maxDistance = Math.max(maxDistance, d);
+                }
+              }
+              vnode.setDistance(maxDistance);
+            }
+          } else {
+            /*
+             *  Add the Node ID in the path_taken_edges that so that we keep track of how we got to this node (who changed it to Gray)
+             */
+            // First save how we got to the parent node (deep copy)...
+            vnode.setPathTakenEdges(node);
+            // Then append the parent node ID to the list...
+            vnode.addPathTakenEdge(node.getId());
           }
-          // Then append the parent node ID to the list...
-          vnode.addPathTakenEdge(node.getId());
 
           // Emit gray node for each edge.
-          output.collect(new IntWritable(vnode.getId()), vnode.getLine());
-          LOG.info("Map output for key = " + vnode.getId() + " and value:  " + vnode.getLine());
+          outputKey.set(vnode.getId());
+          output.collect(outputKey, vnode);
+          if (traced) {
+            metrics.trace("Map output for key = " + vnode.getId() + " and value:  " + vnode.toString());
+          }
        }
+        // Emit the candidates early if they use too much memory
+        if ((candidates != null) && (candidates.getEstimatedBytes() > maxCandidateBytes)) {
+          flush(candidates);
+        }
+        if ((hotCandidates != null) && (hotCandidates.getEstimatedBytes() > maxCandidateBytes)) {
+          flush(hotCandidates);
+        }
         // We're done with this node now, color it BLACK
         node.setColor(WeightedNode.Color.BLACK);
+        node.markSourcesDone();
         /*
-         *  Since this node was Gray and now we have changed it to Black, 
+         *  Since this node was Gray and now we have changed it to Black,
          *  then increment the number of Gray nodes that we have processed...
          */
         reporter.incrCounter(MRStats.NUMBER_OF_GRAY_NODES_PROCESSED, 1);
 
       }
+      else if (frontierOnly && !pruned) {
+        // Not in the frontier - nothing changes for this node, so it is not shuffled again
+        return;
+      }
 
-      // No matter what, we emit the input node
+      // No matter what (except in the frontier iterations), we emit the input node
       // If the node came into this method GRAY, it will be output as BLACK
-      output.collect(new IntWritable(node.getId()), node.getLine());
+      outputKey.set(node.getId());
+      output.collect(outputKey, node);
 
-      LOG.info("Map output for key = " + node.getId() + " and value:  " + node.getLine());
+      if (traced) {
+        metrics.trace("Map output for key = " + node.getId() + " and value:  " + node.toString());
+      }
 
     }
-  }
 
+    /*
+     * The text input graph of -sources (no SOURCES vector yet): a source node gets its entry (distance 0, no predecessor), and is GRAY - every
+     * other node is WHITE
+     */
+    private void startSources(WeightedNodeWritable node) {
+      node.clearSources();
+      int i = Arrays.binarySearch(sourceIds, node.getId());
+      if (i >= 0) {
+        node.addSource(sourceIndexes[i], 0, -1, true);
+        node.setDistance(0);
+        node.setPredecessor(-1);
+        node.setColor(WeightedNode.Color.GRAY);
+      } else if (node.getColor() == WeightedNode.Color.GRAY) {
+        node.setColor(WeightedNode.Color.WHITE);
+      }
+    }
+  }
@@ -1,10 +1,11 @@
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.List;
 
 import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.MapReduceBase;
 import org.apache.hadoop.mapred.OutputCollector;
 import org.apache.hadoop.mapred.Reducer;
@@ -14,112 +15,123 @@ import org.apache.log4j.Logger;
 
 /**
  * A  reducer class that just emits the sum of the input values and the path that got us to that node.
- * 
+ *
  * Note that the reducer executes for each key (each Node ID)
- * 
+ *
  * Input key is the node ID
- * Input values have the following format: WEIGHT|EDGES|DISTANCE|COLOR|path_taken_edges|
+ * Input values are binary WeightedNodeWritable nodes: WEIGHT|EDGES|DISTANCE|COLOR|path_taken_edges|
+ *
+ * The output is written as a SequenceFile for all but the last iteration, the last iteration
+ * is written as text: the whole line (ID <tab> WEIGHT|EDGES|DISTANCE|COLOR|path_taken_edges|) is written into
+ * a reused Text value (WeightedNodeWritable.writeLine), with a NullWritable key.
+ * With the triangle topology the nodes do not carry their edges, so they are computed again for the text output.
+ * The text output is sharded over all of the reducers: each reducer also writes its maximum distance node to a
+ * side file (WeightedGraphMaxResult), and the driver merges the side files into the result file.
+ * With the pruning (-prune bound) a GRAY node that can no longer be on a maximum path is emitted unreached
+ * (WHITE, distance 0, no path - not expanded).
  */
 @SuppressWarnings("deprecation")
 public class WeightedGraphMaxSearchReducer extends MapReduceBase implements
-    Reducer<IntWritable, Text, IntWritable, Text> {
+    Reducer<IntWritable, WeightedNodeWritable, Writable, Writable> {
 
   // Log4j initialzation...
   private static final Logger LOG = Logger.getLogger(WeightedGraphMaxSearchReducer.class);
 
+  // Job configuration property that is set to true for the iteration that writes the text output format
+  public static final String TEXT_OUTPUT_PROPERTY = "textOutput";
+
+  // Reduces all of the values for one key
+  private final WeightedNodeAccumulator accumulator = new WeightedNodeAccumulator();
+
+  // The triangle topology (only set if the edges must be filled in for the text output), otherwise null
+  private TriangleTopology topology = null;
+
+  // true if the output is written as text
+  private boolean textOutput = false;
+  private final Text line = new Text();
+
+  // The maximum distance node that this reducer wrote (text output only), and the longest path
+  private final WeightedGraphMaxResult result = new WeightedGraphMaxResult();
+  private JobConf job;
+
+  // The bounds of the pruning, or null if the pruning is off
+  private WeightedGraphPruningBounds bounds = null;
+
+  // The phase timer and the sampled tracing (see WeightedGraphTaskMetrics)
+  private final WeightedGraphTaskMetrics metrics = new WeightedGraphTaskMetrics(MRStats.REDUCE_MILLIS, LOG);
+
+  @Override
+  public void configure(JobConf job) {
+    this.job = job;
+    metrics.configure(job);
+    textOutput = job.getBoolean(TEXT_OUTPUT_PROPERTY, false);
+    bounds = WeightedGraphPruningBounds.load(job);
+    accumulator.setTopK(job.getInt(WeightedGraphTopKPathBuilder.TOP_K_PROPERTY, 1));
+    accumulator.setMultiSource(WeightedGraphMultiSourcePathBuilder.getSources(job) != null);
+    if (textOutput) {
+      topology = TriangleTopology.get(job);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    result.write(job);
+    metrics.close();
+  }
+
   public void reduce(IntWritable key,
-                     Iterator<Text> values,
-                     OutputCollector<IntWritable, Text> output,
+                     Iterator<WeightedNodeWritable> values,
+                     OutputCollector<Writable, Writable> output,
                      Reporter reporter) throws IOException {
-  	
-    LOG.info("Reduce executing for input key= " + key.toString());
-
-    List<Integer> edges = null;
-    // Contains the path taken to the node
-	List<Integer> PathTakenEdges = new ArrayList<Integer>();
-    int weight = 0;
-    int distance = 0;
-    WeightedNode.Color color = WeightedNode.Color.WHITE;
-    // indicates the color of the maximum distance node that got us to the Node ID (key).  Initially set to White
-    WeightedNode.Color maxDistanceWeightedNodeColor = WeightedNode.Color.WHITE;  
 
-    // Loop through all of the values for this key (node ID)
-    while (values.hasNext()) {
+    boolean traced = metrics.record(reporter);
+    if (traced) {
+      metrics.trace("Reduce executing for input key= " + key.toString());
+    }
 
-    	Text value = values.next();
-    	LOG.info("Processing Value: " + value.toString());
+    accumulator.reset(key.get());
 
-      WeightedNode u = new WeightedNode(key.get() + "\t" + value.toString());
+    // Loop through all of the values for this key (node ID)
+    while (values.hasNext()) {
 
-      // Save the maximum weight
-      if (u.getWeight() > weight) {
-      	weight = u.getWeight();
-      }
-      
-      // Save the edges for the node, if they are specified...
-      if (u.getEdges().size() > 0) {
-        edges = u.getEdges();
+      WeightedNodeWritable u = values.next();
+      if (traced) {
+        metrics.trace("Processing Value: " + u.toString());
       }
 
-      // Save the maximum distance
-      if (u.getDistance() > distance) {
-    	  distance = u.getDistance();
-
-    	  // For a maximum distance node, Gray or Black, save the path to that maximum distance node...
-    	  if (u.getColor().ordinal() >=  WeightedNode.Color.GRAY.ordinal())
-    	  {
-    		  // Clear the PathTakenEdges...
-    		  PathTakenEdges.clear();
-    		  // do a deep copy of path taken edges information...
-    		  for (int pathTakenEdge : u.getPathTakenEdges())
-    		  {
-    			  PathTakenEdges.add(pathTakenEdge);
-    		  }
-    	  }
-    	  // save the color of the maximum distance node
-    	  maxDistanceWeightedNodeColor = u.getColor();
-      }
+      accumulator.add(u);
+    }
 
-      /* 
-       * If the existing color of the maximum distance node is white, 
-       * and we happen across a Gray or Black node, 
-       * then save the Path Taken information because
-       * the GRAY nodes have the Path taken Edges information...
-       */
-
-      else if (
-    		  (maxDistanceWeightedNodeColor == WeightedNode.Color.WHITE) &&
-    		  (u.getColor().ordinal() >=  WeightedNode.Color.GRAY.ordinal())
-      )
-      {
-    	  // Clear the PathTakenEdges...
-    	  PathTakenEdges.clear();
-    	  // do a deep copy of path taken edges information...
-    	  for (int pathTakenEdge : u.getPathTakenEdges())
-    	  {
-    		  PathTakenEdges.add(pathTakenEdge);
-    	  }
-      }
+    WeightedNodeWritable n = accumulator.getResult();
+    if (accumulator.getDiscardedCount() > 0) {
+      reporter.incrCounter(MRStats.CANDIDATES_DISCARDED, accumulator.getDiscardedCount());
+    }
 
-      // Save the darkest color
-      if (u.getColor().ordinal() > color.ordinal()) {
-        color = u.getColor();
-      }
-      
+    // Now that the new GRAY node has its maximum distance (and weight), check if it can still be on a maximum path
+    if ((bounds != null) && (n.getColor() == WeightedNode.Color.GRAY) && bounds.canPrune(n)) {
+      n.unreach();
+      reporter.incrCounter(MRStats.NUMBER_OF_GRAY_NODES_PRUNED, 1);
+    }
+    if (topology != null) {
+      topology.setEdges(n);
     }
 
-    WeightedNode n = new WeightedNode(key.get());
-    n.setWeight(weight);
-    n.setDistance(distance);
-    n.setEdges(edges);
-    n.setColor(color);
-    if (!(PathTakenEdges == null))
-    {
-        n.setPathTakenEdges(PathTakenEdges);
+    // The nodes that the next iteration expands, and the longest path written
+    if (n.getColor() == WeightedNode.Color.GRAY) {
+      reporter.incrCounter(MRStats.FRONTIER_WIDTH, 1);
     }
-    
+    result.pathLength(n.getPathLength());
+
     // Emit the reduced node...
-    output.collect(key, new Text(n.getLine()));
-    LOG.info("Reduce output key= " + key + " and value: " + n.getLine());
+    if (textOutput) {
+      n.writeLine(line);
+      output.collect(NullWritable.get(), line);
+      result.offer(n);
+    } else {
+      output.collect(key, n);
+    }
+    if (traced) {
+      metrics.trace("Reduce output key= " + key + " and value: " + n.toString());
+    }
   }
 }
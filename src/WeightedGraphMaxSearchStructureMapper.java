@@ -0,0 +1,55 @@
+import java.io.IOException;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.Mapper;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reporter;
+
+
+
+  /**
+   * The Mapper of the job that writes the 'structure' of the graph, for the frontier iterations (-iteration frontier).
+   *
+   * Every node of the input graph is emitted as is (with the triangle topology, without its edges).
+   * The job has an identity reducer and writes MapFiles (MapFileOutputFormat), so that the frontier reducer
+   * can look up the weight and edges of a node by its ID (see WeightedGraphMaxSearchFrontierReducer).
+   *
+   * Key: File Offset
+   * Value: a string that has the following format: ID <tab> WEIGHT|EDGES|DISTANCE|COLOR|path_taken_edges|
+   */
+  @SuppressWarnings("deprecation")
+public class WeightedGraphMaxSearchStructureMapper extends MapReduceBase implements
+                    Mapper<LongWritable, Text, IntWritable, WeightedNodeWritable> {
+
+    // Output key and value objects - reused for every record that we emit
+    private final IntWritable outputKey = new IntWritable();
+    private final WeightedNodeWritable node = new WeightedNodeWritable();
+
+    // The triangle topology, or null if the edges are read from the records
+    private TriangleTopology topology = null;
+
+    @Override
+    public void configure(JobConf job) {
+      topology = TriangleTopology.get(job);
+    }
+
+    public void map(LongWritable key,
+                    Text value,
+                    OutputCollector<IntWritable, WeightedNodeWritable> output,
+                    Reporter reporter) throws IOException {
+
+      node.parse(value);
+
+      // The edges of a triangle are computed from the node ID, so do not store them...
+      if (topology != null) {
+        node.clearEdges();
+      }
+
+      outputKey.set(node.getId());
+      output.collect(outputKey, node);
+    }
+  }
@@ -0,0 +1,265 @@
+/**
+ * Rebuilds the maximum path from each of the start nodes (sources) after the last iteration of a -sources run.
+ *
+ * With -sources <Sources file> the graph is solved for a batch of start nodes in a single series of iterations, instead
+ * of one series per start node: every node carries, next to its predecessor, the SOURCES vector - for each source that
+ * reaches the node, the maximum distance from that source and the predecessor on that path (indexed by the position
+ * of the source in the sources file).  The first mapper puts the entry (distance 0, no predecessor) on every source
+ * node, the mappers extend the 'fresh' entries of a GRAY node to its children, and the combiner and reducers keep the
+ * best entry of every source (WeightedNodeWritable.mergeSources) - so every shuffle moves all of the sources at once.
+ * A node is GRAY while it has fresh entries, so a node that a source reaches later than another one is expanded again,
+ * for that source only.  The distance and predecessor of a node are those of its best source, so the maximum path
+ * (<outputPathIteration>maxpath) is the best path from any of the sources.
+ *
+ * This class reads the (text) output of the last iteration, keeps the SOURCES vector of every node, finds the sink
+ * node of every source (the node with the maximum distance from that source - on a tie, the larger ID) and follows
+ * the predecessors of that source back to the source.  The result is one line per source, in the order of the
+ * sources file, in the same format as the sink node's line when the full path is tracked:
+ * ID   WEIGHT|EDGES|DISTANCE|COLOR|Path_taken_edges|
+ * (a source that does not reach any other node has an empty path, and a source that is not in the graph has no line).
+ *
+ * To run on its own:  WeightedGraphMultiSourcePathBuilder <Output directory of the last iteration> <Result file> <Sources file>
+ */
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.util.LineReader;
+import org.apache.log4j.Logger;
+
+
+public class WeightedGraphMultiSourcePathBuilder {
+
+	// Job configuration property: the node IDs of the sources, comma separated (not set - the single start node of the input)
+	public static final String SOURCES_PROPERTY = "multiSources";
+
+	// Log4j...
+	private static final Logger LOG = Logger.getLogger(WeightedGraphMultiSourcePathBuilder.class);
+
+	private final int[] sources;
+
+	// The predecessor of every node for every source, indexed by node ID: the entry of source j of node id is at
+	// id * sources.length + j (-2 if the source does not reach the node)
+	private int[] predecessor;
+	private int maxId = -1;
+
+	// The sink node of every source - the node with the maximum distance from that source
+	private final WeightedNodeWritable[] sink;
+	private final int[] sinkDistance;
+
+	public WeightedGraphMultiSourcePathBuilder(int[] sources) {
+		this.sources = sources;
+		predecessor = new int[1024 * sources.length];
+		Arrays.fill(predecessor, -2);
+		sink = new WeightedNodeWritable[sources.length];
+		sinkDistance = new int[sources.length];
+	}
+
+
+	/**
+	 * The node IDs of the sources of the job configuration, or null if the job has a single start node
+	 */
+	public static int[] getSources(Configuration conf) {
+		String list = conf.get(SOURCES_PROPERTY, "");
+		if (list.length() == 0) {
+			return null;
+		}
+		String[] tokens = list.split(",");
+		int[] sources = new int[tokens.length];
+		for (int j = 0; j < tokens.length; j++) {
+			sources[j] = Integer.parseInt(tokens[j].trim());
+		}
+		return sources;
+	}
+
+	/**
+	 * Read the sources file - node IDs, separated by white space or commas - into the (comma separated) SOURCES_PROPERTY value
+	 */
+	public static String readSources(Configuration conf, Path sourcesFile) throws IOException {
+
+		StringBuilder list = new StringBuilder();
+		Set<Integer> seen = new HashSet<Integer>();
+		FileSystem fs = sourcesFile.getFileSystem(conf);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(fs.open(sourcesFile), "UTF-8"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				for (String token : line.trim().split("[\\s,]+")) {
+					if (token.length() == 0) {
+						continue;
+					}
+					int id = Integer.parseInt(token);
+					if (!seen.add(Integer.valueOf(id))) {
+						throw new IllegalArgumentException("Source " + id + " is in the sources file more than once");
+					}
+					if (list.length() > 0) {
+						list.append(',');
+					}
+					list.append(id);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		if (seen.isEmpty()) {
+			throw new IllegalArgumentException("No sources in " + sourcesFile);
+		}
+		return list.toString();
+	}
+
+
+	/**
+	 * Read all of the part files in the output directory of the last iteration
+	 */
+	public void load(Configuration conf, Path outputDir) throws IOException {
+
+		FileSystem fs = outputDir.getFileSystem(conf);
+		Text line = new Text();
+		WeightedNodeWritable node = new WeightedNodeWritable();
+
+		for (FileStatus status : fs.listStatus(outputDir)) {
+			if (!status.getPath().getName().startsWith("part-")) {
+				continue;
+			}
+			LineReader reader = new LineReader(fs.open(status.getPath()), 1 << 16);
+			try {
+				while (reader.readLine(line) > 0) {
+					if (line.getLength() > 0) {
+						node.parse(line);
+						add(node);
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		}
+	}
+
+	private void add(WeightedNodeWritable node) {
+
+		int id = node.getId();
+		int s = sources.length;
+		if (id * s >= predecessor.length) {
+			int length = predecessor.length / s;
+			while (id >= length) {
+				length *= 2;
+			}
+			int old = predecessor.length;
+			predecessor = Arrays.copyOf(predecessor, length * s);
+			Arrays.fill(predecessor, old, predecessor.length, -2);
+		}
+		for (int i = 0; i < node.getSourceCount(); i++) {
+			int j = node.getSourceIndex(i);
+			if (j >= s) {
+				throw new IllegalArgumentException("Node " + id + " has an entry for source " + j + ", but there are only " + s + " sources");
+			}
+			predecessor[id * s + j] = node.getSourcePredecessor(i);
+
+			// Save the maximum distance node of the source - on a tie, the node with the larger ID (the sink is the last
+			// node), compared explicitly because with more than one reducer the part files are not in ID order
+			int d = node.getSourceDistance(i);
+			if ((sink[j] == null) || (d > sinkDistance[j]) || ((d == sinkDistance[j]) && (id > sink[j].getId()))) {
+				if (sink[j] == null) {
+					sink[j] = new WeightedNodeWritable();
+				}
+				sink[j].set(node);
+				sinkDistance[j] = d;
+			}
+		}
+		maxId = Math.max(maxId, id);
+	}
+
+	/**
+	 * Follow the predecessors of source j back from its sink node, returns the sink node with the distance from the
+	 * source and the path taken edges of that path - or null if the source is not in the graph
+	 */
+	public WeightedNodeWritable buildPath(int j) {
+
+		if (sink[j] == null) {
+			return null;
+		}
+		int s = sources.length;
+		int[] path = new int[16];
+		int length = 0;
+		int id = predecessor[sink[j].getId() * s + j];
+		while (id >= 0) {
+			if (length == path.length) {
+				path = Arrays.copyOf(path, length * 2);
+			}
+			// A path can not be longer than the number of nodes - if it is then the predecessors have a cycle
+			if (length > maxId) {
+				throw new IllegalStateException("Predecessor cycle found at node " + id + " (source " + sources[j] + ")");
+			}
+			path[length++] = id;
+			if (id > maxId) {
+				break;
+			}
+			id = predecessor[id * s + j];
+		}
+
+		WeightedNodeWritable result = new WeightedNodeWritable();
+		result.set(sink[j]);
+		result.setDistance(sinkDistance[j]);
+		result.setPredecessor(-1);
+		result.clearSources();
+		// The path was built from the sink back to the source, reverse it...
+		for (int i = length - 1; i >= 0; i--) {
+			result.addPathTakenEdge(path[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Load the output of the last iteration, rebuild the maximum path of every source and write them to the result file
+	 */
+	public static int run(Configuration conf, Path outputDir, Path resultFile, int[] sources) throws IOException {
+
+		WeightedGraphMultiSourcePathBuilder builder = new WeightedGraphMultiSourcePathBuilder(sources);
+		builder.load(conf, outputDir);
+
+		FileSystem fs = resultFile.getFileSystem(conf);
+		OutputStream out = fs.create(resultFile, true);
+		Text line = new Text();
+		int count = 0;
+		try {
+			for (int j = 0; j < sources.length; j++) {
+				WeightedNodeWritable path = builder.buildPath(j);
+				if (path == null) {
+					LOG.warn("Source " + sources[j] + " is not in " + outputDir);
+					continue;
+				}
+				path.writeLine(line);
+				out.write(line.getBytes(), 0, line.getLength());
+				out.write('\n');
+				count++;
+			}
+		} finally {
+			out.close();
+		}
+		LOG.info(count + " maximum paths (one per source) written to " + resultFile);
+		return count;
+	}
+
+
+	public static void main(String[] args) throws Exception {
+
+		if (args.length != 3) {
+			System.out.println("Usage: WeightedGraphMultiSourcePathBuilder <Output directory of the last iteration> <Result file> <Sources file>");
+			return;
+		}
+
+		Configuration conf = new Configuration();
+		conf.set(SOURCES_PROPERTY, readSources(conf, new Path(args[2])));
+		run(conf, new Path(args[0]), new Path(args[1]), getSources(conf));
+	}
+}
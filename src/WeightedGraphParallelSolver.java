@@ -0,0 +1,517 @@
+/**
+ * A multi-threaded version of the in-memory engine (WeightedGraphLocalSolver), for the wide triangles and layered DAGs
+ * that are too big for one core but still fit in the heap (-engine parallel).
+ *
+ * The graph is loaded, and written, in the same format as WeightedGraphLocalSolver.  Instead of visiting the nodes one
+ * by one in topological order (pushing every node's distance to its children), every node pulls its distance from its
+ * parents - its maximum over the parents, and the choice of its predecessor, only read the (finished) parents, so the
+ * nodes of one wavefront are computed independently of each other, on a ForkJoinPool:
+ *
+ * - with the triangle topology (-topology triangle) the parents of a node are computed from its ID, and the triangle is
+ *   cut into tiles of parallelEngineTileRows rows by parallelEngineTileColumns positions.  A tile only depends on the
+ *   tile to its left and the tile above it, so all of the tiles of an anti-diagonal are computed at the same time, and
+ *   each thread walks several rows of its tile (row by row, positions in ascending order) while they are in its cache -
+ *   there is one fork/join per anti-diagonal of tiles, not one per row of the triangle,
+ * - with explicit edges (the EDGES column) the parents of every node are collected into one array first, and the graph
+ *   is solved one wavefront at a time (the nodes whose parents have all been computed: a layer of a layered DAG, a row
+ *   of a triangle), in chunks of parallelEngineChunkSize nodes; every node counts down the remaining parents of its
+ *   children, and a child whose count reaches zero joins the next wavefront.
+ *
+ * A node keeps the path through its first reached parent - the lowest parent ID - unless a later parent gives it a
+ * strictly larger distance.  For the triangles (the bundled data sets) that is the order in which WeightedGraphLocalSolver
+ * and the MR iterations visit the parents, so the output is identical; for other DAGs the distances are the same, but
+ * of two paths with the same distance, the path that is kept may differ.
+ *
+ * The output lines are also formatted in parallel (following the predecessors back to the source node costs a path
+ * length per node), and written in ID order.  Loading the input stays single threaded.
+ */
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.log4j.Logger;
+
+
+public class WeightedGraphParallelSolver extends WeightedGraphLocalSolver {
+
+	/*
+	 * Job configuration properties (set in the IOFiles-*-Config.xml files)
+	 */
+	public static final String THREADS_PROPERTY = "parallelEngineThreads";          // 0 = one thread per core
+	public static final String TILE_ROWS_PROPERTY = "parallelEngineTileRows";
+	public static final String TILE_COLUMNS_PROPERTY = "parallelEngineTileColumns";
+	public static final String CHUNK_SIZE_PROPERTY = "parallelEngineChunkSize";
+	public static final int DEFAULT_TILE_ROWS = 32;
+	public static final int DEFAULT_TILE_COLUMNS = 256;
+	public static final int DEFAULT_CHUNK_SIZE = 2048;
+
+	// The number of output lines that are formatted by one task
+	private static final int WRITE_BATCH_SIZE = 4096;
+
+	// Log4j...
+	private static final Logger LOG = Logger.getLogger(WeightedGraphParallelSolver.class);
+
+	private final ForkJoinPool pool;
+	private final int tileRows;
+	private final int tileColumns;
+	private final int chunkSize;
+
+	/*
+	 * The explicit graph: the parents of node v are parents[parentStart[v]] ... parents[parentStart[v + 1] - 1]
+	 */
+	private int[] parentStart;
+	private int[] parents;
+	private AtomicIntegerArray remainingParents;
+
+	private boolean[] reached;
+
+	public WeightedGraphParallelSolver(TriangleTopology topology, ForkJoinPool pool, int tileRows, int tileColumns, int chunkSize) {
+		super(topology);
+		this.pool = pool;
+		this.tileRows = Math.max(1, tileRows);
+		this.tileColumns = Math.max(1, tileColumns);
+		this.chunkSize = Math.max(1, chunkSize);
+	}
+
+
+	/**
+	 * Compute the maximum distance (and the predecessor) of every node reachable from the GRAY source node(s)
+	 */
+	@Override
+	public void solve() {
+
+		addMissingNodes();
+
+		int n = maxId + 1;
+		predecessor = new int[n];
+		Arrays.fill(predecessor, -1);
+		level = new int[n];
+		reached = new boolean[n];
+
+		// (node 0 is not a node of the triangle - its computed edges would point to itself, so leave it to the general case)
+		if ((topology != null) && ((n == 0) || (color[0] == NO_NODE))) {
+			solveTriangle();
+		} else {
+			solveExplicit();
+		}
+
+		finish(reached);
+	}
+
+	/*
+	 * The pull rule: node v takes the maximum over its parents (parentIds[from] ... parentIds[to - 1], or the IDs
+	 * from ... to - 1 if parentIds is null, in ascending ID order): the first reached parent always sets its path, after
+	 * that only a larger distance does - and v is reached in the iteration after its earliest reached parent.
+	 * A GRAY node is a source: it is reached at level 0.
+	 */
+	private void pull(int v, int[] parentIds, int from, int to) {
+		boolean r = (color[v] == GRAY);
+		int d = distance[v];
+		int lvl = 0;
+		int pred = -1;
+
+		for (int i = from; i < to; i++) {
+			int u = (parentIds == null) ? i : parentIds[i];
+			if (!reached[u]) {
+				continue;
+			}
+			int candidate = distance[u] + weight[u];
+			if (!r) {
+				r = true;
+				lvl = level[u] + 1;
+				pred = u;
+				d = Math.max(d, candidate);
+			} else {
+				if (candidate > d) {
+					d = candidate;
+					pred = u;
+				}
+				lvl = Math.min(lvl, level[u] + 1);
+			}
+		}
+
+		distance[v] = d;
+		predecessor[v] = pred;
+		level[v] = lvl;
+		reached[v] = r;
+	}
+
+
+	/*
+	 * The triangle: the tiles of one anti-diagonal at a time, then the aggregation node (its parents are the whole bottom
+	 * row), then the nodes beyond it (which have no parents)
+	 */
+	private void solveTriangle() {
+
+		int rows = topology.getRows();
+		int tileRowCount = (rows + tileRows - 1) / tileRows;
+		int tileColumnCount = (rows + tileColumns - 1) / tileColumns;
+
+		for (int diagonal = 0; diagonal < tileRowCount + tileColumnCount - 1; diagonal++) {
+			List<TriangleTile> tiles = new ArrayList<TriangleTile>();
+			for (int i = Math.max(0, diagonal - tileColumnCount + 1); i <= Math.min(diagonal, tileRowCount - 1); i++) {
+				int j = diagonal - i;
+				// (the tiles to the right of the last row of the tile row are empty)
+				if ((long) j * tileColumns < Math.min(rows, (i + 1) * tileRows)) {
+					tiles.add(new TriangleTile(i, j));
+				}
+			}
+			if (tiles.size() == 1) {
+				tiles.get(0).compute();
+			} else {
+				pool.invoke(new TaskList(tiles));
+			}
+		}
+
+		int aggregation = topology.getAggregationNodeId();
+		for (int v = aggregation; v <= maxId; v++) {
+			if (color[v] == NO_NODE) {
+				continue;
+			}
+			if (v == aggregation) {
+				pullTriangle(v);
+			} else {
+				pull(v, null, 0, 0);
+			}
+		}
+	}
+
+	/*
+	 * The pull rule of a triangle node - a parent only counts if it is a node of the input (a node that is only pointed
+	 * to has no edges, see addMissingNodes)
+	 */
+	private void pullTriangle(int v) {
+		int first = topology.firstParent(v);
+		int last = first + topology.parentCount(v);
+		while ((first < last) && !isTriangleParent(first)) {
+			first++;
+		}
+		while ((last > first) && !isTriangleParent(last - 1)) {
+			last--;
+		}
+		for (int u = first; u < last; u++) {
+			if (!isTriangleParent(u)) {
+				// (a hole in the parents - only possible for the aggregation node of a partial bottom row)
+				pullHoles(v, first, last);
+				return;
+			}
+		}
+		pull(v, null, first, last);
+	}
+
+	private boolean isTriangleParent(int u) {
+		return (u <= maxId) && (color[u] != NO_NODE) && (edgeCount[u] > 0);
+	}
+
+	private void pullHoles(int v, int first, int last) {
+		int[] ids = new int[last - first];
+		int count = 0;
+		for (int u = first; u < last; u++) {
+			if (isTriangleParent(u)) {
+				ids[count++] = u;
+			}
+		}
+		pull(v, ids, 0, count);
+	}
+
+	/*
+	 * Tile (i, j): the rows i * tileRows + 1 ... (i + 1) * tileRows of the triangle, positions j * tileColumns ...
+	 * (j + 1) * tileColumns - 1 of each row
+	 */
+	private class TriangleTile extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int i;
+		private final int j;
+
+		TriangleTile(int i, int j) {
+			this.i = i;
+			this.j = j;
+		}
+
+		@Override
+		protected void compute() {
+			int lastRow = Math.min(topology.getRows(), (i + 1) * tileRows);
+			int firstPosition = j * tileColumns;
+			for (int r = i * tileRows + 1; r <= lastRow; r++) {
+				int rowFirstId = TriangleTopology.nodeId(r, 0);
+				int lastPosition = Math.min(r, firstPosition + tileColumns) - 1;
+				for (int p = firstPosition; p <= lastPosition; p++) {
+					int v = rowFirstId + p;
+					if (v > maxId) {
+						return;
+					}
+					if (color[v] != NO_NODE) {
+						pullTriangle(v);
+					}
+				}
+			}
+		}
+	}
+
+
+	/*
+	 * The explicit graph: one wavefront at a time
+	 */
+	private void solveExplicit() {
+
+		int n = maxId + 1;
+
+		// The parents of every node, in ascending ID order (the nodes are visited in ID order)...
+		parentStart = new int[n + 1];
+		for (int e = 0; e < totalEdges; e++) {
+			parentStart[edges[e] + 1]++;
+		}
+		for (int v = 0; v < n; v++) {
+			parentStart[v + 1] += parentStart[v];
+		}
+		parents = new int[parentStart[n]];
+		int[] next = Arrays.copyOf(parentStart, n);
+		for (int u = 0; u < n; u++) {
+			if (color[u] == NO_NODE) {
+				continue;
+			}
+			for (int e = edgeStart[u]; e < edgeStart[u] + edgeCount[u]; e++) {
+				parents[next[edges[e]]++] = u;
+			}
+		}
+
+		remainingParents = new AtomicIntegerArray(n);
+		int[] wavefront = new int[nodeCount];
+		int size = 0;
+		for (int v = 0; v < n; v++) {
+			if (color[v] != NO_NODE) {
+				int count = parentStart[v + 1] - parentStart[v];
+				remainingParents.set(v, count);
+				if (count == 0) {
+					wavefront[size++] = v;
+				}
+			}
+		}
+
+		int solved = 0;
+		int wavefronts = 0;
+		while (size > 0) {
+			solved += size;
+			wavefronts++;
+			Wavefront task = new Wavefront(wavefront, 0, size);
+			if (size <= chunkSize) {
+				task.compute();
+			} else {
+				pool.invoke(task);
+			}
+			size = task.collect(wavefront);
+		}
+
+		if (solved < nodeCount) {
+			throw new IllegalArgumentException("The input graph has a cycle - use the MR engine (-engine mr)");
+		}
+		LOG.info("Parallel engine solved " + wavefronts + " wavefronts");
+	}
+
+	/*
+	 * The nodes from ... to - 1 of a wavefront: split in halves down to chunkSize nodes, every chunk collects the children
+	 * that it completes (the nodes of the next wavefront)
+	 */
+	private class Wavefront extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int[] nodes;
+		private final int from;
+		private final int to;
+
+		private Wavefront left = null;
+		private Wavefront right = null;
+		private int[] completed = null;
+		private int completedCount = 0;
+
+		Wavefront(int[] nodes, int from, int to) {
+			this.nodes = nodes;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > chunkSize) {
+				int middle = (from + to) >>> 1;
+				left = new Wavefront(nodes, from, middle);
+				right = new Wavefront(nodes, middle, to);
+				invokeAll(left, right);
+				return;
+			}
+
+			completed = new int[16];
+			for (int k = from; k < to; k++) {
+				int v = nodes[k];
+				pull(v, parents, parentStart[v], parentStart[v + 1]);
+				for (int e = edgeStart[v]; e < edgeStart[v] + edgeCount[v]; e++) {
+					int w = edges[e];
+					if (remainingParents.decrementAndGet(w) == 0) {
+						if (completedCount == completed.length) {
+							completed = Arrays.copyOf(completed, completedCount * 2);
+						}
+						completed[completedCount++] = w;
+					}
+				}
+			}
+		}
+
+		/*
+		 * Copy the next wavefront (the completed children of all of the chunks, in chunk order) to the start of target -
+		 * returns its size.  (The next wavefront is never larger than the unsolved nodes, so it fits.)
+		 */
+		int collect(int[] target) {
+			return collect(target, 0);
+		}
+
+		private int collect(int[] target, int offset) {
+			if (left != null) {
+				offset = left.collect(target, offset);
+				return right.collect(target, offset);
+			}
+			System.arraycopy(completed, 0, target, offset, completedCount);
+			return offset + completedCount;
+		}
+	}
+
+	/*
+	 * Runs a list of tasks (the tiles of an anti-diagonal) in parallel
+	 */
+	private static class TaskList extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<? extends RecursiveAction> tasks;
+
+		TaskList(List<? extends RecursiveAction> tasks) {
+			this.tasks = tasks;
+		}
+
+		@Override
+		protected void compute() {
+			invokeAll(tasks);
+		}
+	}
+
+
+	/**
+	 * Write every node, in ID order, in the output format of the last MR iteration - the lines of a group of batches are
+	 * formatted in parallel, then written in order
+	 */
+	@Override
+	public void write(Configuration conf, Path outputDir, boolean trackPredecessorOnly) throws IOException {
+
+		FileSystem fs = outputDir.getFileSystem(conf);
+		if (fs.exists(outputDir)) {
+			throw new IOException("Output directory " + outputDir + " already exists");
+		}
+
+		int batchCount = (maxId + WRITE_BATCH_SIZE) / WRITE_BATCH_SIZE;
+		// (only a few batches per thread are held in memory at a time)
+		int groupSize = 4 * pool.getParallelism();
+
+		Writer writer = new OutputStreamWriter(fs.create(new Path(outputDir, "part-00000")), "UTF-8");
+		try {
+			for (int group = 0; group < batchCount; group += groupSize) {
+				List<WriteBatch> batches = new ArrayList<WriteBatch>();
+				for (int b = group; b < Math.min(batchCount, group + groupSize); b++) {
+					batches.add(new WriteBatch(b * WRITE_BATCH_SIZE, Math.min(maxId + 1, (b + 1) * WRITE_BATCH_SIZE),
+							trackPredecessorOnly));
+				}
+				pool.invoke(new TaskList(batches));
+				for (WriteBatch batch : batches) {
+					writer.write(batch.getLines());
+				}
+			}
+		} finally {
+			writer.close();
+		}
+		writeBest(conf, outputDir, trackPredecessorOnly);
+	}
+
+	/*
+	 * The output lines of the nodes from ... to - 1
+	 */
+	private class WriteBatch extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+		private final boolean trackPredecessorOnly;
+		private String lines;
+
+		WriteBatch(int from, int to, boolean trackPredecessorOnly) {
+			this.from = from;
+			this.to = to;
+			this.trackPredecessorOnly = trackPredecessorOnly;
+		}
+
+		@Override
+		protected void compute() {
+			int[] path = new int[16];
+			StringBuilder s = new StringBuilder();
+			for (int id = from; id < to; id++) {
+				if (color[id] != NO_NODE) {
+					path = appendNode(s, id, trackPredecessorOnly, path);
+				}
+			}
+			lines = s.toString();
+		}
+
+		String getLines() {
+			return lines;
+		}
+	}
+
+
+	/**
+	 * Solve the input graph in parallel and write the result to <outputPathIteration><N> (see WeightedGraphLocalSolver.run).
+	 * Returns the output directory.
+	 */
+	public static Path run(Configuration conf, Path input, String outputPathIteration, boolean trackPredecessorOnly,
+			TriangleTopology topology) throws IOException {
+
+		long start = System.currentTimeMillis();
+
+		int threads = conf.getInt(THREADS_PROPERTY, 0);
+		if (threads <= 0) {
+			threads = Runtime.getRuntime().availableProcessors();
+		}
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			WeightedGraphParallelSolver solver = new WeightedGraphParallelSolver(topology, pool,
+					conf.getInt(TILE_ROWS_PROPERTY, DEFAULT_TILE_ROWS), conf.getInt(TILE_COLUMNS_PROPERTY, DEFAULT_TILE_COLUMNS),
+					conf.getInt(CHUNK_SIZE_PROPERTY, DEFAULT_CHUNK_SIZE));
+			solver.load(conf, input, Integer.MAX_VALUE);
+			long loaded = System.currentTimeMillis();
+			solver.solve();
+			long solved = System.currentTimeMillis();
+
+			Path outputDir = new Path(outputPathIteration + solver.getIterationCount());
+			solver.write(conf, outputDir, trackPredecessorOnly);
+
+			WeightedGraphRunReport.solved(solver.getNodeCount(), solver.getIterationCount());
+			LOG.info("Parallel engine (" + threads + " threads) solved " + solver.getNodeCount() + " nodes (" +
+					solver.getIterationCount() + " iterations) in " + (System.currentTimeMillis() - start) + " ms (load " +
+					(loaded - start) + " ms, solve " + (solved - loaded) + " ms, write " + (System.currentTimeMillis() - solved) +
+					" ms), output= " + outputDir);
+			return outputDir;
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
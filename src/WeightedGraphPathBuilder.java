@@ -0,0 +1,170 @@
+/**
+ * Rebuilds the maximum path when the MR iterations only track the predecessor of each node (-path pred).
+ *
+ * In that mode each node carries only the ID of the node that we came from on its maximum path, instead
+ * of the whole path_taken_edges list, so the size of every record stays constant as the search gets deeper.
+ * After the last iteration this class walks over the (text) output of the last iteration, finds the sink
+ * node (the node with the maximum distance - for the triangle this is the 'aggregation node') and
+ * follows the predecessors back to the starting node.
+ *
+ * The result is one line, in the same format as the sink node's line when the full path is tracked:
+ * ID   WEIGHT|EDGES|DISTANCE|COLOR|Path_taken_edges|
+ *
+ * To run on its own:  WeightedGraphPathBuilder <Output directory of the last iteration> <Result file>
+ */
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.log4j.Logger;
+
+
+public class WeightedGraphPathBuilder {
+
+	/*
+	 * Job configuration property (and values) that selects how the path taken to a node is tracked
+	 */
+	public static final String PATH_TRACKING_PROPERTY = "pathTracking";
+	public static final String PATH_TRACKING_FULL = "full";            // every node carries its whole path_taken_edges list
+	public static final String PATH_TRACKING_PREDECESSOR = "pred";     // every node carries only its predecessor
+
+	// Log4j...
+	private static final Logger LOG = Logger.getLogger(WeightedGraphPathBuilder.class);
+
+	// predecessor[id] - indexed by node ID, -1 if the node has no predecessor
+	private int[] predecessor = new int[1024];
+	private int maxId = -1;
+
+	// The sink node - the node with the maximum distance
+	private WeightedNode sink = null;
+
+
+	/**
+	 * Read all of the part files in the output directory of the last iteration
+	 */
+	public void load(Configuration conf, Path outputDir) throws IOException {
+
+		FileSystem fs = outputDir.getFileSystem(conf);
+		Arrays.fill(predecessor, -1);
+
+		for (FileStatus status : fs.listStatus(outputDir)) {
+			if (!status.getPath().getName().startsWith("part-")) {
+				continue;
+			}
+			BufferedReader reader = new BufferedReader(new InputStreamReader(fs.open(status.getPath()), "UTF-8"));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (line.length() > 0) {
+						add(new WeightedNode(line));
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		}
+	}
+
+	private void add(WeightedNode node) {
+
+		int id = node.getId();
+		if (id >= predecessor.length) {
+			int length = predecessor.length;
+			while (id >= length) {
+				length *= 2;
+			}
+			int[] p = new int[length];
+			Arrays.fill(p, predecessor.length, length, -1);
+			System.arraycopy(predecessor, 0, p, 0, predecessor.length);
+			predecessor = p;
+		}
+		predecessor[id] = node.getPredecessor();
+		maxId = Math.max(maxId, id);
+
+		// Save the maximum distance node - on a tie, the node with the larger ID (the sink is the last node).  The ID is
+		// compared explicitly: with more than one reducer the part files are not in ID order
+		if ((sink == null) || (node.getDistance() > sink.getDistance()) ||
+				((node.getDistance() == sink.getDistance()) && (id > sink.getId()))) {
+			sink = node;
+		}
+	}
+
+	/**
+	 * Follow the predecessors back from the sink node, returns the sink node with its path taken edges filled in
+	 */
+	public WeightedNode buildPath() {
+
+		if (sink == null) {
+			return null;
+		}
+
+		int[] path = new int[16];
+		int length = 0;
+		int id = (sink.getId() <= maxId) ? predecessor[sink.getId()] : -1;
+		while (id >= 0) {
+			if (length == path.length) {
+				path = Arrays.copyOf(path, length * 2);
+			}
+			// A path can not be longer than the number of nodes - if it is then the predecessors have a cycle
+			if (length > maxId) {
+				throw new IllegalStateException("Predecessor cycle found at node " + id);
+			}
+			path[length++] = id;
+			id = (id <= maxId) ? predecessor[id] : -1;
+		}
+
+		// The path was built from the sink back to the start node, reverse it...
+		sink.getPathTakenEdges().clear();
+		for (int i = length - 1; i >= 0; i--) {
+			sink.addPathTakenEdge(path[i]);
+		}
+		sink.setPredecessor(-1);
+		return sink;
+	}
+
+	/**
+	 * Load the output of the last iteration, rebuild the maximum path and write it to the result file
+	 */
+	public static WeightedNode run(Configuration conf, Path outputDir, Path resultFile) throws IOException {
+
+		WeightedGraphPathBuilder builder = new WeightedGraphPathBuilder();
+		builder.load(conf, outputDir);
+		WeightedNode node = builder.buildPath();
+		if (node == null) {
+			LOG.info("No nodes found in " + outputDir);
+			return null;
+		}
+
+		FileSystem fs = resultFile.getFileSystem(conf);
+		Writer writer = new OutputStreamWriter(fs.create(resultFile, true), "UTF-8");
+		try {
+			writer.write(node.getId() + "\t" + node.getLine().toString() + "\n");
+		} finally {
+			writer.close();
+		}
+		LOG.info("Maximum path: " + node.getId() + "\t" + node.getLine().toString() + " written to " + resultFile);
+		return node;
+	}
+
+
+	public static void main(String[] args) throws Exception {
+
+		if (args.length != 2) {
+			System.out.println("Usage: WeightedGraphPathBuilder <Output directory of the last iteration> <Result file>");
+			return;
+		}
+
+		WeightedNode node = run(new Configuration(), new Path(args[0]), new Path(args[1]));
+		if (node != null) {
+			System.out.println(node.getId() + "\t" + node.getLine().toString());
+		}
+	}
+}
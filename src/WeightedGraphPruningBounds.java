@@ -0,0 +1,188 @@
+/**
+ * The bounds for the branch-and-bound pruning of the triangle (-prune bound).
+ *
+ * Before the first iteration the input triangle is read once, top to bottom (compute), for:
+ * - the upper bound of the weight that can still be added below each row: the sum of the maximum weight of every row
+ *   below it - no path from a node of row r to the aggregation node can add more than upper[r + 1],
+ * - the lower bound of the maximum distance: the distance of the greedy path, that goes from the top node down to the
+ *   heavier child of every node (on a tie, the left child).
+ * They are written to a small bounds file, which the tasks read when they are configured (load).
+ *
+ * A GRAY node of row r (distance d, weight w) can no longer be on a maximum path if d + w + upper[r + 1] < lower:
+ * even the heaviest row maximums below it can not reach the distance of the greedy path.  Such a node is not expanded -
+ * it is reset to the unreached state of the input graph (WHITE, distance 0, no path and no predecessor), and counted
+ * in NUMBER_OF_GRAY_NODES_PRUNED.
+ * A node on a maximum path always has d + w + upper[r + 1] >= maximum distance >= lower, so the nodes of every maximum
+ * path (and with them the tie-breaking between them) are never pruned, and the maximum path is the same.  The rest of
+ * the output is not: the pruned nodes, and the nodes that only they reach, are left unreached.
+ */
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.util.LineReader;
+import org.apache.log4j.Logger;
+
+
+@SuppressWarnings("deprecation")
+public class WeightedGraphPruningBounds {
+
+	// Log4j...
+	private static final Logger LOG = Logger.getLogger(WeightedGraphPruningBounds.class);
+
+	/*
+	 * Job configuration properties (and values) for the pruning ("-prune" parameter)
+	 */
+	public static final String PRUNE_NONE = "none";     // every GRAY node is expanded (the default)
+	public static final String PRUNE_BOUND = "bound";   // the GRAY nodes that can not beat the greedy path are pruned
+	public static final String BOUNDS_PATH_PROPERTY = "pruningBoundsPath";
+
+	private final int rows;
+	private final long lower;
+	// upper[r] - the maximum weight that the rows r..rows can add to a path (upper[rows + 1] = 0)
+	private final long[] upper;
+
+	private WeightedGraphPruningBounds(int rows, long lower, long[] upper) {
+		this.rows = rows;
+		this.lower = lower;
+		this.upper = upper;
+	}
+
+	public long getLowerBound() {
+		return lower;
+	}
+
+	/*
+	 * true if the GRAY node can no longer be on a maximum path (the aggregation node is never pruned)
+	 */
+	public boolean canPrune(WeightedNodeWritable node) {
+		int r = TriangleTopology.rowOf(node.getId());
+		if (r > rows) {
+			return false;
+		}
+		return (long) node.getDistance() + node.getWeight() + upper[r + 1] < lower;
+	}
+
+
+	/**
+	 * The bounds of the job, or null if the pruning is off
+	 */
+	public static WeightedGraphPruningBounds load(JobConf job) {
+		String boundsPath = job.get(BOUNDS_PATH_PROPERTY);
+		if (boundsPath == null) {
+			return null;
+		}
+		try {
+			Path path = new Path(boundsPath);
+			DataInputStream in = path.getFileSystem(job).open(path);
+			try {
+				int rows = in.readInt();
+				long lower = in.readLong();
+				long[] upper = new long[rows + 2];
+				for (int r = 1; r <= rows + 1; r++) {
+					upper[r] = in.readLong();
+				}
+				return new WeightedGraphPruningBounds(rows, lower, upper);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to read the pruning bounds " + boundsPath, e);
+		}
+	}
+
+
+	/**
+	 * Read the input triangle (a single file, or all of the part files of a directory in name order) and write its
+	 * bounds to the bounds file.  Only the weights of the current row, and the position of the greedy path, are kept.
+	 */
+	public static WeightedGraphPruningBounds compute(Configuration conf, Path input, TriangleTopology topology, Path boundsFile) throws IOException {
+
+		int rows = topology.getRows();
+		long[] rowMax = new long[rows + 2];
+		Arrays.fill(rowMax, Long.MIN_VALUE);
+
+		long lower = 0;
+		int greedyParent = 0;        // the position of the greedy path in the previous row
+		int greedyPosition = 0;      // the position of the greedy path in the current row (so far - on a tie, the left child)
+		int greedyWeight = 0;        // and its weight
+		boolean greedyChosen = false;
+
+		FileSystem fs = input.getFileSystem(conf);
+		FileStatus[] files = fs.getFileStatus(input).isDir() ? fs.listStatus(input) : new FileStatus[] { fs.getFileStatus(input) };
+		Arrays.sort(files);
+
+		Text line = new Text();
+		WeightedNodeWritable node = new WeightedNodeWritable();
+		int currentRow = 1;
+		for (FileStatus status : files) {
+			String name = status.getPath().getName();
+			if (status.isDir() || name.startsWith("_") || name.startsWith(".")) {
+				continue;
+			}
+			LineReader reader = new LineReader(fs.open(status.getPath()), 1 << 16);
+			try {
+				while (reader.readLine(line) > 0) {
+					if (line.getLength() == 0) {
+						continue;
+					}
+					node.parse(line);
+					int r = TriangleTopology.rowOf(node.getId());
+					if (r > rows) {
+						continue;
+					}
+					if (r != currentRow) {
+						// The previous row is complete - move the greedy path to its heavier child
+						lower += greedyWeight;
+						greedyParent = greedyPosition;
+						greedyChosen = false;
+						currentRow = r;
+					}
+					rowMax[r] = Math.max(rowMax[r], node.getWeight());
+
+					// The greedy path goes on to the child greedyParent or greedyParent + 1 of this row (the top node: position 0)
+					int p = TriangleTopology.positionOf(node.getId());
+					if ((p == greedyParent) || ((r > 1) && (p == greedyParent + 1))) {
+						if (!greedyChosen || (node.getWeight() > greedyWeight)) {
+							greedyPosition = p;
+							greedyWeight = node.getWeight();
+							greedyChosen = true;
+						}
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		}
+		lower += greedyWeight;
+
+		long[] upper = new long[rows + 2];
+		for (int r = rows; r >= 1; r--) {
+			if (rowMax[r] == Long.MIN_VALUE) {
+				throw new IllegalArgumentException("Row " + r + " of the triangle has no nodes");
+			}
+			upper[r] = upper[r + 1] + rowMax[r];
+		}
+
+		DataOutputStream out = fs.create(boundsFile, true);
+		try {
+			out.writeInt(rows);
+			out.writeLong(lower);
+			for (int r = 1; r <= rows + 1; r++) {
+				out.writeLong(upper[r]);
+			}
+		} finally {
+			out.close();
+		}
+		LOG.info("Pruning bounds: greedy path distance " + lower + ", maximum row weights sum " + upper[1] + " written to " + boundsFile);
+		return new WeightedGraphPruningBounds(rows, lower, upper);
+	}
+}
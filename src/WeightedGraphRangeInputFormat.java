@@ -0,0 +1,158 @@
+/**
+ * An InputFormat that splits the graph into (-m) contiguous ranges of nodes - so that the number of mappers is exact,
+ * instead of the hint that FileInputFormat takes it for.
+ *
+ * The input graph, and the output of every iteration, is in node ID order, so a byte range of a file is a range of node IDs
+ * (with the triangle: a range of rows).  The total size of the input files is cut into numSplits ranges of (about)
+ * the same size, without regard to the block size.  A split never spans two files: every (non-empty) file gets at
+ * least one split, and the rest of the splits are shared out in proportion to the file sizes - so the number of splits
+ * is exactly numSplits, unless there are more files than that.
+ *
+ * With the WeightedGraphRangePartitioner each reducer writes a contiguous range of node IDs, so the splits of the
+ * next iteration line up with the output of the reducers.
+ *
+ * This class reads the text input graph (first iteration), the nested Sequence class reads the SequenceFile
+ * output of the other iterations.  The records that cross the split boundaries are handled by the record readers
+ * (LineRecordReader, SequenceFileRecordReader), just as they are for the splits of FileInputFormat.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.SequenceFileInputFormat;
+import org.apache.hadoop.mapred.TextInputFormat;
+import org.apache.log4j.Logger;
+
+
+@SuppressWarnings("deprecation")
+public class WeightedGraphRangeInputFormat extends TextInputFormat {
+
+	// Log4j...
+	private static final Logger LOG = Logger.getLogger(WeightedGraphRangeInputFormat.class);
+
+	@Override
+	public InputSplit[] getSplits(JobConf job, int numSplits) throws IOException {
+		FileStatus[] files = listStatus(job);
+		boolean[] splitable = new boolean[files.length];
+		for (int i = 0; i < files.length; i++) {
+			Path path = files[i].getPath();
+			// compressed text files can not be split
+			splitable[i] = isSplitable(path.getFileSystem(job), path);
+		}
+		return getRangeSplits(job, files, splitable, numSplits);
+	}
+
+
+	/**
+	 * The same splits, for the SequenceFile output of an iteration
+	 */
+	public static class Sequence extends SequenceFileInputFormat<IntWritable, WeightedNodeWritable> {
+
+		@Override
+		public InputSplit[] getSplits(JobConf job, int numSplits) throws IOException {
+			FileStatus[] files = listStatus(job);
+			boolean[] splitable = new boolean[files.length];
+			for (int i = 0; i < files.length; i++) {
+				splitable[i] = true;
+			}
+			return getRangeSplits(job, files, splitable, numSplits);
+		}
+	}
+
+
+	/*
+	 * Cut the files into numSplits contiguous byte ranges
+	 */
+	static InputSplit[] getRangeSplits(JobConf job, FileStatus[] files, boolean[] splitable, int numSplits) throws IOException {
+
+		numSplits = Math.max(1, numSplits);
+
+		// Every non-empty file gets one split (a file that can not be split gets only one)...
+		long totalSize = 0;
+		long splitableSize = 0;
+		int fileCount = 0;
+		for (int i = 0; i < files.length; i++) {
+			if (files[i].getLen() > 0) {
+				fileCount++;
+				totalSize += files[i].getLen();
+				if (splitable[i]) {
+					splitableSize += files[i].getLen();
+				}
+			}
+		}
+		int[] splitsPerFile = new int[files.length];
+		for (int i = 0; i < files.length; i++) {
+			splitsPerFile[i] = (files[i].getLen() > 0) ? 1 : 0;
+		}
+
+		// ...and the rest of the splits are shared out (largest remainder) in proportion to the size of the splitable files
+		int extra = numSplits - fileCount;
+		if ((extra > 0) && (splitableSize > 0)) {
+			double[] remainder = new double[files.length];
+			int given = 0;
+			for (int i = 0; i < files.length; i++) {
+				if ((files[i].getLen() > 0) && splitable[i]) {
+					double share = (double) extra * files[i].getLen() / splitableSize;
+					splitsPerFile[i] += (int) share;
+					given += (int) share;
+					remainder[i] = share - (int) share;
+				}
+			}
+			while (given < extra) {
+				int best = -1;
+				for (int i = 0; i < files.length; i++) {
+					if ((files[i].getLen() > 0) && splitable[i] && ((best < 0) || (remainder[i] > remainder[best]))) {
+						best = i;
+					}
+				}
+				splitsPerFile[best]++;
+				remainder[best] = -1;
+				given++;
+			}
+		}
+
+		List<InputSplit> splits = new ArrayList<InputSplit>();
+		for (int i = 0; i < files.length; i++) {
+			if (splitsPerFile[i] == 0) {
+				continue;
+			}
+			Path path = files[i].getPath();
+			long length = files[i].getLen();
+			FileSystem fs = path.getFileSystem(job);
+			BlockLocation[] blocks = fs.getFileBlockLocations(files[i], 0, length);
+
+			long start = 0;
+			for (int s = 0; s < splitsPerFile[i]; s++) {
+				long end = (s == splitsPerFile[i] - 1) ? length : (length * (s + 1)) / splitsPerFile[i];
+				if (end > start) {
+					splits.add(new FileSplit(path, start, end - start, getHosts(blocks, start)));
+				}
+				start = end;
+			}
+		}
+
+		LOG.info("Total input size: " + totalSize + " bytes, number of range splits: " + splits.size() + " (asked for " + numSplits + ")");
+		return splits.toArray(new InputSplit[splits.size()]);
+	}
+
+	/*
+	 * The hosts of the block that the split starts in
+	 */
+	private static String[] getHosts(BlockLocation[] blocks, long offset) throws IOException {
+		for (BlockLocation block : blocks) {
+			if ((offset >= block.getOffset()) && (offset < block.getOffset() + block.getLength())) {
+				return block.getHosts();
+			}
+		}
+		return new String[0];
+	}
+}
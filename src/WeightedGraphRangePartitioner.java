@@ -0,0 +1,104 @@
+/**
+ * A partitioner that gives each reducer a contiguous range of node IDs, instead of scattering the (adjacent) nodes of
+ * the triangle over all of the reducers the way that the HashPartitioner does.
+ *
+ * The node IDs 1..maxNodeId are cut into numPartitions ranges of (about) the same number of nodes:
+ * - with the triangle topology the ranges are cut at the start of a row, so that every reducer owns whole rows,
+ * - otherwise the ranges are cut by node ID, up to the rangePartitionMaxNodeId that the driver finds at the end of the
+ *   input graph (findMaxNodeId).
+ * A node ID outside of 1..maxNodeId goes to the first or the last reducer - so this only affects the balance of the
+ * reducers, never the result.
+ *
+ * Each reducer's output (part-0000n) is then a contiguous range of node IDs, which the WeightedGraphRangeInputFormat
+ * splits of the next iteration line up with.
+ */
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.Partitioner;
+
+
+@SuppressWarnings("deprecation")
+public class WeightedGraphRangePartitioner implements Partitioner<IntWritable, WeightedNodeWritable> {
+
+	/*
+	 * Job configuration properties (and values) that select the input format and partitioner ("-partition" parameter)
+	 */
+	public static final String PARTITION_HASH = "hash";     // FileInputFormat splits and the HashPartitioner (the default)
+	public static final String PARTITION_RANGE = "range";   // WeightedGraphRangeInputFormat splits and this partitioner
+	public static final String MAX_NODE_ID_PROPERTY = "rangePartitionMaxNodeId";
+
+	private TriangleTopology topology = null;
+	private int maxNodeId = 1;
+
+	public void configure(JobConf job) {
+		topology = TriangleTopology.get(job);
+		if (topology != null) {
+			maxNodeId = topology.getAggregationNodeId();
+		} else {
+			maxNodeId = Math.max(1, job.getInt(MAX_NODE_ID_PROPERTY, 1));
+		}
+	}
+
+	public int getPartition(IntWritable key, WeightedNodeWritable value, int numPartitions) {
+		int id = key.get();
+		if (topology != null) {
+			// Cut at the start of the node's row
+			id = TriangleTopology.nodeId(TriangleTopology.rowOf(Math.max(1, Math.min(id, maxNodeId))), 0);
+		}
+		long partition = ((long) (id - 1) * numPartitions) / maxNodeId;
+		return (int) Math.max(0, Math.min(numPartitions - 1, partition));
+	}
+
+
+	/**
+	 * The ID of the last node of the input graph (the graph is in node ID order) - read from the end of the last file,
+	 * without reading the rest of the graph.  Returns 0 if there is no node.
+	 */
+	public static int findMaxNodeId(Configuration conf, Path input) throws IOException {
+
+		FileSystem fs = input.getFileSystem(conf);
+		FileStatus[] files = fs.getFileStatus(input).isDir() ? fs.listStatus(input) : new FileStatus[] { fs.getFileStatus(input) };
+		Arrays.sort(files);
+
+		for (int f = files.length - 1; f >= 0; f--) {
+			String name = files[f].getPath().getName();
+			if (files[f].isDir() || name.startsWith("_") || name.startsWith(".") || (files[f].getLen() == 0)) {
+				continue;
+			}
+
+			// Read the tail of the file, and find the start of the last (non empty) line
+			int length = (int) Math.min(files[f].getLen(), 64 * 1024);
+			byte[] tail = new byte[length];
+			FSDataInputStream in = fs.open(files[f].getPath());
+			try {
+				in.readFully(files[f].getLen() - length, tail);
+			} finally {
+				in.close();
+			}
+			int end = length;
+			while ((end > 0) && ((tail[end - 1] == '\n') || (tail[end - 1] == '\r'))) {
+				end--;
+			}
+			int start = end;
+			while ((start > 0) && (tail[start - 1] != '\n')) {
+				start--;
+			}
+
+			int id = 0;
+			for (int i = start; (i < end) && (tail[i] >= '0') && (tail[i] <= '9'); i++) {
+				id = id * 10 + (tail[i] - '0');
+			}
+			return id;
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,132 @@
+/**
+ * The row recurrence of the streaming triangle engine (WeightedGraphTriangleSolver): the distance and the choice bit of
+ * every node of a row, from the totals (distance + weight) of the row above.
+ *
+ *   distance[p] = max(total[p-1], total[p]) - the left parent (p-1) is kept on a tie (bit 0), the right parent (p) sets bit 1
+ *
+ * The choice bits are packed 8 nodes per byte (node p is bit p & 7 of byte p >> 3), as they are written to the bitmap.
+ *
+ * This class is the scalar kernel.  The triangleRowKernel property (IOFiles-*-Config.xml) selects the kernel:
+ *
+ *   scalar - this loop
+ *   vector - WeightedGraphVectorRowKernel, that computes a whole vector of nodes per step with the Java Vector API
+ *            (jdk.incubator.vector, JDK 16 or later).  It is built from the src-vector folder, separately from the rest
+ *            of the classes (which do not need a recent JDK), and is loaded by name - so if it is not on the classpath,
+ *            or the JVM was not started with --add-modules jdk.incubator.vector, the scalar kernel is used instead
+ *   auto   - (the default) vector if it can be loaded and its vectors have at least 8 ints (AVX2, AVX-512), otherwise
+ *            scalar - with narrower vectors (SSE only) the Vector API is not compiled to SIMD instructions, and the vector
+ *            kernel is slower than the scalar loop
+ *
+ * The output does not depend on the kernel: both kernels write the same distances and the same bits.
+ */
+
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.log4j.Logger;
+
+
+public class WeightedGraphRowKernel {
+
+	/*
+	 * Job configuration property (set in the IOFiles-*-Config.xml files)
+	 */
+	public static final String KERNEL_PROPERTY = "triangleRowKernel";
+	public static final String KERNEL_SCALAR = "scalar";
+	public static final String KERNEL_VECTOR = "vector";
+	public static final String KERNEL_AUTO = "auto";
+
+	// The vector kernel (src-vector), loaded by name - and the narrowest vectors that auto selects it for
+	static final String VECTOR_KERNEL_CLASS = "WeightedGraphVectorRowKernel";
+	static final int AUTO_MIN_LANES = 8;
+
+	// Log4j...
+	private static final Logger LOG = Logger.getLogger(WeightedGraphRowKernel.class);
+
+
+	/**
+	 * The kernel that is selected in the configuration - the scalar kernel if the vector kernel is selected but can not be loaded
+	 */
+	public static WeightedGraphRowKernel get(Configuration conf) {
+		String name = conf.get(KERNEL_PROPERTY, KERNEL_AUTO);
+		if (KERNEL_SCALAR.equals(name)) {
+			return new WeightedGraphRowKernel();
+		}
+		if (!KERNEL_VECTOR.equals(name) && !KERNEL_AUTO.equals(name)) {
+			throw new IllegalArgumentException("Unknown " + KERNEL_PROPERTY + " value: " + name);
+		}
+
+		WeightedGraphRowKernel vector = loadVectorKernel();
+		if ((vector != null) && (KERNEL_VECTOR.equals(name) || (vector.getLanes() >= AUTO_MIN_LANES))) {
+			return vector;
+		}
+		if (vector != null) {
+			LOG.info("The vector row kernel has only " + vector.getLanes() + " lanes - using the scalar kernel");
+		} else if (KERNEL_VECTOR.equals(name)) {
+			LOG.warn("The vector row kernel is not available (" + VECTOR_KERNEL_CLASS + " on the classpath, and " +
+					"--add-modules jdk.incubator.vector) - using the scalar kernel");
+		}
+		return new WeightedGraphRowKernel();
+	}
+
+	/**
+	 * The vector kernel, or null if it is not on the classpath or the JVM does not have the Vector API
+	 */
+	public static WeightedGraphRowKernel loadVectorKernel() {
+		try {
+			return (WeightedGraphRowKernel) Class.forName(VECTOR_KERNEL_CLASS).getDeclaredConstructor().newInstance();
+		} catch (Exception e) {
+			LOG.debug("Vector row kernel not loaded: " + e);
+		} catch (LinkageError e) {
+			// (the class is there, but the jdk.incubator.vector module is not)
+			LOG.debug("Vector row kernel not loaded: " + e);
+		}
+		return null;
+	}
+
+	/**
+	 * The name of the kernel, for the log
+	 */
+	public String getName() {
+		return KERNEL_SCALAR;
+	}
+
+	/**
+	 * The number of nodes that the kernel computes per step
+	 */
+	public int getLanes() {
+		return 1;
+	}
+
+	/**
+	 * Compute the distance and the choice bit of the 'width' (at least 2) nodes of a row, from the totals of the row above
+	 */
+	public void solveRow(int[] total, int[] distance, byte[] bits, int width) {
+
+		clearBits(bits, width);
+
+		// The first node only has a right parent, the last node only has a left parent
+		distance[0] = total[0];
+		bits[0] |= 1;
+		solveRange(total, distance, bits, 1, width - 1);
+		distance[width - 1] = total[width - 2];
+	}
+
+	/*
+	 * The nodes from ... to - 1, which have both parents (the vector kernel uses it for the nodes after its last full vector)
+	 */
+	protected static void solveRange(int[] total, int[] distance, byte[] bits, int from, int to) {
+		for (int p = from; p < to; p++) {
+			if (total[p] > total[p - 1]) {
+				distance[p] = total[p];
+				bits[p >> 3] |= (1 << (p & 7));
+			} else {
+				distance[p] = total[p - 1];
+			}
+		}
+	}
+
+	protected static void clearBits(byte[] bits, int width) {
+		Arrays.fill(bits, 0, (width + 7) / 8, (byte) 0);
+	}
+}
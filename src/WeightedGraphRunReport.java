@@ -0,0 +1,325 @@
+/**
+ * The report of a run of the driver: the counters and the timings of every MR job of the run (collected by
+ * WeightedGraphJobStats.runJob), with the iterations marked by the driver - written as JSON to
+ * <outputPathIteration>report.json at the end of the run:
+ *
+ *   { "engine": ..., "iterationMode": ..., "wall_ms": ..., "iterations": <N>, "totals": { <metric>: <sum>, ... },
+ *     "jobs": [ { "iteration": <n, or null for the other jobs>, "job": <name>, "id": <job ID>, "output": <directory>,
+ *                 "start_ms": <since the start of the run>, "wall_ms": ..., <metric>: <value>, ...,
+ *                 "eta_ms": <the estimated time left after this iteration, or null> }, ... ] }
+ *
+ * The metrics of a job are the framework counters (map_input_records, map_output_records, map_output_bytes,
+ * shuffle_bytes, combine_merged_records - the combine input less the combine output records, reduce_input_records,
+ * reduce_output_records), the bytes read and written by the file systems, the counters of MRStats (gray_tobe,
+ * gray_processed, gray_pruned, records_parsed, candidates_discarded - by the mapper and the reducer, frontier_width, map_ms
+ * and reduce_ms - the phase times summed over the tasks), max_path_length (the longest path that a reduce task wrote,
+ * from the side files of WeightedGraphMaxResult in the output directory of the job), bytes_per_record (map output bytes
+ * per map output record) and peak_heap_mb (see WeightedGraphJobStats).  The totals are the sums over the jobs (the largest value, for
+ * max_path_length and peak_heap_mb) - the job that merges the frontiers (-iteration frontier) counts the older GRAY records
+ * of every node in its candidates_discarded.
+ *
+ * The ETA of an iteration is the mean time of the last (up to) 3 iterations, times the number of iterations left: known
+ * when the rows are limited (-i) or the triangle has -rows rows, otherwise estimated from the frontier - the nodes of the
+ * graph (the map input records of the first iteration) that have not been expanded yet, divided by the frontier width.
+ * The estimate is logged after every iteration.
+ *
+ * A run that an in-memory engine (local, parallel or stream) solved has no jobs: its report has the iterations that the
+ * MR engine would have run, and only the records_parsed total (the nodes read from the input graph) - see solved().
+ *
+ * The driver keeps its state in static fields, and so does the report: start() starts the report of a new run.
+ */
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.Counters;
+import org.apache.hadoop.mapred.FileOutputFormat;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.RunningJob;
+import org.apache.log4j.Logger;
+
+
+@SuppressWarnings("deprecation")
+public class WeightedGraphRunReport {
+
+	private static final Logger LOG = Logger.getLogger(WeightedGraphRunReport.class);
+
+	private static final String TASK_COUNTERS = "org.apache.hadoop.mapred.Task$Counter";
+
+	// The number of iterations that the ETA is averaged over
+	private static final int ETA_ITERATIONS = 3;
+
+	/*
+	 * The metrics of one MR job
+	 */
+	public static class JobEntry {
+
+		private final String name;
+		private final String id;
+		private final String output;
+		private final long startMillis;
+		private final long wallMillis;
+		private final Map<String, Long> metrics = new LinkedHashMap<String, Long>();
+		private int iteration = 0;
+		private long etaMillis = -1;
+
+		JobEntry(String name, String id, String output, long startMillis, long wallMillis) {
+			this.name = name;
+			this.id = id;
+			this.output = output;
+			this.startMillis = startMillis;
+			this.wallMillis = wallMillis;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public String getOutput() {
+			return output;
+		}
+
+		public long getWallMillis() {
+			return wallMillis;
+		}
+
+		/*
+		 * The value of a metric (0 if the job does not have it)
+		 */
+		public long get(String metric) {
+			Long value = metrics.get(metric);
+			return (value != null) ? value.longValue() : 0;
+		}
+
+		void put(String metric, long value) {
+			metrics.put(metric, Long.valueOf(value));
+		}
+	}
+
+	private static long runStart = System.currentTimeMillis();
+	private static final List<JobEntry> jobs = new ArrayList<JobEntry>();
+
+	// The nodes read and the iterations of a run that an in-memory engine solved (-1 nodes if none did)
+	private static long solvedNodes = -1;
+	private static int solvedIterations = 0;
+
+
+	/**
+	 * Start the report of a new run
+	 */
+	public static synchronized void start() {
+		runStart = System.currentTimeMillis();
+		jobs.clear();
+		solvedNodes = -1;
+		solvedIterations = 0;
+	}
+
+	/**
+	 * Record the solve of an in-memory engine: the nodes read from the input graph, and the number of iterations that the
+	 * MR engine would have run
+	 */
+	public static synchronized void solved(long nodes, int iterations) {
+		solvedNodes = nodes;
+		solvedIterations = iterations;
+	}
+
+	/**
+	 * Add a job that has completed (the jobs of the bidirectional engine complete at the same time, so this is synchronized)
+	 */
+	public static synchronized JobEntry add(JobConf conf, RunningJob job, long startMillis, long wallMillis,
+			long bytesRead, long bytesWritten, long peakHeapMb) throws IOException {
+
+		Path output = FileOutputFormat.getOutputPath(conf);
+		JobEntry entry = new JobEntry(conf.getJobName(), job.getID().toString(), (output != null) ? output.getName() : "",
+				startMillis - runStart, wallMillis);
+
+		Counters counters = job.getCounters();
+		entry.put("map_input_records", counters.findCounter(TASK_COUNTERS, "MAP_INPUT_RECORDS").getCounter());
+		entry.put("map_output_records", counters.findCounter(TASK_COUNTERS, "MAP_OUTPUT_RECORDS").getCounter());
+		entry.put("map_output_bytes", counters.findCounter(TASK_COUNTERS, "MAP_OUTPUT_BYTES").getCounter());
+		entry.put("shuffle_bytes", counters.findCounter(TASK_COUNTERS, "REDUCE_SHUFFLE_BYTES").getCounter());
+		entry.put("combine_merged_records", counters.findCounter(TASK_COUNTERS, "COMBINE_INPUT_RECORDS").getCounter() -
+				counters.findCounter(TASK_COUNTERS, "COMBINE_OUTPUT_RECORDS").getCounter());
+		entry.put("reduce_input_records", counters.findCounter(TASK_COUNTERS, "REDUCE_INPUT_RECORDS").getCounter());
+		entry.put("reduce_output_records", counters.findCounter(TASK_COUNTERS, "REDUCE_OUTPUT_RECORDS").getCounter());
+		entry.put("fs_bytes_read", bytesRead);
+		entry.put("fs_bytes_written", bytesWritten);
+		entry.put("gray_tobe", counters.getCounter(MRStats.NUMBER_OF_GRAY_NODES_TOBE_PROCESSED));
+		entry.put("gray_processed", counters.getCounter(MRStats.NUMBER_OF_GRAY_NODES_PROCESSED));
+		entry.put("gray_pruned", counters.getCounter(MRStats.NUMBER_OF_GRAY_NODES_PRUNED));
+		entry.put("records_parsed", counters.getCounter(MRStats.RECORDS_PARSED));
+		entry.put("candidates_discarded", counters.getCounter(MRStats.CANDIDATES_DISCARDED));
+		entry.put("frontier_width", counters.getCounter(MRStats.FRONTIER_WIDTH));
+		entry.put("map_ms", counters.getCounter(MRStats.MAP_MILLIS));
+		entry.put("reduce_ms", counters.getCounter(MRStats.REDUCE_MILLIS));
+		entry.put("max_path_length", (output != null) ? WeightedGraphMaxResult.maxPathLength(conf, output) : 0);
+		long records = entry.get("map_output_records");
+		entry.put("bytes_per_record", (records > 0) ? entry.get("map_output_bytes") / records : 0);
+		entry.put("peak_heap_mb", peakHeapMb);
+
+		jobs.add(entry);
+		return entry;
+	}
+
+	/**
+	 * Mark the job as iteration number iteration, and log the ETA - remainingIterations is the number of iterations left
+	 * if it is known, otherwise -1 (it is estimated from the frontier)
+	 */
+	public static synchronized void iteration(RunningJob job, int iteration, int remainingIterations) {
+
+		JobEntry entry = find(job.getID().toString());
+		if (entry == null) {
+			return;
+		}
+		entry.iteration = iteration;
+
+		// The mean time of the last iterations, the nodes of the graph, and the GRAY nodes expanded so far
+		long iterationMillis = 0;
+		int iterations = 0;
+		long nodes = 0;
+		long processed = 0;
+		for (int i = jobs.size() - 1; i >= 0; i--) {
+			JobEntry other = jobs.get(i);
+			if (other.iteration == 0) {
+				continue;
+			}
+			if (iterations < ETA_ITERATIONS) {
+				iterationMillis += other.wallMillis;
+				iterations++;
+			}
+			if (other.iteration == 1) {
+				nodes = other.get("map_input_records");
+			}
+			processed += other.get("gray_processed");
+		}
+		long frontier = entry.get("frontier_width");
+
+		String basis = "known";
+		if ((remainingIterations < 0) && (frontier > 0)) {
+			// (a node can be expanded again when a longer path reaches it, so processed can overtake the nodes)
+			remainingIterations = (int) Math.max(1, (nodes - processed + frontier - 1) / frontier);
+			basis = "estimated from a frontier of " + frontier + " nodes";
+		} else if (remainingIterations < 0) {
+			remainingIterations = 0;
+		}
+		entry.etaMillis = (iterationMillis / Math.max(1, iterations)) * remainingIterations;
+
+		LOG.info("Iteration " + iteration + ": " + entry.wallMillis + " ms, frontier width " + frontier +
+				", " + remainingIterations + " iterations left (" + basis + "), ETA " + (entry.etaMillis / 1000F) + " sec");
+	}
+
+	private static JobEntry find(String id) {
+		for (int i = jobs.size() - 1; i >= 0; i--) {
+			if (jobs.get(i).id.equals(id)) {
+				return jobs.get(i);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Write the report of the run (nothing, if the run had no MR jobs and no in-memory engine solved it)
+	 */
+	public static synchronized void write(Configuration conf, Path path, String engine, String iterationMode) throws IOException {
+
+		if (jobs.isEmpty() && (solvedNodes < 0)) {
+			return;
+		}
+
+		int iterations = 0;
+		Map<String, Long> totals = new LinkedHashMap<String, Long>();
+		for (JobEntry entry : jobs) {
+			if (entry.iteration > 0) {
+				iterations++;
+			}
+			for (Map.Entry<String, Long> metric : entry.metrics.entrySet()) {
+				Long total = totals.get(metric.getKey());
+				long value = metric.getValue().longValue();
+				if (total != null) {
+					boolean maximum = "max_path_length".equals(metric.getKey()) || "peak_heap_mb".equals(metric.getKey());
+					value = maximum ? Math.max(total.longValue(), value) : total.longValue() + value;
+				}
+				totals.put(metric.getKey(), Long.valueOf(value));
+			}
+		}
+		if (jobs.isEmpty()) {
+			iterations = solvedIterations;
+			totals.put("records_parsed", Long.valueOf(solvedNodes));
+		} else {
+			long records = totals.get("map_output_records").longValue();
+			totals.put("bytes_per_record", Long.valueOf((records > 0) ? totals.get("map_output_bytes").longValue() / records : 0));
+		}
+
+		StringBuilder json = new StringBuilder();
+		json.append("{\n");
+		json.append("  \"engine\": ").append(quote(engine)).append(",\n");
+		json.append("  \"iterationMode\": ").append(quote(iterationMode)).append(",\n");
+		json.append("  \"wall_ms\": ").append(System.currentTimeMillis() - runStart).append(",\n");
+		json.append("  \"iterations\": ").append(iterations).append(",\n");
+		json.append("  \"totals\": {");
+		appendMetrics(json, totals);
+		json.append("},\n");
+		json.append("  \"jobs\": [");
+		for (int i = 0; i < jobs.size(); i++) {
+			JobEntry entry = jobs.get(i);
+			json.append((i > 0) ? ",\n    {" : "\n    {");
+			json.append("\"iteration\": ").append((entry.iteration > 0) ? Integer.toString(entry.iteration) : "null");
+			json.append(", \"job\": ").append(quote(entry.name));
+			json.append(", \"id\": ").append(quote(entry.id));
+			json.append(", \"output\": ").append(quote(entry.output));
+			json.append(", \"start_ms\": ").append(entry.startMillis);
+			json.append(", \"wall_ms\": ").append(entry.wallMillis).append(", ");
+			appendMetrics(json, entry.metrics);
+			json.append(", \"eta_ms\": ").append((entry.iteration > 0) ? Long.toString(entry.etaMillis) : "null");
+			json.append("}");
+		}
+		json.append("\n  ]\n}\n");
+
+		FileSystem fs = path.getFileSystem(conf);
+		Writer writer = new OutputStreamWriter(fs.create(path, true), "UTF-8");
+		try {
+			writer.write(json.toString());
+		} finally {
+			writer.close();
+		}
+		LOG.info("Run report of " + jobs.size() + " jobs written to " + path);
+	}
+
+	private static void appendMetrics(StringBuilder json, Map<String, Long> metrics) {
+		boolean first = true;
+		for (Map.Entry<String, Long> metric : metrics.entrySet()) {
+			if (!first) {
+				json.append(", ");
+			}
+			json.append(quote(metric.getKey())).append(": ").append(metric.getValue());
+			first = false;
+		}
+	}
+
+	private static String quote(String value) {
+		if (value == null) {
+			return "null";
+		}
+		StringBuilder quoted = new StringBuilder(value.length() + 2);
+		quoted.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if ((c == '"') || (c == '\\')) {
+				quoted.append('\\').append(c);
+			} else if (c < ' ') {
+				quoted.append(String.format("\\u%04x", Integer.valueOf(c)));
+			} else {
+				quoted.append(c);
+			}
+		}
+		return quoted.append('"').toString();
+	}
+}
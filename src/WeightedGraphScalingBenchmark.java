@@ -0,0 +1,245 @@
+/**
+ * End-to-end scaling benchmark: generates graphs of growing size (WeightedGraphGenerator), solves each one with
+ * WeightedGraphMaxSearch, and collects the statistics of every MR job into one CSV file (see WeightedGraphJobStats for
+ * the columns) - so the cost of an iteration can be followed as the graph grows.
+ *
+ * For each scale (-scales: the rows of a triangle, or the depth of a layered DAG) the graph is written to
+ * <work>/<label>/input/input-graph (label = type-scale), with an IOFiles-Scale-Config.xml next to it that points the
+ * input and output paths there (and keeps only the last 2 iteration outputs), and the driver runs in a child JVM, in
+ * the scale directory, with the classpath of this JVM:
+ *
+ *   java -Xmx<heap> -cp <work>/<label>:<classpath> WeightedGraphMaxSearch -c IOFiles-Scale-Config.xml <driver options>
+ *
+ * The driver options are the arguments after "--" ("-engine mr" is added if there is no -engine, so the small scales
+ * are not solved in memory; with "-topology triangle" the -rows of the scale are added).  Each child runs with the
+ * Hadoop local runner unless the classpath has the configuration of a cluster.  The driver keeps its options in static
+ * fields, so every scale needs a JVM of its own - an in-process run would inherit the options of the run before it.
+ *
+ * The rows that the driver writes (one per job) are followed by a "total" row per scale: the wall time of the whole
+ * run (JVM start, driver, result path included), the record and byte columns summed over the jobs, and the largest
+ * peak heap.  The output of the driver goes to <work>/<label>/log.txt.
+ *
+ * To run:  WeightedGraphScalingBenchmark -scales 50,100,200 [-type triangle|layered] [-width <Nodes>] [-fanin 2]
+ *                                        [-weights uniform:1:9999] [-seed 1] [-work scaling] [-csv <work>/scaling.csv]
+ *                                        [-heap 1g] [-- <WeightedGraphMaxSearch options>]
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+
+
+public class WeightedGraphScalingBenchmark {
+
+	static final String CONFIG_FILE = "IOFiles-Scale-Config.xml";
+
+	// The first column that is summed in the total row (after label, job, output, wall_ms), and the peak heap column
+	private static final int FIRST_SUMMED_COLUMN = 4;
+	private static final int PEAK_HEAP_COLUMN = 14;
+
+	private String type = WeightedGraphGenerator.TYPE_TRIANGLE;
+	private int width = 0;
+	private int fanIn = 2;
+	private String weights = WeightedGraphGenerator.DEFAULT_WEIGHTS;
+	private long seed = 1;
+	private File work = new File("scaling");
+	private File csv = null;
+	private String heap = "1g";
+	private final List<String> driverOptions = new ArrayList<String>();
+
+	/*
+	 * Generates the graph of the scale, runs the driver on it, and appends the total row - returns the exit code of the driver
+	 */
+	private int run(int scale) throws IOException, InterruptedException {
+
+		String label = type + "-" + scale;
+		File dir = new File(work, label).getAbsoluteFile();
+		deleteRecursively(dir);
+		if (!new File(dir, "input").mkdirs()) {
+			throw new IOException("Unable to create " + dir);
+		}
+
+		long start = System.currentTimeMillis();
+		int nodes = WeightedGraphGenerator.generate(new Configuration(), new Path(new File(dir, "input/input-graph").getPath()),
+				type, scale, width, fanIn, weights, seed);
+		System.out.println(label + ": " + nodes + " nodes generated in " + (System.currentTimeMillis() - start) + " ms");
+		writeConfig(new File(dir, CONFIG_FILE), label);
+
+		List<String> command = new ArrayList<String>();
+		command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+		command.add("-Xmx" + heap);
+		command.add("-cp");
+		command.add(dir.getPath() + File.pathSeparator + System.getProperty("java.class.path"));
+		command.add("WeightedGraphMaxSearch");
+		command.add("-c");
+		command.add(CONFIG_FILE);
+		command.addAll(driverOptions);
+		if (!driverOptions.contains("-engine")) {
+			command.add("-engine");
+			command.add("mr");
+		}
+		int topology = driverOptions.indexOf("-topology");
+		if ((topology >= 0) && (topology + 1 < driverOptions.size()) && "triangle".equals(driverOptions.get(topology + 1))
+				&& !driverOptions.contains("-rows")) {
+			command.add("-rows");
+			command.add(Integer.toString(scale));
+		}
+
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.directory(dir);
+		builder.redirectErrorStream(true);
+		builder.redirectOutput(new File(dir, "log.txt"));
+		start = System.currentTimeMillis();
+		int exitCode = builder.start().waitFor();
+		long wall = System.currentTimeMillis() - start;
+
+		String[] total = total(label, wall);
+		WeightedGraphJobStats.append(csv, total);
+		System.out.println(label + ": " + ((exitCode == 0) ? "solved" : "FAILED (exit code " + exitCode + ")") + " in " + wall +
+				" ms, map output " + total[6] + " bytes, shuffle " + total[7] + " bytes, peak heap " + total[PEAK_HEAP_COLUMN] + " MB");
+		return exitCode;
+	}
+
+	/*
+	 * The total row of the scale, from the job rows of the scale in the CSV file
+	 */
+	private String[] total(String label, long wall) throws IOException {
+		String[] header = WeightedGraphJobStats.HEADER.split(",");
+		long[] sums = new long[header.length];
+		int jobs = 0;
+		if (csv.exists()) {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(csv), "UTF-8"));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String[] values = line.split(",", -1);
+					if ((values.length != header.length) || !label.equals(values[0]) || "total".equals(values[1])) {
+						continue;
+					}
+					jobs++;
+					for (int i = FIRST_SUMMED_COLUMN; i < values.length; i++) {
+						long value = Long.parseLong(values[i]);
+						sums[i] = (i == PEAK_HEAP_COLUMN) ? Math.max(sums[i], value) : sums[i] + value;
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		}
+		String[] total = new String[header.length];
+		total[0] = label;
+		total[1] = "total";
+		total[2] = jobs + " jobs";
+		total[3] = Long.toString(wall);
+		for (int i = FIRST_SUMMED_COLUMN; i < total.length; i++) {
+			total[i] = Long.toString(sums[i]);
+		}
+		return total;
+	}
+
+	private void writeConfig(File file, String label) throws IOException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			writer.write("<?xml version=\"1.0\"?>\n");
+			writer.write("<!-- Written by WeightedGraphScalingBenchmark -->\n");
+			writer.write("<configuration>\n");
+			writeProperty(writer, "inputPathFirstIteration", "input/input-graph");
+			writeProperty(writer, "inputPathOtherIterations", "output/outgraph/output-graph-");
+			writeProperty(writer, "outputPathIteration", "output/outgraph/output-graph-");
+			writeProperty(writer, "keepIterations", "2");
+			writeProperty(writer, "frontierCacheDir", "");
+			writeProperty(writer, WeightedGraphJobStats.STATS_FILE_PROPERTY, csv.getAbsolutePath());
+			writeProperty(writer, WeightedGraphJobStats.LABEL_PROPERTY, label);
+			writer.write("</configuration>\n");
+		} finally {
+			writer.close();
+		}
+	}
+
+	private static void writeProperty(Writer writer, String name, String value) throws IOException {
+		writer.write("<property><name>" + name + "</name><value>" + value + "</value></property>\n");
+	}
+
+	private static void deleteRecursively(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files) {
+				deleteRecursively(child);
+			}
+		}
+		file.delete();
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		WeightedGraphScalingBenchmark harness = new WeightedGraphScalingBenchmark();
+		int[] scales = null;
+
+		for (int i = 0; i < args.length; ++i) {
+			if ("-scales".equals(args[i])) {
+				String[] tokens = args[++i].split(",");
+				scales = new int[tokens.length];
+				for (int j = 0; j < tokens.length; j++) {
+					scales[j] = Integer.parseInt(tokens[j].trim());
+				}
+			} else if ("-type".equals(args[i])) {
+				harness.type = args[++i];
+			} else if ("-width".equals(args[i])) {
+				harness.width = Integer.parseInt(args[++i]);
+			} else if ("-fanin".equals(args[i])) {
+				harness.fanIn = Integer.parseInt(args[++i]);
+			} else if ("-weights".equals(args[i])) {
+				harness.weights = args[++i];
+			} else if ("-seed".equals(args[i])) {
+				harness.seed = Long.parseLong(args[++i]);
+			} else if ("-work".equals(args[i])) {
+				harness.work = new File(args[++i]);
+			} else if ("-csv".equals(args[i])) {
+				harness.csv = new File(args[++i]);
+			} else if ("-heap".equals(args[i])) {
+				harness.heap = args[++i];
+			} else if ("--".equals(args[i])) {
+				harness.driverOptions.addAll(Arrays.asList(args).subList(i + 1, args.length));
+				break;
+			} else {
+				scales = null;
+				break;
+			}
+		}
+		boolean valid = (scales != null) && (WeightedGraphGenerator.TYPE_TRIANGLE.equals(harness.type) ||
+				(WeightedGraphGenerator.TYPE_LAYERED.equals(harness.type) && (harness.width > 0) && (harness.fanIn > 0)));
+		if (!valid) {
+			System.out.println("Usage: WeightedGraphScalingBenchmark -scales <Rows or depths, e.g. 50,100,200> [-type triangle|layered]");
+			System.out.println("         [-width <Nodes per layer>] [-fanin 2] [-weights uniform:MIN:MAX | normal:MEAN:SD | exponential:MEAN]");
+			System.out.println("         [-seed 1] [-work <Directory>] [-csv <File>] [-heap <Child JVM heap>] [-- <WeightedGraphMaxSearch options>]");
+			return;
+		}
+		if (harness.csv == null) {
+			harness.csv = new File(harness.work, "scaling.csv");
+		}
+		harness.csv = harness.csv.getAbsoluteFile();
+		harness.work.mkdirs();
+
+		int failures = 0;
+		for (int scale : scales) {
+			if (harness.run(scale) != 0) {
+				failures++;
+			}
+		}
+		System.out.println("Statistics in " + harness.csv);
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+}
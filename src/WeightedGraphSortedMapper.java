@@ -0,0 +1,60 @@
+import java.io.IOException;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.Mapper;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reporter;
+
+
+/**
+ * The Mapper of the value-sorted iterations (-sort value, see WeightedGraphSortedReducer).
+ *
+ * The nodes are expanded by the WeightedGraphMaxSearchMapper, just like in the other iterations - only the key of
+ * every record that it emits is replaced by the composite WeightedNodeKey (the node ID, and the order of the value
+ * among the values of the node), so that the reducer gets the node record and the best candidate first.
+ *
+ * Key: File Offset (first iteration) or Node ID
+ * Value: a text line (first iteration) or a binary WeightedNodeWritable node
+ */
+@SuppressWarnings("deprecation")
+public class WeightedGraphSortedMapper extends MapReduceBase implements
+    Mapper<Writable, Writable, WeightedNodeKey, WeightedNodeWritable> {
+
+  private final WeightedGraphMaxSearchMapper mapper = new WeightedGraphMaxSearchMapper();
+
+  // Re-keys the records of the mapper - reused for every record (and for the candidates emitted when the task closes)
+  private final SortedOutput sortedOutput = new SortedOutput();
+
+  private static class SortedOutput implements OutputCollector<IntWritable, WeightedNodeWritable> {
+
+    private OutputCollector<WeightedNodeKey, WeightedNodeWritable> output;
+    private final WeightedNodeKey key = new WeightedNodeKey();
+
+    public void collect(IntWritable id, WeightedNodeWritable node) throws IOException {
+      key.set(node);
+      output.collect(key, node);
+    }
+  }
+
+  @Override
+  public void configure(JobConf job) {
+    mapper.configure(job);
+  }
+
+  @Override
+  public void close() throws IOException {
+    mapper.close();
+  }
+
+  public void map(Writable key,
+                  Writable value,
+                  OutputCollector<WeightedNodeKey, WeightedNodeWritable> output,
+                  Reporter reporter) throws IOException {
+
+    sortedOutput.output = output;
+    mapper.map(key, value, sortedOutput, reporter);
+  }
+}
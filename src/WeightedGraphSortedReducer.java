@@ -0,0 +1,194 @@
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.MapFile;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapFileOutputFormat;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reducer;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.lib.HashPartitioner;
+import org.apache.log4j.Logger;
+
+
+/**
+ * The reducer of the value-sorted iterations (-sort value): a secondary sort, so that the reducer only reads the two
+ * values of a node that can make a difference, instead of reading (and copying the path of) every candidate.
+ *
+ * The map output key is the composite WeightedNodeKey (see WeightedGraphSortedMapper): the keys are sorted by node ID,
+ * then the node record (the one value that is not a GRAY candidate - it carries the weight and the edges) before the
+ * candidates, then the candidates by descending distance (on a tie, by ascending predecessor) - and grouped by node ID
+ * only.  So the values of a node arrive as: [the node record], [the best candidate], the other candidates.  The reducer
+ * reads the first one or two values and returns, the framework skips the other candidates without deserializing them.
+ *
+ * The two values are reduced the same way as the WeightedNodeAccumulator reduces all of them: the weight and edges of
+ * the node record, the maximum distance, the path (or predecessor) of the best candidate if it has the larger distance
+ * (or the node record is WHITE), and the darkest color.  A tie is broken the same way too: both keep the candidate
+ * with the lower predecessor - here it is simply the first candidate, as the keys sort it in front.
+ *
+ * After that the node is handled the way the WeightedGraphMaxSearchReducer (full iterations, the text output of the
+ * last iteration) or the WeightedGraphMaxSearchFrontierReducer (frontier iterations: the weight and edges of a new GRAY
+ * node are looked up in the structure MapFiles) handles it.
+ *
+ * There is no combiner: the framework groups the combiner input with the sort comparator, so it would only see equal
+ * keys.  The candidates can still be merged on the map side with -combine inmapper.
+ *
+ * The candidates that are not read are not counted in CANDIDATES_DISCARDED (the framework skips them unread).
+ */
+@SuppressWarnings("deprecation")
+public class WeightedGraphSortedReducer extends MapReduceBase implements
+    Reducer<WeightedNodeKey, WeightedNodeWritable, Writable, Writable> {
+
+  /*
+   * Job configuration values of the "-sort" parameter
+   */
+  public static final String SORT_KEY = "key";       // the values of a node arrive in any order, and are all reduced (the default)
+  public static final String SORT_VALUE = "value";   // the node record and the best candidate arrive first (this reducer)
+
+  private final WeightedNodeWritable result = new WeightedNodeWritable();
+  private final IntWritable outputKey = new IntWritable();
+
+  private TriangleTopology topology = null;
+  private WeightedGraphPruningBounds bounds = null;
+
+  // The full iterations: the last one writes the text output, and the maximum distance node side file
+  private boolean textOutput = false;
+  private final Text line = new Text();
+  private final WeightedGraphMaxResult best = new WeightedGraphMaxResult();
+  private JobConf job;
+
+  // The frontier iterations: the structure MapFiles (null in the full iterations)
+  private MapFile.Reader[] structure = null;
+  private final HashPartitioner<IntWritable, WeightedNodeWritable> partitioner = new HashPartitioner<IntWritable, WeightedNodeWritable>();
+  private final WeightedNodeWritable structureNode = new WeightedNodeWritable();
+
+  // The phase timer (see WeightedGraphTaskMetrics) - the longest path is kept by best, for every iteration
+  private final WeightedGraphTaskMetrics metrics =
+      new WeightedGraphTaskMetrics(MRStats.REDUCE_MILLIS, Logger.getLogger(WeightedGraphSortedReducer.class));
+
+  @Override
+  public void configure(JobConf job) {
+    this.job = job;
+    metrics.configure(job);
+    bounds = WeightedGraphPruningBounds.load(job);
+    boolean frontierOnly = WeightedGraphMaxSearchFrontierReducer.ITERATION_MODE_FRONTIER.equals(
+        job.get(WeightedGraphMaxSearchFrontierReducer.ITERATION_MODE_PROPERTY, WeightedGraphMaxSearchFrontierReducer.ITERATION_MODE_FULL));
+    if (frontierOnly) {
+      try {
+        Path structurePath = new Path(job.get(WeightedGraphMaxSearchFrontierReducer.STRUCTURE_PATH_PROPERTY));
+        FileSystem fs = structurePath.getFileSystem(job);
+        structure = MapFileOutputFormat.getReaders(fs, structurePath, job);
+      } catch (IOException e) {
+        throw new RuntimeException("Unable to open the structure of the graph", e);
+      }
+    } else {
+      textOutput = job.getBoolean(WeightedGraphMaxSearchReducer.TEXT_OUTPUT_PROPERTY, false);
+      if (textOutput) {
+        topology = TriangleTopology.get(job);
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    best.write(job);
+    if (structure != null) {
+      for (MapFile.Reader reader : structure) {
+        reader.close();
+      }
+    }
+    metrics.close();
+  }
+
+  public void reduce(WeightedNodeKey key,
+                     Iterator<WeightedNodeWritable> values,
+                     OutputCollector<Writable, Writable> output,
+                     Reporter reporter) throws IOException {
+
+    // (the framework changes the key as the values are read - so the node ID is read first)
+    int id = key.getId();
+    metrics.record(reporter);
+
+    // The node record, if there is one, then the best candidate - the other candidates are never read
+    WeightedNodeWritable u = values.next();
+    boolean hasRecord = (u.getColor() != WeightedNode.Color.GRAY);
+    if (hasRecord) {
+      result.set(u);
+      u = values.hasNext() ? values.next() : null;
+      if ((u != null) && (u.getColor() != WeightedNode.Color.GRAY)) {
+        // A second node record (not expected) - keep the first one
+        u = null;
+      }
+    } else {
+      result.clear(id);
+      result.setColor(WeightedNode.Color.WHITE);
+    }
+
+    if (u != null) {
+      // (the accumulator only keeps the path of a record that is not WHITE, and only from a distance above zero)
+      boolean recordPath = hasRecord && (result.getColor() != WeightedNode.Color.WHITE) && (result.getDistance() > 0);
+      if ((u.getDistance() > result.getDistance()) || !recordPath) {
+        result.setPathTakenEdges(u);
+        result.setPredecessor(u.getPredecessor());
+      }
+      if (u.getDistance() > result.getDistance()) {
+        result.setDistance(u.getDistance());
+      }
+      if (result.getColor() == WeightedNode.Color.WHITE) {
+        result.setColor(WeightedNode.Color.GRAY);
+      }
+    }
+
+    if (structure != null) {
+      // A new GRAY node - look up its weight and edges (a node that is not in the graph has weight zero and no edges)
+      if (result.getColor() == WeightedNode.Color.GRAY) {
+        outputKey.set(id);
+        if (MapFileOutputFormat.getEntry(structure, partitioner, outputKey, structureNode) != null) {
+          result.setWeight(structureNode.getWeight());
+          result.setEdges(structureNode);
+        }
+        prune(reporter);
+      }
+    } else {
+      prune(reporter);
+      if (topology != null) {
+        topology.setEdges(result);
+      }
+    }
+
+    // The nodes that the next iteration expands, and the longest path written
+    if (result.getColor() == WeightedNode.Color.GRAY) {
+      reporter.incrCounter(MRStats.FRONTIER_WIDTH, 1);
+    } else if (u != null) {
+      // (the best candidate did not make the node GRAY: the node record had a larger distance, or the node was pruned)
+      reporter.incrCounter(MRStats.CANDIDATES_DISCARDED, 1);
+    }
+    best.pathLength(result.getPathLength());
+
+    if (textOutput) {
+      result.writeLine(line);
+      output.collect(NullWritable.get(), line);
+      best.offer(result);
+    } else {
+      outputKey.set(id);
+      output.collect(outputKey, result);
+    }
+  }
+
+  /*
+   * A GRAY node that can no longer be on a maximum path is emitted unreached - WHITE, distance 0, no path (-prune bound)
+   */
+  private void prune(Reporter reporter) {
+    if ((bounds != null) && (result.getColor() == WeightedNode.Color.GRAY) && bounds.canPrune(result)) {
+      result.unreach();
+      reporter.incrCounter(MRStats.NUMBER_OF_GRAY_NODES_PRUNED, 1);
+    }
+  }
+}
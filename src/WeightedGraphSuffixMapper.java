@@ -0,0 +1,67 @@
+import java.io.IOException;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.Mapper;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reporter;
+
+
+/**
+ * The Mapper of the bottom-up ('best suffix') iterations of the bidirectional engine (-engine bidirectional).
+ *
+ * The bottom-up iterations go up the triangle one row per iteration, from the aggregation node to the middle row.
+ * Every input record is a node of the row below (r + 1) with its best suffix: the DISTANCE is the maximum weight of
+ * a path from the node (its own weight included) down to the aggregation node, and the path_taken_edges are the nodes
+ * of that path below it (without the aggregation node).
+ *
+ * For each parent of the node (in row r) we emit a suffix candidate: the node's best suffix, with the node's ID in
+ * front of its path.  The parents of node p of row r + 1 are the nodes p - 1 and p of row r, and the parents of the
+ * aggregation node are all of the nodes of the bottom row.  The candidates are reduced by WeightedGraphSuffixReducer.
+ *
+ * Key: Node ID
+ * Value: a binary WeightedNodeWritable node (BLACK - its suffix is final)
+ */
+@SuppressWarnings("deprecation")
+public class WeightedGraphSuffixMapper extends MapReduceBase implements
+    Mapper<IntWritable, WeightedNodeWritable, IntWritable, WeightedNodeWritable> {
+
+  private TriangleTopology topology;
+
+  // Output key and value objects - reused for every record that we emit
+  private final IntWritable outputKey = new IntWritable();
+  private final WeightedNodeWritable vnode = new WeightedNodeWritable();
+
+  @Override
+  public void configure(JobConf job) {
+    topology = TriangleTopology.get(job);
+    if (topology == null) {
+      throw new IllegalArgumentException("The bottom-up iterations need the triangle topology");
+    }
+  }
+
+  public void map(IntWritable key,
+                  WeightedNodeWritable node,
+                  OutputCollector<IntWritable, WeightedNodeWritable> output,
+                  Reporter reporter) throws IOException {
+
+    int firstParent = topology.firstParent(node.getId());
+    int parentCount = topology.parentCount(node.getId());
+
+    for (int i = 0; i < parentCount; i++) {
+      vnode.clear(firstParent + i);
+      vnode.setDistance(node.getDistance());
+      vnode.setColor(WeightedNode.Color.BLACK);
+      // The suffix of the parent goes through this node (the aggregation node is not in the path)
+      if (node.getId() != topology.getAggregationNodeId()) {
+        vnode.addPathTakenEdge(node.getId());
+        for (int e = 0; e < node.getPathLength(); e++) {
+          vnode.addPathTakenEdge(node.getPathTakenEdge(e));
+        }
+      }
+      outputKey.set(vnode.getId());
+      output.collect(outputKey, vnode);
+    }
+  }
+}
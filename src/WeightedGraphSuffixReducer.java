@@ -0,0 +1,109 @@
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.MapFile;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapFileOutputFormat;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reducer;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.lib.HashPartitioner;
+
+
+/**
+ * The reducer of the bottom-up ('best suffix') iterations of the bidirectional engine (-engine bidirectional).
+ *
+ * For each key (Node ID) the suffix candidates of its children (see WeightedGraphSuffixMapper) are reduced to the best
+ * one: the maximum suffix distance - on a tie, the left child (the lower ID).  The weight of the node is looked up in the
+ * structure MapFiles (the same way as WeightedGraphMaxSearchFrontierReducer), and added to the suffix distance.
+ *
+ * The output is the row of the nodes with their best suffix (BLACK), the input of the next bottom-up iteration.
+ */
+@SuppressWarnings("deprecation")
+public class WeightedGraphSuffixReducer extends MapReduceBase implements
+    Reducer<IntWritable, WeightedNodeWritable, IntWritable, WeightedNodeWritable> {
+
+  // The structure MapFiles, and the partitioner that the structure job used to write them
+  private MapFile.Reader[] structure;
+  private final HashPartitioner<IntWritable, WeightedNodeWritable> partitioner = new HashPartitioner<IntWritable, WeightedNodeWritable>();
+  private final WeightedNodeWritable structureNode = new WeightedNodeWritable();
+
+  // The best suffix candidate of the current key (the values are reused by the framework, so it is copied)
+  private final WeightedNodeWritable best = new WeightedNodeWritable();
+
+  @Override
+  public void configure(JobConf job) {
+    try {
+      Path structurePath = new Path(job.get(WeightedGraphMaxSearchFrontierReducer.STRUCTURE_PATH_PROPERTY));
+      FileSystem fs = structurePath.getFileSystem(job);
+      structure = MapFileOutputFormat.getReaders(fs, structurePath, job);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to open the structure of the graph", e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    for (MapFile.Reader reader : structure) {
+      reader.close();
+    }
+  }
+
+  public void reduce(IntWritable key,
+                     Iterator<WeightedNodeWritable> values,
+                     OutputCollector<IntWritable, WeightedNodeWritable> output,
+                     Reporter reporter) throws IOException {
+
+    reduceToBest(values, best);
+
+    // Add the node's own weight to its suffix
+    if (MapFileOutputFormat.getEntry(structure, partitioner, key, structureNode) != null) {
+      best.setWeight(structureNode.getWeight());
+    }
+    best.setDistance(best.getDistance() + best.getWeight());
+    output.collect(key, best);
+  }
+
+  /**
+   * The combiner of the bottom-up iterations: only keeps the best suffix candidate (the weight is added by the reducer)
+   */
+  public static class Combiner extends MapReduceBase implements
+      Reducer<IntWritable, WeightedNodeWritable, IntWritable, WeightedNodeWritable> {
+
+    private final WeightedNodeWritable best = new WeightedNodeWritable();
+
+    public void reduce(IntWritable key,
+                       Iterator<WeightedNodeWritable> values,
+                       OutputCollector<IntWritable, WeightedNodeWritable> output,
+                       Reporter reporter) throws IOException {
+      reduceToBest(values, best);
+      output.collect(key, best);
+    }
+  }
+
+  /*
+   * Copy the best suffix candidate into best: the maximum suffix distance - on a tie, the left child
+   */
+  private static void reduceToBest(Iterator<WeightedNodeWritable> values, WeightedNodeWritable best) {
+    boolean found = false;
+    while (values.hasNext()) {
+      WeightedNodeWritable u = values.next();
+      if (!found || (u.getDistance() > best.getDistance()) ||
+          ((u.getDistance() == best.getDistance()) && (firstNode(u) < firstNode(best)))) {
+        best.set(u);
+        found = true;
+      }
+    }
+  }
+
+  /*
+   * The child that the suffix goes through (0 for the bottom row, whose suffix is only the aggregation node)
+   */
+  private static int firstNode(WeightedNodeWritable suffix) {
+    return (suffix.getPathLength() > 0) ? suffix.getPathTakenEdge(0) : 0;
+  }
+}
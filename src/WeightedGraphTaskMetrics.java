@@ -0,0 +1,91 @@
+/**
+ * The instrumentation of a map, combine or reduce task:
+ *
+ * - the time of its phase: from the first record to close(), added to the phase counter (MAP_MILLIS or REDUCE_MILLIS)
+ *   when the task closes - so the cost is two clock reads per task, not per record (none for the combiner, that the
+ *   framework runs without a Reporter)
+ * - the per-record tracing: the per-record log messages of the mapper, the combiner and the reducers are only built and
+ *   written for one record in traceSampleInterval (the first record, then every traceSampleInterval-th one), and only if
+ *   their logger is at DEBUG level.  A traceSampleInterval of 1 traces every record, 0 turns the tracing off.
+ *
+ * The per-record cost, when the tracing is off, is one boolean test.
+ */
+
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.log4j.Logger;
+
+
+@SuppressWarnings("deprecation")
+public class WeightedGraphTaskMetrics {
+
+	/*
+	 * Job configuration property of the tracing (set in the IOFiles-*-Config.xml file)
+	 */
+	public static final String TRACE_SAMPLE_INTERVAL_PROPERTY = "traceSampleInterval";
+	public static final int DEFAULT_TRACE_SAMPLE_INTERVAL = 1000;
+
+	private final MRStats phaseCounter;
+	private final Logger log;
+
+	private boolean traceEnabled = false;
+	private int traceInterval;
+	private int traceCountdown = 1;
+
+	// The reporter of the task (saved from the first record, for close), and the start of the phase
+	private Reporter reporter = null;
+	private long phaseStart;
+
+	/*
+	 * phaseCounter is null if the task only traces (the combiner)
+	 */
+	public WeightedGraphTaskMetrics(MRStats phaseCounter, Logger log) {
+		this.phaseCounter = phaseCounter;
+		this.log = log;
+	}
+
+	public void configure(JobConf job) {
+		traceInterval = job.getInt(TRACE_SAMPLE_INTERVAL_PROPERTY, DEFAULT_TRACE_SAMPLE_INTERVAL);
+		traceEnabled = (traceInterval > 0) && log.isDebugEnabled();
+	}
+
+	/*
+	 * Called once per record: starts the phase on the first record - returns true if the record is traced
+	 */
+	public boolean record(Reporter reporter) {
+		if (this.reporter == null) {
+			this.reporter = reporter;
+			phaseStart = System.currentTimeMillis();
+		}
+		if (!traceEnabled) {
+			return false;
+		}
+		if (--traceCountdown > 0) {
+			return false;
+		}
+		traceCountdown = traceInterval;
+		return true;
+	}
+
+	public void trace(String message) {
+		log.debug(message);
+	}
+
+	/*
+	 * The reporter of the task, or null if the task has not had a record yet
+	 */
+	public Reporter getReporter() {
+		return reporter;
+	}
+
+	/*
+	 * Adds the time of the phase to the counters of the task
+	 */
+	public void close() {
+		if ((reporter == null) || (phaseCounter == null)) {
+			return;
+		}
+		reporter.incrCounter(phaseCounter, System.currentTimeMillis() - phaseStart);
+		reporter = null;
+	}
+}
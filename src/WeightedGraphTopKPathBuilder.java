@@ -0,0 +1,239 @@
+/**
+ * Rebuilds the K best paths to the sink node after the last iteration of a -topk K run.
+ *
+ * With -topk K every node carries, next to its predecessor, the TOP list of the (at most) K best distances that reach
+ * it: each entry is (distance, predecessor, rank) - the path that extends the rank'th (counting from 0) path of the
+ * predecessor's TOP list (-1 for the start node).  The mappers extend every entry of a GRAY node to its children, and
+ * the combiner and reducers keep the K best entries of each node (WeightedNodeWritable.mergeTop), so the cost of a
+ * run is about K times the record size, instead of K runs.
+ *
+ * This class reads the (text) output of the last iteration, keeps the TOP list (and the weight) of every node, finds the
+ * sink node (the node with the maximum distance - on a tie, the larger ID) and follows each of its TOP entries back to
+ * the start node.  The result is one line per path, best first, in the same format as the sink node's line when the
+ * full path is tracked:
+ * ID   WEIGHT|EDGES|DISTANCE|COLOR|Path_taken_edges|
+ *
+ * An entry with distance d and predecessor p extends the entry of p with the distance d - WEIGHT(p), and that is the
+ * entry that is followed: the rank is only where it is looked up first.  The rank is the position of the entry when p
+ * was expanded, and it is still valid in a levelled graph (every path to a node has the same number of nodes, like the
+ * triangle) - every candidate of a node arrives in the same iteration, before it is expanded.  In other graphs a node
+ * can get better entries after it was expanded, which move its entries down (and it is not expanded again - nor is the
+ * maximum path of the search exact there).  Following the distance keeps every rebuilt path equal to its distance, and
+ * if the entry was pushed out of the K best of p, the path can not be rebuilt and an IllegalStateException is thrown:
+ * -topk needs a levelled graph.
+ *
+ * To run on its own:  WeightedGraphTopKPathBuilder <Output directory of the last iteration> <Result file> <K>
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.util.LineReader;
+import org.apache.log4j.Logger;
+
+
+public class WeightedGraphTopKPathBuilder {
+
+	// Job configuration property: the number of best paths that are kept (1 - only the maximum path - is the default)
+	public static final String TOP_K_PROPERTY = "topK";
+
+	// Log4j...
+	private static final Logger LOG = Logger.getLogger(WeightedGraphTopKPathBuilder.class);
+
+	private final int k;
+
+	// The weight and the TOP list of every node, indexed by node ID: entry i of node id is at id * k + i
+	private int[] weight = new int[1024];
+	private int[] topCount = new int[1024];
+	private int[] topDistance;
+	private int[] topPredecessor;
+	private int[] topRank;
+	private int maxId = -1;
+
+	// The sink node - the node with the maximum distance
+	private final WeightedNodeWritable sink = new WeightedNodeWritable();
+	private boolean found = false;
+
+	public WeightedGraphTopKPathBuilder(int k) {
+		this.k = k;
+		topDistance = new int[topCount.length * k];
+		topPredecessor = new int[topCount.length * k];
+		topRank = new int[topCount.length * k];
+	}
+
+	/**
+	 * Read all of the part files in the output directory of the last iteration
+	 */
+	public void load(Configuration conf, Path outputDir) throws IOException {
+
+		FileSystem fs = outputDir.getFileSystem(conf);
+		Text line = new Text();
+		WeightedNodeWritable node = new WeightedNodeWritable();
+
+		for (FileStatus status : fs.listStatus(outputDir)) {
+			if (!status.getPath().getName().startsWith("part-")) {
+				continue;
+			}
+			LineReader reader = new LineReader(fs.open(status.getPath()), 1 << 16);
+			try {
+				while (reader.readLine(line) > 0) {
+					if (line.getLength() > 0) {
+						node.parse(line);
+						add(node);
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		}
+	}
+
+	private void add(WeightedNodeWritable node) {
+
+		int id = node.getId();
+		if (id >= topCount.length) {
+			int length = topCount.length;
+			while (id >= length) {
+				length *= 2;
+			}
+			weight = Arrays.copyOf(weight, length);
+			topCount = Arrays.copyOf(topCount, length);
+			topDistance = Arrays.copyOf(topDistance, length * k);
+			topPredecessor = Arrays.copyOf(topPredecessor, length * k);
+			topRank = Arrays.copyOf(topRank, length * k);
+		}
+		int count = Math.min(k, node.getTopCount());
+		weight[id] = node.getWeight();
+		topCount[id] = count;
+		for (int i = 0; i < count; i++) {
+			topDistance[id * k + i] = node.getTopDistance(i);
+			topPredecessor[id * k + i] = node.getTopPredecessor(i);
+			topRank[id * k + i] = node.getTopRank(i);
+		}
+		maxId = Math.max(maxId, id);
+
+		// Save the maximum distance node - on a tie, the node with the larger ID (the sink is the last node).  The ID is
+		// compared explicitly: with more than one reducer the part files are not in ID order
+		if (!found || (node.getDistance() > sink.getDistance()) ||
+				((node.getDistance() == sink.getDistance()) && (id > sink.getId()))) {
+			sink.set(node);
+			found = true;
+		}
+	}
+
+	/**
+	 * The number of paths to the sink node (at most k)
+	 */
+	public int getPathCount() {
+		return found ? sink.getTopCount() : 0;
+	}
+
+	/*
+	 * The position of the entry with the given distance in the TOP list of node id - the rank first, then the others
+	 * (-1 if there is none)
+	 */
+	private int findTop(int id, int rank, int distance) {
+		if ((rank >= 0) && (rank < topCount[id]) && (topDistance[id * k + rank] == distance)) {
+			return rank;
+		}
+		for (int j = 0; j < topCount[id]; j++) {
+			if (topDistance[id * k + j] == distance) {
+				return j;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Follow the entries back from TOP entry i of the sink node, returns the sink node with the distance and the path
+	 * taken edges of that path
+	 */
+	public WeightedNodeWritable buildPath(int i) {
+
+		int[] path = new int[16];
+		int length = 0;
+		int id = sink.getTopPredecessor(i);
+		int rank = sink.getTopRank(i);
+		int distance = sink.getTopDistance(i);
+		while (id >= 0) {
+			if (length == path.length) {
+				path = Arrays.copyOf(path, length * 2);
+			}
+			// A path can not be longer than the number of nodes - if it is then the entries have a cycle
+			if (length > maxId) {
+				throw new IllegalStateException("Predecessor cycle found at node " + id);
+			}
+			path[length++] = id;
+			if ((id > maxId) || (rank < 0)) {
+				break;
+			}
+			// The entry of the predecessor that this entry extends
+			distance -= weight[id];
+			int j = findTop(id, rank, distance);
+			if (j < 0) {
+				throw new IllegalStateException("Node " + id + " no longer has a path of distance " + distance +
+						" in its TOP list - -topk needs a levelled graph");
+			}
+			int next = topPredecessor[id * k + j];
+			rank = topRank[id * k + j];
+			id = next;
+		}
+
+		WeightedNodeWritable result = new WeightedNodeWritable();
+		result.set(sink);
+		result.setDistance(sink.getTopDistance(i));
+		result.setPredecessor(-1);
+		result.clearTop();
+		// The path was built from the sink back to the start node, reverse it...
+		for (int j = length - 1; j >= 0; j--) {
+			result.addPathTakenEdge(path[j]);
+		}
+		return result;
+	}
+
+	/**
+	 * Load the output of the last iteration, rebuild the K best paths and write them to the result file
+	 */
+	public static int run(Configuration conf, Path outputDir, Path resultFile, int k) throws IOException {
+
+		WeightedGraphTopKPathBuilder builder = new WeightedGraphTopKPathBuilder(k);
+		builder.load(conf, outputDir);
+		int count = builder.getPathCount();
+		if (count == 0) {
+			LOG.info("No paths found in " + outputDir);
+			return 0;
+		}
+
+		FileSystem fs = resultFile.getFileSystem(conf);
+		OutputStream out = fs.create(resultFile, true);
+		Text line = new Text();
+		try {
+			for (int i = 0; i < count; i++) {
+				builder.buildPath(i).writeLine(line);
+				out.write(line.getBytes(), 0, line.getLength());
+				out.write('\n');
+			}
+		} finally {
+			out.close();
+		}
+		LOG.info(count + " best paths written to " + resultFile);
+		return count;
+	}
+
+
+	public static void main(String[] args) throws Exception {
+
+		if (args.length != 3) {
+			System.out.println("Usage: WeightedGraphTopKPathBuilder <Output directory of the last iteration> <Result file> <K>");
+			return;
+		}
+
+		run(new Configuration(), new Path(args[0]), new Path(args[1]), Integer.parseInt(args[2]));
+	}
+}
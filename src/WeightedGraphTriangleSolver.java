@@ -0,0 +1,313 @@
+/**
+ * A streaming solver for the 'triangle' graphs, that needs memory only for one row of the triangle.
+ *
+ * In the triangle, node p (counting from 0) of row r points to the nodes p and p+1 of row r+1, so
+ * the maximum distance of every node of row r+1 only depends on the row above it:
+ *
+ *   distance(r+1, p) = max(distance(r, p-1) + weight(r, p-1), distance(r, p) + weight(r, p))
+ *
+ * This solver reads the input graph (ID <tab> WEIGHT|EDGES|DISTANCE|COLOR|, sorted by ID) top to bottom,
+ * keeping only the totals (distance + weight) of the previous row and the weights of the current row in memory.
+ * For every node it records one 'choice' bit - 0 if the maximum path came from the left parent (p-1), 1 if it
+ * came from the right parent (p) - and writes the bits of every row to a bitmap file in the local temporary
+ * directory.  After the last row the bitmap is read backwards from the best bottom row node, to rebuild
+ * the path to the 'aggregation node' (the sink, that every node of the bottom row points to).
+ *
+ * The row recurrence (the distances and the choice bits of a row) is computed by the kernel that the triangleRowKernel
+ * property selects: the scalar loop, or the Java Vector API kernel - see WeightedGraphRowKernel.
+ *
+ * The edges of every node are checked against the triangle - unless the topology is given (-topology triangle),
+ * then the EDGES column is ignored and the bottom row is the last of the given number of rows.
+ *
+ * On a tie the path through the left parent (the lower ID) is kept, which is the path that the MR iterations keep.
+ *
+ * The result is the line of the sink node, as the last MR iteration would write it:
+ * ID   WEIGHT|EDGES|DISTANCE|COLOR|Path_taken_edges|
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.util.LineReader;
+import org.apache.log4j.Logger;
+
+
+public class WeightedGraphTriangleSolver {
+
+	// Log4j...
+	private static final Logger LOG = Logger.getLogger(WeightedGraphTriangleSolver.class);
+
+	/*
+	 * The two rows that are kept in memory: the totals (distance + weight) of the previous row,
+	 * and the weights, distances and choice bits of the current row
+	 */
+	private int[] previousTotal = new int[1024];
+	private int[] currentWeight = new int[1024];
+	private int[] currentDistance = new int[1024];
+	private byte[] currentBits = new byte[128];
+
+	// Byte offset of each row in the bitmap file (rows 1 and 0 have no choice bits), O(number of rows)
+	private long[] rowOffset = new long[1024];
+
+	private int rows = 0;             // number of (complete) rows read so far
+	private int nodeCount = 0;        // number of nodes read so far (the aggregation node too)
+	private int width = 0;            // number of nodes read so far in the current row
+	private boolean bottomRow = false;  // true if the nodes of the current row have one edge (to the aggregation node)
+
+	// The sink ('aggregation node') - its line is kept as it was read, so that the result has its weight and edges
+	private WeightedNode sink = null;
+	private int sourceDistance = 0;
+
+	// The triangle topology, or null if the rows are found from the EDGES column
+	private final TriangleTopology topology;
+
+	// Computes the distances and the choice bits of a row
+	private final WeightedGraphRowKernel kernel;
+
+	private File bitmapFile;
+	private OutputStream bitmap;
+	private long bitmapLength = 0;
+
+
+	public WeightedGraphTriangleSolver(File bitmapFile, TriangleTopology topology, WeightedGraphRowKernel kernel) throws IOException {
+		this.topology = topology;
+		this.kernel = kernel;
+		this.bitmapFile = bitmapFile;
+		this.bitmap = new BufferedOutputStream(new FileOutputStream(bitmapFile), 1 << 16);
+	}
+
+	/**
+	 * Read the input graph - a single file, or all of the part files of a directory in name order
+	 */
+	public void read(Configuration conf, Path input) throws IOException {
+
+		FileSystem fs = input.getFileSystem(conf);
+		FileStatus[] files = fs.getFileStatus(input).isDir() ? fs.listStatus(input) : new FileStatus[] { fs.getFileStatus(input) };
+		Arrays.sort(files);
+
+		for (FileStatus status : files) {
+			String name = status.getPath().getName();
+			if (status.isDir() || name.startsWith("_") || name.startsWith(".")) {
+				continue;
+			}
+			LineReader reader = new LineReader(fs.open(status.getPath()), 1 << 16);
+			try {
+				Text line = new Text();
+				WeightedNodeWritable node = new WeightedNodeWritable();
+				while (reader.readLine(line) > 0) {
+					if (line.getLength() > 0) {
+						node.parse(line);
+						add(node, line);
+						nodeCount++;
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		}
+		bitmap.close();
+	}
+
+	/*
+	 * Add the next node (in ID order) of the triangle
+	 */
+	private void add(WeightedNodeWritable node, Text line) throws IOException {
+
+		if (sink != null) {
+			throw new IllegalArgumentException("Node " + node.getId() + " found after the aggregation node " + sink.getId());
+		}
+
+		int r = rows + 1;
+		int expectedId = TriangleTopology.nodeId(r, width);
+
+		// The aggregation node is the first node after a complete bottom row (a row of nodes with one edge)
+		if ((width == 0) && (rows > 0) && bottomRow) {
+			if (node.getId() != expectedId) {
+				throw new IllegalArgumentException("Expected the aggregation node " + expectedId + " but found node " + node.getId());
+			}
+			sink = new WeightedNode(line.toString());
+			return;
+		}
+
+		if (node.getId() != expectedId) {
+			throw new IllegalArgumentException("Not a triangle: expected node " + expectedId + " but found node " + node.getId());
+		}
+
+		if (topology != null) {
+			bottomRow = (r == topology.getRows());
+		} else {
+			// Check the edges: p -> p, p+1 of the next row, or (bottom row) one edge to the aggregation node
+			int edges = node.getEdgeCount();
+			if (width == 0) {
+				bottomRow = (edges == 1);
+			}
+			boolean valid;
+			if (bottomRow) {
+				valid = (edges == 1) && (node.getEdge(0) == TriangleTopology.nodeId(r + 1, 0));
+			} else {
+				valid = (edges == 2) && (node.getEdge(0) == TriangleTopology.nodeId(r + 1, width)) && (node.getEdge(1) == TriangleTopology.nodeId(r + 1, width + 1));
+			}
+			if (!valid) {
+				throw new IllegalArgumentException("Not a triangle: unexpected edges for node " + node.getId() + ": " + line);
+			}
+		}
+
+		if (r == 1) {
+			if (node.getColor() != WeightedNode.Color.GRAY) {
+				throw new IllegalArgumentException("The first node of the triangle must be the (GRAY) source node");
+			}
+			sourceDistance = node.getDistance();
+		}
+
+		if (width == currentWeight.length) {
+			currentWeight = Arrays.copyOf(currentWeight, width * 2);
+		}
+		currentWeight[width++] = node.getWeight();
+
+		// The row is complete...
+		if (width == r) {
+			endRow();
+		}
+	}
+
+	/*
+	 * Compute the distances and choice bits of the current (complete) row, and write its choice bits to the bitmap
+	 */
+	private void endRow() throws IOException {
+
+		int r = width;
+		if (previousTotal.length < r) {
+			previousTotal = Arrays.copyOf(previousTotal, previousTotal.length * 2);
+			currentDistance = new int[previousTotal.length];
+		}
+		int bytes = (r + 7) / 8;
+		if (currentBits.length < bytes) {
+			currentBits = new byte[Math.max(bytes, currentBits.length * 2)];
+		}
+
+		if (r == 1) {
+			currentDistance[0] = sourceDistance;
+		} else {
+			kernel.solveRow(previousTotal, currentDistance, currentBits, r);
+			if (rowOffset.length <= r) {
+				rowOffset = Arrays.copyOf(rowOffset, rowOffset.length * 2);
+			}
+			rowOffset[r] = bitmapLength;
+			bitmap.write(currentBits, 0, bytes);
+			bitmapLength += bytes;
+		}
+
+		// The totals of this row are the input of the next row...
+		for (int p = 0; p < r; p++) {
+			previousTotal[p] = currentDistance[p] + currentWeight[p];
+		}
+		rows = r;
+		width = 0;
+	}
+
+	/**
+	 * Find the best node of the bottom row and rebuild the path to it from the choice bits.
+	 * Returns the sink node, with its distance and path taken edges set.
+	 */
+	public WeightedNode solve() throws IOException {
+
+		if (rows == 0) {
+			throw new IllegalArgumentException("The input graph is empty");
+		}
+		if (width != 0) {
+			throw new IllegalArgumentException("The last row of the triangle is not complete");
+		}
+
+		// The aggregation node may be left out of the input - then it is the (zero weight) node after the bottom row
+		if (sink == null) {
+			sink = new WeightedNode(TriangleTopology.nodeId(rows + 1, 0));
+		}
+
+		// The best node of the bottom row (on a tie, the lower ID)...
+		int best = 0;
+		for (int p = 1; p < rows; p++) {
+			if (previousTotal[p] > previousTotal[best]) {
+				best = p;
+			}
+		}
+		sink.setDistance(previousTotal[best]);
+		sink.setColor(WeightedNode.Color.BLACK);
+
+		// Walk back up the triangle, reading the choice bit of each row...
+		int[] path = new int[rows];
+		int p = best;
+		RandomAccessFile in = new RandomAccessFile(bitmapFile, "r");
+		try {
+			for (int r = rows; r >= 1; r--) {
+				path[r - 1] = TriangleTopology.nodeId(r, p);
+				if (r > 1) {
+					in.seek(rowOffset[r] + (p >> 3));
+					int bit = (in.read() >> (p & 7)) & 1;
+					p = (bit == 1) ? p : p - 1;
+				}
+			}
+		} finally {
+			in.close();
+		}
+
+		sink.getPathTakenEdges().clear();
+		for (int id : path) {
+			sink.addPathTakenEdge(id);
+		}
+		return sink;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+
+	/**
+	 * Solve the triangle in the input graph and write the sink node's line to the result file
+	 */
+	public static WeightedNode run(Configuration conf, Path input, Path resultFile, TriangleTopology topology) throws IOException {
+
+		long start = System.currentTimeMillis();
+
+		File bitmapFile = File.createTempFile("triangle-choices", ".bitmap");
+		bitmapFile.deleteOnExit();
+		try {
+			WeightedGraphRowKernel kernel = WeightedGraphRowKernel.get(conf);
+			WeightedGraphTriangleSolver solver = new WeightedGraphTriangleSolver(bitmapFile, topology, kernel);
+			solver.read(conf, input);
+			WeightedNode sink = solver.solve();
+
+			FileSystem fs = resultFile.getFileSystem(conf);
+			Writer writer = new OutputStreamWriter(fs.create(resultFile, true), "UTF-8");
+			try {
+				writer.write(sink.getId() + "\t" + sink.getLine().toString() + "\n");
+			} finally {
+				writer.close();
+			}
+
+			// (the MR iterations expand one row each, and the aggregation node)
+			WeightedGraphRunReport.solved(solver.getNodeCount(), solver.getRows() + 1);
+			LOG.info("Streaming triangle engine solved " + solver.getRows() + " rows (" + kernel.getName() + " row kernel, choice bitmap: " +
+					bitmapFile.length() + " bytes) in " + (System.currentTimeMillis() - start) + " ms, result= " + resultFile);
+			return sink;
+		} finally {
+			bitmapFile.delete();
+		}
+	}
+}
@@ -1,13 +1,16 @@
 
 /*
  * The input format is
- * ID   WEIGHT|EDGES|DISTANCE|COLOR|Path_Taken_EDGES|
+ * ID   WEIGHT|EDGES|DISTANCE|COLOR|Path_Taken_EDGES|PREDECESSOR|
  * where
  * ID = the unique identifier for a node (assumed to be an int here)
  * WEIGHT = The value of the node - this integer value contributes to the 'distance' from the starting node
  * EDGES = the list of edges emanating from the node (e.g. 3,8,9,12)
  * DISTANCE = the to be determined distance of the node from the source
  * COLOR = a simple status tracking field to keep track of when we're finished with a node
+ * Path_Taken_EDGES = the nodes edges taken from the starting node to get to this node (optional)
+ * PREDECESSOR = the node that we came from on the maximum path to this node (optional - only written
+ *               when the path is tracked by predecessor, see WeightedGraphPathBuilder)
  * It assumes that the source node (the node from which to start the search) has
  * been marked with distance 0 and color GRAY in the original input.  All other
  * nodes will have input distance Integer.MAX_VALUE and color WHITE.
@@ -60,6 +63,8 @@ public class WeightedNode {
 	private List<Integer> edges = new ArrayList<Integer>();
 	private Color color = Color.WHITE;
 	private List<Integer> path_taken_edges = new ArrayList<Integer>();
+	// -1 indicates that the predecessor is not known (or not tracked)
+	private int predecessor = -1;
 
 	public WeightedNode(String str) {
 
@@ -68,7 +73,7 @@ public class WeightedNode {
 		String key = map[0]; 
 		String value = map[1];
 
-		// Split value into tokens: WEIGHT|EDGES|DISTANCE|COLOR|Path_Taken_Edges
+		// Split value into tokens: WEIGHT|EDGES|DISTANCE|COLOR|Path_Taken_Edges|Predecessor
 		String[] tokens = value.split("\\|");
 
 		// Save node's key
@@ -107,6 +112,11 @@ public class WeightedNode {
 			}
 		}
 
+		// Predecessor tokens[5]...
+		if ((tokens.length >= 6) && (tokens[5].length() > 0)) {
+			this.predecessor = Integer.parseInt(tokens[5]);
+		}
+
 	}
 
 	public WeightedNode(int id) {
@@ -160,9 +170,18 @@ public class WeightedNode {
 	public void addPathTakenEdge(Integer path_taken_edges) {
 		this.path_taken_edges.add(path_taken_edges);
 	}
+
+	public int getPredecessor() {
+		return this.predecessor;
+	}
+
+	public void setPredecessor(int predecessor) {
+		this.predecessor = predecessor;
+	}
 	
 	/*
-	 * This returns a string of the following form:  WEIGHT|EDGES|DISTANCE|COLOR|Path Taken Edges
+	 * This returns a string of the following form:  WEIGHT|EDGES|DISTANCE|COLOR|Path Taken Edges|
+	 * followed by PREDECESSOR| if the predecessor is known
 	 */
 	public Text getLine() {
 		StringBuffer s = new StringBuffer();
@@ -193,6 +212,10 @@ public class WeightedNode {
 		}
 		s.append("|");
 
+		if (this.predecessor >= 0) {
+			s.append(this.predecessor).append("|");
+		}
+
 
 		return new Text(s.toString());
 	}
@@ -0,0 +1,137 @@
+/**
+ * Collects all of the values for one node ID (key) and reduces them to a single node.
+ * This is the logic shared by the Combiner and the Reducer:
+ *
+ * - Save the maximum weight (only the 'real' node carries its weight - GRAY nodes emitted by the mapper have weight zero)
+ * - Save the edges for the node, if they are specified
+ * - Save the maximum distance, and the path taken edges (and predecessor) of the maximum distance (Gray or Black) node -
+ *   on a tie, of the node whose path comes from the lower predecessor, so the result does not depend on the order of the
+ *   values (the halo nodes of the -k bands are emitted by more than one mapper)
+ * - Save the darkest color
+ * - With -topk K, merge the TOP lists (the K best distances, see WeightedGraphTopKPathBuilder)
+ * - With -sources, merge the SOURCES vectors (see WeightedGraphMultiSourcePathBuilder) - and the color is the color of
+ *   the merged vector instead of the darkest color: GRAY if the node still has to be expanded for one of its sources,
+ *   BLACK if it has been expanded for all of them, and WHITE if no source reaches it
+ *
+ * The framework reuses the value object for each value of a key, so everything that we keep is copied.
+ */
+public class WeightedNodeAccumulator {
+
+	private final WeightedNodeWritable result = new WeightedNodeWritable();
+
+	// indicates the color of the maximum distance node that got us to the Node ID (key).  Initially set to White
+	private WeightedNode.Color maxDistanceWeightedNodeColor = WeightedNode.Color.WHITE;
+
+	// The number of best distances that are kept per node (1 - no TOP list)
+	private int topK = 1;
+
+	// true if the nodes carry the SOURCES vector (-sources)
+	private boolean multiSource = false;
+
+	// The number of GRAY values (new candidates) added since the last reset
+	private int candidateCount = 0;
+
+	public void setTopK(int topK) {
+		this.topK = topK;
+	}
+
+	public void setMultiSource(boolean multiSource) {
+		this.multiSource = multiSource;
+	}
+
+	/*
+	 * Start accumulating the values for a new node ID
+	 */
+	public void reset(int id) {
+		result.clear(id);
+		maxDistanceWeightedNodeColor = WeightedNode.Color.WHITE;
+		candidateCount = 0;
+	}
+
+	public void add(WeightedNodeWritable u) {
+
+		if (u.getColor() == WeightedNode.Color.GRAY) {
+			candidateCount++;
+		}
+
+		// Save the maximum weight
+		if (u.getWeight() > result.getWeight()) {
+			result.setWeight(u.getWeight());
+		}
+
+		// Save the edges for the node, if they are specified...
+		if (u.getEdgeCount() > 0) {
+			result.setEdges(u);
+		}
+
+		// Save the maximum distance
+		if (u.getDistance() > result.getDistance()) {
+			result.setDistance(u.getDistance());
+
+			// For a maximum distance node, Gray or Black, save the path to that maximum distance node...
+			if (u.getColor().ordinal() >= WeightedNode.Color.GRAY.ordinal()) {
+				result.setPathTakenEdges(u);
+				result.setPredecessor(u.getPredecessor());
+			}
+			// save the color of the maximum distance node
+			maxDistanceWeightedNodeColor = u.getColor();
+		}
+
+		/*
+		 * If the existing color of the maximum distance node is white,
+		 * and we happen across a Gray or Black node,
+		 * then save the Path Taken information because
+		 * the GRAY nodes have the Path taken Edges information...
+		 */
+		else if ((maxDistanceWeightedNodeColor == WeightedNode.Color.WHITE) &&
+				(u.getColor().ordinal() >= WeightedNode.Color.GRAY.ordinal())) {
+			result.setPathTakenEdges(u);
+			result.setPredecessor(u.getPredecessor());
+		}
+
+		// On a tie between two Gray or Black nodes, keep the path from the lower predecessor
+		else if ((u.getDistance() == result.getDistance()) &&
+				(u.getColor().ordinal() >= WeightedNode.Color.GRAY.ordinal()) &&
+				(u.getPathPredecessor() >= 0) && (u.getPathPredecessor() < result.getPathPredecessor())) {
+			result.setPathTakenEdges(u);
+			result.setPredecessor(u.getPredecessor());
+		}
+
+		// Save the darkest color
+		if (u.getColor().ordinal() > result.getColor().ordinal()) {
+			result.setColor(u.getColor());
+		}
+
+		// Keep the K best distances
+		if (topK > 1) {
+			result.mergeTop(u, topK);
+		}
+
+		// Keep the best entry of every source
+		if (multiSource) {
+			result.mergeSources(u);
+		}
+	}
+
+	/*
+	 * The number of GRAY values that were merged away: all of them but the one that the result still is (if it is GRAY)
+	 * - only valid after getResult()
+	 */
+	public int getDiscardedCount() {
+		return Math.max(0, candidateCount - ((result.getColor() == WeightedNode.Color.GRAY) ? 1 : 0));
+	}
+
+	/*
+	 * The reduced node - only valid until the next call to reset()
+	 */
+	public WeightedNodeWritable getResult() {
+		if (multiSource) {
+			if (result.hasFreshSource()) {
+				result.setColor(WeightedNode.Color.GRAY);
+			} else {
+				result.setColor((result.getSourceCount() > 0) ? WeightedNode.Color.BLACK : WeightedNode.Color.WHITE);
+			}
+		}
+		return result;
+	}
+}
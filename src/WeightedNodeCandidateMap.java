@@ -0,0 +1,192 @@
+/**
+ * The GRAY 'candidate' nodes that a mapper has emitted, merged by node ID - for in-mapper combining.
+ *
+ * A candidate is the node at the end of an edge of a GRAY node: it has no weight and no edges yet, only its
+ * distance and the path that got us there (the path taken edges, or only the predecessor with -path pred).
+ * Only the maximum distance candidate of each node ID is kept (on a tie, the one from the lower parent ID - the same as
+ * the WeightedNodeAccumulator), so in the triangle - where every interior node has two parents in the same split -
+ * the mapper emits about half as many records, and none of them goes through the combiner.
+ *
+ * The map is an open addressing (linear probing) hash table on primitive int arrays, no boxed keys or values.
+ * The path taken edges of a candidate are kept in an int[] per node ID, which is reused when a better candidate replaces it.
+ * The table doubles as it fills, and flush() puts it back to its initial capacity - so the estimated size (the table
+ * plus the paths) drops to that of an empty map after every flush, and a mapper that flushes when the map grows beyond
+ * its memory budget does not flush again until the map has grown back.
+ */
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.mapred.OutputCollector;
+
+
+public class WeightedNodeCandidateMap {
+
+	private static final int[] NO_PATH = new int[0];
+
+	// The estimated size of one slot of the table: the key, distance, predecessor and path length ints, the used flag, and the path reference
+	private static final int SLOT_BYTES = 4 + 4 + 4 + 4 + 1 + 8;
+	// The estimated overhead of a path array
+	private static final int ARRAY_BYTES = 16;
+
+	private int[] keys;
+	private boolean[] used;
+	private int[] distance;
+	private int[] predecessor;
+	private int[][] path;
+	private int[] pathLength;
+
+	private int size;
+	private long pathBytes;
+	private final int initialCapacity;
+
+	public WeightedNodeCandidateMap(int initialCapacity) {
+		int capacity = 16;
+		while (capacity < initialCapacity) {
+			capacity *= 2;
+		}
+		this.initialCapacity = capacity;
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity) {
+		keys = new int[capacity];
+		used = new boolean[capacity];
+		distance = new int[capacity];
+		predecessor = new int[capacity];
+		path = new int[capacity][];
+		pathLength = new int[capacity];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/*
+	 * The parent that the candidate in the slot was reached from
+	 */
+	private int parentOf(int slot) {
+		return (predecessor[slot] >= 0) ? predecessor[slot] : path[slot][pathLength[slot] - 1];
+	}
+
+	/*
+	 * The estimated number of bytes that the map uses (the table - its capacity, not only the used slots - and the path
+	 * taken edges)
+	 */
+	public long getEstimatedBytes() {
+		return (long) keys.length * SLOT_BYTES + pathBytes;
+	}
+
+	/*
+	 * Add a candidate for node ID id at the given distance, reached from the parent node.
+	 * If trackPredecessorOnly the candidate only remembers the parent ID, otherwise the parent's path taken edges plus the parent ID.
+	 * Returns true if the candidate is new, or better than the candidate that was kept for this node ID.
+	 */
+	public boolean add(int id, int candidateDistance, WeightedNodeWritable parent, boolean trackPredecessorOnly) {
+
+		int slot = find(id);
+		if (used[slot]) {
+			// Keep the maximum distance (on a tie, the candidate from the lower parent ID)
+			if ((candidateDistance < distance[slot]) ||
+					((candidateDistance == distance[slot]) && (parent.getId() >= parentOf(slot)))) {
+				return false;
+			}
+		} else {
+			if ((size + 1) * 4 > keys.length * 3) {
+				rehash(keys.length * 2);
+				slot = find(id);
+			}
+			used[slot] = true;
+			keys[slot] = id;
+			path[slot] = NO_PATH;
+			size++;
+		}
+
+		distance[slot] = candidateDistance;
+		if (trackPredecessorOnly) {
+			predecessor[slot] = parent.getId();
+			pathLength[slot] = 0;
+		} else {
+			predecessor[slot] = -1;
+			int length = parent.getPathLength() + 1;
+			if (path[slot].length < length) {
+				pathBytes += 4L * (length - path[slot].length) + ((path[slot] == NO_PATH) ? ARRAY_BYTES : 0);
+				path[slot] = new int[length];
+			}
+			for (int i = 0; i < length - 1; i++) {
+				path[slot][i] = parent.getPathTakenEdge(i);
+			}
+			path[slot][length - 1] = parent.getId();
+			pathLength[slot] = length;
+		}
+		return true;
+	}
+
+	/*
+	 * The slot of the node ID: the slot that holds it, or the (empty) slot where it belongs
+	 */
+	private int find(int id) {
+		int mask = keys.length - 1;
+		int h = id * 0x9E3779B9;
+		int slot = (h ^ (h >>> 16)) & mask;
+		while (used[slot] && (keys[slot] != id)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		boolean[] oldUsed = used;
+		int[] oldDistance = distance;
+		int[] oldPredecessor = predecessor;
+		int[][] oldPath = path;
+		int[] oldPathLength = pathLength;
+
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldUsed[i]) {
+				int slot = find(oldKeys[i]);
+				used[slot] = true;
+				keys[slot] = oldKeys[i];
+				distance[slot] = oldDistance[i];
+				predecessor[slot] = oldPredecessor[i];
+				path[slot] = oldPath[i];
+				pathLength[slot] = oldPathLength[i];
+			}
+		}
+	}
+
+	/*
+	 * Emit every candidate as a GRAY node (weight zero - the weight is set during the reduce phase), and empty the map
+	 * (back to its initial capacity, if it has grown).  The key and value objects are reused for every record.
+	 */
+	public void flush(OutputCollector<IntWritable, WeightedNodeWritable> output,
+	                  IntWritable outputKey, WeightedNodeWritable vnode) throws IOException {
+
+		for (int slot = 0; slot < keys.length; slot++) {
+			if (!used[slot]) {
+				continue;
+			}
+			vnode.clear(keys[slot]);
+			vnode.setDistance(distance[slot]);
+			vnode.setColor(WeightedNode.Color.GRAY);
+			vnode.setPredecessor(predecessor[slot]);
+			for (int i = 0; i < pathLength[slot]; i++) {
+				vnode.addPathTakenEdge(path[slot][i]);
+			}
+			outputKey.set(keys[slot]);
+			output.collect(outputKey, vnode);
+
+			used[slot] = false;
+		}
+		if (keys.length > initialCapacity) {
+			allocate(initialCapacity);
+		} else {
+			Arrays.fill(path, null);
+		}
+		size = 0;
+		pathBytes = 0;
+	}
+}
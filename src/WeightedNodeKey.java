@@ -0,0 +1,179 @@
+/*
+ * The composite map output key of the value-sorted iterations (-sort value, see WeightedGraphSortedReducer).
+ *
+ * The key is the node ID, plus the part of the value that decides the order in which the reducer sees the values of
+ * the node: the node record itself (anything but a GRAY candidate - it carries the weight and edges) first, then the
+ * new GRAY candidates by descending distance, and on a tie by ascending predecessor.
+ *
+ * The binary layout is fixed width, so that the raw comparators do not deserialize the keys:
+ * ID (int) CANDIDATE (byte) DISTANCE (int) PREDECESSOR (int)
+ *
+ * The reducer groups the keys by node ID only (GroupComparator), and the keys are partitioned by node ID only
+ * (Partitioner - the same reducer as the HashPartitioner gives the IntWritable node ID).
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.mapred.JobConf;
+
+
+public class WeightedNodeKey implements WritableComparable<WeightedNodeKey> {
+
+	private int id;
+	// false for the node record itself, true for a new GRAY node (a candidate distance from one of the parents)
+	private boolean candidate;
+	private int distance;
+	private int predecessor;
+
+	/*
+	 * The key of a value emitted by the mapper: a GRAY value is a candidate, any other value is the node record
+	 */
+	public void set(WeightedNodeWritable node) {
+		this.id = node.getId();
+		this.candidate = (node.getColor() == WeightedNode.Color.GRAY);
+		this.distance = node.getDistance();
+		this.predecessor = node.getPredecessor();
+	}
+
+	public int getId() {
+		return this.id;
+	}
+
+	public boolean isCandidate() {
+		return this.candidate;
+	}
+
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(id);
+		out.writeByte(candidate ? 1 : 0);
+		out.writeInt(distance);
+		out.writeInt(predecessor);
+	}
+
+	public void readFields(DataInput in) throws IOException {
+		id = in.readInt();
+		candidate = (in.readByte() != 0);
+		distance = in.readInt();
+		predecessor = in.readInt();
+	}
+
+	/*
+	 * By ID, then the node record before the candidates, then by descending distance, then by ascending predecessor
+	 */
+	public int compareTo(WeightedNodeKey other) {
+		if (this.id != other.id) {
+			return (this.id < other.id) ? -1 : 1;
+		}
+		if (this.candidate != other.candidate) {
+			return this.candidate ? 1 : -1;
+		}
+		if (this.distance != other.distance) {
+			return (this.distance > other.distance) ? -1 : 1;
+		}
+		if (this.predecessor != other.predecessor) {
+			return (this.predecessor < other.predecessor) ? -1 : 1;
+		}
+		return 0;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof WeightedNodeKey)) {
+			return false;
+		}
+		return compareTo((WeightedNodeKey) o) == 0;
+	}
+
+	@Override
+	public int hashCode() {
+		return id;
+	}
+
+	@Override
+	public String toString() {
+		return id + (candidate ? "/candidate/" : "/node/") + distance + "/" + predecessor;
+	}
+
+
+	/*
+	 * The sort comparator: compares the serialized keys (compareTo order) without deserializing them
+	 */
+	public static class Comparator extends WritableComparator {
+
+		public Comparator() {
+			super(WeightedNodeKey.class);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			int id1 = readInt(b1, s1);
+			int id2 = readInt(b2, s2);
+			if (id1 != id2) {
+				return (id1 < id2) ? -1 : 1;
+			}
+			if (b1[s1 + 4] != b2[s2 + 4]) {
+				return (b1[s1 + 4] < b2[s2 + 4]) ? -1 : 1;
+			}
+			int distance1 = readInt(b1, s1 + 5);
+			int distance2 = readInt(b2, s2 + 5);
+			if (distance1 != distance2) {
+				return (distance1 > distance2) ? -1 : 1;
+			}
+			int predecessor1 = readInt(b1, s1 + 9);
+			int predecessor2 = readInt(b2, s2 + 9);
+			if (predecessor1 != predecessor2) {
+				return (predecessor1 < predecessor2) ? -1 : 1;
+			}
+			return 0;
+		}
+	}
+
+	static {
+		WritableComparator.define(WeightedNodeKey.class, new Comparator());
+	}
+
+
+	/*
+	 * The grouping comparator: all of the keys of a node ID go to one reduce call
+	 */
+	public static class GroupComparator extends WritableComparator {
+
+		public GroupComparator() {
+			super(WeightedNodeKey.class);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			int id1 = readInt(b1, s1);
+			int id2 = readInt(b2, s2);
+			return (id1 < id2) ? -1 : ((id1 == id2) ? 0 : 1);
+		}
+
+		@Override
+		@SuppressWarnings("rawtypes")
+		public int compare(WritableComparable a, WritableComparable b) {
+			int id1 = ((WeightedNodeKey) a).id;
+			int id2 = ((WeightedNodeKey) b).id;
+			return (id1 < id2) ? -1 : ((id1 == id2) ? 0 : 1);
+		}
+	}
+
+
+	/*
+	 * Partition by node ID only
+	 */
+	@SuppressWarnings("deprecation")
+	public static class Partitioner implements org.apache.hadoop.mapred.Partitioner<WeightedNodeKey, WeightedNodeWritable> {
+
+		public void configure(JobConf job) {
+		}
+
+		public int getPartition(WeightedNodeKey key, WeightedNodeWritable value, int numPartitions) {
+			return (key.id & Integer.MAX_VALUE) % numPartitions;
+		}
+	}
+}
@@ -0,0 +1,852 @@
+/*
+ * A compact binary representation of a WeightedNode, used for the map output value and for the
+ * SequenceFiles that are passed from one MR iteration to the next.
+ *
+ * The binary layout is:
+ * ID (vint) WEIGHT (vint) DISTANCE (vint) COLOR (byte) PREDECESSOR (vint) EDGE_COUNT (vint) EDGES... PATH_LENGTH (vint) PATH...
+ *
+ * The EDGES and PATH lists are 'packed': the first entry is written as is, and every following
+ * entry is written as the (vint) difference from the previous entry.  In the triangle graphs the
+ * edges and the path taken edges are in increasing order, so almost every entry fits in one or two bytes.
+ *
+ * When the path is tracked by predecessor (-path pred) the PATH list is always empty, and only the
+ * PREDECESSOR (the node that we came from on the maximum path, -1 if not known) is carried.
+ *
+ * With -topk K the node also carries the TOP list: the (at most K) best distances that reach the node, in descending
+ * order, each with the predecessor and the rank (index) in the predecessor's TOP list of the path that it extends
+ * (-1 for the start node).  It is written after the PATH list: TOP_COUNT (vint) and DISTANCE PREDECESSOR RANK (vints)
+ * for every entry - and in the text form as an extra column after the PREDECESSOR: distance:predecessor:rank,...|
+ *
+ * With -sources the node also carries the SOURCES vector: for each start node (source) that reaches the node, the index
+ * of the source (its position in the -sources list), the maximum distance from that source, and the predecessor on that
+ * path - kept in ascending index order, so a node that only a few of the sources reach only carries those entries.  An
+ * entry is 'fresh' until the node has been expanded for it (see WeightedGraphMultiSourcePathBuilder).  It is written
+ * after the TOP list: SOURCE_COUNT (vint) and INDEX (packed) DISTANCE PREDECESSOR (vints) FRESH (byte) for every entry -
+ * and in the text form as an extra column after the (empty) TOP column: index:distance:predecessor,...| with a '*' in
+ * front of the fresh entries.
+ *
+ * The text form (ID <tab> WEIGHT|EDGES|DISTANCE|COLOR|path_taken_edges|[PREDECESSOR|[TOP|[SOURCES|]]]) is parsed directly from the
+ * bytes of a Text line (parse), and written directly into the bytes of a (reused) Text line (writeLine) - without
+ * the intermediate Strings, String[] tokens and boxed Integer lists of WeightedNode(String) and WeightedNode.getLine().
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+
+public class WeightedNodeWritable implements Writable {
+
+	private static final int[] NO_ENTRIES = new int[0];
+	private static final boolean[] NO_FLAGS = new boolean[0];
+
+	private int id;
+	private int weight;
+	private int distance;
+	private WeightedNode.Color color = WeightedNode.Color.WHITE;
+	// The edges and path taken edges are kept in (reused) primitive arrays, only the first xxxCount entries are valid
+	private int[] edges = NO_ENTRIES;
+	private int edgeCount;
+	private int[] path_taken_edges = NO_ENTRIES;
+	private int pathLength;
+	// -1 indicates that the predecessor is not known (or not tracked)
+	private int predecessor = -1;
+	// The TOP list (-topk), only the first topCount entries are valid
+	private int[] topDistance = NO_ENTRIES;
+	private int[] topPredecessor = NO_ENTRIES;
+	private int[] topRank = NO_ENTRIES;
+	private int topCount;
+	// The SOURCES vector (-sources), in ascending index order - only the first sourceCount entries are valid
+	private int[] sourceIndex = NO_ENTRIES;
+	private int[] sourceDistance = NO_ENTRIES;
+	private int[] sourcePredecessor = NO_ENTRIES;
+	private boolean[] sourceFresh = NO_FLAGS;
+	private int sourceCount;
+	// The (reused) scratch vector of mergeSources()
+	private WeightedNodeWritable merged = null;
+
+	private static final byte[] MAX_VALUE_BYTES = { 'I', 'n', 't', 'e', 'g', 'e', 'r', '.', 'M', 'A', 'X', '_', 'V', 'A', 'L', 'U', 'E' };
+	private static final byte[][] COLOR_BYTES = new byte[WeightedNode.Color.values().length][];
+	static {
+		for (WeightedNode.Color c : WeightedNode.Color.values()) {
+			String name = c.name();
+			COLOR_BYTES[c.ordinal()] = new byte[name.length()];
+			for (int i = 0; i < name.length(); i++) {
+				COLOR_BYTES[c.ordinal()][i] = (byte) name.charAt(i);
+			}
+		}
+	}
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// The (reused) state of parse() and writeLine()
+	private int cursor;
+	private byte[] lineBuffer = new byte[64];
+	private int lineLength;
+
+	public WeightedNodeWritable() {
+	}
+
+	public WeightedNodeWritable(int id) {
+		this.id = id;
+	}
+
+	/*
+	 * Reset this node so that it can be reused for the node with the given id
+	 */
+	public void clear(int id) {
+		this.id = id;
+		this.weight = 0;
+		this.distance = 0;
+		this.color = WeightedNode.Color.WHITE;
+		this.predecessor = -1;
+		this.edgeCount = 0;
+		this.pathLength = 0;
+		this.topCount = 0;
+		this.sourceCount = 0;
+	}
+
+	/*
+	 * Make this node look unreached again (WHITE, distance 0, no path and no predecessor), as it is in the input graph -
+	 * the weight and the edges are kept.  Used for the GRAY nodes that are pruned (-prune bound)
+	 */
+	public void unreach() {
+		this.distance = 0;
+		this.color = WeightedNode.Color.WHITE;
+		this.predecessor = -1;
+		this.pathLength = 0;
+	}
+
+	/*
+	 * Copy the contents of a (text parsed) WeightedNode into this node
+	 */
+	public void set(WeightedNode node) {
+		clear(node.getId());
+		this.weight = node.getWeight();
+		this.distance = node.getDistance();
+		this.color = node.getColor();
+		this.predecessor = node.getPredecessor();
+		if (node.getEdges() != null) {
+			for (int v : node.getEdges()) {
+				addEdge(v);
+			}
+		}
+		for (int v : node.getPathTakenEdges()) {
+			addPathTakenEdge(v);
+		}
+	}
+
+	/*
+	 * Deep copy of another node (the framework reuses the value objects that it hands to the reducer)
+	 */
+	public void set(WeightedNodeWritable other) {
+		this.id = other.id;
+		this.weight = other.weight;
+		this.distance = other.distance;
+		this.color = other.color;
+		this.predecessor = other.predecessor;
+		setEdges(other);
+		setPathTakenEdges(other);
+		setTop(other);
+		setSources(other);
+	}
+
+	/*
+	 * Parse a text line (ID <tab> WEIGHT|EDGES|DISTANCE|COLOR|path_taken_edges|PREDECESSOR|TOP|SOURCES|, the last four
+	 * columns are optional) into this node - the same format that WeightedNode(String) parses
+	 */
+	public void parse(Text line) {
+		parse(line.getBytes(), 0, line.getLength());
+	}
+
+	public void parse(byte[] bytes, int start, int length) {
+		int end = start + length;
+		cursor = start;
+
+		clear(parseInt(bytes, end, '\t'));
+		weight = parseInt(bytes, end, '|');
+
+		// EDGES: a comma separated (and terminated) list
+		while ((cursor < end) && (bytes[cursor] != '|')) {
+			addEdge(parseInt(bytes, end, ','));
+		}
+		skip(bytes, end, '|');
+
+		distance = parseInt(bytes, end, '|');
+		color = parseColor(bytes, end);
+
+		// Path taken edges (optional)...
+		while ((cursor < end) && (bytes[cursor] != '|')) {
+			addPathTakenEdge(parseInt(bytes, end, ','));
+		}
+		skip(bytes, end, '|');
+
+		// Predecessor (optional - an empty column, followed by a TOP or SOURCES column, keeps the -1 of clear)...
+		if ((cursor < end) && (bytes[cursor] != '|')) {
+			predecessor = parseInt(bytes, end, '|');
+		} else {
+			skip(bytes, end, '|');
+		}
+
+		// TOP list (optional): distance:predecessor:rank,...
+		while ((cursor < end) && (bytes[cursor] != '|')) {
+			int d = parseInt(bytes, end, ':');
+			int p = parseInt(bytes, end, ':');
+			addTop(d, p, parseInt(bytes, end, ','));
+		}
+		skip(bytes, end, '|');
+
+		// SOURCES vector (optional): [*]index:distance:predecessor,...
+		while ((cursor < end) && (bytes[cursor] != '|')) {
+			boolean fresh = (bytes[cursor] == '*');
+			if (fresh) {
+				cursor++;
+			}
+			int index = parseInt(bytes, end, ':');
+			int d = parseInt(bytes, end, ':');
+			addSource(index, d, parseInt(bytes, end, ','), fresh);
+		}
+	}
+
+	/*
+	 * Parse an int (or Integer.MAX_VALUE) that ends at the separator (or at the end of the line), and skip the separator
+	 */
+	private int parseInt(byte[] bytes, int end, char separator) {
+		int start = cursor;
+		if ((cursor < end) && (bytes[cursor] == 'I')) {
+			for (int i = 0; i < MAX_VALUE_BYTES.length; i++) {
+				if ((cursor >= end) || (bytes[cursor++] != MAX_VALUE_BYTES[i])) {
+					throw malformed(bytes, start, end);
+				}
+			}
+			skip(bytes, end, separator);
+			return Integer.MAX_VALUE;
+		}
+
+		boolean negative = (cursor < end) && (bytes[cursor] == '-');
+		if (negative) {
+			cursor++;
+		}
+		long value = 0;
+		int digits = 0;
+		while ((cursor < end) && (bytes[cursor] >= '0') && (bytes[cursor] <= '9')) {
+			value = value * 10 + (bytes[cursor++] - '0');
+			if (value > Integer.MAX_VALUE + 1L) {
+				throw malformed(bytes, start, end);
+			}
+			digits++;
+		}
+		if (negative) {
+			value = -value;
+		}
+		if ((digits == 0) || (value > Integer.MAX_VALUE)) {
+			throw malformed(bytes, start, end);
+		}
+		skip(bytes, end, separator);
+		return (int) value;
+	}
+
+	private WeightedNode.Color parseColor(byte[] bytes, int end) {
+		int start = cursor;
+		while ((cursor < end) && (bytes[cursor] != '|')) {
+			cursor++;
+		}
+		for (WeightedNode.Color c : WeightedNode.Color.values()) {
+			byte[] name = COLOR_BYTES[c.ordinal()];
+			if (name.length == cursor - start) {
+				int i = 0;
+				while ((i < name.length) && (bytes[start + i] == name[i])) {
+					i++;
+				}
+				if (i == name.length) {
+					skip(bytes, end, '|');
+					return c;
+				}
+			}
+		}
+		throw malformed(bytes, start, end);
+	}
+
+	/*
+	 * Skip the separator (a missing separator at the end of the line, or at the end of a list, is allowed)
+	 */
+	private void skip(byte[] bytes, int end, char separator) {
+		if ((cursor < end) && !((separator == ',') && (bytes[cursor] == '|'))) {
+			if (bytes[cursor] != separator) {
+				throw malformed(bytes, cursor, end);
+			}
+			cursor++;
+		}
+	}
+
+	private static IllegalArgumentException malformed(byte[] bytes, int position, int end) {
+		return new IllegalArgumentException("Malformed node line at: " + new String(bytes, position, end - position, UTF8));
+	}
+
+	/*
+	 * Write this node as a text line (ID <tab> WEIGHT|EDGES|DISTANCE|COLOR|Path Taken Edges|[PREDECESSOR|]) into the given Text
+	 */
+	public void writeLine(Text line) {
+		lineLength = 0;
+		appendInt(id);
+		appendByte('\t');
+		appendInt(weight);
+		appendByte('|');
+		for (int i = 0; i < edgeCount; i++) {
+			appendInt(edges[i]);
+			appendByte(',');
+		}
+		appendByte('|');
+		if (distance < Integer.MAX_VALUE) {
+			appendInt(distance);
+		} else {
+			appendBytes(MAX_VALUE_BYTES);
+		}
+		appendByte('|');
+		appendBytes(COLOR_BYTES[color.ordinal()]);
+		appendByte('|');
+		for (int i = 0; i < pathLength; i++) {
+			appendInt(path_taken_edges[i]);
+			appendByte(',');
+		}
+		appendByte('|');
+		if ((predecessor >= 0) || (topCount > 0) || (sourceCount > 0)) {
+			appendInt(predecessor);
+			appendByte('|');
+		}
+		if ((topCount > 0) || (sourceCount > 0)) {
+			for (int i = 0; i < topCount; i++) {
+				appendInt(topDistance[i]);
+				appendByte(':');
+				appendInt(topPredecessor[i]);
+				appendByte(':');
+				appendInt(topRank[i]);
+				appendByte(',');
+			}
+			appendByte('|');
+		}
+		if (sourceCount > 0) {
+			for (int i = 0; i < sourceCount; i++) {
+				if (sourceFresh[i]) {
+					appendByte('*');
+				}
+				appendInt(sourceIndex[i]);
+				appendByte(':');
+				appendInt(sourceDistance[i]);
+				appendByte(':');
+				appendInt(sourcePredecessor[i]);
+				appendByte(',');
+			}
+			appendByte('|');
+		}
+		line.set(lineBuffer, 0, lineLength);
+	}
+
+	private void appendByte(char c) {
+		if (lineLength == lineBuffer.length) {
+			lineBuffer = growBytes(lineBuffer, lineLength + 1);
+		}
+		lineBuffer[lineLength++] = (byte) c;
+	}
+
+	private void appendBytes(byte[] b) {
+		if (lineLength + b.length > lineBuffer.length) {
+			lineBuffer = growBytes(lineBuffer, lineLength + b.length);
+		}
+		System.arraycopy(b, 0, lineBuffer, lineLength, b.length);
+		lineLength += b.length;
+	}
+
+	private void appendInt(int v) {
+		// at most 11 characters: the sign and 10 digits
+		if (lineLength + 11 > lineBuffer.length) {
+			lineBuffer = growBytes(lineBuffer, lineLength + 11);
+		}
+		long value = v;
+		if (value < 0) {
+			lineBuffer[lineLength++] = '-';
+			value = -value;
+		}
+		int digits = 1;
+		for (long d = value / 10; d > 0; d /= 10) {
+			digits++;
+		}
+		for (int i = lineLength + digits - 1; i >= lineLength; i--) {
+			lineBuffer[i] = (byte) ('0' + (value % 10));
+			value /= 10;
+		}
+		lineLength += digits;
+	}
+
+	private static byte[] growBytes(byte[] a, int minLength) {
+		byte[] b = new byte[Math.max(minLength, a.length * 2)];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return b;
+	}
+
+	public int getId() {
+		return this.id;
+	}
+
+	public void setId(int id) {
+		this.id = id;
+	}
+
+	public int getWeight() {
+		return this.weight;
+	}
+
+	public void setWeight(int weight) {
+		this.weight = weight;
+	}
+
+	public int getDistance() {
+		return this.distance;
+	}
+
+	public void setDistance(int distance) {
+		this.distance = distance;
+	}
+
+	public WeightedNode.Color getColor() {
+		return this.color;
+	}
+
+	public void setColor(WeightedNode.Color color) {
+		this.color = color;
+	}
+
+	public int getPredecessor() {
+		return this.predecessor;
+	}
+
+	public void setPredecessor(int predecessor) {
+		this.predecessor = predecessor;
+	}
+
+	/*
+	 * The node that the path of this node comes from: the predecessor (-path pred), or the last node of the path taken
+	 * edges - -1 if there is none
+	 */
+	public int getPathPredecessor() {
+		if (predecessor >= 0) {
+			return predecessor;
+		}
+		return (pathLength > 0) ? path_taken_edges[pathLength - 1] : -1;
+	}
+
+	public int getEdgeCount() {
+		return this.edgeCount;
+	}
+
+	public int getEdge(int i) {
+		return this.edges[i];
+	}
+
+	public void addEdge(int edge) {
+		if (edgeCount == edges.length) {
+			edges = grow(edges);
+		}
+		edges[edgeCount++] = edge;
+	}
+
+	public void clearEdges() {
+		edgeCount = 0;
+	}
+
+	/*
+	 * Replace the edges of this node by a copy of the edges of another node
+	 */
+	public void setEdges(WeightedNodeWritable other) {
+		if (edges.length < other.edgeCount) {
+			edges = new int[other.edgeCount];
+		}
+		System.arraycopy(other.edges, 0, edges, 0, other.edgeCount);
+		edgeCount = other.edgeCount;
+	}
+
+	public int getPathLength() {
+		return this.pathLength;
+	}
+
+	public int getPathTakenEdge(int i) {
+		return this.path_taken_edges[i];
+	}
+
+	public void addPathTakenEdge(int pathTakenEdge) {
+		if (pathLength == path_taken_edges.length) {
+			path_taken_edges = grow(path_taken_edges);
+		}
+		path_taken_edges[pathLength++] = pathTakenEdge;
+	}
+
+	/*
+	 * Replace the path taken edges of this node by a copy of the path taken edges of another node
+	 */
+	public void setPathTakenEdges(WeightedNodeWritable other) {
+		if (path_taken_edges.length < other.pathLength) {
+			path_taken_edges = new int[other.pathLength];
+		}
+		System.arraycopy(other.path_taken_edges, 0, path_taken_edges, 0, other.pathLength);
+		pathLength = other.pathLength;
+	}
+
+	public int getTopCount() {
+		return this.topCount;
+	}
+
+	public int getTopDistance(int i) {
+		return this.topDistance[i];
+	}
+
+	public int getTopPredecessor(int i) {
+		return this.topPredecessor[i];
+	}
+
+	public int getTopRank(int i) {
+		return this.topRank[i];
+	}
+
+	public void clearTop() {
+		topCount = 0;
+	}
+
+	/*
+	 * Append an entry to the TOP list (the caller keeps the list in descending distance order)
+	 */
+	public void addTop(int topDistance, int topPredecessor, int topRank) {
+		if (topCount == this.topDistance.length) {
+			this.topDistance = grow(this.topDistance);
+			this.topPredecessor = grow(this.topPredecessor);
+			this.topRank = grow(this.topRank);
+		}
+		this.topDistance[topCount] = topDistance;
+		this.topPredecessor[topCount] = topPredecessor;
+		this.topRank[topCount] = topRank;
+		topCount++;
+	}
+
+	/*
+	 * Replace the TOP list of this node by a copy of the TOP list of another node
+	 */
+	public void setTop(WeightedNodeWritable other) {
+		topCount = 0;
+		for (int i = 0; i < other.topCount; i++) {
+			addTop(other.topDistance[i], other.topPredecessor[i], other.topRank[i]);
+		}
+	}
+
+	/*
+	 * Merge the TOP list of another node into the TOP list of this node, keeping the k best entries.
+	 * The merge is stable (on a tie the entry that was here first stays in front - unlike the maximum distance of the
+	 * WeightedNodeAccumulator, which keeps the lower predecessor on a tie, whatever the order), and an entry that is
+	 * already in the list (the same predecessor and rank) is skipped.
+	 */
+	public void mergeTop(WeightedNodeWritable other, int k) {
+		for (int i = 0; i < other.topCount; i++) {
+			int d = other.topDistance[i];
+			int p = other.topPredecessor[i];
+			int r = other.topRank[i];
+
+			int position = topCount;
+			boolean duplicate = false;
+			for (int j = 0; j < topCount; j++) {
+				if ((topPredecessor[j] == p) && (topRank[j] == r)) {
+					duplicate = true;
+					break;
+				}
+				if ((position == topCount) && (d > topDistance[j])) {
+					position = j;
+				}
+			}
+			if (duplicate || (position >= k)) {
+				continue;
+			}
+			if (topCount < k) {
+				addTop(0, 0, 0);
+			}
+			for (int j = topCount - 1; j > position; j--) {
+				topDistance[j] = topDistance[j - 1];
+				topPredecessor[j] = topPredecessor[j - 1];
+				topRank[j] = topRank[j - 1];
+			}
+			topDistance[position] = d;
+			topPredecessor[position] = p;
+			topRank[position] = r;
+		}
+	}
+
+	public int getSourceCount() {
+		return this.sourceCount;
+	}
+
+	public int getSourceIndex(int i) {
+		return this.sourceIndex[i];
+	}
+
+	public int getSourceDistance(int i) {
+		return this.sourceDistance[i];
+	}
+
+	public int getSourcePredecessor(int i) {
+		return this.sourcePredecessor[i];
+	}
+
+	public boolean isSourceFresh(int i) {
+		return this.sourceFresh[i];
+	}
+
+	public void clearSources() {
+		sourceCount = 0;
+	}
+
+	/*
+	 * Append an entry to the SOURCES vector (the caller keeps the vector in ascending index order)
+	 */
+	public void addSource(int index, int distance, int predecessor, boolean fresh) {
+		if (sourceCount == sourceIndex.length) {
+			sourceIndex = grow(sourceIndex);
+			sourceDistance = grow(sourceDistance);
+			sourcePredecessor = grow(sourcePredecessor);
+			boolean[] flags = new boolean[sourceIndex.length];
+			System.arraycopy(sourceFresh, 0, flags, 0, sourceCount);
+			sourceFresh = flags;
+		}
+		sourceIndex[sourceCount] = index;
+		sourceDistance[sourceCount] = distance;
+		sourcePredecessor[sourceCount] = predecessor;
+		sourceFresh[sourceCount] = fresh;
+		sourceCount++;
+	}
+
+	/*
+	 * Replace the SOURCES vector of this node by a copy of the SOURCES vector of another node
+	 */
+	public void setSources(WeightedNodeWritable other) {
+		sourceCount = 0;
+		for (int i = 0; i < other.sourceCount; i++) {
+			addSource(other.sourceIndex[i], other.sourceDistance[i], other.sourcePredecessor[i], other.sourceFresh[i]);
+		}
+	}
+
+	/*
+	 * Merge the SOURCES vector of another node into the SOURCES vector of this node.  For a source that is in both:
+	 * an entry that the node was already expanded for wins over a fresh one (the same as the darkest color of the
+	 * WeightedNodeAccumulator), otherwise the maximum distance wins - on a tie, the lower predecessor.
+	 */
+	public void mergeSources(WeightedNodeWritable other) {
+		if (other.sourceCount == 0) {
+			return;
+		}
+		if (merged == null) {
+			merged = new WeightedNodeWritable();
+		}
+		merged.sourceCount = 0;
+		int i = 0;
+		int j = 0;
+		while ((i < sourceCount) || (j < other.sourceCount)) {
+			if ((j == other.sourceCount) || ((i < sourceCount) && (sourceIndex[i] < other.sourceIndex[j]))) {
+				merged.addSource(sourceIndex[i], sourceDistance[i], sourcePredecessor[i], sourceFresh[i]);
+				i++;
+			} else if ((i == sourceCount) || (other.sourceIndex[j] < sourceIndex[i])) {
+				merged.addSource(other.sourceIndex[j], other.sourceDistance[j], other.sourcePredecessor[j], other.sourceFresh[j]);
+				j++;
+			} else {
+				boolean takeOther;
+				if (sourceFresh[i] != other.sourceFresh[j]) {
+					takeOther = sourceFresh[i];
+				} else {
+					takeOther = (other.sourceDistance[j] > sourceDistance[i]) ||
+							((other.sourceDistance[j] == sourceDistance[i]) && (other.sourcePredecessor[j] < sourcePredecessor[i]));
+				}
+				if (takeOther) {
+					merged.addSource(other.sourceIndex[j], other.sourceDistance[j], other.sourcePredecessor[j], other.sourceFresh[j]);
+				} else {
+					merged.addSource(sourceIndex[i], sourceDistance[i], sourcePredecessor[i], sourceFresh[i]);
+				}
+				i++;
+				j++;
+			}
+		}
+		setSources(merged);
+	}
+
+	/*
+	 * true if the node has not been expanded yet for at least one of its sources
+	 */
+	public boolean hasFreshSource() {
+		for (int i = 0; i < sourceCount; i++) {
+			if (sourceFresh[i]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * The node has been expanded for all of its sources
+	 */
+	public void markSourcesDone() {
+		for (int i = 0; i < sourceCount; i++) {
+			sourceFresh[i] = false;
+		}
+	}
+
+	private static int[] grow(int[] a) {
+		int[] b = new int[Math.max(4, a.length * 2)];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return b;
+	}
+
+	public void write(DataOutput out) throws IOException {
+		WritableUtils.writeVInt(out, id);
+		WritableUtils.writeVInt(out, weight);
+		WritableUtils.writeVInt(out, distance);
+		out.writeByte(color.ordinal());
+		WritableUtils.writeVInt(out, predecessor);
+		writePacked(out, edges, edgeCount);
+		writePacked(out, path_taken_edges, pathLength);
+		WritableUtils.writeVInt(out, topCount);
+		for (int i = 0; i < topCount; i++) {
+			WritableUtils.writeVInt(out, topDistance[i]);
+			WritableUtils.writeVInt(out, topPredecessor[i]);
+			WritableUtils.writeVInt(out, topRank[i]);
+		}
+		WritableUtils.writeVInt(out, sourceCount);
+		int previous = 0;
+		for (int i = 0; i < sourceCount; i++) {
+			WritableUtils.writeVInt(out, sourceIndex[i] - previous);
+			previous = sourceIndex[i];
+			WritableUtils.writeVInt(out, sourceDistance[i]);
+			WritableUtils.writeVInt(out, sourcePredecessor[i]);
+			out.writeBoolean(sourceFresh[i]);
+		}
+	}
+
+	public void readFields(DataInput in) throws IOException {
+		id = WritableUtils.readVInt(in);
+		weight = WritableUtils.readVInt(in);
+		distance = WritableUtils.readVInt(in);
+		color = WeightedNode.Color.values()[in.readByte()];
+		predecessor = WritableUtils.readVInt(in);
+
+		edgeCount = WritableUtils.readVInt(in);
+		if (edges.length < edgeCount) {
+			edges = new int[edgeCount];
+		}
+		readPacked(in, edges, edgeCount);
+
+		pathLength = WritableUtils.readVInt(in);
+		if (path_taken_edges.length < pathLength) {
+			path_taken_edges = new int[pathLength];
+		}
+		readPacked(in, path_taken_edges, pathLength);
+
+		topCount = 0;
+		int count = WritableUtils.readVInt(in);
+		for (int i = 0; i < count; i++) {
+			int d = WritableUtils.readVInt(in);
+			int p = WritableUtils.readVInt(in);
+			addTop(d, p, WritableUtils.readVInt(in));
+		}
+
+		sourceCount = 0;
+		count = WritableUtils.readVInt(in);
+		int index = 0;
+		for (int i = 0; i < count; i++) {
+			index += WritableUtils.readVInt(in);
+			int d = WritableUtils.readVInt(in);
+			int p = WritableUtils.readVInt(in);
+			addSource(index, d, p, in.readBoolean());
+		}
+	}
+
+	private static void writePacked(DataOutput out, int[] a, int count) throws IOException {
+		WritableUtils.writeVInt(out, count);
+		int previous = 0;
+		for (int i = 0; i < count; i++) {
+			WritableUtils.writeVInt(out, a[i] - previous);
+			previous = a[i];
+		}
+	}
+
+	private static void readPacked(DataInput in, int[] a, int count) throws IOException {
+		int previous = 0;
+		for (int i = 0; i < count; i++) {
+			previous += WritableUtils.readVInt(in);
+			a[i] = previous;
+		}
+	}
+
+	/*
+	 * Nodes are equal if they have the same ID and distance
+	 */
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof WeightedNodeWritable)) {
+			return false;
+		}
+		WeightedNodeWritable other = (WeightedNodeWritable) o;
+		return (this.id == other.id) && (this.distance == other.distance);
+	}
+
+	@Override
+	public int hashCode() {
+		return id;
+	}
+
+	/*
+	 * This returns a string of the following form:  WEIGHT|EDGES|DISTANCE|COLOR|Path Taken Edges|
+	 * followed by PREDECESSOR| if the predecessor is known (the same string as WeightedNode.getLine())
+	 */
+	@Override
+	public String toString() {
+		StringBuilder s = new StringBuilder();
+
+		s.append(this.weight).append("|");
+
+		for (int i = 0; i < edgeCount; i++) {
+			s.append(edges[i]).append(",");
+		}
+		s.append("|");
+
+		if (this.distance < Integer.MAX_VALUE) {
+			s.append(this.distance).append("|");
+		} else {
+			s.append("Integer.MAX_VALUE").append("|");
+		}
+
+		s.append(color.toString());
+		s.append("|");
+
+		for (int i = 0; i < pathLength; i++) {
+			s.append(path_taken_edges[i]).append(",");
+		}
+		s.append("|");
+
+		if ((this.predecessor >= 0) || (topCount > 0) || (sourceCount > 0)) {
+			s.append(this.predecessor).append("|");
+		}
+		if ((topCount > 0) || (sourceCount > 0)) {
+			for (int i = 0; i < topCount; i++) {
+				s.append(topDistance[i]).append(":").append(topPredecessor[i]).append(":").append(topRank[i]).append(",");
+			}
+			s.append("|");
+		}
+		if (sourceCount > 0) {
+			for (int i = 0; i < sourceCount; i++) {
+				s.append(sourceFresh[i] ? "*" : "").append(sourceIndex[i]).append(":").append(sourceDistance[i]).append(":")
+					.append(sourcePredecessor[i]).append(",");
+			}
+			s.append("|");
+		}
+
+		return s.toString();
+	}
+
+}
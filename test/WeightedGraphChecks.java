@@ -0,0 +1,61 @@
+/**
+ * The check helpers of the tests in the test folder: a check compares an expected and an actual value, prints the failed
+ * ones, and counts them - the tests need no test framework, only the classes of src and the Hadoop jars.
+ *
+ * The unit tests are run together by WeightedGraphTests, and each test class can also be run on its own (its main).
+ */
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Writable;
+
+
+public class WeightedGraphChecks {
+
+	private static int checks = 0;
+	private static int failures = 0;
+
+	public static void check(String name, Object expected, Object actual) {
+		checks++;
+		if ((expected == null) ? (actual != null) : !expected.equals(actual)) {
+			fail(name, expected, actual);
+		}
+	}
+
+	public static void fail(String name, Object expected, Object actual) {
+		failures++;
+		System.out.println("FAILED " + name + ": expected <" + expected + "> but was <" + actual + ">");
+	}
+
+	/*
+	 * Print the number of checks and failures - and exit with 1 if a check failed
+	 */
+	public static void exit() {
+		System.out.println(checks + " checks, " + failures + " failed");
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	/*
+	 * The binary form of a Writable
+	 */
+	public static byte[] writeBinary(Writable w) throws IOException {
+		DataOutputBuffer out = new DataOutputBuffer();
+		w.write(out);
+		return Arrays.copyOf(out.getData(), out.getLength());
+	}
+
+	/*
+	 * Read the binary form into a Writable - it must read all of the bytes
+	 */
+	public static void readBinary(byte[] bytes, Writable w) throws IOException {
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(bytes, bytes.length);
+		w.readFields(in);
+		check("bytes left after readFields", 0, in.available());
+	}
+}
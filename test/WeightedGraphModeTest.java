@@ -0,0 +1,628 @@
+/**
+ * Behaviour checks of the engines and modes of the driver (WeightedGraphMaxSearch): every run solves the same small
+ * triangle (ROWS rows, written by WeightedGraphGenerator) and its output is compared with the output of the baseline run,
+ * the MR engine with the default options - which is checked first against the maximum distances computed here, by
+ * dynamic programming over the triangle.
+ *
+ * The driver keeps its options in static fields, so each run is a child JVM of its own (as in WeightedGraphScalingBenchmark),
+ * in <work>/<label>: the input graph is copied to input/input-graph, an IOFiles-Mode-Config.xml next to it points the
+ * input and output paths there, and the output of the driver goes to log.txt.  The runs use the Hadoop local runner, so
+ * the whole test takes a few minutes.  The work directory (-work, mode-test by default) is deleted first.
+ *
+ * To run:  WeightedGraphModeTest [-work <Directory>]
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+
+
+public class WeightedGraphModeTest {
+
+	static final String CONFIG_FILE = "IOFiles-Mode-Config.xml";
+
+	// The triangle: ROWS rows, node 1 is the GRAY start node and SINK the aggregation node
+	private static final int ROWS = 8;
+	private static final int SINK = ROWS * (ROWS + 1) / 2 + 1;
+	private static final long SEED = 7;
+
+	private static File work = new File("mode-test");
+
+	// The weight of every node ID, and the complete text output (by node ID) and result line of the baseline run
+	private static int[] weights;
+	private static TreeMap<Integer, String> baseline;
+	private static String baselineResult;
+
+	// The input graph of the runs (the triangle, with the EDGES column)
+	private static File input;
+
+	public static void main(String[] args) throws IOException {
+		for (int i = 0; i < args.length; ++i) {
+			if ("-work".equals(args[i])) {
+				work = new File(args[++i]);
+			}
+		}
+		run();
+		WeightedGraphChecks.exit();
+	}
+
+	public static void run() throws IOException {
+		work = work.getAbsoluteFile();
+		deleteRecursively(work);
+		if (!work.mkdirs()) {
+			throw new IOException("Unable to create " + work);
+		}
+		File generated = new File(work, "triangle");
+		WeightedGraphGenerator.generate(new Configuration(), new Path(generated.getPath()), WeightedGraphGenerator.TYPE_TRIANGLE,
+				ROWS, 0, 0, WeightedGraphGenerator.DEFAULT_WEIGHTS, SEED);
+		weights = new int[SINK + 1];
+		for (String line : readLines(generated)) {
+			weights[id(line)] = Integer.parseInt(column(line, 0));
+		}
+
+		input = writeTriangle("triangle-input", weights, ROWS, true);
+
+		testBaseline();
+		testPredecessor();
+		testLocalEngine();
+		testStreamEngine();
+		testTriangleTopology();
+		testFrontierIterations();
+		testInMapperCombining();
+		testRangePartition();
+		testBands();
+		testPruning();
+		testBidirectional();
+		testTopK();
+		testIncremental();
+		testAppendRows();
+		testSources();
+		testValueSort();
+		testParallelEngine();
+	}
+
+
+	/*
+	 * The baseline, -engine mr: the distance of every node is the maximum distance from node 1, every path adds up to its
+	 * distance, and the result is the sink node
+	 */
+	private static void testBaseline() throws IOException {
+		File dir = run("baseline", input, "-engine", "mr");
+		baseline = graph(dir);
+		baselineResult = line(dir, "result");
+
+		int[] distances = maximumDistances(weights, ROWS);
+		WeightedGraphChecks.check("baseline nodes", SINK, baseline.size());
+		for (int id = 1; id <= SINK; id++) {
+			String node = baseline.get(id);
+			WeightedGraphChecks.check("baseline distance of node " + id, Integer.toString(distances[id]), column(node, 2));
+			WeightedGraphChecks.check("baseline color of node " + id, "BLACK", column(node, 3));
+			checkPath("baseline path of node " + id, node, 1);
+		}
+		WeightedGraphChecks.check("baseline result", baseline.get(SINK), baselineResult);
+	}
+
+
+	/*
+	 * -path pred: every node has the distance of the baseline and the last node of its baseline path as predecessor (none
+	 * for node 1), and the path rebuilt from the predecessors (maxpath) is the baseline result
+	 */
+	private static void testPredecessor() throws IOException {
+		File dir = run("path-pred", input, "-engine", "mr", "-path", "pred");
+		TreeMap<Integer, String> graph = graph(dir);
+		WeightedGraphChecks.check("-path pred nodes", baseline.size(), graph.size());
+		for (Integer id : baseline.keySet()) {
+			String path = column(baseline.get(id), 4);
+			String predecessor = (path.length() == 0) ? "" : path.substring(path.lastIndexOf(',', path.length() - 2) + 1, path.length() - 1);
+			WeightedGraphChecks.check("-path pred distance of node " + id, column(baseline.get(id), 2), column(graph.get(id), 2));
+			WeightedGraphChecks.check("-path pred predecessor of node " + id, predecessor, column(graph.get(id), 5));
+		}
+		WeightedGraphChecks.check("-path pred maxpath", baselineResult, line(dir, "maxpath"));
+	}
+
+	/*
+	 * The in-memory engine (-engine local, and auto - the triangle is small) writes the output of the last MR iteration
+	 */
+	private static void testLocalEngine() throws IOException {
+		for (String engine : new String[] { "local", "auto" }) {
+			File dir = run("engine-" + engine, input, "-engine", engine);
+			checkGraph("-engine " + engine, graph(dir));
+			WeightedGraphChecks.check("-engine " + engine + " result", baselineResult, line(dir, "result"));
+		}
+	}
+
+	/*
+	 * The streaming triangle engine only writes the sink node, with the maximum path
+	 */
+	private static void testStreamEngine() throws IOException {
+		File dir = run("engine-stream", input, "-engine", "stream", "-topology", "triangle", "-rows", Integer.toString(ROWS));
+		WeightedGraphChecks.check("-engine stream result", baselineResult, line(dir, "result"));
+		WeightedGraphChecks.check("-engine stream maxpath", baselineResult, line(dir, "maxpath"));
+	}
+
+	/*
+	 * -topology triangle, on the input without the EDGES column: the edges are filled in again for the text output
+	 */
+	private static void testTriangleTopology() throws IOException {
+		File dir = run("topology-triangle", writeTriangle("triangle-input-no-edges", weights, ROWS, false),
+				"-engine", "mr", "-topology", "triangle", "-rows", Integer.toString(ROWS));
+		checkGraph("-topology triangle", graph(dir));
+		WeightedGraphChecks.check("-topology triangle result", baselineResult, line(dir, "result"));
+	}
+
+	/*
+	 * -iteration frontier: the structure and the frontiers are merged into the same complete graph
+	 */
+	private static void testFrontierIterations() throws IOException {
+		File dir = run("iteration-frontier", input, "-engine", "mr", "-iteration", "frontier");
+		checkGraph("-iteration frontier", graph(dir));
+		WeightedGraphChecks.check("-iteration frontier result", baselineResult, line(dir, "result"));
+	}
+
+	/*
+	 * -combine inmapper
+	 */
+	private static void testInMapperCombining() throws IOException {
+		File dir = run("combine-inmapper", input, "-engine", "mr", "-combine", "inmapper");
+		checkGraph("-combine inmapper", graph(dir));
+		WeightedGraphChecks.check("-combine inmapper result", baselineResult, line(dir, "result"));
+	}
+
+	/*
+	 * -partition range, with 3 splits and 3 reducers
+	 */
+	private static void testRangePartition() throws IOException {
+		File dir = run("partition-range", input, "-engine", "mr", "-partition", "range", "-m", "3", "-r", "3");
+		checkGraph("-partition range", graph(dir));
+		WeightedGraphChecks.check("-partition range result", baselineResult, line(dir, "result"));
+	}
+
+	/*
+	 * -k 3: bands of 3 rows per MR job (the interior nodes of the bands come from the _band side files)
+	 */
+	private static void testBands() throws IOException {
+		File dir = run("bands", input, "-engine", "mr", "-k", "3", "-topology", "triangle", "-rows", Integer.toString(ROWS));
+		checkGraph("-k 3", graph(dir));
+		WeightedGraphChecks.check("-k 3 result", baselineResult, line(dir, "result"));
+	}
+
+	/*
+	 * -prune bound: the maximum path is the same, and every other node is the same as in the baseline or left unreached
+	 */
+	private static void testPruning() throws IOException {
+		File dir = run("prune-bound", input, "-engine", "mr", "-prune", "bound", "-topology", "triangle", "-rows", Integer.toString(ROWS));
+		TreeMap<Integer, String> graph = graph(dir);
+		WeightedGraphChecks.check("-prune bound result", baselineResult, line(dir, "result"));
+		WeightedGraphChecks.check("-prune bound nodes", baseline.size(), graph.size());
+		for (Integer id : baseline.keySet()) {
+			String node = graph.get(id);
+			boolean pruned = (node != null) && "WHITE".equals(column(node, 3)) && "0".equals(column(node, 2));
+			WeightedGraphChecks.check("-prune bound node " + id + " (or unreached)", baseline.get(id), pruned ? baseline.get(id) : node);
+		}
+	}
+
+	/*
+	 * -engine bidirectional: the top-down and bottom-up passes joined at the middle row give the maximum path
+	 */
+	private static void testBidirectional() throws IOException {
+		File dir = run("engine-bidirectional", input, "-engine", "bidirectional", "-topology", "triangle", "-rows", Integer.toString(ROWS));
+		WeightedGraphChecks.check("-engine bidirectional result", distanceAndPath(baselineResult), distanceAndPath(line(dir, "result")));
+	}
+
+	/*
+	 * -topk 3: the 3 best paths to the sink - the distances of the 3 best of all of the paths of the triangle, best first,
+	 * each path adds up to its distance, and the first one is the baseline result
+	 */
+	private static void testTopK() throws IOException {
+		File dir = run("topk", input, "-engine", "mr", "-topk", "3");
+		List<String> paths = lines(dir, "topk");
+		List<Integer> distances = pathDistances(1, 0);
+		Collections.sort(distances, Collections.reverseOrder());
+		WeightedGraphChecks.check("-topk 3 paths", 3, paths.size());
+		for (int i = 0; (i < 3) && (i < paths.size()); i++) {
+			WeightedGraphChecks.check("-topk 3 distance " + i, distances.get(i).toString(), column(paths.get(i), 2));
+			checkPath("-topk 3 path " + i, paths.get(i), 1);
+		}
+		if (!paths.isEmpty()) {
+			WeightedGraphChecks.check("-topk 3 best path", distanceAndPath(baselineResult), distanceAndPath(paths.get(0)));
+		}
+	}
+
+	/*
+	 * -incremental: the baseline output solved again after 3 weights changed is the same as a new baseline run of the
+	 * changed triangle
+	 */
+	private static void testIncremental() throws IOException {
+		int[] changed = weights.clone();
+		changed[9] = 9999;
+		changed[12] = 1;
+		changed[33] = 9000;
+		File delta = new File(work, "delta.txt");
+		Writer writer = new OutputStreamWriter(new FileOutputStream(delta), "UTF-8");
+		try {
+			writer.write("9\t9999\n12\t1\n33\t9000\n");
+		} finally {
+			writer.close();
+		}
+		File changedInput = writeTriangle("triangle-input-changed", changed, ROWS, true);
+		File expected = run("incremental-baseline", changedInput, "-engine", "mr");
+		File dir = run("incremental", changedInput, "-incremental", completeOutput(new File(work, "baseline")).getPath(),
+				"-delta", delta.getPath());
+		TreeMap<Integer, String> expectedGraph = graph(expected);
+		TreeMap<Integer, String> graph = graph(dir);
+		WeightedGraphChecks.check("-incremental nodes", expectedGraph.size(), graph.size());
+		for (Integer id : expectedGraph.keySet()) {
+			WeightedGraphChecks.check("-incremental node " + id, expectedGraph.get(id), graph.get(id));
+		}
+		WeightedGraphChecks.check("-incremental result", line(expected, "result"), line(dir, "result"));
+	}
+
+	/*
+	 * -append: a run of the triangle without its last 2 rows caches its bottom row, and the run of the whole triangle
+	 * resumes from it - with the complete graph of a full run
+	 */
+	private static void testAppendRows() throws IOException {
+		run("append-prefix", writeTriangle("triangle-input-prefix", weights, ROWS - 2, true),
+				"-append", "-topology", "triangle", "-rows", Integer.toString(ROWS - 2));
+		File dir = run("append", input, "-append", "-topology", "triangle", "-rows", Integer.toString(ROWS));
+		boolean resumed = false;
+		for (String line : readLines(new File(dir, "log.txt"))) {
+			resumed |= line.contains("Resuming from the frontier cache entry");
+		}
+		WeightedGraphChecks.check("-append resumed from the cached prefix", true, resumed);
+		checkGraph("-append", graph(dir));
+		WeightedGraphChecks.check("-append result", baselineResult, line(dir, "result"));
+	}
+
+	/*
+	 * -sources: the maximum path from each of 3 sources, in the order of the sources file - the one from node 1 is the
+	 * baseline result, and so is the best of them (maxpath)
+	 */
+	private static void testSources() throws IOException {
+		int[] sources = { 1, 5, 9 };
+		File file = new File(work, "sources.txt");
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			writer.write("1 5,9\n");
+		} finally {
+			writer.close();
+		}
+		File dir = run("sources", input, "-engine", "mr", "-sources", file.getPath());
+		List<String> paths = lines(dir, "sources");
+		WeightedGraphChecks.check("-sources paths", sources.length, paths.size());
+		for (int i = 0; (i < sources.length) && (i < paths.size()); i++) {
+			List<Integer> distances = pathDistances(sources[i], 0);
+			WeightedGraphChecks.check("-sources sink " + i, SINK, id(paths.get(i)));
+			WeightedGraphChecks.check("-sources distance from " + sources[i], Collections.max(distances).toString(), column(paths.get(i), 2));
+			checkPath("-sources path from " + sources[i], paths.get(i), sources[i]);
+		}
+		if (!paths.isEmpty()) {
+			WeightedGraphChecks.check("-sources path from node 1", distanceAndPath(baselineResult), distanceAndPath(paths.get(0)));
+		}
+		WeightedGraphChecks.check("-sources maxpath", distanceAndPath(baselineResult), distanceAndPath(line(dir, "maxpath")));
+	}
+
+	/*
+	 * -sort value (with -combine inmapper): the reducer only reads the best candidate of every node
+	 */
+	private static void testValueSort() throws IOException {
+		File dir = run("sort-value", input, "-engine", "mr", "-sort", "value", "-combine", "inmapper");
+		checkGraph("-sort value", graph(dir));
+		WeightedGraphChecks.check("-sort value result", baselineResult, line(dir, "result"));
+	}
+
+	/*
+	 * -engine parallel: the tiles of the triangle solved on all of the cores give the output of the last MR iteration
+	 */
+	private static void testParallelEngine() throws IOException {
+		File dir = run("engine-parallel", input, "-engine", "parallel");
+		checkGraph("-engine parallel", graph(dir));
+		WeightedGraphChecks.check("-engine parallel result", baselineResult, line(dir, "result"));
+	}
+
+
+	/*
+	 * Runs the driver with the options on a copy of the input graph, in the child JVM of the label - the exit code must be 0
+	 */
+	private static File run(String label, File inputGraph, String... options) throws IOException {
+		File dir = new File(work, label);
+		if (!new File(dir, "input").mkdirs()) {
+			throw new IOException("Unable to create " + dir);
+		}
+		copy(inputGraph, new File(dir, "input/input-graph"));
+		writeConfig(new File(dir, CONFIG_FILE));
+
+		List<String> command = new ArrayList<String>();
+		command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+		command.add("-Xmx512m");
+		command.add("-cp");
+		command.add(dir.getPath() + File.pathSeparator + System.getProperty("java.class.path"));
+		command.add("WeightedGraphMaxSearch");
+		command.add("-c");
+		command.add(CONFIG_FILE);
+		command.addAll(Arrays.asList(options));
+
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.directory(dir);
+		builder.redirectErrorStream(true);
+		builder.redirectOutput(new File(dir, "log.txt"));
+		int exitCode;
+		try {
+			exitCode = builder.start().waitFor();
+		} catch (InterruptedException e) {
+			throw new IOException("Interrupted while running " + label);
+		}
+		WeightedGraphChecks.check("exit code of " + label + " (" + new File(dir, "log.txt") + ")", 0, exitCode);
+		return dir;
+	}
+
+	private static void writeConfig(File file) throws IOException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			writer.write("<?xml version=\"1.0\"?>\n");
+			writer.write("<!-- Written by WeightedGraphModeTest -->\n");
+			writer.write("<configuration>\n");
+			writeProperty(writer, "inputPathFirstIteration", "input/input-graph");
+			writeProperty(writer, "inputPathOtherIterations", "output/outgraph/output-graph-");
+			writeProperty(writer, "outputPathIteration", "output/outgraph/output-graph-");
+			writeProperty(writer, "keepIterations", "2");
+			writeProperty(writer, "frontierCacheDir", new File(work, "frontiercache").getPath());
+			writer.write("</configuration>\n");
+		} finally {
+			writer.close();
+		}
+	}
+
+	private static void writeProperty(Writer writer, String name, String value) throws IOException {
+		writer.write("<property><name>" + name + "</name><value>" + value + "</value></property>\n");
+	}
+
+	/*
+	 * Writes a triangle of the rows, with the weights (by node ID) - with the EDGES column, or with an empty one
+	 * (-topology triangle) - and returns the file
+	 */
+	private static File writeTriangle(String name, int[] weights, int rows, boolean withEdges) throws IOException {
+		File file = new File(work, name);
+		int sink = rows * (rows + 1) / 2 + 1;
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			for (int id = 1; id <= sink; id++) {
+				String edges = "";
+				if (withEdges && (id < sink)) {
+					int[] children = children(id, rows);
+					edges = (children.length == 1) ? children[0] + "," : children[0] + "," + children[1] + ",";
+				}
+				writer.write(id + "\t" + ((id < sink) ? weights[id] : 0) + "|" + edges + "|0|" + ((id == 1) ? "GRAY" : "WHITE") + "|\n");
+			}
+		} finally {
+			writer.close();
+		}
+		return file;
+	}
+
+	/*
+	 * The complete text output of a run (the merged graph of the last iteration, or of -incremental), by node ID
+	 */
+	private static TreeMap<Integer, String> graph(File dir) throws IOException {
+		File output = completeOutput(dir);
+		TreeMap<Integer, String> nodes = new TreeMap<Integer, String>();
+		for (String line : readLines(output)) {
+			if (nodes.put(id(line), line) != null) {
+				WeightedGraphChecks.fail("node written once in " + output, "once", "twice: " + line);
+			}
+		}
+		return nodes;
+	}
+
+	/*
+	 * The directory of the complete text output of a run: output-graph-incremental-text, otherwise the last
+	 * output-graph-<N>-text or output-graph-<N>
+	 */
+	private static File completeOutput(File dir) {
+		File outgraph = new File(dir, "output/outgraph");
+		File output = new File(outgraph, "output-graph-incremental-text");
+		if (output.exists()) {
+			return output;
+		}
+		int last = -1;
+		for (String name : outgraph.list()) {
+			if (name.matches("output-graph-[0-9]+(-text)?")) {
+				int n = Integer.parseInt(name.replaceAll("[^0-9]", ""));
+				if ((n > last) || ((n == last) && name.endsWith("-text"))) {
+					last = n;
+					output = new File(outgraph, name);
+				}
+			}
+		}
+		return output;
+	}
+
+	/*
+	 * Every node of the complete text output of the run is the same as in the baseline
+	 */
+	private static void checkGraph(String label, TreeMap<Integer, String> graph) {
+		WeightedGraphChecks.check(label + " nodes", baseline.size(), graph.size());
+		for (Integer id : baseline.keySet()) {
+			WeightedGraphChecks.check(label + " node " + id, baseline.get(id), graph.get(id));
+		}
+	}
+
+	/*
+	 * The first line of an output of a run (output-graph-<name>)
+	 */
+	private static String line(File dir, String name) throws IOException {
+		List<String> lines = lines(dir, name);
+		return lines.isEmpty() ? null : lines.get(0);
+	}
+
+	private static List<String> lines(File dir, String name) throws IOException {
+		return readLines(new File(dir, "output/outgraph/output-graph-" + name));
+	}
+
+	/*
+	 * The lines of a file, or of the part files of a directory (in the order of their names)
+	 */
+	private static List<String> readLines(File file) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		List<File> files = new ArrayList<File>();
+		if (file.isDirectory()) {
+			String[] names = file.list();
+			Arrays.sort(names);
+			for (String name : names) {
+				if (!name.startsWith("_") && !name.startsWith(".")) {
+					files.add(new File(file, name));
+				}
+			}
+		} else if (file.exists()) {
+			files.add(file);
+		} else {
+			WeightedGraphChecks.fail("output exists", file, "missing");
+		}
+		for (File f : files) {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(f), "UTF-8"));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (line.length() > 0) {
+						lines.add(line);
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		}
+		return lines;
+	}
+
+	private static void copy(File from, File to) throws IOException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(to), "UTF-8");
+		try {
+			for (String line : readLines(from)) {
+				writer.write(line + "\n");
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/*
+	 * The node ID of a text line, and a column of its value (0 = WEIGHT, 1 = EDGES, 2 = DISTANCE, 3 = COLOR, 4 = path, 5 = PRED)
+	 */
+	private static int id(String line) {
+		return Integer.parseInt(line.substring(0, line.indexOf('\t')));
+	}
+
+	private static String column(String line, int column) {
+		String[] columns = line.substring(line.indexOf('\t') + 1).split("\\|", -1);
+		return (column < columns.length) ? columns[column] : "";
+	}
+
+	/*
+	 * The distance and path of a node line - what the engines and modes that write the sink node in another form agree on
+	 */
+	private static String distanceAndPath(String line) {
+		return (line == null) ? null : id(line) + " at " + column(line, 2) + " via " + column(line, 4);
+	}
+
+	/*
+	 * The path of the line starts at the source, goes down the triangle (to a parent of the node) and adds up to its distance
+	 */
+	private static void checkPath(String name, String line, int source) {
+		int node = id(line);
+		String path = column(line, 4);
+		int distance = 0;
+		int previous = -1;
+		boolean valid = true;
+		if (path.length() > 0) {
+			for (String token : path.split(",")) {
+				int id = Integer.parseInt(token);
+				valid &= (previous < 0) ? (id == source) : contains(children(previous, ROWS), id);
+				distance += weights[id];
+				previous = id;
+			}
+		}
+		valid &= (previous < 0) ? (node == source) : contains(children(previous, ROWS), node);
+		WeightedGraphChecks.check(name + " (" + line + ")", true, valid && (Integer.toString(distance).equals(column(line, 2))));
+	}
+
+	/*
+	 * The children of a node of a triangle: node p of row r (ID r*(r-1)/2+1+p) points to the nodes p and p+1 of row r+1,
+	 * and the nodes of the last row to the sink
+	 */
+	private static int[] children(int id, int rows) {
+		int row = 1;
+		while (row * (row + 1) / 2 < id) {
+			row++;
+		}
+		if (row > rows) {
+			return new int[0];
+		}
+		if (row == rows) {
+			return new int[] { rows * (rows + 1) / 2 + 1 };
+		}
+		int child = id + row;
+		return new int[] { child, child + 1 };
+	}
+
+	private static boolean contains(int[] values, int value) {
+		for (int v : values) {
+			if (v == value) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * The distances of all of the paths from the node down to the sink (the weights of the node and of the nodes below it),
+	 * plus the distance above the node
+	 */
+	private static List<Integer> pathDistances(int id, int above) {
+		List<Integer> distances = new ArrayList<Integer>();
+		if (id == SINK) {
+			distances.add(above);
+		} else {
+			for (int child : children(id, ROWS)) {
+				distances.addAll(pathDistances(child, above + weights[id]));
+			}
+		}
+		return distances;
+	}
+
+	/*
+	 * The maximum distance of every node from node 1 (dynamic programming, top to bottom)
+	 */
+	private static int[] maximumDistances(int[] weights, int rows) {
+		int sink = rows * (rows + 1) / 2 + 1;
+		int[] distances = new int[sink + 1];
+		for (int id = 1; id < sink; id++) {
+			for (int child : children(id, rows)) {
+				distances[child] = Math.max(distances[child], distances[id] + weights[id]);
+			}
+		}
+		return distances;
+	}
+
+	private static void deleteRecursively(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files) {
+				deleteRecursively(child);
+			}
+		}
+		file.delete();
+	}
+}
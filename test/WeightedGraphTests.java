@@ -0,0 +1,22 @@
+/**
+ * Runs all of the unit tests of the test folder (see WeightedGraphChecks):
+ *
+ *   javac -cp <classpath with the classes of src> -d <classes> test/*.java
+ *   java -cp <classpath> WeightedGraphTests
+ *
+ * The exit code is 1 if any check failed.
+ */
+
+import java.io.IOException;
+
+
+public class WeightedGraphTests {
+
+	public static void main(String[] args) throws IOException {
+		WeightedNodeCodecTest.run();
+		WeightedNodeCandidateMapTest.run();
+		WeightedNodeKeyTest.run();
+		WeightedGraphModeTest.run();
+		WeightedGraphChecks.exit();
+	}
+}
@@ -0,0 +1,189 @@
+/**
+ * Checks of the in-mapper combining map (WeightedNodeCandidateMap): the maximum distance candidate of each node ID is
+ * kept, on a tie the one from the lower parent ID (in either order), with the path or only the predecessor of the
+ * parent - also after the table grows - and flush emits every candidate once and empties the map.
+ *
+ * The memory budget of the mapper (inMapperCombiningMaxBytes) is checked the way the mapper applies it: the map is
+ * flushed whenever its estimated size is over the budget, so a flushed map has to be back under it - otherwise every
+ * following GRAY node flushes again, and the candidates are emitted uncombined.
+ */
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.OutputCollector;
+
+
+public class WeightedNodeCandidateMapTest {
+
+	public static void main(String[] args) throws IOException {
+		run();
+		WeightedGraphChecks.exit();
+	}
+
+	public static void run() throws IOException {
+		testMaximum();
+		testTie();
+		testPath();
+		testGrowth();
+		testBudget();
+	}
+
+
+	/*
+	 * Only the maximum distance candidate of a node ID is kept, whatever the order of the candidates
+	 */
+	private static void testMaximum() throws IOException {
+		WeightedNodeCandidateMap map = new WeightedNodeCandidateMap(16);
+		WeightedGraphChecks.check("add new", true, map.add(5, 20, parent(2, 15), true));
+		WeightedGraphChecks.check("add lower", false, map.add(5, 10, parent(3, 5), true));
+		WeightedGraphChecks.check("add higher", true, map.add(5, 30, parent(4, 25), true));
+		WeightedGraphChecks.check("add other node", true, map.add(6, 1, parent(4, 0), true));
+		WeightedGraphChecks.check("size", 2, map.size());
+
+		Map<Integer, String> out = flush(map);
+		WeightedGraphChecks.check("flushed candidate", "5\t0||30|GRAY||4|", out.get(5));
+		WeightedGraphChecks.check("flushed other candidate", "6\t0||1|GRAY||4|", out.get(6));
+		WeightedGraphChecks.check("flushed count", 2, out.size());
+		WeightedGraphChecks.check("size after flush", 0, map.size());
+		WeightedGraphChecks.check("flush of an empty map", 0, flush(map).size());
+	}
+
+	/*
+	 * On a distance tie the candidate from the lower parent ID is kept - the same as the WeightedNodeAccumulator - in
+	 * either order, with the predecessor and with the path
+	 */
+	private static void testTie() throws IOException {
+		for (boolean predecessorOnly : new boolean[] { true, false }) {
+			WeightedNodeCandidateMap map = new WeightedNodeCandidateMap(16);
+			WeightedGraphChecks.check("tie, higher parent first", true, map.add(8, 30, parent(5, 16, 1, 2), predecessorOnly));
+			WeightedGraphChecks.check("tie, lower parent second", true, map.add(8, 30, parent(4, 13, 1, 3), predecessorOnly));
+			WeightedGraphChecks.check("tie, higher parent third", false, map.add(8, 30, parent(5, 16, 1, 2), predecessorOnly));
+			WeightedGraphChecks.check("tie, same parent again", false, map.add(8, 30, parent(4, 13, 1, 3), predecessorOnly));
+			WeightedGraphChecks.check("tie kept the lower parent" + (predecessorOnly ? " (pred)" : " (path)"),
+					predecessorOnly ? "8\t0||30|GRAY||4|" : "8\t0||30|GRAY|1,3,4,|", flush(map).get(8));
+		}
+	}
+
+	/*
+	 * A path candidate carries the parent's path plus the parent, and a reused slot takes the shorter path of a better
+	 * candidate without keeping the old entries
+	 */
+	private static void testPath() throws IOException {
+		WeightedNodeCandidateMap map = new WeightedNodeCandidateMap(16);
+		map.add(12, 40, parent(8, 26, 1, 2, 5), false);
+		map.add(12, 41, parent(7, 32, 1), false);
+		WeightedGraphChecks.check("path candidate", "12\t0||41|GRAY|1,7,|", flush(map).get(12));
+
+		map.add(12, 3, parent(1, 0), false);
+		WeightedGraphChecks.check("path candidate of the start node", "12\t0||3|GRAY|1,|", flush(map).get(12));
+	}
+
+	/*
+	 * The table grows past its initial capacity without losing or mixing up candidates
+	 */
+	private static void testGrowth() throws IOException {
+		WeightedNodeCandidateMap map = new WeightedNodeCandidateMap(1);
+		Random random = new Random(11);
+		Map<Integer, Integer> best = new HashMap<Integer, Integer>();
+		for (int i = 0; i < 5000; i++) {
+			// node IDs that collide in a small table (multiples of 1024), and random ones
+			int id = (i % 2 == 0) ? (i / 2) * 1024 : random.nextInt(1 << 20);
+			int distance = random.nextInt(1000);
+			map.add(id, distance, parent(id + 1, 0), true);
+			Integer kept = best.get(id);
+			if ((kept == null) || (distance > kept.intValue())) {
+				best.put(id, distance);
+			}
+		}
+		WeightedGraphChecks.check("size after growth", best.size(), map.size());
+
+		Map<Integer, String> out = flush(map);
+		WeightedGraphChecks.check("flushed after growth", best.size(), out.size());
+		int wrong = 0;
+		for (Map.Entry<Integer, Integer> e : best.entrySet()) {
+			String expected = e.getKey() + "\t0||" + e.getValue() + "|GRAY||" + (e.getKey() + 1) + "|";
+			if (!expected.equals(out.get(e.getKey())) && (wrong++ < 5)) {
+				WeightedGraphChecks.fail("candidate after growth", expected, out.get(e.getKey()));
+			}
+		}
+		WeightedGraphChecks.check("wrong candidates after growth", 0, wrong);
+	}
+
+	/*
+	 * The mapper's budget: 200,000 GRAY nodes in a row of a triangle, each with two children (node p reaches p and p + 1),
+	 * and a map that is flushed whenever it is over a 1 MB budget.  A flush has to bring the map back to the size of an
+	 * empty one, so it only flushes a few times, and about half of the 400,000 candidates are merged away
+	 */
+	private static void testBudget() throws IOException {
+		long budget = 1 << 20;
+		int nodes = 200000;
+		WeightedNodeCandidateMap map = new WeightedNodeCandidateMap(1024);
+		long emptyBytes = map.getEstimatedBytes();
+		CountingCollector output = new CountingCollector();
+		WeightedNodeWritable parent = new WeightedNodeWritable();
+		int flushes = 0;
+		long largestAfterFlush = 0;
+		for (int p = 0; p < nodes; p++) {
+			parent.clear(p);
+			parent.setDistance(p % 97);
+			map.add(p, parent.getDistance() + 1, parent, true);
+			map.add(p + 1, parent.getDistance() + 1, parent, true);
+			if (map.getEstimatedBytes() > budget) {
+				map.flush(output, new IntWritable(), new WeightedNodeWritable());
+				flushes++;
+				largestAfterFlush = Math.max(largestAfterFlush, map.getEstimatedBytes());
+			}
+		}
+		map.flush(output, new IntWritable(), new WeightedNodeWritable());
+
+		WeightedGraphChecks.check("estimated bytes after a flush (as empty)", emptyBytes, largestAfterFlush);
+		WeightedGraphChecks.check("few flushes under the budget", true, flushes < 20);
+		WeightedGraphChecks.check("candidates merged under the budget (at most " + (nodes + 20) + " emitted, " +
+				output.count + " were)", true, output.count <= nodes + 20);
+	}
+
+
+	/*
+	 * A parent node (the GRAY node being expanded) at the given distance, with the given path taken edges
+	 */
+	private static WeightedNodeWritable parent(int id, int distance, int... path) {
+		WeightedNodeWritable node = new WeightedNodeWritable(id);
+		node.setDistance(distance);
+		node.setColor(WeightedNode.Color.GRAY);
+		for (int p : path) {
+			node.addPathTakenEdge(p);
+		}
+		return node;
+	}
+
+	/*
+	 * Flush the map, and return the text line of every candidate by node ID (a node ID emitted twice is a failure)
+	 */
+	private static Map<Integer, String> flush(WeightedNodeCandidateMap map) throws IOException {
+		final Map<Integer, String> out = new HashMap<Integer, String>();
+		final Text line = new Text();
+		map.flush(new OutputCollector<IntWritable, WeightedNodeWritable>() {
+			public void collect(IntWritable key, WeightedNodeWritable value) {
+				value.writeLine(line);
+				WeightedGraphChecks.check("key of candidate " + line, key.get(), value.getId());
+				if (out.put(key.get(), line.toString()) != null) {
+					WeightedGraphChecks.fail("candidate emitted once", "once", "twice: " + line);
+				}
+			}
+		}, new IntWritable(), new WeightedNodeWritable());
+		return out;
+	}
+
+	private static class CountingCollector implements OutputCollector<IntWritable, WeightedNodeWritable> {
+		long count = 0;
+
+		public void collect(IntWritable key, WeightedNodeWritable value) {
+			count++;
+		}
+	}
+}
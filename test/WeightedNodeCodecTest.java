@@ -0,0 +1,129 @@
+/**
+ * Round-trip checks of the node codec (WeightedNodeWritable): a text line is parsed, written in the binary form (write),
+ * read back (readFields) and written as a text line again - the line must come back byte for byte, for every combination
+ * of the optional PRED, TOP and SOURCES columns (and the Integer.MAX_VALUE distance of an unreached node).  The shorter
+ * forms that parse also accepts (the data set lines without the path column separator, empty trailing columns) must be
+ * written as the full line.
+ */
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.Text;
+
+
+public class WeightedNodeCodecTest {
+
+	// The text lines of the round-trip checks (as writeLine writes them): ID <tab> WEIGHT|EDGES|DISTANCE|COLOR|path|[PRED|[TOP|[SOURCES|]]]
+	private static final String[] LINES = {
+		// no path, and an unreached node
+		"1\t5|2,3,|0|GRAY||",
+		"22\t0||0|WHITE||",
+		"7\t9|11,12,|Integer.MAX_VALUE|WHITE||",
+		// the path taken edges (-path full)
+		"12\t4|17,18,|41|BLACK|1,2,5,8,|",
+		"5051\t0||732506|BLACK|1,2,5,8,12,17,23,30,38,47,58,69,81,95,110,126,143,160,178,|",
+		// the predecessor (-path pred)
+		"17\t8|22,|50|BLACK||12|",
+		"3\t12|5,6,|5|GRAY||1|",
+		// the TOP list (-topk): with the predecessor, and with the -1 predecessor of the start node
+		"8\t14|12,13,|30|GRAY||4|30:4:0,28:5:0,24:5:1,|",
+		"1\t5|2,3,|0|BLACK||-1|0:-1:0,|",
+		// the SOURCES vector (-sources), with the empty TOP column, fresh (*) and expanded entries
+		"9\t10|13,14,|29|GRAY||5||0:29:5,*2:19:6,*7:10:-1,|",
+		"14\t2|19,20,|0|WHITE||-1||*0:39:9,|",
+		// all of them at once
+		"13\t3|18,19,|43|BLACK|1,3,5,8,|9|43:9:0,42:8:1,|0:43:9,*3:12:8,|"
+	};
+
+	// The shorter lines that parse accepts, and the line that writeLine writes for them
+	private static final String[][] SHORT_LINES = {
+		{ "1\t5|2,3,|0|GRAY|", "1\t5|2,3,|0|GRAY||" },
+		{ "22\t0||0|WHITE", "22\t0||0|WHITE||" },
+		{ "12\t4|17,18,|41|BLACK|1,2,5,8,", "12\t4|17,18,|41|BLACK|1,2,5,8,|" },
+		{ "9\t10|13,14,|29|GRAY||5|||", "9\t10|13,14,|29|GRAY||5|" },
+		{ "8\t14|12,13,|30|GRAY||4|30:4:0,28:5:0,||", "8\t14|12,13,|30|GRAY||4|30:4:0,28:5:0,|" },
+		// an empty PRED column is still the PRED column: the TOP (-topk with -path full) and SOURCES columns after it keep their place
+		{ "8\t14|12,13,|30|GRAY|1,4,||30:4:0,28:5:0,|", "8\t14|12,13,|30|GRAY|1,4,|-1|30:4:0,28:5:0,|" },
+		{ "9\t10|13,14,|29|GRAY|||29:5:0,|*2:19:6,|", "9\t10|13,14,|29|GRAY||-1|29:5:0,|*2:19:6,|" },
+		{ "9\t10|13,14,|29|GRAY||||*2:19:6,|", "9\t10|13,14,|29|GRAY||-1||*2:19:6,|" }
+	};
+
+	public static void main(String[] args) throws IOException {
+		run();
+		WeightedGraphChecks.exit();
+	}
+
+	public static void run() throws IOException {
+		testTextRoundTrip();
+		testBinaryRoundTrip();
+		testBinaryReuse();
+	}
+
+
+	/*
+	 * parse then writeLine gives the same line
+	 */
+	private static void testTextRoundTrip() {
+		WeightedNodeWritable node = new WeightedNodeWritable();
+		Text line = new Text();
+		for (String s : LINES) {
+			node.parse(new Text(s));
+			node.writeLine(line);
+			WeightedGraphChecks.check("text round trip", s, line.toString());
+		}
+		for (String[] s : SHORT_LINES) {
+			node.parse(new Text(s[0]));
+			node.writeLine(line);
+			WeightedGraphChecks.check("text line of " + s[0], s[1], line.toString());
+		}
+	}
+
+	/*
+	 * parse, write, readFields (into a fresh node) then writeLine gives the same line, and the fields are the same
+	 */
+	private static void testBinaryRoundTrip() throws IOException {
+		WeightedNodeWritable node = new WeightedNodeWritable();
+		Text line = new Text();
+		for (String s : LINES) {
+			node.parse(new Text(s));
+			WeightedNodeWritable copy = new WeightedNodeWritable();
+			WeightedGraphChecks.readBinary(WeightedGraphChecks.writeBinary(node), copy);
+			copy.writeLine(line);
+			WeightedGraphChecks.check("binary round trip", s, line.toString());
+
+			WeightedGraphChecks.check("binary round trip predecessor of " + s, node.getPredecessor(), copy.getPredecessor());
+			WeightedGraphChecks.check("binary round trip top count of " + s, node.getTopCount(), copy.getTopCount());
+			for (int i = 0; i < node.getTopCount(); i++) {
+				WeightedGraphChecks.check("binary round trip top " + i + " of " + s, node.getTopDistance(i) + ":" + node.getTopPredecessor(i) +
+						":" + node.getTopRank(i), copy.getTopDistance(i) + ":" + copy.getTopPredecessor(i) + ":" + copy.getTopRank(i));
+			}
+			WeightedGraphChecks.check("binary round trip source count of " + s, node.getSourceCount(), copy.getSourceCount());
+			for (int i = 0; i < node.getSourceCount(); i++) {
+				WeightedGraphChecks.check("binary round trip source " + i + " of " + s, node.getSourceIndex(i) + ":" + node.getSourceDistance(i) +
+						":" + node.getSourcePredecessor(i) + ":" + node.isSourceFresh(i), copy.getSourceIndex(i) + ":" +
+						copy.getSourceDistance(i) + ":" + copy.getSourcePredecessor(i) + ":" + copy.isSourceFresh(i));
+			}
+		}
+	}
+
+	/*
+	 * readFields into a reused node (as the framework does) does not keep anything of the node that it read before:
+	 * every line is read after the line with the most columns, and after the one with the fewest
+	 */
+	private static void testBinaryReuse() throws IOException {
+		WeightedNodeWritable node = new WeightedNodeWritable();
+		WeightedNodeWritable reused = new WeightedNodeWritable();
+		Text line = new Text();
+		String[] before = { LINES[LINES.length - 1], LINES[1] };
+		for (String b : before) {
+			for (String s : LINES) {
+				node.parse(new Text(b));
+				WeightedGraphChecks.readBinary(WeightedGraphChecks.writeBinary(node), reused);
+				node.parse(new Text(s));
+				WeightedGraphChecks.readBinary(WeightedGraphChecks.writeBinary(node), reused);
+				reused.writeLine(line);
+				WeightedGraphChecks.check("binary reuse after " + b, s, line.toString());
+			}
+		}
+	}
+}
@@ -0,0 +1,113 @@
+/**
+ * Checks of the composite map output key of -sort value (WeightedNodeKey): the raw comparator of the serialized keys
+ * (Comparator) must order every pair of keys the same as compareTo - the node record first, then the candidates by
+ * descending distance, then by ascending predecessor - and the GroupComparator as the node ID alone.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+public class WeightedNodeKeyTest {
+
+	public static void main(String[] args) throws IOException {
+		run();
+		WeightedGraphChecks.exit();
+	}
+
+	public static void run() throws IOException {
+		testComparator();
+	}
+
+
+	/*
+	 * The raw comparator orders the serialized keys as compareTo does - for every pair of a set of keys that covers the
+	 * node record and candidates, equal and different distances (0 and Integer.MAX_VALUE too), and the -1 predecessor
+	 */
+	private static void testComparator() throws IOException {
+		List<WeightedNodeKey> keys = new ArrayList<WeightedNodeKey>();
+		int[] ids = { 0, 1, 2, 255, 256, 70000 };
+		int[] distances = { 0, 1, 127, 128, 65536, Integer.MAX_VALUE };
+		int[] predecessors = { -1, 0, 1, 300 };
+		WeightedNodeWritable node = new WeightedNodeWritable();
+		for (int id : ids) {
+			for (WeightedNode.Color color : new WeightedNode.Color[] { WeightedNode.Color.WHITE, WeightedNode.Color.GRAY }) {
+				for (int distance : distances) {
+					for (int predecessor : predecessors) {
+						node.clear(id);
+						node.setColor(color);
+						node.setDistance(distance);
+						node.setPredecessor(predecessor);
+						WeightedNodeKey key = new WeightedNodeKey();
+						key.set(node);
+						keys.add(key);
+					}
+				}
+			}
+		}
+		// and some random ones, from the same node IDs so that most pairs are decided after the ID
+		Random random = new Random(7);
+		for (int i = 0; i < 200; i++) {
+			node.clear(ids[random.nextInt(ids.length)]);
+			node.setColor(random.nextBoolean() ? WeightedNode.Color.GRAY : WeightedNode.Color.BLACK);
+			node.setDistance(random.nextInt(1000));
+			node.setPredecessor(random.nextInt(20) - 1);
+			WeightedNodeKey key = new WeightedNodeKey();
+			key.set(node);
+			keys.add(key);
+		}
+
+		byte[][] bytes = new byte[keys.size()][];
+		for (int i = 0; i < keys.size(); i++) {
+			bytes[i] = WeightedGraphChecks.writeBinary(keys.get(i));
+		}
+
+		WeightedNodeKey.Comparator comparator = new WeightedNodeKey.Comparator();
+		WeightedNodeKey.GroupComparator group = new WeightedNodeKey.GroupComparator();
+		int mismatches = 0;
+		int groupMismatches = 0;
+		for (int i = 0; i < keys.size(); i++) {
+			for (int j = 0; j < keys.size(); j++) {
+				int expected = Integer.signum(keys.get(i).compareTo(keys.get(j)));
+				int raw = Integer.signum(comparator.compare(bytes[i], 0, bytes[i].length, bytes[j], 0, bytes[j].length));
+				if (raw != expected) {
+					if (mismatches++ < 5) {
+						WeightedGraphChecks.fail("raw comparator of " + keys.get(i) + " and " + keys.get(j), expected, raw);
+					}
+				}
+				int expectedGroup = Integer.signum(Integer.valueOf(keys.get(i).getId()).compareTo(keys.get(j).getId()));
+				int rawGroup = Integer.signum(group.compare(bytes[i], 0, bytes[i].length, bytes[j], 0, bytes[j].length));
+				if ((rawGroup != expectedGroup) ||
+						(Integer.signum(group.compare(keys.get(i), keys.get(j))) != expectedGroup)) {
+					if (groupMismatches++ < 5) {
+						WeightedGraphChecks.fail("group comparator of " + keys.get(i) + " and " + keys.get(j), expectedGroup, rawGroup);
+					}
+				}
+			}
+		}
+		WeightedGraphChecks.check("raw comparator mismatches", 0, mismatches);
+		WeightedGraphChecks.check("group comparator mismatches", 0, groupMismatches);
+
+		// The node record sorts first, then the candidates by descending distance, then ascending predecessor
+		WeightedNodeKey[] sorted = { key(9, WeightedNode.Color.WHITE, 0, -1), key(9, WeightedNode.Color.GRAY, 50, 3),
+				key(9, WeightedNode.Color.GRAY, 50, 4), key(9, WeightedNode.Color.GRAY, 12, 1), key(10, WeightedNode.Color.BLACK, 70, 9) };
+		for (int i = 0; i + 1 < sorted.length; i++) {
+			byte[] a = WeightedGraphChecks.writeBinary(sorted[i]);
+			byte[] b = WeightedGraphChecks.writeBinary(sorted[i + 1]);
+			WeightedGraphChecks.check("order of " + sorted[i] + " before " + sorted[i + 1], -1, Integer.signum(comparator.compare(a, 0, a.length, b, 0, b.length)));
+		}
+	}
+
+
+	private static WeightedNodeKey key(int id, WeightedNode.Color color, int distance, int predecessor) {
+		WeightedNodeWritable node = new WeightedNodeWritable(id);
+		node.setColor(color);
+		node.setDistance(distance);
+		node.setPredecessor(predecessor);
+		WeightedNodeKey key = new WeightedNodeKey();
+		key.set(node);
+		return key;
+	}
+}